@@ -0,0 +1,49 @@
+-- "Vivos en un año" sobre un millón de autores, con los años como texto sin índice (hasta la versión que
+-- los pasó a enteros) y como enteros con idx_autores_vida, igual que en db/migracion/V1__esquema_inicial.sql.
+-- Usa sus propias tablas, con la distribución de BaseDatosBenchmark, y las borra al final:
+--   psql -h localhost -U postgres -d literalura -f benchmarks/postgres/vida-autores.sql
+SELECT setseed(0.84);
+
+CREATE TABLE vida_autores_texto (id bigint PRIMARY KEY, nombre varchar(255),
+    fecha_nacimiento varchar(255), fecha_fallecimiento varchar(255));
+CREATE TABLE vida_autores_entero (id bigint PRIMARY KEY, nombre varchar(255),
+    fecha_nacimiento integer, fecha_fallecimiento integer);
+
+INSERT INTO vida_autores_entero
+SELECT id, 'Autor ' || id || ', Nombre', nacimiento,
+       CASE WHEN nacimiento IS NULL OR random() < 0.1 THEN NULL ELSE nacimiento + 30 + floor(random() * 60)::int END
+FROM (SELECT id, CASE WHEN random() < 0.05 THEN NULL ELSE 1500 + floor(random() * 450)::int END AS nacimiento
+      FROM generate_series(1, 1000000) AS id) AS autores;
+INSERT INTO vida_autores_texto
+SELECT id, nombre, fecha_nacimiento::text, fecha_fallecimiento::text FROM vida_autores_entero;
+
+CREATE INDEX idx_vida_autores_entero ON vida_autores_entero (fecha_nacimiento, fecha_fallecimiento);
+ANALYZE vida_autores_texto;
+ANALYZE vida_autores_entero;
+
+-- Antes: AutorRepository.findAutoresVivosEnAño(String)
+EXPLAIN (ANALYZE, BUFFERS) SELECT id, nombre, fecha_nacimiento, fecha_fallecimiento FROM vida_autores_texto
+WHERE fecha_nacimiento <= '1850' AND (fecha_fallecimiento IS NULL OR fecha_fallecimiento > '1850');
+
+-- Después: findAutoresVivosEnAño(Integer)
+EXPLAIN (ANALYZE, BUFFERS) SELECT id, nombre, fecha_nacimiento, fecha_fallecimiento FROM vida_autores_entero
+WHERE fecha_nacimiento <= 1850 AND (fecha_fallecimiento IS NULL OR fecha_fallecimiento > 1850);
+
+-- Un año temprano, con pocos autores nacidos antes: aquí el índice sí se usa
+EXPLAIN (ANALYZE, BUFFERS) SELECT id, nombre, fecha_nacimiento, fecha_fallecimiento FROM vida_autores_texto
+WHERE fecha_nacimiento <= '1520' AND (fecha_fallecimiento IS NULL OR fecha_fallecimiento > '1520');
+
+EXPLAIN (ANALYZE, BUFFERS) SELECT id, nombre, fecha_nacimiento, fecha_fallecimiento FROM vida_autores_entero
+WHERE fecha_nacimiento <= 1520 AND (fecha_fallecimiento IS NULL OR fecha_fallecimiento > 1520);
+
+-- Nuevo: findAutoresVivosEntreAños(1540, 1545)
+EXPLAIN (ANALYZE, BUFFERS) SELECT id, nombre, fecha_nacimiento, fecha_fallecimiento FROM vida_autores_entero
+WHERE fecha_nacimiento <= 1545 AND (fecha_fallecimiento IS NULL OR fecha_fallecimiento > 1540);
+
+-- Con texto, un año de tres cifras compara mal: '1850' <= '999', así que todos los nacidos desde 1500
+-- cuentan como nacidos hasta el año 999
+SELECT count(*) AS nacidos_hasta_999_texto FROM vida_autores_texto WHERE fecha_nacimiento <= '999';
+SELECT count(*) AS nacidos_hasta_999_entero FROM vida_autores_entero WHERE fecha_nacimiento <= 999;
+
+DROP TABLE vida_autores_texto;
+DROP TABLE vida_autores_entero;
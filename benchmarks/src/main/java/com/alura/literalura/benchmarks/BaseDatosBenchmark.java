@@ -0,0 +1,213 @@
+package com.alura.literalura.benchmarks;
+
+import com.alura.literalura.model.Libro;
+import com.alura.literalura.repository.LibroRepository;
+import com.zaxxer.hikari.HikariDataSource;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.boot.model.naming.CamelCaseToUnderscoresNamingStrategy;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
+import org.springframework.transaction.annotation.EnableTransactionManagement;
+
+import javax.sql.DataSource;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.*;
+
+//Solo JPA y los repositorios sobre H2 en memoria (modo PostgreSQL), sin el resto de la aplicación:
+//ni menú, ni API, ni índices en memoria, ni caché de segundo nivel, para medir las consultas en sí.
+//Los benchmarks que necesitan servicios o la caché los agregan con iniciar(propiedadesJpa, componentes)
+@Configuration
+@EnableJpaRepositories(basePackageClasses = LibroRepository.class)
+@EnableTransactionManagement
+public class BaseDatosBenchmark {
+    private static final int FILAS_POR_LOTE = 10_000;
+    //Cantidad de valores de consulta guardados durante la carga
+    private static final int MUESTRAS = 1024;
+    private static final String[] PALABRAS = {"Amor", "Guerra", "Viaje", "Historia", "Noche", "Mar", "Ciudad",
+            "Sombra", "Reino", "Memorias", "Cartas", "Poemas", "Jardín", "Río", "Isla", "Tiempo"};
+    //Proporción aproximada del catálogo de Gutenberg: la mayoría en inglés
+    private static final String[] IDIOMAS = {"en", "en", "en", "en", "en", "en", "en", "en", "en", "en", "en", "en",
+            "en", "en", "fr", "fr", "de", "es", "fi", "nl", "it", "pt"};
+
+    //Valores existentes para variar los parámetros de cada consulta
+    public record Muestras(List<Long> idsLibros, List<Long> idsAutores, List<String> titulos,
+                           List<String> nombres, List<Integer> años) {
+    }
+
+    //Propiedades de Hibernate que reemplazan o se suman a las de entityManagerFactory
+    public record PropiedadesJpa(Map<String, Object> valores) {
+    }
+
+    public static AnnotationConfigApplicationContext iniciar() {
+        return new AnnotationConfigApplicationContext(BaseDatosBenchmark.class);
+    }
+
+    //Con servicios de la aplicación (por ejemplo LibroService) y otra configuración de Hibernate
+    public static AnnotationConfigApplicationContext iniciar(Map<String, Object> propiedadesJpa, Class<?>... componentes) {
+        AnnotationConfigApplicationContext contexto = new AnnotationConfigApplicationContext();
+        contexto.getEnvironment().getPropertySources().addFirst(new MapPropertySource("benchmark",
+                Map.of("literalura.listado.tamano-pagina", 100)));
+        contexto.registerBean(PropiedadesJpa.class, () -> new PropiedadesJpa(propiedadesJpa));
+        contexto.register(BaseDatosBenchmark.class);
+        if (componentes.length > 0) {
+            contexto.register(componentes);
+        }
+        contexto.refresh();
+        return contexto;
+    }
+
+    //Con otra base (por ejemplo PostgreSQL): un bean registrado antes de procesar la configuración tiene
+    //prioridad sobre el método dataSource() de H2. El llamador cierra los pools
+    public static AnnotationConfigApplicationContext iniciar(DataSource dataSource) {
+        AnnotationConfigApplicationContext contexto = new AnnotationConfigApplicationContext();
+        contexto.registerBean("dataSource", DataSource.class, () -> dataSource);
+        contexto.register(BaseDatosBenchmark.class);
+        contexto.refresh();
+        return contexto;
+    }
+
+    @Bean(destroyMethod = "close")
+    public HikariDataSource dataSource() {
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl("jdbc:h2:mem:literalura;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DEFAULT_NULL_ORDERING=HIGH;DB_CLOSE_DELAY=-1");
+        dataSource.setUsername("sa");
+        return dataSource;
+    }
+
+    @Bean
+    public LocalContainerEntityManagerFactoryBean entityManagerFactory(DataSource dataSource,
+                                                                       ObjectProvider<PropiedadesJpa> adicionales) {
+        LocalContainerEntityManagerFactoryBean fabrica = new LocalContainerEntityManagerFactoryBean();
+        fabrica.setDataSource(dataSource);
+        fabrica.setPackagesToScan(Libro.class.getPackageName());
+        fabrica.setJpaVendorAdapter(new HibernateJpaVendorAdapter());
+        Map<String, Object> propiedades = new HashMap<>(Map.of(
+                "hibernate.hbm2ddl.auto", "create",
+                //Mismos nombres de columnas que con Spring Boot (numero_de_descargas, gutendex_id)
+                "hibernate.physical_naming_strategy", CamelCaseToUnderscoresNamingStrategy.class.getName(),
+                //Inserts por lotes como en application.properties
+                "hibernate.jdbc.batch_size", "50",
+                "hibernate.order_inserts", "true",
+                "hibernate.cache.use_second_level_cache", "false",
+                "hibernate.cache.use_query_cache", "false"));
+        adicionales.ifAvailable(propiedadesJpa -> propiedades.putAll(propiedadesJpa.valores()));
+        fabrica.setJpaPropertyMap(propiedades);
+        return fabrica;
+    }
+
+    @Bean
+    public JpaTransactionManager transactionManager(EntityManagerFactory entityManagerFactory) {
+        return new JpaTransactionManager(entityManagerFactory);
+    }
+
+    //Carga 'libros' libros, un autor por cada cuatro libros, idiomas y descargas con una distribución
+    //parecida a la de Gutenberg. La semilla es fija para que todas las ejecuciones vean los mismos datos
+    public static Muestras cargar(DataSource dataSource, int libros) {
+        return cargar(dataSource, libros, Math.max(1, libros / 4));
+    }
+
+    public static Muestras cargar(DataSource dataSource, int libros, int autores) {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        Random aleatorio = new Random(84);
+        Muestras muestras = new Muestras(new ArrayList<>(), new ArrayList<>(), new ArrayList<>(), new ArrayList<>(), new ArrayList<>());
+
+        insertar(jdbcTemplate, "INSERT INTO autores (id, nombre, fecha_nacimiento, fecha_fallecimiento) VALUES (?, ?, ?, ?)",
+                autores, (sentencia, i) -> {
+                    long id = i + 1L;
+                    String nombre = PALABRAS[i % PALABRAS.length] + " " + id + ", Nombre";
+                    Integer nacimiento = aleatorio.nextInt(20) == 0 ? null : 1500 + aleatorio.nextInt(450);
+                    Integer fallecimiento = nacimiento == null || aleatorio.nextInt(10) == 0 ? null : nacimiento + 30 + aleatorio.nextInt(60);
+                    sentencia.setLong(1, id);
+                    sentencia.setString(2, nombre);
+                    entero(sentencia, 3, nacimiento);
+                    entero(sentencia, 4, fallecimiento);
+                    muestrear(aleatorio, muestras.idsAutores(), id, i);
+                    muestrear(aleatorio, muestras.nombres(), nombre, i);
+                    if (nacimiento != null) {
+                        muestrear(aleatorio, muestras.años(), nacimiento + 20, i);
+                    }
+                });
+        insertar(jdbcTemplate, "INSERT INTO libros (id, titulo, gutendex_id, numero_de_descargas) VALUES (?, ?, ?, ?)",
+                libros, (sentencia, i) -> {
+                    long id = i + 1L;
+                    String titulo = PALABRAS[aleatorio.nextInt(PALABRAS.length)] + " de la " +
+                            PALABRAS[aleatorio.nextInt(PALABRAS.length)].toLowerCase() + " " + id;
+                    sentencia.setLong(1, id);
+                    sentencia.setString(2, titulo);
+                    sentencia.setInt(3, (int) id);
+                    //Pocos libros concentran la mayoría de las descargas
+                    if (aleatorio.nextInt(30) == 0) {
+                        sentencia.setNull(4, Types.DOUBLE);
+                    } else {
+                        sentencia.setDouble(4, Math.floor(10 / Math.pow(aleatorio.nextDouble() + 1e-6, 1.2)));
+                    }
+                    muestrear(aleatorio, muestras.idsLibros(), id, i);
+                    muestrear(aleatorio, muestras.titulos(), titulo, i);
+                });
+        insertar(jdbcTemplate, "INSERT INTO libro_idiomas (libro_id, idioma) VALUES (?, ?)",
+                libros, (sentencia, i) -> {
+                    sentencia.setLong(1, i + 1L);
+                    sentencia.setString(2, IDIOMAS[aleatorio.nextInt(IDIOMAS.length)]);
+                });
+        insertar(jdbcTemplate, "INSERT INTO libro_autor (libro_id, autor_id) VALUES (?, ?)",
+                libros, (sentencia, i) -> {
+                    sentencia.setLong(1, i + 1L);
+                    sentencia.setLong(2, 1L + aleatorio.nextInt(autores));
+                });
+        jdbcTemplate.execute("ANALYZE");
+        return muestras;
+    }
+
+    private static void insertar(JdbcTemplate jdbcTemplate, String sql, int filas, Fila fila) {
+        for (int inicio = 0; inicio < filas; inicio += FILAS_POR_LOTE) {
+            int desde = inicio;
+            int cantidad = Math.min(FILAS_POR_LOTE, filas - inicio);
+            jdbcTemplate.batchUpdate(sql, new BatchPreparedStatementSetter() {
+                @Override
+                public void setValues(PreparedStatement sentencia, int i) throws SQLException {
+                    fila.valores(sentencia, desde + i);
+                }
+
+                @Override
+                public int getBatchSize() {
+                    return cantidad;
+                }
+            });
+        }
+    }
+
+    //Muestreo de reservorio: MUESTRAS valores al azar sin guardar todas las filas
+    private static <T> void muestrear(Random aleatorio, List<T> muestras, T valor, int posicion) {
+        if (muestras.size() < MUESTRAS) {
+            muestras.add(valor);
+        } else {
+            int reemplazo = aleatorio.nextInt(posicion + 1);
+            if (reemplazo < MUESTRAS) {
+                muestras.set(reemplazo, valor);
+            }
+        }
+    }
+
+    private static void entero(PreparedStatement sentencia, int columna, Integer valor) throws SQLException {
+        if (valor == null) {
+            sentencia.setNull(columna, Types.INTEGER);
+        } else {
+            sentencia.setInt(columna, valor);
+        }
+    }
+
+    private interface Fila {
+        void valores(PreparedStatement sentencia, int indice) throws SQLException;
+    }
+}
@@ -0,0 +1,107 @@
+package com.alura.literalura.benchmarks;
+
+import com.alura.literalura.dto.AutorDTO;
+import com.alura.literalura.dto.LibroDTO;
+import com.alura.literalura.repository.AutorRepository;
+import com.alura.literalura.repository.LibroRepository;
+import com.alura.literalura.service.IndiceBusqueda;
+import com.alura.literalura.service.ListadoService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.data.domain.Limit;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+//Búsqueda local con IndiceBusqueda frente a las consultas LIKE que usa CatalogoService cuando el índice
+//está deshabilitado, con los mismos 20 resultados. Los títulos de BaseDatosBenchmark son del estilo
+//"Mar de la noche 4521": una palabra aparece en miles de libros y el título completo en uno solo
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class BusquedaBenchmark {
+    private static final int RESULTADOS = 20;
+    private static final List<String> PALABRAS = List.of("guerra", "memorias", "ciudad", "sombra", "viaje");
+
+    @Param({"100000"})
+    public int libros;
+
+    private AnnotationConfigApplicationContext contexto;
+    private LibroRepository libroRepository;
+    private AutorRepository autorRepository;
+    private IndiceBusqueda indice;
+    private BaseDatosBenchmark.Muestras muestras;
+    private int siguiente;
+
+    @Setup(Level.Trial)
+    public void iniciar() {
+        contexto = BaseDatosBenchmark.iniciar();
+        libroRepository = contexto.getBean(LibroRepository.class);
+        autorRepository = contexto.getBean(AutorRepository.class);
+        muestras = BaseDatosBenchmark.cargar(contexto.getBean(DataSource.class), libros);
+        indice = new IndiceBusqueda(libroRepository, autorRepository,
+                new ListadoService(libroRepository, autorRepository, 100));
+        new TransactionTemplate(contexto.getBean(PlatformTransactionManager.class)).executeWithoutResult(estado -> indice.reconstruir());
+    }
+
+    @TearDown(Level.Trial)
+    public void cerrar() {
+        contexto.close();
+    }
+
+    @Benchmark
+    public List<LibroDTO> indicePalabra() {
+        return indice.buscarLibros(palabra(), RESULTADOS);
+    }
+
+    @Benchmark
+    public List<LibroDTO> likePalabra() {
+        return libroRepository.findLibrosDTOPorTituloParecido(palabra(), Limit.of(RESULTADOS));
+    }
+
+    @Benchmark
+    public List<LibroDTO> indiceTituloCompleto() {
+        return indice.buscarLibros(muestra(muestras.titulos()), RESULTADOS);
+    }
+
+    @Benchmark
+    public List<LibroDTO> likeTituloCompleto() {
+        return libroRepository.findLibrosDTOPorTituloParecido(muestra(muestras.titulos()), Limit.of(RESULTADOS));
+    }
+
+    //Prefijo y error de tipeo: el LIKE no encuentra nada con "sombar"
+    @Benchmark
+    public List<LibroDTO> indicePrefijoYAproximado() {
+        return indice.buscarLibros(siguiente++ % 2 == 0 ? "memo" : "sombar", RESULTADOS);
+    }
+
+    //Nombres como "Noche 1234, Nombre": el número identifica a un autor
+    @Benchmark
+    public List<AutorDTO> indiceAutor() {
+        return indice.buscarAutores(numeroDeAutor(), RESULTADOS);
+    }
+
+    @Benchmark
+    public List<AutorDTO> likeAutor() {
+        return autorRepository.findByNombreContainingIgnoreCase(numeroDeAutor());
+    }
+
+    private String palabra() {
+        return PALABRAS.get(siguiente++ % PALABRAS.size());
+    }
+
+    private String numeroDeAutor() {
+        String nombre = muestra(muestras.nombres());
+        return nombre.substring(nombre.indexOf(' ') + 1, nombre.indexOf(','));
+    }
+
+    private <T> T muestra(List<T> valores) {
+        return valores.get(siguiente++ % valores.size());
+    }
+}
@@ -0,0 +1,77 @@
+package com.alura.literalura.benchmarks;
+
+import com.alura.literalura.service.CacheRespuestas;
+import com.alura.literalura.service.ConsumoAPI;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.util.FileSystemUtils;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+//Búsquedas repetidas (64 títulos en ronda) contra un Gutendex local que tarda 'latencia' en responder.
+//En modo muestreo JMH informa p50, p99 y p99.9 de cada configuración:
+//  sin: sin caché, cada búsqueda consulta Gutendex
+//  memoria: la caché en memoria alcanza para todas las respuestas
+//  disco: la memoria no alcanza para ninguna (1 KB) y las respuestas se leen del directorio
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CacheBusquedasBenchmark {
+    private static final int TITULOS = 64;
+
+    @Param({"sin", "memoria", "disco"})
+    public String cache;
+
+    @Param({"20"})
+    public int latenciaMillis;
+
+    private GutendexLocal gutendex;
+    private ConsumoAPI consumoAPI;
+    private Path directorio;
+    private String[] urls;
+    private int siguiente;
+
+    @Setup(Level.Trial)
+    public void iniciar() throws IOException {
+        gutendex = new GutendexLocal(Duration.ofMillis(latenciaMillis));
+        directorio = Files.createTempDirectory("cache-gutendex");
+        CacheRespuestas respuestas = switch (cache) {
+            case "sin" -> new CacheRespuestas(false, Duration.ZERO, DataSize.ofBytes(0), "", DataSize.ofBytes(0));
+            case "memoria" -> new CacheRespuestas(true, Duration.ofHours(1), DataSize.ofMegabytes(64), "",
+                    DataSize.ofBytes(0));
+            case "disco" -> new CacheRespuestas(true, Duration.ofHours(1), DataSize.ofKilobytes(1),
+                    directorio.toString(), DataSize.ofMegabytes(64));
+            default -> throw new IllegalArgumentException("Caché desconocida: " + cache);
+        };
+        consumoAPI = new ConsumoAPI(respuestas, Duration.ofSeconds(10), Duration.ofSeconds(30), 32, 0,
+                Duration.ofMillis(10), Duration.ofSeconds(1), 1_000_000, Duration.ofSeconds(1));
+        urls = new String[TITULOS];
+        for (int i = 0; i < TITULOS; i++) {
+            urls[i] = gutendex.url("/books/?search=titulo+" + i);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void cerrar() {
+        consumoAPI.cerrar();
+        gutendex.close();
+        try {
+            FileSystemUtils.deleteRecursively(directorio);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Benchmark
+    public String buscar() {
+        return consumoAPI.obtenerDatos(urls[siguiente++ % TITULOS]);
+    }
+}
@@ -0,0 +1,86 @@
+package com.alura.literalura.benchmarks;
+
+import com.alura.literalura.config.RegionesCacheEnMemoria;
+import com.alura.literalura.dto.LibroDTO;
+import com.alura.literalura.repository.AutorRepository;
+import com.alura.literalura.repository.LibroRepository;
+import com.alura.literalura.service.ListadoService;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import javax.sql.DataSource;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+//Búsqueda de un libro ya registrado (LibroRepository.findByTitulo con autores e idiomas, convertido a
+//LibroDTO) sobre 'libros' libros en H2, repitiendo 64 títulos, sin y con la caché de segundo nivel y de
+//consultas de application.properties. Al terminar cada iteración se informan las sentencias SQL
+//por búsqueda según las estadísticas de Hibernate
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+//Hibernate tarda en compilar la traducción de las consultas: con menos calentamiento el tiempo sigue bajando
+@Warmup(iterations = 10, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class CacheSegundoNivelBenchmark {
+    private static final int TITULOS = 64;
+
+    @Param({"100000"})
+    public int libros;
+
+    @Param({"false", "true"})
+    public boolean cacheSegundoNivel;
+
+    private AnnotationConfigApplicationContext contexto;
+    private LibroRepository libroRepository;
+    private ListadoService listadoService;
+    private Statistics estadisticas;
+    private List<String> titulos;
+    private int siguiente;
+
+    @Setup(Level.Trial)
+    public void iniciar() {
+        contexto = BaseDatosBenchmark.iniciar(Map.of(
+                "hibernate.cache.use_second_level_cache", Boolean.toString(cacheSegundoNivel),
+                "hibernate.cache.use_query_cache", Boolean.toString(cacheSegundoNivel),
+                "hibernate.cache.region.factory_class", RegionesCacheEnMemoria.class.getName(),
+                RegionesCacheEnMemoria.ENTRADAS_POR_REGION, "10000",
+                "hibernate.generate_statistics", "true",
+                //Sin un resumen en el log por cada sesión, como el nivel WARN de application-prueba.properties
+                "hibernate.session.events.log", "false"));
+        libroRepository = contexto.getBean(LibroRepository.class);
+        listadoService = new ListadoService(libroRepository, contexto.getBean(AutorRepository.class), 100);
+        titulos = BaseDatosBenchmark.cargar(contexto.getBean(DataSource.class), libros).titulos().subList(0, TITULOS);
+        estadisticas = contexto.getBean(EntityManagerFactory.class).unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @Setup(Level.Iteration)
+    public void reiniciarEstadisticas() {
+        estadisticas.clear();
+        siguiente = 0;
+    }
+
+    @TearDown(Level.Iteration)
+    public void informar() {
+        System.out.printf("%n%d búsquedas: %.2f sentencias SQL por búsqueda, caché de consultas %d aciertos / %d fallos%n",
+                siguiente, (double) estadisticas.getPrepareStatementCount() / Math.max(1, siguiente),
+                estadisticas.getQueryCacheHitCount(), estadisticas.getQueryCacheMissCount());
+    }
+
+    @TearDown(Level.Trial)
+    public void cerrar() {
+        contexto.close();
+    }
+
+    @Benchmark
+    public LibroDTO buscar() {
+        return libroRepository.findByTitulo(titulos.get(siguiente++ % TITULOS))
+                .map(listadoService::convertirALibroDTO)
+                .orElseThrow();
+    }
+}
@@ -0,0 +1,149 @@
+package com.alura.literalura.benchmarks;
+
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.HistogramSnapshot;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.boot.convert.DurationStyle;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+//Prueba de carga de la API REST ya levantada: 'hilos' clientes piden las rutas en ronda, cada uno apenas
+//recibe la respuesta anterior, y al final se informan solicitudes por segundo, percentiles y errores.
+//No usa JMH porque mide otro proceso. Por ejemplo:
+//  java -jar literalura.jar --spring.profiles.active=api
+//  java -cp target/benchmarks.jar com.alura.literalura.benchmarks.CargaApi --hilos=16 --duracion=30s /libros/top "/libros/buscar?q=austen"
+//Opciones: --url (http://127.0.0.1:8080), --hilos (16), --duracion (30s), --calentamiento (5s)
+public class CargaApi {
+    private static final List<String> RUTAS_POR_DEFECTO = List.of(
+            "/libros/top", "/libros?despues=0", "/libros/buscar?q=pride", "/autores/vivos?anio=1850", "/estadisticas");
+
+    private final HttpClient cliente = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+    private final String url;
+    private final List<String> rutas;
+    private final Map<String, LongAdder> respuestas = new ConcurrentHashMap<>();
+    private final SimpleMeterRegistry registro = new SimpleMeterRegistry();
+    //Por ruta y en total, en el orden de las rutas
+    private final Map<String, Timer> temporizadores = new LinkedHashMap<>();
+    private volatile boolean midiendo;
+    private volatile boolean terminado;
+
+    private CargaApi(String url, List<String> rutas) {
+        this.url = url.endsWith("/") ? url.substring(0, url.length() - 1) : url;
+        this.rutas = rutas;
+    }
+
+    //Percentiles calculados en el cliente sobre toda la medición (sin ventana que los descarte)
+    private Timer temporizador(String nombre, Duration duracion) {
+        return Timer.builder("carga.solicitud")
+                .tag("ruta", nombre)
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .distributionStatisticExpiry(duracion.multipliedBy(2))
+                .distributionStatisticBufferLength(1)
+                .register(registro);
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        Map<String, String> opciones = new HashMap<>();
+        List<String> rutas = new ArrayList<>();
+        for (String argumento : args) {
+            if (argumento.startsWith("--") && argumento.contains("=")) {
+                opciones.put(argumento.substring(2, argumento.indexOf('=')), argumento.substring(argumento.indexOf('=') + 1));
+            } else {
+                rutas.add(argumento);
+            }
+        }
+        CargaApi carga = new CargaApi(opciones.getOrDefault("url", "http://127.0.0.1:8080"),
+                rutas.isEmpty() ? RUTAS_POR_DEFECTO : rutas);
+        carga.ejecutar(Integer.parseInt(opciones.getOrDefault("hilos", "16")),
+                DurationStyle.detectAndParse(opciones.getOrDefault("calentamiento", "5s")),
+                DurationStyle.detectAndParse(opciones.getOrDefault("duracion", "30s")));
+    }
+
+    private void ejecutar(int hilos, Duration calentamiento, Duration duracion) throws InterruptedException {
+        System.out.printf("%s: %d clientes, %d s de calentamiento y %d s de medición%n",
+                url, hilos, calentamiento.toSeconds(), duracion.toSeconds());
+        Duration total = calentamiento.plus(duracion);
+        rutas.forEach(ruta -> temporizadores.put(ruta, temporizador(ruta, total)));
+        temporizadores.put("total", temporizador("total", total));
+        CountDownLatch terminados = new CountDownLatch(hilos);
+        for (int i = 0; i < hilos; i++) {
+            int numero = i;
+            Thread hilo = new Thread(() -> {
+                try {
+                    consultar(numero);
+                } finally {
+                    terminados.countDown();
+                }
+            }, "carga-" + i);
+            hilo.setDaemon(true);
+            hilo.start();
+        }
+        Thread.sleep(calentamiento.toMillis());
+        midiendo = true;
+        long inicio = System.nanoTime();
+        Thread.sleep(duracion.toMillis());
+        midiendo = false;
+        double segundos = (System.nanoTime() - inicio) / 1e9;
+        terminado = true;
+        terminados.await(30, TimeUnit.SECONDS);
+        informar(segundos);
+    }
+
+    //Cada cliente empieza en una ruta distinta y usa su propia sesión, como usuarios diferentes
+    private void consultar(int numero) {
+        int siguiente = numero;
+        while (!terminado) {
+            String ruta = rutas.get(siguiente++ % rutas.size());
+            HttpRequest solicitud = HttpRequest.newBuilder(URI.create(url + ruta))
+                    .header("X-Sesion", "carga-" + numero)
+                    .timeout(Duration.ofSeconds(30))
+                    .build();
+            //Solo cuentan las solicitudes que empiezan y terminan dentro de la medición
+            boolean medida = midiendo;
+            long inicio = System.nanoTime();
+            String resultado;
+            try {
+                resultado = String.valueOf(cliente.send(solicitud, HttpResponse.BodyHandlers.discarding()).statusCode());
+            } catch (IOException e) {
+                resultado = e.getClass().getSimpleName();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (medida && midiendo) {
+                long nanos = System.nanoTime() - inicio;
+                temporizadores.get(ruta).record(nanos, TimeUnit.NANOSECONDS);
+                temporizadores.get("total").record(nanos, TimeUnit.NANOSECONDS);
+                respuestas.computeIfAbsent(resultado, clave -> new LongAdder()).increment();
+            }
+        }
+    }
+
+    private void informar(double segundos) {
+        System.out.printf("%n%-34s %10s %10s %9s %9s %9s %9s%n", "Ruta", "Solicitudes", "sol/s", "p50 ms", "p95 ms", "p99 ms", "máx ms");
+        temporizadores.forEach((ruta, temporizador) -> {
+            HistogramSnapshot instantanea = temporizador.takeSnapshot();
+            //Los percentiles son aproximados y pueden pasar un poco del máximo observado
+            double maximo = instantanea.max(TimeUnit.MILLISECONDS);
+            double[] percentiles = Arrays.stream(instantanea.percentileValues())
+                    .mapToDouble(valor -> Math.min(valor.value(TimeUnit.MILLISECONDS), maximo))
+                    .toArray();
+            System.out.printf("%-34s %10d %10.1f %9.2f %9.2f %9.2f %9.2f%n", ruta, instantanea.count(),
+                    instantanea.count() / segundos, percentiles[0], percentiles[1], percentiles[2], maximo);
+        });
+        System.out.println("\nRespuestas: " + new TreeMap<>(respuestas));
+    }
+}
@@ -0,0 +1,109 @@
+package com.alura.literalura.benchmarks;
+
+import com.alura.literalura.service.CacheRespuestas;
+import com.alura.literalura.service.ConsumoAPI;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+//Una ronda de 'concurrencia' consultas simultáneas a un Gutendex local: ConsumoAPI con su cliente
+//compartido (bloqueante y asíncrono) frente a un HttpClient nuevo en cada consulta, como antes.
+//Consultas por segundo = concurrencia / tiempo de la ronda. Sin caché y con urls distintas para que
+//cada consulta llegue al servidor
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ClienteHttpBenchmark {
+    @Param({"1", "16", "256"})
+    public int concurrencia;
+
+    private final AtomicLong siguiente = new AtomicLong();
+    private GutendexLocal gutendex;
+    private ConsumoAPI consumoAPI;
+    private ExecutorService hilos;
+
+    @Setup(Level.Trial)
+    public void iniciar() {
+        gutendex = new GutendexLocal(Duration.ZERO);
+        CacheRespuestas sinCache = new CacheRespuestas(false, Duration.ZERO, DataSize.ofBytes(0), "", DataSize.ofBytes(0));
+        consumoAPI = new ConsumoAPI(sinCache, Duration.ofSeconds(10), Duration.ofSeconds(30), 32, 0,
+                Duration.ofMillis(10), Duration.ofSeconds(1), 1_000_000, Duration.ofSeconds(1));
+        hilos = Executors.newFixedThreadPool(concurrencia);
+    }
+
+    @TearDown(Level.Trial)
+    public void cerrar() {
+        hilos.shutdownNow();
+        consumoAPI.cerrar();
+        gutendex.close();
+    }
+
+    @Benchmark
+    public long clienteCompartido() throws Exception {
+        return ronda(consumoAPI::obtenerDatos);
+    }
+
+    //Sin hilos bloqueados: las consultas se encadenan sobre sendAsync
+    @Benchmark
+    public long clienteCompartidoAsincrono() {
+        List<CompletableFuture<String>> respuestas = new ArrayList<>(concurrencia);
+        for (int i = 0; i < concurrencia; i++) {
+            respuestas.add(consumoAPI.obtenerDatosAsync(url()));
+        }
+        return respuestas.stream().mapToLong(respuesta -> respuesta.join().length()).sum();
+    }
+
+    @Benchmark
+    public long clientePorConsulta() throws Exception {
+        return ronda(ClienteHttpBenchmark::consultarConClienteNuevo);
+    }
+
+    private long ronda(Consulta consulta) throws Exception {
+        List<Future<String>> respuestas = new ArrayList<>(concurrencia);
+        for (int i = 0; i < concurrencia; i++) {
+            String url = url();
+            respuestas.add(hilos.submit(() -> consulta.obtener(url)));
+        }
+        long bytes = 0;
+        for (Future<String> respuesta : respuestas) {
+            bytes += respuesta.get().length();
+        }
+        return bytes;
+    }
+
+    private String url() {
+        return gutendex.url("/books/?search=libro+" + siguiente.incrementAndGet());
+    }
+
+    //ConsumoAPI.obtenerDatos antes del cliente compartido
+    private static String consultarConClienteNuevo(String url) {
+        HttpClient client = HttpClient.newHttpClient();
+        HttpRequest request = HttpRequest.newBuilder().uri(URI.create(url)).build();
+        try {
+            return client.send(request, HttpResponse.BodyHandlers.ofString()).body();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private interface Consulta {
+        String obtener(String url);
+    }
+}
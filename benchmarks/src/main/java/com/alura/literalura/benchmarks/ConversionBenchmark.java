@@ -0,0 +1,67 @@
+package com.alura.literalura.benchmarks;
+
+import com.alura.literalura.model.Datos;
+import com.alura.literalura.service.ConvierteDatos;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+//Conversión de una página de resultados de Gutendex: el mapeo completo a Datos frente a la lectura en flujo
+//que usa el importador. sintetica-1.json tiene la forma de una respuesta de /books/ (32 libros con
+//resúmenes, formatos y temas) pero los textos son inventados; una página real grabada con curl se pasa
+//con -p pagina=/ruta/al/archivo.json (ver README)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConversionBenchmark {
+    //Nombre de una página en src/main/resources/gutendex o ruta de un archivo
+    @Param({"sintetica-1.json"})
+    public String pagina;
+
+    private final ConvierteDatos conversor = new ConvierteDatos();
+    private byte[] bytes;
+    private String json;
+
+    @Setup
+    public void cargar() {
+        Path archivo = Path.of(pagina);
+        try (InputStream entrada = Files.isRegularFile(archivo)
+                ? Files.newInputStream(archivo)
+                : ConversionBenchmark.class.getResourceAsStream("/gutendex/" + pagina)) {
+            if (entrada == null) {
+                throw new IllegalStateException("No existe la página " + pagina);
+            }
+            bytes = entrada.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        json = new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public Datos mapearPagina() {
+        return conversor.obtenerDatos(json, Datos.class);
+    }
+
+    //Como antes con BodyHandlers.ofString(): el cuerpo se decodifica a un String y después se mapea
+    @Benchmark
+    public Datos decodificarYMapearPagina() {
+        return conversor.obtenerDatos(new String(bytes, StandardCharsets.UTF_8), Datos.class);
+    }
+
+    @Benchmark
+    public Datos leerPaginaEnFlujo(Blackhole agujero) {
+        return conversor.obtenerLibros(new ByteArrayInputStream(bytes), agujero::consume);
+    }
+}
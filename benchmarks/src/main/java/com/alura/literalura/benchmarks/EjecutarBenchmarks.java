@@ -0,0 +1,44 @@
+package com.alura.literalura.benchmarks;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+//Igual que org.openjdk.jmh.Main, pero si no se indica -rf/-rff los resultados se guardan en JSON
+//en resultados/<fecha>.json para poder comparar ejecuciones
+public class EjecutarBenchmarks {
+    private static final DateTimeFormatter FORMATO_ARCHIVO = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    public static void main(String[] args) throws CommandLineOptionException, RunnerException, IOException {
+        CommandLineOptions opciones = new CommandLineOptions(args);
+        if (opciones.shouldHelp()) {
+            opciones.showHelp();
+            return;
+        }
+        if (opciones.shouldList()) {
+            new Runner(opciones).list();
+            return;
+        }
+        OptionsBuilder constructor = new OptionsBuilder();
+        constructor.parent(opciones);
+        if (opciones.getResultFormat().hasValue() || opciones.getResult().hasValue()) {
+            new Runner(constructor.build()).run();
+            return;
+        }
+        Path resultados = Path.of("resultados");
+        Files.createDirectories(resultados);
+        Path archivo = resultados.resolve(LocalDateTime.now().format(FORMATO_ARCHIVO) + ".json");
+        constructor.resultFormat(ResultFormatType.JSON).result(archivo.toString());
+        new Runner(constructor.build()).run();
+        System.out.println("Resultados guardados en " + archivo.toAbsolutePath());
+    }
+}
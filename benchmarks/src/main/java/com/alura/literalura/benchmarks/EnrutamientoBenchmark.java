@@ -0,0 +1,145 @@
+package com.alura.literalura.benchmarks;
+
+import com.alura.literalura.config.OrigenDatosEnrutado;
+import com.alura.literalura.config.SesionDatos;
+import com.alura.literalura.dto.LibroDTO;
+import com.alura.literalura.model.Libro;
+import com.alura.literalura.repository.LibroRepository;
+import com.zaxxer.hikari.HikariDataSource;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+//Carga mixta sobre PostgreSQL: 3 hilos leen y 1 registra libros y los vuelve a leer en su sesión.
+//Con enrutamiento=true las lecturas van a la réplica y las escrituras a la primaria; con false todo va a la
+//primaria. Necesita dos bases, la réplica en streaming desde la primaria (ver README):
+//  -Dliteralura.primaria=jdbc:postgresql://localhost:5432/literalura -Dliteralura.replica=jdbc:postgresql://localhost:5433/literalura
+//La base se vuelve a crear en cada ejecución
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class EnrutamientoBenchmark {
+    @Param({"false", "true"})
+    public boolean enrutamiento;
+
+    @Param({"100000"})
+    public int libros;
+
+    private HikariDataSource primaria;
+    private HikariDataSource replica;
+    private OrigenDatosEnrutado origen;
+    private AnnotationConfigApplicationContext contexto;
+    private LibroRepository libroRepository;
+    private BaseDatosBenchmark.Muestras muestras;
+    private final AtomicInteger escritores = new AtomicInteger();
+    private final LongAdder lecturasPropiasFallidas = new LongAdder();
+
+    @Setup(Level.Trial)
+    public void iniciar() throws InterruptedException {
+        primaria = pool("primaria", System.getProperty("literalura.primaria", "jdbc:postgresql://localhost:5432/literalura"));
+        DataSource dataSource = primaria;
+        if (enrutamiento) {
+            replica = pool("replica", System.getProperty("literalura.replica", "jdbc:postgresql://localhost:5433/literalura"));
+            replica.setReadOnly(true);
+            LazyConnectionDataSourceProxy proxy = OrigenDatosEnrutado.crear(primaria, replica, Duration.ofSeconds(5));
+            origen = (OrigenDatosEnrutado) proxy.getTargetDataSource();
+            dataSource = proxy;
+        }
+        contexto = BaseDatosBenchmark.iniciar(dataSource);
+        libroRepository = contexto.getBean(LibroRepository.class);
+        muestras = BaseDatosBenchmark.cargar(primaria, libros);
+        //La carga usa ids explícitos: la secuencia sigue desde el último
+        new JdbcTemplate(primaria).execute("SELECT setval('libros_seq', (SELECT max(id) FROM libros) + 50)");
+        if (replica != null) {
+            esperarReplica();
+        }
+    }
+
+    //Hasta que la réplica tiene la carga completa, para que ambas variantes lean los mismos datos
+    private void esperarReplica() throws InterruptedException {
+        JdbcTemplate consultas = new JdbcTemplate(replica);
+        while (!Integer.valueOf(libros).equals(consultas.queryForObject("SELECT COUNT(*) FROM libro_autor", Integer.class))) {
+            Thread.sleep(200);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void cerrar() {
+        if (origen != null) {
+            System.out.printf("%nConexiones: primaria %d, réplica %d%n", origen.getConexionesPrimaria(), origen.getConexionesReplica());
+        }
+        System.out.printf("Lecturas propias que no encontraron el libro registrado: %d%n", lecturasPropiasFallidas.sum());
+        contexto.close();
+        primaria.close();
+        if (replica != null) {
+            replica.close();
+        }
+    }
+
+    //Cada hilo es una sesión distinta, como un cliente de la API
+    @State(Scope.Thread)
+    public static class Sesion {
+        private String nombre;
+        private int consultas;
+
+        @Setup(Level.Trial)
+        public void iniciar(EnrutamientoBenchmark benchmark) {
+            nombre = "sesion-" + benchmark.escritores.incrementAndGet();
+            SesionDatos.iniciar(nombre);
+        }
+
+        @TearDown(Level.Trial)
+        public void terminar() {
+            SesionDatos.terminar();
+        }
+    }
+
+    @Benchmark
+    @Group("mixta")
+    @GroupThreads(3)
+    public List<LibroDTO> leer(Sesion sesion) {
+        return libroRepository.findLibrosDTOPorIds(libroRepository.findIdsDespuesDe(muestra(sesion), Limit.of(20)));
+    }
+
+    //Registra un libro y lo lee enseguida: sin la ventana de lectura propia la réplica podría no tenerlo aún
+    @Benchmark
+    @Group("mixta")
+    @GroupThreads(1)
+    public Optional<Libro> escribir(Sesion sesion) {
+        Libro libro = new Libro();
+        libro.setTitulo(sesion.nombre + " " + System.nanoTime());
+        libro.setNumeroDeDescargas(0.0);
+        libroRepository.save(libro);
+        Optional<Libro> leido = libroRepository.findByTitulo(libro.getTitulo());
+        if (leido.isEmpty()) {
+            lecturasPropiasFallidas.increment();
+        }
+        return leido;
+    }
+
+    private Long muestra(Sesion sesion) {
+        return muestras.idsLibros().get(Math.floorMod(sesion.consultas++, muestras.idsLibros().size()));
+    }
+
+    private static HikariDataSource pool(String nombre, String url) {
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setPoolName(nombre);
+        dataSource.setJdbcUrl(url);
+        dataSource.setUsername(System.getProperty("literalura.usuario", "postgres"));
+        dataSource.setPassword(System.getProperty("literalura.contrasena", "postgres"));
+        return dataSource;
+    }
+}
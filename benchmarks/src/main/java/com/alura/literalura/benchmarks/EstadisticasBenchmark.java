@@ -0,0 +1,94 @@
+package com.alura.literalura.benchmarks;
+
+import com.alura.literalura.dto.EstadisticasDTO;
+import com.alura.literalura.dto.EstadisticasDescargasDTO;
+import com.alura.literalura.model.Libro;
+import com.alura.literalura.repository.AutorRepository;
+import com.alura.literalura.repository.LibroRepository;
+import com.alura.literalura.service.EstadisticasService;
+import com.zaxxer.hikari.HikariDataSource;
+import jakarta.persistence.EntityManagerFactory;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+//Estadísticas de descargas sobre PostgreSQL: como antes de EstadisticasService (findAll y el cálculo en la
+//aplicación, aquí con los mismos percentiles), con la consulta de agregación de LibroRepository y con el
+//servicio completo (agregación más los grupos por idioma y por autor). Con -prof gc se ve la memoria
+//asignada por llamada. Usa una base aparte porque el esquema se vuelve a crear:
+//  -Dliteralura.primaria=jdbc:postgresql://localhost:5432/estadisticas
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+//Con 5 iteraciones el error de enMemoria pasaba del 60 %
+@Warmup(iterations = 10, time = 2)
+@Measurement(iterations = 10, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class EstadisticasBenchmark {
+    @Param({"100000"})
+    public int libros;
+
+    private HikariDataSource dataSource;
+    private AnnotationConfigApplicationContext contexto;
+    private LibroRepository libroRepository;
+    private EstadisticasService estadisticasService;
+
+    @Setup(Level.Trial)
+    public void iniciar() {
+        dataSource = new HikariDataSource();
+        dataSource.setPoolName("estadisticas");
+        dataSource.setJdbcUrl(System.getProperty("literalura.primaria", "jdbc:postgresql://localhost:5432/estadisticas"));
+        dataSource.setUsername(System.getProperty("literalura.usuario", "postgres"));
+        dataSource.setPassword(System.getProperty("literalura.contrasena", "postgres"));
+        contexto = BaseDatosBenchmark.iniciar(dataSource);
+        libroRepository = contexto.getBean(LibroRepository.class);
+        //ConsumoAPI y CacheRespuestas solo se usan en obtenerEstadisticasApi; 10 grupos como en application.properties
+        estadisticasService = new EstadisticasService(libroRepository, contexto.getBean(AutorRepository.class),
+                contexto.getBean(EntityManagerFactory.class), null, null, 10);
+        BaseDatosBenchmark.cargar(dataSource, libros);
+        //Las dos formas dan las mismas cifras
+        System.out.printf("%nEn memoria: %s%nConsulta:   %s%n", enMemoria(), consulta());
+    }
+
+    @TearDown(Level.Trial)
+    public void cerrar() {
+        contexto.close();
+        dataSource.close();
+    }
+
+    //Todas las entidades en memoria, como mostrarEstadisticasLibrosRegistrados antes de EstadisticasService
+    @Benchmark
+    public EstadisticasDescargasDTO enMemoria() {
+        double[] descargas = libroRepository.findAll().stream()
+                .map(Libro::getNumeroDeDescargas)
+                .filter(Objects::nonNull)
+                .mapToDouble(Double::doubleValue)
+                .sorted()
+                .toArray();
+        double total = Arrays.stream(descargas).sum();
+        return new EstadisticasDescargasDTO((long) libroRepository.count(), (long) descargas.length, total,
+                descargas[0], descargas[descargas.length - 1], total / descargas.length,
+                percentil(descargas, 0.5), percentil(descargas, 0.9), percentil(descargas, 0.99));
+    }
+
+    @Benchmark
+    public EstadisticasDescargasDTO consulta() {
+        return libroRepository.resumirDescargas();
+    }
+
+    @Benchmark
+    public EstadisticasDTO servicio() {
+        return estadisticasService.obtenerEstadisticas();
+    }
+
+    //Interpolación lineal entre los dos valores vecinos, como percentile_cont de PostgreSQL
+    private static double percentil(double[] ordenados, double fraccion) {
+        double posicion = fraccion * (ordenados.length - 1);
+        int inferior = (int) Math.floor(posicion);
+        int superior = (int) Math.ceil(posicion);
+        return ordenados[inferior] + (posicion - inferior) * (ordenados[superior] - ordenados[inferior]);
+    }
+}
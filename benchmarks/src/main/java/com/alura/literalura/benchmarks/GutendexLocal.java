@@ -0,0 +1,74 @@
+package com.alura.literalura.benchmarks;
+
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+//Servidor HTTP local que responde cualquier ruta con la página sintética de Gutendex, después de esperar
+//'latencia' para simular la red. Sin TLS: lo que mide un cliente nuevo por consulta es la creación del
+//cliente y la conexión TCP, no el handshake
+class GutendexLocal implements AutoCloseable {
+    static {
+        //Sin TCP_NODELAY el servidor envía los encabezados y el cuerpo en dos segmentos y, con la conexión
+        //reutilizada, el segundo espera el ACK diferido del cliente (~40 ms por consulta)
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    private final HttpServer servidor;
+    private final ExecutorService hilos = Executors.newCachedThreadPool();
+
+    GutendexLocal(Duration latencia) {
+        byte[] pagina = leer("/gutendex/sintetica-1.json");
+        try {
+            servidor = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 512);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        servidor.createContext("/", intercambio -> {
+            try (intercambio) {
+                intercambio.getRequestBody().readAllBytes();
+                if (!latencia.isZero()) {
+                    Thread.sleep(latencia.toMillis());
+                }
+                intercambio.getResponseHeaders().set("Content-Type", "application/json");
+                intercambio.sendResponseHeaders(200, pagina.length);
+                try (OutputStream salida = intercambio.getResponseBody()) {
+                    salida.write(pagina);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        servidor.setExecutor(hilos);
+        servidor.start();
+    }
+
+    String url(String ruta) {
+        return "http://127.0.0.1:" + servidor.getAddress().getPort() + ruta;
+    }
+
+    @Override
+    public void close() {
+        servidor.stop(0);
+        hilos.shutdownNow();
+    }
+
+    private static byte[] leer(String recurso) {
+        try (InputStream entrada = GutendexLocal.class.getResourceAsStream(recurso)) {
+            if (entrada == null) {
+                throw new IllegalStateException("No existe " + recurso);
+            }
+            return entrada.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.alura.literalura.benchmarks;
+
+import com.alura.literalura.repository.LibroRepository;
+import com.alura.literalura.service.IndiceFacetas;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.util.concurrent.TimeUnit;
+
+//IndiceFacetas con 1M libros de BaseDatosBenchmark. El índice se carga desde H2 con reconstruir(), como al
+//arrancar la aplicación; después la base ya no se consulta
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class IndiceFacetasBenchmark {
+    @Param({"1000000"})
+    public int libros;
+
+    private AnnotationConfigApplicationContext contexto;
+    private IndiceFacetas indice;
+
+    @Setup(Level.Trial)
+    public void cargar() {
+        contexto = BaseDatosBenchmark.iniciar();
+        BaseDatosBenchmark.cargar(contexto.getBean(DataSource.class), libros);
+        indice = new IndiceFacetas(contexto.getBean(LibroRepository.class));
+        //Las consultas con Stream necesitan una transacción abierta mientras se recorren
+        new TransactionTemplate(contexto.getBean(PlatformTransactionManager.class)).executeWithoutResult(estado -> indice.reconstruir());
+    }
+
+    @TearDown(Level.Trial)
+    public void cerrar() {
+        contexto.close();
+    }
+
+    //"Libros en francés de autores vivos en 1850 con al menos 1000 descargas"
+    @Benchmark
+    public IndiceFacetas.Resultado idiomaAnioYDescargas() {
+        return indice.filtrar(new IndiceFacetas.Filtro("fr", 1850, 1000.0), 20);
+    }
+
+    @Benchmark
+    public IndiceFacetas.Resultado idiomaPoco() {
+        return indice.filtrar(new IndiceFacetas.Filtro("fi", null, null), 20);
+    }
+
+    @Benchmark
+    public IndiceFacetas.Resultado idiomaMayoritario() {
+        return indice.filtrar(new IndiceFacetas.Filtro("en", null, null), 20);
+    }
+
+    //Recorre los candidatos para comprobar el año y el mínimo exactos
+    @Benchmark
+    public IndiceFacetas.Resultado anioYDescargas() {
+        return indice.filtrar(new IndiceFacetas.Filtro(null, 1600, 150.0), 20);
+    }
+}
@@ -0,0 +1,233 @@
+package com.alura.literalura.benchmarks;
+
+import com.alura.literalura.service.InstantaneaCatalogo;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.zaxxer.hikari.HikariDataSource;
+import jakarta.persistence.EntityManagerFactory;
+import org.openjdk.jmh.annotations.*;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+//Exportar y restaurar el catálogo con InstantaneaCatalogo (formato binario) y con un volcado JSON de las
+//mismas cuatro tablas, leído con Jackson y copiado con el mismo COPY de PostgreSQL. Así la diferencia es
+//solo el formato del archivo. Usa una base aparte porque se vacía y se vuelve a crear:
+//  -Dliteralura.primaria=jdbc:postgresql://localhost:5432/instantanea
+//Al terminar imprime el tamaño de cada archivo
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class InstantaneaBenchmark {
+    private static final List<Tabla> TABLAS = List.of(
+            new Tabla("autores", "id, nombre, fecha_nacimiento, fecha_fallecimiento", "id"),
+            new Tabla("libros", "id, titulo, gutendex_id, numero_de_descargas", "id"),
+            new Tabla("libro_idiomas", "libro_id, idioma", "libro_id, idioma"),
+            new Tabla("libro_autor", "libro_id, autor_id", "libro_id, autor_id"));
+    private static final JsonFactory JSON = new JsonFactory();
+
+    //Extensión del archivo: .lit es el formato de InstantaneaCatalogo y .gz agrega gzip
+    @Param({"lit", "lit.gz", "json", "json.gz"})
+    public String formato;
+
+    @Param({"100000"})
+    public int libros;
+
+    private HikariDataSource dataSource;
+    private AnnotationConfigApplicationContext contexto;
+    private InstantaneaCatalogo instantaneaCatalogo;
+    private TransactionTemplate lectura;
+    private JdbcTemplate jdbcTemplate;
+    private Path directorio;
+    private Path archivo;
+
+    private record Tabla(String nombre, String columnas, String orden) {
+    }
+
+    @Setup(Level.Trial)
+    public void iniciar() throws IOException {
+        dataSource = new HikariDataSource();
+        dataSource.setPoolName("instantanea");
+        dataSource.setJdbcUrl(System.getProperty("literalura.primaria", "jdbc:postgresql://localhost:5432/instantanea"));
+        dataSource.setUsername(System.getProperty("literalura.usuario", "postgres"));
+        dataSource.setPassword(System.getProperty("literalura.contrasena", "postgres"));
+        contexto = BaseDatosBenchmark.iniciar(dataSource);
+        PlatformTransactionManager transactionManager = contexto.getBean(PlatformTransactionManager.class);
+        instantaneaCatalogo = new InstantaneaCatalogo(dataSource, transactionManager, contexto.getBean(EntityManagerFactory.class));
+        //Como InstantaneaCatalogo: las cuatro consultas en la misma transacción, leyendo por bloques
+        lectura = new TransactionTemplate(transactionManager);
+        lectura.setReadOnly(true);
+        lectura.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.setFetchSize(10_000);
+        BaseDatosBenchmark.cargar(dataSource, libros);
+        directorio = Files.createTempDirectory("instantanea");
+        archivo = directorio.resolve("catalogo." + formato);
+        //restaurar parte siempre del mismo archivo
+        exportar();
+    }
+
+    @TearDown(Level.Trial)
+    public void cerrar() throws IOException {
+        System.out.printf("%nArchivo %s: %,d bytes%n", archivo.getFileName(), Files.size(archivo));
+        Files.delete(archivo);
+        Files.delete(directorio);
+        contexto.close();
+        dataSource.close();
+    }
+
+    @State(Scope.Thread)
+    public static class BaseVacia {
+        @Setup(Level.Invocation)
+        public void vaciar(InstantaneaBenchmark benchmark) {
+            benchmark.jdbcTemplate.execute("TRUNCATE libro_autor, libro_idiomas, libros, autores");
+        }
+    }
+
+    @Benchmark
+    public void exportar() throws IOException {
+        if (formato.startsWith("lit")) {
+            instantaneaCatalogo.exportar(archivo);
+        } else {
+            exportarJson();
+        }
+    }
+
+    @Benchmark
+    public void restaurar(BaseVacia baseVacia) throws IOException, SQLException {
+        if (formato.startsWith("lit")) {
+            instantaneaCatalogo.restaurar(archivo);
+        } else {
+            restaurarJson();
+        }
+    }
+
+    //{"autores":[[1,"Nombre",1800,null],...],"libros":[...],...}: un arreglo por fila, sin repetir los nombres
+    //de las columnas, que es lo más compacto que da JSON
+    private void exportarJson() {
+        lectura.executeWithoutResult(estado -> {
+            try (JsonGenerator json = JSON.createGenerator(new BufferedOutputStream(abrirSalida()))) {
+                json.writeStartObject();
+                for (Tabla tabla : TABLAS) {
+                    json.writeArrayFieldStart(tabla.nombre());
+                    jdbcTemplate.query("SELECT " + tabla.columnas() + " FROM " + tabla.nombre() + " ORDER BY " + tabla.orden(),
+                            resultado -> {
+                                try {
+                                    json.writeStartArray();
+                                    for (int i = 1; i <= resultado.getMetaData().getColumnCount(); i++) {
+                                        Object valor = resultado.getObject(i);
+                                        if (valor instanceof Number numero) {
+                                            json.writeNumber(numero.toString());
+                                        } else if (valor == null) {
+                                            json.writeNull();
+                                        } else {
+                                            json.writeString(valor.toString());
+                                        }
+                                    }
+                                    json.writeEndArray();
+                                } catch (IOException e) {
+                                    throw new UncheckedIOException(e);
+                                }
+                            });
+                    json.writeEndArray();
+                }
+                json.writeEndObject();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    //Cada tabla del JSON se pasa al formato de texto de COPY, igual que hace InstantaneaCatalogo con el binario
+    private void restaurarJson() throws IOException, SQLException {
+        try (Connection conexion = dataSource.getConnection();
+             JsonParser json = JSON.createParser(new BufferedInputStream(abrirEntrada()))) {
+            conexion.setAutoCommit(false);
+            PGConnection postgres = conexion.unwrap(PGConnection.class);
+            json.nextToken();
+            for (Tabla tabla : TABLAS) {
+                json.nextToken();
+                if (!tabla.nombre().equals(json.currentName()) || json.nextToken() != JsonToken.START_ARRAY) {
+                    throw new IllegalStateException("Se esperaba la tabla " + tabla.nombre());
+                }
+                CopyIn copia = postgres.getCopyAPI().copyIn("COPY " + tabla.nombre() + " (" + tabla.columnas() + ") FROM STDIN");
+                StringBuilder texto = new StringBuilder();
+                while (json.nextToken() == JsonToken.START_ARRAY) {
+                    boolean primera = true;
+                    for (JsonToken token = json.nextToken(); token != JsonToken.END_ARRAY; token = json.nextToken()) {
+                        texto.append(primera ? "" : "\t");
+                        primera = false;
+                        if (token == JsonToken.VALUE_NULL) {
+                            texto.append("\\N");
+                        } else if (token == JsonToken.VALUE_STRING) {
+                            escapar(texto, json.getText());
+                        } else {
+                            texto.append(json.getText());
+                        }
+                    }
+                    texto.append('\n');
+                    if (texto.length() >= 1 << 16) {
+                        enviar(copia, texto);
+                    }
+                }
+                enviar(copia, texto);
+                copia.endCopy();
+            }
+            try (Statement sentencia = conexion.createStatement()) {
+                sentencia.execute("SELECT setval('libros_seq', (SELECT MAX(id) FROM libros))");
+                sentencia.execute("SELECT setval('autores_seq', (SELECT MAX(id) FROM autores))");
+            }
+            conexion.commit();
+        }
+    }
+
+    private static void escapar(StringBuilder texto, String valor) {
+        for (int i = 0; i < valor.length(); i++) {
+            char c = valor.charAt(i);
+            switch (c) {
+                case '\\' -> texto.append("\\\\");
+                case '\t' -> texto.append("\\t");
+                case '\n' -> texto.append("\\n");
+                case '\r' -> texto.append("\\r");
+                default -> texto.append(c);
+            }
+        }
+    }
+
+    private static void enviar(CopyIn copia, StringBuilder texto) throws SQLException {
+        byte[] bytes = texto.toString().getBytes(StandardCharsets.UTF_8);
+        copia.writeToCopy(bytes, 0, bytes.length);
+        texto.setLength(0);
+    }
+
+    private OutputStream abrirSalida() throws IOException {
+        OutputStream salida = Files.newOutputStream(archivo);
+        return formato.endsWith(".gz") ? new GZIPOutputStream(salida, 1 << 16) : salida;
+    }
+
+    private InputStream abrirEntrada() throws IOException {
+        InputStream entrada = Files.newInputStream(archivo);
+        return formato.endsWith(".gz") ? new GZIPInputStream(entrada, 1 << 16) : entrada;
+    }
+}
@@ -0,0 +1,62 @@
+package com.alura.literalura.benchmarks;
+
+import com.alura.literalura.dto.LibroDTO;
+import com.alura.literalura.model.Autor;
+import com.alura.literalura.model.DatosAutor;
+import com.alura.literalura.model.DatosLibros;
+import com.alura.literalura.model.Libro;
+import com.alura.literalura.service.ListadoService;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+//Operaciones sobre entidades ya cargadas: idiomas de ida y vuelta y la conversión a LibroDTO
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LibroBenchmark {
+    private static final List<String> CODIGOS = List.of("en", "es", "fr", "de", "it", "pt", "nl", "fi");
+
+    @Param({"1", "3"})
+    public int idiomas;
+
+    @Param({"1", "4"})
+    public int autores;
+
+    private List<String> codigos;
+    private Libro libro;
+    //convertirALibroDTO no usa los repositorios
+    private final ListadoService listadoService = new ListadoService(null, null, 100);
+
+    @Setup
+    public void preparar() {
+        //Con espacios y vacíos, como llegan a veces desde Gutendex y el CSV
+        codigos = new ArrayList<>();
+        for (int i = 0; i < idiomas; i++) {
+            codigos.add(i % 2 == 0 ? CODIGOS.get(i) : " " + CODIGOS.get(i) + " ");
+        }
+        codigos.add("");
+        List<DatosAutor> datosAutores = new ArrayList<>();
+        for (int i = 0; i < autores; i++) {
+            datosAutores.add(new DatosAutor("Autor " + i + ", Nombre", 1800 + i, 1870 + i));
+        }
+        libro = new Libro(new DatosLibros("Pride and Prejudice", datosAutores, codigos, 48_210.0, 1342));
+        libro.setAutores(new ArrayList<>(datosAutores.stream().map(Autor::new).toList()));
+    }
+
+    @Benchmark
+    public List<String> idiomasIdaYVuelta() {
+        libro.setIdiomas(codigos);
+        return libro.getIdiomas();
+    }
+
+    @Benchmark
+    public LibroDTO convertirALibroDTO() {
+        return listadoService.convertirALibroDTO(libro);
+    }
+}
@@ -0,0 +1,104 @@
+package com.alura.literalura.benchmarks;
+
+import com.alura.literalura.config.RegionesCacheEnMemoria;
+import com.alura.literalura.metricas.MedicionAspecto;
+import com.alura.literalura.model.Libro;
+import com.alura.literalura.repository.LibroRepository;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.config.MeterFilter;
+import io.micrometer.core.instrument.distribution.DistributionStatisticConfig;
+import io.micrometer.prometheusmetrics.PrometheusConfig;
+import io.micrometer.prometheusmetrics.PrometheusMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.EnableAspectJAutoProxy;
+import org.springframework.context.annotation.Import;
+
+import javax.sql.DataSource;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+//Costo de MedicionAspecto en cada llamada a un repositorio: las mismas consultas sin el aspecto y con él,
+//registrando en Prometheus con el histograma y los percentiles de application.properties.
+//libroPorId se responde desde la caché de segundo nivel, así que el costo del aspecto pesa más que en
+//libroPorTitulo, que consulta H2
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+//Con menos calentamiento libroPorTitulo sigue bajando y la diferencia queda dentro del error
+@Warmup(iterations = 20, time = 2)
+@Measurement(iterations = 10, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class MedicionAspectoBenchmark {
+    private static final int LIBROS = 10_000;
+
+    @Param({"false", "true"})
+    public boolean medicion;
+
+    private AnnotationConfigApplicationContext contexto;
+    private PrometheusMeterRegistry prometheus;
+    private LibroRepository libroRepository;
+    private List<Long> ids;
+    private List<String> titulos;
+    private int siguiente;
+
+    @EnableAspectJAutoProxy
+    @Import(MedicionAspecto.class)
+    static class ConMedicion {
+    }
+
+    @Setup(Level.Trial)
+    public void iniciar() {
+        Map<String, Object> propiedades = Map.of(
+                "hibernate.cache.use_second_level_cache", "true",
+                "hibernate.cache.region.factory_class", RegionesCacheEnMemoria.class.getName(),
+                RegionesCacheEnMemoria.ENTRADAS_POR_REGION, "10000");
+        if (medicion) {
+            //Lo que hace Spring Boot con management.metrics.distribution.* y el registro de Prometheus
+            prometheus = new PrometheusMeterRegistry(PrometheusConfig.DEFAULT);
+            prometheus.config().meterFilter(new MeterFilter() {
+                @Override
+                public DistributionStatisticConfig configure(Meter.Id id, DistributionStatisticConfig configuracion) {
+                    return DistributionStatisticConfig.builder()
+                            .percentilesHistogram(true)
+                            .percentiles(0.5, 0.95, 0.99)
+                            .build()
+                            .merge(configuracion);
+                }
+            });
+            Metrics.globalRegistry.add(prometheus);
+            contexto = BaseDatosBenchmark.iniciar(propiedades, ConMedicion.class);
+        } else {
+            contexto = BaseDatosBenchmark.iniciar(propiedades);
+        }
+        libroRepository = contexto.getBean(LibroRepository.class);
+        BaseDatosBenchmark.Muestras muestras = BaseDatosBenchmark.cargar(contexto.getBean(DataSource.class), LIBROS);
+        ids = muestras.idsLibros();
+        titulos = muestras.titulos();
+    }
+
+    @TearDown(Level.Trial)
+    public void cerrar() {
+        contexto.close();
+        if (prometheus != null) {
+            //La cantidad de mediciones confirma que el aspecto se aplicó
+            System.out.printf("%n%s%n", prometheus.scrape().lines()
+                    .filter(linea -> linea.startsWith("literalura_operacion_seconds_count"))
+                    .toList());
+            Metrics.globalRegistry.remove(prometheus);
+        }
+    }
+
+    @Benchmark
+    public Optional<Libro> libroPorId() {
+        return libroRepository.findById(ids.get(siguiente++ % ids.size()));
+    }
+
+    @Benchmark
+    public Optional<Libro> libroPorTitulo() {
+        return libroRepository.findByTitulo(titulos.get(siguiente++ % titulos.size()));
+    }
+}
@@ -0,0 +1,118 @@
+package com.alura.literalura.benchmarks;
+
+import com.alura.literalura.dto.LibroDTO;
+import com.alura.literalura.model.Libro;
+import com.alura.literalura.repository.AutorRepository;
+import com.alura.literalura.repository.LibroRepository;
+import com.alura.literalura.service.ListadoService;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.data.domain.Limit;
+import org.springframework.orm.jpa.SharedEntityManagerCreator;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+//Listados de libros como entidades convertidas con ListadoService.convertirALibroDTO (autores e idiomas
+//cargados por lotes de 50) frente a las proyecciones LibroDTO de LibroRepository que las reemplazaron:
+//una página de 100 libros, todos los libros de un idioma poco frecuente y los 10 más descargados
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ProyeccionesBenchmark {
+    //Entre el 4 % y el 9 % de los libros cada uno
+    private static final List<String> IDIOMAS = List.of("fr", "de", "es", "fi", "nl", "it", "pt");
+
+    @Param({"10000", "100000"})
+    public int libros;
+
+    private AnnotationConfigApplicationContext contexto;
+    private LibroRepository libroRepository;
+    private ListadoService listadoService;
+    private EntityManager entityManager;
+    private TransactionTemplate lectura;
+    private BaseDatosBenchmark.Muestras muestras;
+    private int siguiente;
+
+    @Setup(Level.Trial)
+    public void iniciar() {
+        contexto = BaseDatosBenchmark.iniciar();
+        libroRepository = contexto.getBean(LibroRepository.class);
+        listadoService = new ListadoService(libroRepository, contexto.getBean(AutorRepository.class), 100);
+        entityManager = SharedEntityManagerCreator.createSharedEntityManager(contexto.getBean(EntityManagerFactory.class));
+        lectura = new TransactionTemplate(contexto.getBean(PlatformTransactionManager.class));
+        lectura.setReadOnly(true);
+        muestras = BaseDatosBenchmark.cargar(contexto.getBean(DataSource.class), libros);
+    }
+
+    @TearDown(Level.Trial)
+    public void cerrar() {
+        contexto.close();
+    }
+
+    @Benchmark
+    public List<LibroDTO> paginaEntidades() {
+        long despuesDe = muestra();
+        return convertir(() -> entityManager.createQuery("SELECT l FROM Libro l WHERE l.id > :id ORDER BY l.id", Libro.class)
+                .setParameter("id", despuesDe)
+                .setMaxResults(100)
+                .getResultList());
+    }
+
+    @Benchmark
+    public List<LibroDTO> paginaProyecciones() {
+        return listadoService.paginaLibros(muestra());
+    }
+
+    @Benchmark
+    public List<LibroDTO> idiomaEntidades() {
+        String idioma = idioma();
+        return convertir(() -> entityManager.createQuery("SELECT l FROM Libro l WHERE l.id IN " +
+                        "(SELECT li.id FROM Libro li JOIN li.idiomas i WHERE i = :idioma) ORDER BY l.titulo", Libro.class)
+                .setParameter("idioma", idioma)
+                .getResultList());
+    }
+
+    @Benchmark
+    public List<LibroDTO> idiomaProyecciones() {
+        return libroRepository.findLibrosDTOPorIdioma(idioma());
+    }
+
+    @Benchmark
+    public List<LibroDTO> top10Entidades() {
+        return convertir(() -> entityManager.createQuery("SELECT l FROM Libro l WHERE l.numeroDeDescargas IS NOT NULL " +
+                        "ORDER BY l.numeroDeDescargas DESC, l.id", Libro.class)
+                .setMaxResults(10)
+                .getResultList());
+    }
+
+    @Benchmark
+    public List<LibroDTO> top10Proyecciones() {
+        return libroRepository.findLibrosDTOMasDescargados(Limit.of(10));
+    }
+
+    //Las colecciones perezosas se cargan dentro de la transacción, como hacía el menú
+    private List<LibroDTO> convertir(Consulta consulta) {
+        return lectura.execute(estado -> consulta.libros().stream().map(listadoService::convertirALibroDTO).toList());
+    }
+
+    private long muestra() {
+        return muestras.idsLibros().get(siguiente++ % muestras.idsLibros().size());
+    }
+
+    private String idioma() {
+        return IDIOMAS.get(siguiente++ % IDIOMAS.size());
+    }
+
+    private interface Consulta {
+        List<Libro> libros();
+    }
+}
@@ -0,0 +1,81 @@
+package com.alura.literalura.benchmarks;
+
+import com.alura.literalura.dto.LibroDTO;
+import com.alura.literalura.repository.AutorRepository;
+import com.alura.literalura.repository.LibroRepository;
+import com.alura.literalura.service.ListadoService;
+import com.alura.literalura.service.RankingDescargas;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.data.domain.Limit;
+
+import javax.sql.DataSource;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+//Los 10 libros más descargados, global y por idioma, desde la clasificación en memoria de RankingDescargas
+//y con las consultas que usa CatalogoService cuando está deshabilitada, sobre H2 con 1 millón de libros
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+//Con menos calentamiento la consulta global todavía tiene pausas de varios milisegundos
+@Warmup(iterations = 10, time = 2)
+@Measurement(iterations = 10, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class RankingDescargasBenchmark {
+    private static final Comparator<LibroDTO> ORDEN = Comparator
+            .comparing(LibroDTO::numeroDeDescargas, Comparator.reverseOrder())
+            .thenComparing(LibroDTO::id);
+
+    @Param({"1000000"})
+    public int libros;
+
+    private AnnotationConfigApplicationContext contexto;
+    private LibroRepository libroRepository;
+    private RankingDescargas rankingDescargas;
+    private int siguiente;
+
+    @Setup(Level.Trial)
+    public void iniciar() {
+        contexto = BaseDatosBenchmark.iniciar();
+        libroRepository = contexto.getBean(LibroRepository.class);
+        BaseDatosBenchmark.cargar(contexto.getBean(DataSource.class), libros);
+        ListadoService listadoService = new ListadoService(libroRepository, contexto.getBean(AutorRepository.class), 100);
+        //Como con application.properties: 10 libros, por idioma y sin clasificaciones por autor
+        rankingDescargas = new RankingDescargas(libroRepository, listadoService, 10, true, false);
+        rankingDescargas.reconstruir();
+    }
+
+    @TearDown(Level.Trial)
+    public void cerrar() {
+        contexto.close();
+    }
+
+    @Benchmark
+    public List<LibroDTO> globalEnMemoria() {
+        return rankingDescargas.top();
+    }
+
+    @Benchmark
+    public List<LibroDTO> globalConsulta() {
+        return libroRepository.findLibrosDTOMasDescargados(Limit.of(10));
+    }
+
+    //Alterna un idioma mayoritario y uno poco frecuente
+    @Benchmark
+    public List<LibroDTO> idiomaEnMemoria() {
+        return rankingDescargas.topPorIdioma(idioma());
+    }
+
+    @Benchmark
+    public List<LibroDTO> idiomaConsulta() {
+        return libroRepository.findLibrosDTOPorIds(libroRepository.findIdsMasDescargadosPorIdioma(idioma(), Limit.of(10)))
+                .stream().sorted(ORDEN).collect(Collectors.toList());
+    }
+
+    private String idioma() {
+        return siguiente++ % 2 == 0 ? "en" : "pt";
+    }
+}
@@ -0,0 +1,73 @@
+package com.alura.literalura.benchmarks;
+
+import com.alura.literalura.model.DatosAutor;
+import com.alura.literalura.model.DatosLibros;
+import com.alura.literalura.service.ListadoService;
+import com.alura.literalura.service.LibroService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+//LibroService.registrarLote sobre H2 en memoria: cada operación registra LIBROS libros nuevos en lotes de
+//'lote', así que el resultado se lee directamente en libros por segundo. Cada libro tiene uno o dos autores
+//de un conjunto de 20 mil nombres, de modo que con el tiempo casi todos ya existen, como en una importación
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@OperationsPerInvocation(RegistroLotesBenchmark.LIBROS)
+public class RegistroLotesBenchmark {
+    static final int LIBROS = 500;
+    private static final int NOMBRES = 20_000;
+    private static final List<String> IDIOMAS = List.of("en", "fr", "es", "de");
+
+    @Param({"1", "50", "500"})
+    public int lote;
+
+    private final Random aleatorio = new Random(84);
+    private AnnotationConfigApplicationContext contexto;
+    private LibroService libroService;
+    private int siguiente;
+
+    @Setup(Level.Trial)
+    public void iniciar() {
+        contexto = BaseDatosBenchmark.iniciar(Map.of(), LibroService.class, ListadoService.class);
+        libroService = contexto.getBean(LibroService.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void cerrar() {
+        contexto.close();
+    }
+
+    @Benchmark
+    public int registrar() {
+        int registrados = 0;
+        for (int inicio = 0; inicio < LIBROS; inicio += lote) {
+            List<DatosLibros> libros = new ArrayList<>(lote);
+            for (int i = inicio; i < Math.min(LIBROS, inicio + lote); i++) {
+                libros.add(libro());
+            }
+            registrados += libroService.registrarLote(libros);
+        }
+        return registrados;
+    }
+
+    private DatosLibros libro() {
+        int id = ++siguiente;
+        List<DatosAutor> autores = new ArrayList<>(2);
+        for (int i = aleatorio.nextInt(4) == 0 ? 2 : 1; i > 0; i--) {
+            int autor = aleatorio.nextInt(NOMBRES);
+            autores.add(new DatosAutor("Autor " + autor + ", Nombre", 1700 + autor % 200, 1760 + autor % 200));
+        }
+        return new DatosLibros("Libro " + id, autores, List.of(IDIOMAS.get(id % IDIOMAS.size())),
+                (double) aleatorio.nextInt(10_000), id);
+    }
+}
@@ -0,0 +1,113 @@
+package com.alura.literalura.benchmarks;
+
+import com.alura.literalura.dto.AutorDTO;
+import com.alura.literalura.dto.AutorTituloDTO;
+import com.alura.literalura.dto.LibroDTO;
+import com.alura.literalura.model.Autor;
+import com.alura.literalura.model.Libro;
+import com.alura.literalura.repository.AutorRepository;
+import com.alura.literalura.repository.LibroRepository;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.data.domain.Limit;
+
+import javax.sql.DataSource;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+//Consultas de LibroRepository y AutorRepository sobre una base H2 con 10k a 1M libros. Cada llamada usa
+//otro valor de las muestras para que H2 no reutilice el resultado anterior.
+//Con 1M libros la carga ocupa unos 2 GB de memoria
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class RepositorioBenchmark {
+    @Param({"10000", "100000", "1000000"})
+    public int libros;
+
+    private AnnotationConfigApplicationContext contexto;
+    private LibroRepository libroRepository;
+    private AutorRepository autorRepository;
+    private BaseDatosBenchmark.Muestras muestras;
+    private int siguiente;
+
+    @Setup(Level.Trial)
+    public void iniciar() {
+        contexto = BaseDatosBenchmark.iniciar();
+        libroRepository = contexto.getBean(LibroRepository.class);
+        autorRepository = contexto.getBean(AutorRepository.class);
+        long inicio = System.nanoTime();
+        muestras = BaseDatosBenchmark.cargar(contexto.getBean(DataSource.class), libros);
+        System.out.printf("%nBase cargada con %d libros en %.1f s%n", libros, (System.nanoTime() - inicio) / 1e9);
+    }
+
+    @TearDown(Level.Trial)
+    public void cerrar() {
+        contexto.close();
+    }
+
+    @Benchmark
+    public Optional<Libro> libroPorTitulo() {
+        return libroRepository.findByTitulo(muestra(muestras.titulos()));
+    }
+
+    @Benchmark
+    public List<LibroDTO> paginaDeLibros() {
+        return libroRepository.findLibrosDTOPorIds(libroRepository.findIdsDespuesDe(muestra(muestras.idsLibros()), Limit.of(100)));
+    }
+
+    @Benchmark
+    public List<LibroDTO> librosPorIds() {
+        return libroRepository.findLibrosDTOPorIds(List.of(muestra(muestras.idsLibros()), muestra(muestras.idsLibros()),
+                muestra(muestras.idsLibros()), muestra(muestras.idsLibros()), muestra(muestras.idsLibros())));
+    }
+
+    //Recorre toda la tabla: LIKE con comodín al inicio no usa índices
+    @Benchmark
+    public List<LibroDTO> librosPorTituloParecido() {
+        String titulo = muestra(muestras.titulos());
+        return libroRepository.findLibrosDTOPorTituloParecido(titulo.substring(0, titulo.indexOf(' ')), Limit.of(10));
+    }
+
+    @Benchmark
+    public List<Long> masDescargadosPorIdioma() {
+        return libroRepository.findIdsMasDescargadosPorIdioma(siguiente++ % 2 == 0 ? "en" : "fr", Limit.of(10));
+    }
+
+    //Todos los libros de un idioma poco frecuente (1 de cada 22) por idx_libro_idiomas_idioma
+    @Benchmark
+    public List<LibroDTO> librosDeUnIdioma() {
+        return libroRepository.findLibrosDTOPorIdioma("pt");
+    }
+
+    //Búsqueda de autores por nombre exacto que hace el registro de libros
+    @Benchmark
+    public List<Autor> autoresPorNombre() {
+        return autorRepository.findByNombreIn(List.of(muestra(muestras.nombres()), muestra(muestras.nombres()),
+                muestra(muestras.nombres()), muestra(muestras.nombres()), muestra(muestras.nombres())));
+    }
+
+    @Benchmark
+    public List<AutorDTO> paginaDeAutores() {
+        return autorRepository.findAutoresDTODespuesDe(muestra(muestras.idsAutores()), Limit.of(100));
+    }
+
+    @Benchmark
+    public List<AutorDTO> autoresVivosEnAnio() {
+        return autorRepository.findAutoresVivosEnAño(muestra(muestras.años()));
+    }
+
+    @Benchmark
+    public List<AutorTituloDTO> titulosDeAutores() {
+        return autorRepository.findTitulosDeAutores(List.of(muestra(muestras.idsAutores()), muestra(muestras.idsAutores()),
+                muestra(muestras.idsAutores()), muestra(muestras.idsAutores()), muestra(muestras.idsAutores())));
+    }
+
+    private <T> T muestra(List<T> valores) {
+        return valores.get(Math.floorMod(siguiente++, valores.size()));
+    }
+}
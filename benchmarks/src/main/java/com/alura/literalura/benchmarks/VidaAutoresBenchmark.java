@@ -0,0 +1,97 @@
+package com.alura.literalura.benchmarks;
+
+import com.alura.literalura.dto.AutorDTO;
+import com.alura.literalura.repository.AutorRepository;
+import com.alura.literalura.service.IndiceVidaAutores;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+//IndiceVidaAutores frente a las consultas de AutorRepository que reemplaza, con 'autores' autores en H2
+//(y la misma cantidad de libros). Con un millón, cada año tiene unos 150 mil autores vivos, así que
+//las dos variantes devuelven listas grandes; el índice además ya incluye los títulos.
+//Al iniciar se informa la memoria estimada por el índice y la medida en el heap después de construirlo
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx6g")
+public class VidaAutoresBenchmark {
+    @Param({"1000000"})
+    public int autores;
+
+    private AnnotationConfigApplicationContext contexto;
+    private AutorRepository autorRepository;
+    private IndiceVidaAutores indice;
+    private List<Integer> años;
+    private int siguiente;
+
+    @Setup(Level.Trial)
+    public void iniciar() {
+        contexto = BaseDatosBenchmark.iniciar();
+        autorRepository = contexto.getBean(AutorRepository.class);
+        años = BaseDatosBenchmark.cargar(contexto.getBean(DataSource.class), autores, autores).años();
+
+        long antes = memoriaUsada();
+        indice = new IndiceVidaAutores(autorRepository);
+        new TransactionTemplate(contexto.getBean(PlatformTransactionManager.class)).executeWithoutResult(estado -> indice.reconstruir());
+        long despues = memoriaUsada();
+        System.out.printf("Índice con %d autores: %.1f MB estimados, %.1f MB medidos en el heap%n", indice.tamano(),
+                indice.memoriaEstimadaBytes() / (1024.0 * 1024.0), (despues - antes) / (1024.0 * 1024.0));
+    }
+
+    @TearDown(Level.Trial)
+    public void cerrar() {
+        contexto.close();
+    }
+
+    @Benchmark
+    public List<AutorDTO> indiceVivosEnAnio() {
+        return indice.vivosEnAño(año());
+    }
+
+    @Benchmark
+    public List<AutorDTO> repositorioVivosEnAnio() {
+        return autorRepository.findAutoresVivosEnAño(año());
+    }
+
+    @Benchmark
+    public List<AutorDTO> indiceVivosEntreAnios() {
+        int desde = año();
+        return indice.vivosEntreAños(desde, desde + 10);
+    }
+
+    @Benchmark
+    public List<AutorDTO> repositorioVivosEntreAnios() {
+        int desde = año();
+        return autorRepository.findAutoresVivosEntreAños(desde, desde + 10);
+    }
+
+    @Benchmark
+    public List<AutorDTO> indiceFallecidosHastaAnio() {
+        return indice.fallecidosHastaAño(año());
+    }
+
+    @Benchmark
+    public List<AutorDTO> repositorioFallecidosHastaAnio() {
+        return autorRepository.findAutoresFallecidosEnAño(año());
+    }
+
+    private int año() {
+        return años.get(siguiente++ % años.size());
+    }
+
+    private static long memoriaUsada() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
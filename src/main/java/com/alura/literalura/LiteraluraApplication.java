@@ -1,28 +1,73 @@
 package com.alura.literalura;
 
-import com.alura.literalura.principal.Principal;
-import com.alura.literalura.repository.AutorRepository;
-import com.alura.literalura.repository.LibroRepository;
-import com.alura.literalura.service.ConsumoAPI;
+import com.alura.literalura.service.ImportadorCatalogo;
+import com.alura.literalura.service.InstantaneaCatalogo;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.env.Profiles;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Optional;
 
 @SpringBootApplication
+@EnableScheduling
 public class LiteraluraApplication implements CommandLineRunner {
+	//Solo se crean si se usan: con inicialización diferida (perfil 'rapido') el menú no espera por ellos
 	@Autowired
-	private LibroRepository libroRepository;
+	private ObjectProvider<ImportadorCatalogo> importadorCatalogo;
 	@Autowired
-	private AutorRepository autorRepository;
+	private ObjectProvider<InstantaneaCatalogo> instantaneaCatalogo;
 
 	public static void main(String[] args) {
-		SpringApplication.run(LiteraluraApplication.class, args);
+		ConfigurableApplicationContext contexto = SpringApplication.run(LiteraluraApplication.class, args);
+		//Solo con la API (sin consola) el proceso sigue atendiendo solicitudes; si no, termina al salir
+		//del menú o al terminar un comando y se cierra el contexto para detener las tareas programadas
+		boolean soloApi = contexto.getEnvironment().acceptsProfiles(Profiles.of("api & !consola"))
+				&& !esModoNoInteractivo(args);
+		if (!soloApi) {
+			System.exit(SpringApplication.exit(contexto));
+		}
 	}
 
 	@Override
 	public void run(String... args) throws Exception {
-		Principal principal = new Principal(libroRepository, autorRepository);
-		principal.muestraElMenu();
+		//Modo no interactivo: importa todo el catálogo (de Gutendex o de un archivo local) o exporta/restaura una instantánea
+		if (Arrays.asList(args).contains("--importar")) {
+			importadorCatalogo.getObject().importarCatalogo();
+		}
+		Optional<String> catalogo = valorArgumento("--importar-archivo", args);
+		if (catalogo.isPresent()) {
+			importadorCatalogo.getObject().importarArchivo(Path.of(catalogo.get()));
+		}
+		Optional<String> exportar = valorArgumento("--exportar", args);
+		if (exportar.isPresent()) {
+			instantaneaCatalogo.getObject().exportar(Path.of(exportar.get()));
+		}
+		Optional<String> restaurar = valorArgumento("--restaurar", args);
+		if (restaurar.isPresent()) {
+			instantaneaCatalogo.getObject().restaurar(Path.of(restaurar.get()));
+		}
+	}
+
+	public static boolean esModoNoInteractivo(String... args) {
+		return Arrays.asList(args).contains("--importar")
+				|| valorArgumento("--importar-archivo", args).isPresent()
+				|| valorArgumento("--exportar", args).isPresent()
+				|| valorArgumento("--restaurar", args).isPresent();
+	}
+
+	//--opcion=valor
+	private static Optional<String> valorArgumento(String opcion, String... args) {
+		return Arrays.stream(args)
+				.filter(arg -> arg.startsWith(opcion + "="))
+				.map(arg -> arg.substring(opcion.length() + 1))
+				.filter(valor -> !valor.isBlank())
+				.findFirst();
 	}
 }
@@ -0,0 +1,40 @@
+package com.alura.literalura.api;
+
+import com.alura.literalura.config.SesionDatos;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+//Cada solicitud atendida por ControladorApi se ejecuta dentro de la sesión del cliente. Los tiempos por
+//ruta los mide Spring Boot (http.server.requests en /actuator/prometheus)
+@Configuration
+@Profile("api")
+public class ConfiguracionApi implements WebMvcConfigurer {
+    @Override
+    public void addInterceptors(InterceptorRegistry registro) {
+        registro.addInterceptor(new HandlerInterceptor() {
+            @Override
+            public boolean preHandle(HttpServletRequest solicitud, HttpServletResponse respuesta, Object manejador) {
+                SesionDatos.iniciar(sesion(solicitud));
+                return true;
+            }
+
+            @Override
+            public void afterCompletion(HttpServletRequest solicitud, HttpServletResponse respuesta, Object manejador,
+                                        Exception excepcion) {
+                SesionDatos.terminar();
+            }
+        });
+    }
+
+    //Un cliente puede identificar su sesión con X-Sesion (p. ej. varios usuarios detrás de un proxy);
+    //si no, las solicitudes de la misma dirección comparten sesión
+    private static String sesion(HttpServletRequest solicitud) {
+        String sesion = solicitud.getHeader("X-Sesion");
+        return sesion != null && !sesion.isBlank() ? "api:" + sesion.strip() : "api:" + solicitud.getRemoteAddr();
+    }
+}
@@ -0,0 +1,129 @@
+package com.alura.literalura.api;
+
+import com.alura.literalura.dto.AutorDTO;
+import com.alura.literalura.dto.EstadisticasDTO;
+import com.alura.literalura.dto.LibroDTO;
+import com.alura.literalura.dto.PaginaDTO;
+import com.alura.literalura.dto.RegistroLibroDTO;
+import com.alura.literalura.dto.ResultadoFiltroDTO;
+import com.alura.literalura.service.CatalogoService;
+import com.alura.literalura.service.EstadisticasService;
+import com.alura.literalura.service.ListadoService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.context.WebServerInitializedEvent;
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+//API HTTP con las mismas operaciones del menú, respondiendo LibroDTO/AutorDTO en JSON.
+//Spring MVC sobre Tomcat, con un máximo de literalura.api-rest.hilos hilos (application-api.properties)
+@RestController
+@Profile("api")
+public class ControladorApi {
+    private final CatalogoService catalogoService;
+    private final ListadoService listadoService;
+    private final EstadisticasService estadisticasService;
+    private final String direccion;
+    private final int tamanoPagina;
+
+    public ControladorApi(CatalogoService catalogoService, ListadoService listadoService,
+                          EstadisticasService estadisticasService,
+                          @Value("${literalura.api-rest.direccion}") String direccion,
+                          @Value("${literalura.listado.tamano-pagina}") int tamanoPagina) {
+        this.catalogoService = catalogoService;
+        this.listadoService = listadoService;
+        this.estadisticasService = estadisticasService;
+        this.direccion = direccion;
+        this.tamanoPagina = Math.max(1, tamanoPagina);
+    }
+
+    @EventListener
+    public void alIniciar(WebServerInitializedEvent evento) {
+        System.out.printf("API REST escuchando en http://%s:%d (%.2f s después de iniciar la JVM)%n",
+                direccion, evento.getWebServer().getPort(), ManagementFactory.getRuntimeMXBean().getUptime() / 1000.0);
+    }
+
+    @GetMapping("/libros")
+    public PaginaDTO<LibroDTO> libros(@RequestParam(defaultValue = "0") long despues) {
+        return pagina(listadoService.paginaLibros(despues), LibroDTO::id);
+    }
+
+    //{"titulo": "..."}
+    @PostMapping(path = "/libros", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> registrar(@RequestBody RegistroLibroDTO registro) {
+        String titulo = Parametros.texto("titulo", registro.titulo());
+        return catalogoService.buscarYRegistrar(titulo)
+                .<ResponseEntity<?>>map(libro -> ResponseEntity.status(HttpStatus.CREATED).body(libro))
+                .orElseGet(() -> ResponseEntity.status(HttpStatus.NOT_FOUND)
+                        .body(Map.of("error", "Libro no encontrado en Gutendex")));
+    }
+
+    @GetMapping("/libros/buscar")
+    public List<LibroDTO> buscarLibros(@RequestParam(required = false) String q) {
+        return catalogoService.buscarLibrosRegistrados(Parametros.texto("q", q));
+    }
+
+    @GetMapping("/libros/idioma")
+    public List<LibroDTO> librosPorIdioma(@RequestParam(required = false) String codigo) {
+        return catalogoService.librosPorIdioma(Parametros.idioma("codigo", codigo));
+    }
+
+    @GetMapping("/libros/top")
+    public List<LibroDTO> masDescargados(@RequestParam(required = false) String idioma) {
+        return catalogoService.masDescargados(Parametros.idiomaOpcional("idioma", idioma));
+    }
+
+    @GetMapping("/libros/filtrar")
+    public ResultadoFiltroDTO filtrar(@RequestParam(required = false) String idioma,
+                                      @RequestParam(required = false) Long vivoEn,
+                                      @RequestParam(required = false) Double descargasMinimas) {
+        return catalogoService.filtrarLibros(Parametros.idiomaOpcional("idioma", idioma),
+                Parametros.anioOpcional("vivoEn", vivoEn),
+                Parametros.decimalOpcional("descargasMinimas", descargasMinimas));
+    }
+
+    @GetMapping("/autores")
+    public PaginaDTO<AutorDTO> autores(@RequestParam(defaultValue = "0") long despues) {
+        return pagina(listadoService.paginaAutores(despues), AutorDTO::id);
+    }
+
+    @GetMapping("/autores/buscar")
+    public List<AutorDTO> buscarAutores(@RequestParam(required = false) String nombre) {
+        return catalogoService.buscarAutores(Parametros.texto("nombre", nombre));
+    }
+
+    @GetMapping("/autores/vivos")
+    public List<AutorDTO> autoresVivos(@RequestParam long anio, @RequestParam(required = false) Long hasta) {
+        int desde = Parametros.anio("anio", anio);
+        int fin = hasta != null ? Parametros.anio("hasta", hasta) : desde;
+        return catalogoService.autoresVivosEntre(Math.min(desde, fin), Math.max(desde, fin));
+    }
+
+    @GetMapping("/autores/fallecidos")
+    public List<AutorDTO> autoresFallecidos(@RequestParam long anio) {
+        return catalogoService.autoresFallecidosHasta(Parametros.anio("anio", anio));
+    }
+
+    @GetMapping("/estadisticas")
+    public EstadisticasDTO estadisticas() {
+        return estadisticasService.obtenerEstadisticas();
+    }
+
+    private <T> PaginaDTO<T> pagina(List<T> elementos, Function<T, Long> id) {
+        //Una página incompleta es la última; una completa puede tener continuación
+        Long siguiente = elementos.size() < tamanoPagina ? null : id.apply(elementos.get(elementos.size() - 1));
+        return new PaginaDTO<>(elementos, siguiente);
+    }
+}
@@ -0,0 +1,70 @@
+package com.alura.literalura.api;
+
+import com.alura.literalura.service.ErrorConsultaApi;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.web.HttpMediaTypeNotSupportedException;
+import org.springframework.web.HttpRequestMethodNotSupportedException;
+import org.springframework.web.bind.MissingServletRequestParameterException;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.method.annotation.MethodArgumentTypeMismatchException;
+import org.springframework.web.servlet.NoHandlerFoundException;
+import org.springframework.web.servlet.resource.NoResourceFoundException;
+
+import java.util.Map;
+
+//Todos los errores de la API se responden como {"error": mensaje}
+@RestControllerAdvice
+@Profile("api")
+public class ErroresApi {
+    @ExceptionHandler({IllegalArgumentException.class, HttpMessageNotReadableException.class,
+            MissingServletRequestParameterException.class, MethodArgumentTypeMismatchException.class})
+    public ResponseEntity<Map<String, String>> solicitudInvalida(Exception e) {
+        String mensaje;
+        if (e instanceof MissingServletRequestParameterException faltante) {
+            mensaje = "Falta el parámetro '" + faltante.getParameterName() + "'";
+        } else if (e instanceof MethodArgumentTypeMismatchException tipo) {
+            mensaje = "El parámetro '" + tipo.getName() + "' debe ser "
+                    + (tipo.getRequiredType() == Double.class ? "un número" : "un número entero");
+        } else if (e instanceof HttpMessageNotReadableException) {
+            mensaje = "El cuerpo debe ser un objeto JSON";
+        } else {
+            mensaje = e.getMessage();
+        }
+        return error(HttpStatus.BAD_REQUEST, mensaje);
+    }
+
+    @ExceptionHandler(HttpMediaTypeNotSupportedException.class)
+    public ResponseEntity<Map<String, String>> tipoNoSoportado() {
+        return error(HttpStatus.UNSUPPORTED_MEDIA_TYPE, "El cuerpo debe ser JSON (Content-Type: application/json)");
+    }
+
+    @ExceptionHandler({NoHandlerFoundException.class, NoResourceFoundException.class})
+    public ResponseEntity<Map<String, String>> rutaNoEncontrada() {
+        return error(HttpStatus.NOT_FOUND, "Ruta no encontrada");
+    }
+
+    @ExceptionHandler(HttpRequestMethodNotSupportedException.class)
+    public ResponseEntity<Map<String, String>> metodoNoPermitido() {
+        return error(HttpStatus.METHOD_NOT_ALLOWED, "Método no permitido");
+    }
+
+    @ExceptionHandler(ErrorConsultaApi.class)
+    public ResponseEntity<Map<String, String>> gutendexNoDisponible(ErrorConsultaApi e) {
+        return error(HttpStatus.SERVICE_UNAVAILABLE, e.getMessage());
+    }
+
+    @ExceptionHandler(RuntimeException.class)
+    public ResponseEntity<Map<String, String>> errorInterno(RuntimeException e, HttpServletRequest solicitud) {
+        System.out.println("Error en " + solicitud.getRequestURI() + ": " + e.getMessage());
+        return error(HttpStatus.INTERNAL_SERVER_ERROR, "Error interno");
+    }
+
+    private static ResponseEntity<Map<String, String>> error(HttpStatus estado, String mensaje) {
+        return ResponseEntity.status(estado).body(Map.of("error", mensaje));
+    }
+}
@@ -0,0 +1,47 @@
+package com.alura.literalura.api;
+
+import java.util.Locale;
+
+//Validaciones de los parámetros de la API que no resuelve la conversión de Spring; los inválidos producen un 400
+final class Parametros {
+    private Parametros() {
+    }
+
+    static String texto(String nombre, String valor) {
+        if (valor == null || valor.isBlank()) {
+            throw new IllegalArgumentException("Falta el parámetro '" + nombre + "'");
+        }
+        return valor.trim();
+    }
+
+    //Los años de los autores son integer en la base: un valor mayor no se trunca, se rechaza
+    static int anio(String nombre, long anio) {
+        if (anio < Integer.MIN_VALUE || anio > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("El parámetro '" + nombre + "' está fuera de rango");
+        }
+        return (int) anio;
+    }
+
+    static Integer anioOpcional(String nombre, Long anio) {
+        return anio != null ? anio(nombre, anio) : null;
+    }
+
+    static Double decimalOpcional(String nombre, Double valor) {
+        if (valor != null && !Double.isFinite(valor)) {
+            throw new IllegalArgumentException("El parámetro '" + nombre + "' debe ser un número");
+        }
+        return valor;
+    }
+
+    static String idioma(String nombre, String valor) {
+        String idioma = texto(nombre, valor).toLowerCase(Locale.ROOT);
+        if (!idioma.matches("^[a-z]{2}$")) {
+            throw new IllegalArgumentException("El parámetro '" + nombre + "' debe ser un código de dos letras");
+        }
+        return idioma;
+    }
+
+    static String idiomaOpcional(String nombre, String valor) {
+        return valor == null || valor.isBlank() ? null : idioma(nombre, valor);
+    }
+}
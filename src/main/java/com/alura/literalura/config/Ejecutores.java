@@ -0,0 +1,33 @@
+package com.alura.literalura.config;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public final class Ejecutores {
+    private Ejecutores() {
+    }
+
+    //Pool con un máximo de hilos: las tareas que exceden ese máximo esperan en la cola en lugar de crear
+    //hilos nuevos. Los hilos inactivos se liberan después de un minuto.
+    //El proyecto compila para Java 17, así que no se usan hilos virtuales
+    public static ExecutorService crear(String nombre, int hilos) {
+        int maximo = Math.max(1, hilos);
+        ThreadPoolExecutor ejecutor = new ThreadPoolExecutor(maximo, maximo, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), fabrica(nombre));
+        ejecutor.allowCoreThreadTimeOut(true);
+        return ejecutor;
+    }
+
+    private static ThreadFactory fabrica(String nombre) {
+        AtomicInteger contador = new AtomicInteger();
+        return tarea -> {
+            Thread hilo = new Thread(tarea, nombre + "-" + contador.incrementAndGet());
+            hilo.setDaemon(true);
+            return hilo;
+        };
+    }
+}
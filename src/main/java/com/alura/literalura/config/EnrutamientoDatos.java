@@ -0,0 +1,63 @@
+package com.alura.literalura.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+//Con literalura.replica.habilitada=true las lecturas (consultas de los repositorios, listados, estadísticas,
+//top 10) usan la réplica y las escrituras (save, registro e importación de libros) la base primaria.
+//Cada base tiene su propio pool; el resto de la aplicación recibe el DataSource enrutado
+//Los métodos de consulta declarados en LibroRepository y AutorRepository no tienen transacción propia,
+//así que esos repositorios se marcan @Transactional(readOnly = true) para que vayan a la réplica; save y
+//delete conservan la transacción de escritura de SimpleJpaRepository
+@Configuration
+@ConditionalOnProperty(name = "literalura.replica.habilitada", havingValue = "true")
+public class EnrutamientoDatos {
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource origenPrimario(DataSourceProperties propiedades) {
+        HikariDataSource primaria = propiedades.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        primaria.setPoolName("primaria");
+        return primaria;
+    }
+
+    @Bean
+    @ConfigurationProperties("literalura.replica.hikari")
+    public HikariDataSource origenReplica(@Value("${literalura.replica.url}") String url,
+                                          @Value("${literalura.replica.usuario}") String usuario,
+                                          @Value("${literalura.replica.contrasena}") String contrasena) {
+        HikariDataSource replica = DataSourceBuilder.create().type(HikariDataSource.class)
+                .url(url).username(usuario).password(contrasena).build();
+        replica.setPoolName("replica");
+        //Un intento de escritura en la réplica falla en lugar de perderse
+        replica.setReadOnly(true);
+        return replica;
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(@Qualifier("origenPrimario") DataSource primaria,
+                                 @Qualifier("origenReplica") DataSource replica,
+                                 @Value("${literalura.replica.lectura-propia}") Duration lecturaPropia) {
+        return OrigenDatosEnrutado.crear(primaria, replica, lecturaPropia);
+    }
+
+    //La caché de consultas guardaría resultados leídos de una réplica atrasada hasta la siguiente escritura
+    @Bean
+    public HibernatePropertiesCustomizer sinCacheDeConsultas() {
+        return propiedades -> propiedades.put(AvailableSettings.USE_QUERY_CACHE, false);
+    }
+}
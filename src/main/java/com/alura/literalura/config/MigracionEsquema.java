@@ -0,0 +1,98 @@
+package com.alura.literalura.config;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+//Ajustes de datos existentes que 'ddl-auto=update' no resuelve por sí solo. Con migraciones
+//versionadas (perfil 'rapido') el esquema lo mantiene MigracionesVersionadas
+@Component
+@ConditionalOnProperty(name = "literalura.esquema.migraciones-versionadas", havingValue = "false", matchIfMissing = true)
+@DependsOn("entityManagerFactory")
+public class MigracionEsquema {
+    private final JdbcTemplate jdbcTemplate;
+
+    public MigracionEsquema(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @PostConstruct
+    public void migrar() {
+        alinearSecuencia("libros_seq", "libros");
+        alinearSecuencia("autores_seq", "autores");
+        migrarIdiomas();
+        convertirAñoAEntero("fecha_nacimiento");
+        convertirAñoAEntero("fecha_fallecimiento");
+        unificarAutoresDuplicados();
+    }
+
+    //Antes los idiomas se guardaban como "en,fr" en libros.idiomas; se copian a libro_idiomas
+    //y se elimina la columna. Si se interrumpe, volver a ejecutarlo no duplica filas
+    private void migrarIdiomas() {
+        Integer columnas = jdbcTemplate.queryForObject("""
+                SELECT COUNT(*) FROM information_schema.columns
+                WHERE table_schema = current_schema() AND table_name = 'libros' AND column_name = 'idiomas'
+                """, Integer.class);
+        if (columnas == null || columnas == 0) {
+            return;
+        }
+        int migradas = jdbcTemplate.update("""
+                INSERT INTO libro_idiomas (libro_id, idioma)
+                SELECT DISTINCT l.id, trim(i.idioma)
+                FROM libros l CROSS JOIN LATERAL unnest(string_to_array(l.idiomas, ',')) AS i(idioma)
+                WHERE trim(i.idioma) <> ''
+                  AND NOT EXISTS (SELECT 1 FROM libro_idiomas li WHERE li.libro_id = l.id AND li.idioma = trim(i.idioma))
+                """);
+        jdbcTemplate.execute("ALTER TABLE libros DROP COLUMN idiomas");
+        System.out.printf("Idiomas migrados a libro_idiomas: %d filas%n", migradas);
+    }
+
+    //Los años de autores eran varchar y se comparaban como texto ('999' > '1850')
+    private void convertirAñoAEntero(String columna) {
+        String tipo = jdbcTemplate.query("""
+                SELECT data_type FROM information_schema.columns
+                WHERE table_schema = current_schema() AND table_name = 'autores' AND column_name = ?
+                """, resultado -> resultado.next() ? resultado.getString(1) : null, columna);
+        if (!"character varying".equals(tipo)) {
+            return;
+        }
+        jdbcTemplate.execute("""
+                ALTER TABLE autores ALTER COLUMN %1$s TYPE integer
+                USING CASE WHEN trim(%1$s) ~ '^-?[0-9]+$' THEN trim(%1$s)::integer END
+                """.formatted(columna));
+        System.out.printf("Columna autores.%s convertida a entero%n", columna);
+    }
+
+    //Antes no había restricción única en autores.nombre y registros simultáneos podían duplicar autores.
+    //Los libros pasan al autor con menor id, se borran los duplicados y se crea la restricción
+    //(ddl-auto no puede crearla mientras haya duplicados). Cada paso se puede repetir si se interrumpe
+    private void unificarAutoresDuplicados() {
+        Integer restricciones = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM pg_constraint WHERE conname = 'uk_autores_nombre'", Integer.class);
+        if (restricciones != null && restricciones > 0) {
+            return;
+        }
+        String duplicados = "(SELECT id, MIN(id) OVER (PARTITION BY nombre) AS conservado FROM autores) d";
+        jdbcTemplate.update("""
+                INSERT INTO libro_autor (libro_id, autor_id)
+                SELECT DISTINCT la.libro_id, d.conservado
+                FROM libro_autor la JOIN %s ON d.id = la.autor_id
+                WHERE d.id <> d.conservado
+                  AND NOT EXISTS (SELECT 1 FROM libro_autor x WHERE x.libro_id = la.libro_id AND x.autor_id = d.conservado)
+                """.formatted(duplicados));
+        jdbcTemplate.update("DELETE FROM libro_autor WHERE autor_id IN (SELECT d.id FROM %s WHERE d.id <> d.conservado)"
+                .formatted(duplicados));
+        int borrados = jdbcTemplate.update("DELETE FROM autores WHERE id IN (SELECT d.id FROM %s WHERE d.id <> d.conservado)"
+                .formatted(duplicados));
+        jdbcTemplate.execute("ALTER TABLE autores ADD CONSTRAINT uk_autores_nombre UNIQUE (nombre)");
+        System.out.printf("Autores duplicados unificados: %d filas eliminadas%n", borrados);
+    }
+
+    //Las filas creadas con ids IDENTITY quedan por debajo de la secuencia nueva
+    private void alinearSecuencia(String secuencia, String tabla) {
+        jdbcTemplate.queryForObject("SELECT setval('%s', GREATEST((SELECT COALESCE(MAX(id), 0) FROM %s), (SELECT last_value FROM %s)))"
+                .formatted(secuencia, tabla, secuencia), Long.class);
+    }
+}
@@ -0,0 +1,192 @@
+package com.alura.literalura.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.init.DatabasePopulatorUtils;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+//Migraciones versionadas para el perfil 'rapido' (ddl-auto=none): aplica en orden los scripts
+//db/migracion/V<n>__<descripcion>.sql que falten y los registra en esquema_version.
+//Se ejecuta al arrancar el contexto, antes que la API, los índices en memoria y el menú; el
+//EntityManagerFactory no necesita el esquema porque no consulta los metadatos de la base
+@Component
+@ConditionalOnProperty(name = "literalura.esquema.migraciones-versionadas", havingValue = "true")
+public class MigracionesVersionadas implements SmartLifecycle {
+    private static final Pattern NOMBRE = Pattern.compile("V(\\d+)__(.+)\\.sql");
+
+    private final DataSource dataSource;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private boolean aplicadas;
+
+    public MigracionesVersionadas(DataSource dataSource, JdbcTemplate jdbcTemplate,
+                                  PlatformTransactionManager transactionManager) {
+        this.dataSource = dataSource;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    private record Migracion(int version, String descripcion, long suma, Resource script) {
+    }
+
+    @Override
+    public void start() {
+        jdbcTemplate.execute("""
+                CREATE TABLE IF NOT EXISTS esquema_version (
+                    version integer PRIMARY KEY,
+                    descripcion varchar(200) NOT NULL,
+                    suma_control bigint NOT NULL,
+                    aplicada timestamp NOT NULL DEFAULT now())
+                """);
+        List<Migracion> migraciones = leerMigraciones();
+        if (!migraciones.isEmpty()) {
+            registrarBaseExistente(migraciones.get(0));
+        }
+        int nuevas = 0;
+        for (Migracion migracion : migraciones) {
+            if (aplicar(migracion)) {
+                nuevas++;
+            }
+        }
+        if (nuevas > 0) {
+            System.out.printf("Migraciones de esquema aplicadas: %d%n", nuevas);
+        }
+        aplicadas = true;
+    }
+
+    //Una base creada antes con ddl-auto=update ya tiene las tablas de V1: se registra sin ejecutarla.
+    //Solo si coincide con V1; una base anterior a MigracionEsquema (años varchar, idiomas en libros.idiomas,
+    //ids IDENTITY sin secuencias, autores sin restricción única) se rechaza en lugar de darla por migrada
+    private void registrarBaseExistente(Migracion primera) {
+        Integer registradas = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM esquema_version", Integer.class);
+        if (registradas == null || registradas > 0 || !existeTabla("libros")) {
+            return;
+        }
+        List<String> diferencias = diferenciasConV1();
+        if (!diferencias.isEmpty()) {
+            throw new IllegalStateException("La base existente no coincide con la versión " + primera.version()
+                    + " del esquema (" + String.join("; ", diferencias) + "). Arranque una vez sin el perfil 'rapido' "
+                    + "para que MigracionEsquema la actualice y vuelva a activarlo");
+        }
+        jdbcTemplate.update("INSERT INTO esquema_version (version, descripcion, suma_control) VALUES (?, ?, ?) ON CONFLICT DO NOTHING",
+                primera.version(), primera.descripcion() + " (base existente)", primera.suma());
+        System.out.printf("Base existente registrada en la versión %d del esquema%n", primera.version());
+    }
+
+    private List<String> diferenciasConV1() {
+        List<String> diferencias = new ArrayList<>();
+        for (String columna : List.of("fecha_nacimiento", "fecha_fallecimiento")) {
+            String tipo = tipoDeColumna("autores", columna);
+            if (tipo != null && !"integer".equals(tipo)) {
+                diferencias.add("autores." + columna + " es " + tipo);
+            }
+        }
+        if (tipoDeColumna("libros", "idiomas") != null) {
+            diferencias.add("los idiomas siguen en libros.idiomas");
+        }
+        if (!existeTabla("libro_idiomas")) {
+            diferencias.add("falta la tabla libro_idiomas");
+        }
+        for (String secuencia : List.of("libros_seq", "autores_seq")) {
+            Integer secuencias = jdbcTemplate.queryForObject("""
+                    SELECT COUNT(*) FROM information_schema.sequences
+                    WHERE sequence_schema = current_schema() AND sequence_name = ?
+                    """, Integer.class, secuencia);
+            if (secuencias == null || secuencias == 0) {
+                diferencias.add("falta la secuencia " + secuencia);
+            }
+        }
+        Integer restricciones = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM pg_constraint WHERE conname = 'uk_autores_nombre'", Integer.class);
+        if (restricciones == null || restricciones == 0) {
+            diferencias.add("falta la restricción uk_autores_nombre");
+        }
+        return diferencias;
+    }
+
+    private boolean existeTabla(String tabla) {
+        Integer tablas = jdbcTemplate.queryForObject("""
+                SELECT COUNT(*) FROM information_schema.tables
+                WHERE table_schema = current_schema() AND table_name = ?
+                """, Integer.class, tabla);
+        return tablas != null && tablas > 0;
+    }
+
+    private String tipoDeColumna(String tabla, String columna) {
+        return jdbcTemplate.query("""
+                SELECT data_type FROM information_schema.columns
+                WHERE table_schema = current_schema() AND table_name = ? AND column_name = ?
+                """, resultado -> resultado.next() ? resultado.getString(1) : null, tabla, columna);
+    }
+
+    //Cada script se aplica en su propia transacción (PostgreSQL admite DDL transaccional). El bloqueo
+    //evita que dos instancias que arrancan a la vez apliquen la misma versión
+    private boolean aplicar(Migracion migracion) {
+        Boolean aplicada = transactionTemplate.execute(estado -> {
+            jdbcTemplate.execute("LOCK TABLE esquema_version IN EXCLUSIVE MODE");
+            List<Long> sumas = jdbcTemplate.queryForList(
+                    "SELECT suma_control FROM esquema_version WHERE version = ?", Long.class, migracion.version());
+            if (!sumas.isEmpty()) {
+                if (sumas.get(0) != migracion.suma()) {
+                    throw new IllegalStateException("La migración " + migracion.script().getFilename()
+                            + " cambió después de aplicarse; agregue una versión nueva en lugar de editarla");
+                }
+                return false;
+            }
+            DatabasePopulatorUtils.execute(new ResourceDatabasePopulator(migracion.script()), dataSource);
+            jdbcTemplate.update("INSERT INTO esquema_version (version, descripcion, suma_control) VALUES (?, ?, ?)",
+                    migracion.version(), migracion.descripcion(), migracion.suma());
+            return true;
+        });
+        return Boolean.TRUE.equals(aplicada);
+    }
+
+    private List<Migracion> leerMigraciones() {
+        try {
+            List<Migracion> migraciones = new ArrayList<>();
+            for (Resource script : new PathMatchingResourcePatternResolver().getResources("classpath*:db/migracion/V*__*.sql")) {
+                Matcher nombre = NOMBRE.matcher(Objects.requireNonNull(script.getFilename()));
+                if (!nombre.matches()) {
+                    continue;
+                }
+                CRC32 suma = new CRC32();
+                suma.update(script.getContentAsByteArray());
+                migraciones.add(new Migracion(Integer.parseInt(nombre.group(1)), nombre.group(2).replace('_', ' '),
+                        suma.getValue(), script));
+            }
+            migraciones.sort(Comparator.comparingInt(Migracion::version));
+            return migraciones;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void stop() {
+    }
+
+    @Override
+    public boolean isRunning() {
+        return aplicadas;
+    }
+
+    //Antes que cualquier otro componente con ciclo de vida (la API usa la fase por defecto)
+    @Override
+    public int getPhase() {
+        return Integer.MIN_VALUE;
+    }
+}
@@ -0,0 +1,96 @@
+package com.alura.literalura.config;
+
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+//Elige la base de cada conexión: las transacciones de solo lectura van a la réplica y el resto a la
+//primaria. Se usa detrás de un LazyConnectionDataSourceProxy (ver crear) para que la conexión real se pida
+//con la primera sentencia, cuando la transacción ya está marcada como de solo lectura.
+//Lectura de lo propio: durante 'lecturaPropia' después de confirmar una escritura, las lecturas de la
+//misma sesión (SesionDatos) también van a la primaria, mientras la réplica se pone al día
+public class OrigenDatosEnrutado extends AbstractRoutingDataSource {
+    private enum Destino {PRIMARIA, REPLICA}
+
+    //Sesiones que se conservan antes de descartar las que ya salieron de la ventana
+    private static final int SESIONES_MAXIMAS = 10_000;
+
+    private final long ventanaNanos;
+    private final Map<String, Long> ultimaEscritura = new ConcurrentHashMap<>();
+    private final LongAdder conexionesPrimaria = new LongAdder();
+    private final LongAdder conexionesReplica = new LongAdder();
+
+    public OrigenDatosEnrutado(DataSource primaria, DataSource replica, Duration lecturaPropia) {
+        this.ventanaNanos = lecturaPropia.toNanos();
+        setTargetDataSources(Map.of(Destino.PRIMARIA, primaria, Destino.REPLICA, replica));
+        setDefaultTargetDataSource(primaria);
+        afterPropertiesSet();
+    }
+
+    //Postgres usa READ COMMITTED y Hikari autocommit por defecto; indicarlos evita que el proxy pida
+    //una conexión solo para averiguarlos
+    public static LazyConnectionDataSourceProxy crear(DataSource primaria, DataSource replica, Duration lecturaPropia) {
+        LazyConnectionDataSourceProxy proxy = new LazyConnectionDataSourceProxy(
+                new OrigenDatosEnrutado(primaria, replica, lecturaPropia));
+        proxy.setDefaultAutoCommit(true);
+        proxy.setDefaultTransactionIsolation(Connection.TRANSACTION_READ_COMMITTED);
+        return proxy;
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        String sesion = SesionDatos.actual();
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            if (TransactionSynchronizationManager.isActualTransactionActive()) {
+                registrarEscritura(sesion);
+            }
+            conexionesPrimaria.increment();
+            return Destino.PRIMARIA;
+        }
+        Long escritura = sesion == null ? null : ultimaEscritura.get(sesion);
+        if (escritura != null && System.nanoTime() - escritura < ventanaNanos) {
+            conexionesPrimaria.increment();
+            return Destino.PRIMARIA;
+        }
+        conexionesReplica.increment();
+        return Destino.REPLICA;
+    }
+
+    //La ventana empieza al confirmar la transacción. Las conexiones pedidas sin transacción también van a la
+    //primaria, pero no abren la ventana: suelen ser lecturas sueltas y no hay forma de saber si escriben
+    private void registrarEscritura(String sesion) {
+        if (sesion == null || !TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                marcar(sesion);
+            }
+        });
+    }
+
+    private void marcar(String sesion) {
+        long ahora = System.nanoTime();
+        if (ultimaEscritura.size() >= SESIONES_MAXIMAS) {
+            ultimaEscritura.values().removeIf(escritura -> ahora - escritura >= ventanaNanos);
+        }
+        ultimaEscritura.put(sesion, ahora);
+    }
+
+    public long getConexionesPrimaria() {
+        return conexionesPrimaria.sum();
+    }
+
+    public long getConexionesReplica() {
+        return conexionesReplica.sum();
+    }
+}
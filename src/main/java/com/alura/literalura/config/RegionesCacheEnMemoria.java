@@ -0,0 +1,93 @@
+package com.alura.literalura.config;
+
+import org.hibernate.boot.spi.SessionFactoryOptions;
+import org.hibernate.cache.cfg.spi.DomainDataRegionBuildingContext;
+import org.hibernate.cache.cfg.spi.DomainDataRegionConfig;
+import org.hibernate.cache.spi.support.DomainDataStorageAccess;
+import org.hibernate.cache.spi.support.RegionFactoryTemplate;
+import org.hibernate.cache.spi.support.StorageAccess;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+//Proveedor de caché de segundo nivel en memoria para Hibernate (hibernate.cache.region.factory_class).
+//Cada región es un LRU con un máximo de entradas; la región de marcas de tiempo no se limita
+//porque de ella depende la invalidación de la caché de consultas
+public class RegionesCacheEnMemoria extends RegionFactoryTemplate {
+    public static final String ENTRADAS_POR_REGION = "literalura.cache-hibernate.entradas-por-region";
+
+    private int entradasPorRegion = 10_000;
+
+    @Override
+    protected void prepareForUse(SessionFactoryOptions opciones, Map<String, Object> configuracion) {
+        Object entradas = configuracion.get(ENTRADAS_POR_REGION);
+        if (entradas != null) {
+            entradasPorRegion = Integer.parseInt(entradas.toString().trim());
+        }
+    }
+
+    @Override
+    protected void releaseFromUse() {
+    }
+
+    @Override
+    protected DomainDataStorageAccess createDomainDataStorageAccess(DomainDataRegionConfig configuracion,
+                                                                    DomainDataRegionBuildingContext contexto) {
+        return new Almacen(entradasPorRegion);
+    }
+
+    @Override
+    protected StorageAccess createQueryResultsRegionStorageAccess(String region, SessionFactoryImplementor sessionFactory) {
+        return new Almacen(entradasPorRegion);
+    }
+
+    @Override
+    protected StorageAccess createTimestampsRegionStorageAccess(String region, SessionFactoryImplementor sessionFactory) {
+        return new Almacen(Integer.MAX_VALUE);
+    }
+
+    private static final class Almacen implements DomainDataStorageAccess {
+        private final Map<Object, Object> entradas;
+
+        private Almacen(int maximo) {
+            this.entradas = new LinkedHashMap<>(64, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Object, Object> masAntigua) {
+                    return size() > maximo;
+                }
+            };
+        }
+
+        @Override
+        public synchronized Object getFromCache(Object clave, SharedSessionContractImplementor sesion) {
+            return entradas.get(clave);
+        }
+
+        @Override
+        public synchronized void putIntoCache(Object clave, Object valor, SharedSessionContractImplementor sesion) {
+            entradas.put(clave, valor);
+        }
+
+        @Override
+        public synchronized boolean contains(Object clave) {
+            return entradas.containsKey(clave);
+        }
+
+        @Override
+        public synchronized void evictData() {
+            entradas.clear();
+        }
+
+        @Override
+        public synchronized void evictData(Object clave) {
+            entradas.remove(clave);
+        }
+
+        @Override
+        public synchronized void release() {
+            entradas.clear();
+        }
+    }
+}
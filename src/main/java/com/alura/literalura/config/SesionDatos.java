@@ -0,0 +1,22 @@
+package com.alura.literalura.config;
+
+//Sesión a la que pertenece el hilo actual: el menú o un cliente de la API.
+//Con réplica habilitada, una sesión que acaba de escribir lee de la base primaria (ver OrigenDatosEnrutado)
+public final class SesionDatos {
+    private static final ThreadLocal<String> ACTUAL = new ThreadLocal<>();
+
+    private SesionDatos() {
+    }
+
+    public static void iniciar(String sesion) {
+        ACTUAL.set(sesion);
+    }
+
+    public static void terminar() {
+        ACTUAL.remove();
+    }
+
+    static String actual() {
+        return ACTUAL.get();
+    }
+}
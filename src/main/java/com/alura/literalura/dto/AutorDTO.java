@@ -1,9 +1,15 @@
 package com.alura.literalura.dto;
 
+import java.util.List;
+
 public record AutorDTO(
         Long id,
         String nombre,
-        String fechaNacimiento,
-        String fechaFallecimiento
+        Integer fechaNacimiento,
+        Integer fechaFallecimiento,
+        List<String> libros
 ) {
+    public AutorDTO(Long id, String nombre, Integer fechaNacimiento, Integer fechaFallecimiento) {
+        this(id, nombre, fechaNacimiento, fechaFallecimiento, List.of());
+    }
 }
@@ -0,0 +1,7 @@
+package com.alura.literalura.dto;
+
+public record AutorDescargasDTO(
+        Long autorId,
+        Double descargas
+) {
+}
@@ -0,0 +1,7 @@
+package com.alura.literalura.dto;
+
+public record AutorTituloDTO(
+        Long autorId,
+        String titulo
+) {
+}
@@ -0,0 +1,10 @@
+package com.alura.literalura.dto;
+
+//Descargas agrupadas por idioma o por autor
+public record EstadisticaGrupoDTO(
+        String grupo,
+        Long libros,
+        Double descargas,
+        Double promedio
+) {
+}
@@ -0,0 +1,9 @@
+package com.alura.literalura.dto;
+
+//Estado de las consultas a Gutendex desde el arranque
+public record EstadisticasApiDTO(
+        String estadoCircuito,
+        long erroresTransitorios,
+        long respuestasVencidas
+) {
+}
@@ -0,0 +1,13 @@
+package com.alura.literalura.dto;
+
+//Aciertos y fallos de la caché de segundo nivel, de la caché de consultas y sentencias enviadas a la base de datos
+public record EstadisticasCacheDTO(
+        long entidadesAciertos,
+        long entidadesFallos,
+        long entidadesGuardadas,
+        long consultasAciertos,
+        long consultasFallos,
+        long consultasGuardadas,
+        long sentenciasJdbc
+) {
+}
@@ -0,0 +1,10 @@
+package com.alura.literalura.dto;
+
+import java.util.List;
+
+public record EstadisticasDTO(
+        EstadisticasDescargasDTO descargas,
+        List<EstadisticaGrupoDTO> porIdioma,
+        List<EstadisticaGrupoDTO> porAutor
+) {
+}
@@ -0,0 +1,14 @@
+package com.alura.literalura.dto;
+
+public record EstadisticasDescargasDTO(
+        Long libros,
+        Long librosConDescargas,
+        Double total,
+        Double minimo,
+        Double maximo,
+        Double promedio,
+        Double mediana,
+        Double percentil90,
+        Double percentil99
+) {
+}
@@ -0,0 +1,7 @@
+package com.alura.literalura.dto;
+
+public record IdiomaConteoDTO(
+        String idioma,
+        Long total
+) {
+}
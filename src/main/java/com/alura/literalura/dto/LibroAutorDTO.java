@@ -0,0 +1,8 @@
+package com.alura.literalura.dto;
+
+//Uno de los autores de un libro
+public record LibroAutorDTO(
+        Long libroId,
+        Long autorId
+) {
+}
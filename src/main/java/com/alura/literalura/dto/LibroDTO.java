@@ -1,11 +1,10 @@
 package com.alura.literalura.dto;
 
-import java.util.List;
-
+//Autores e idiomas ya agregados como texto ("Austen, Jane", "en, fr")
 public record LibroDTO(
         Long id,
         String titulo,
-        List<AutorDTO> autores,
+        String autores,
         String idiomas,
         Double numeroDeDescargas
 ) {
@@ -0,0 +1,8 @@
+package com.alura.literalura.dto;
+
+public record LibroDescargasDTO(
+        Long id,
+        Integer gutendexId,
+        Double numeroDeDescargas
+) {
+}
@@ -0,0 +1,7 @@
+package com.alura.literalura.dto;
+
+public record LibroIdiomaDTO(
+        Long libroId,
+        String idioma
+) {
+}
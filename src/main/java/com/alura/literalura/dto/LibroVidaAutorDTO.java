@@ -0,0 +1,9 @@
+package com.alura.literalura.dto;
+
+//Años de vida de uno de los autores de un libro
+public record LibroVidaAutorDTO(
+        Long libroId,
+        Integer fechaNacimiento,
+        Integer fechaFallecimiento
+) {
+}
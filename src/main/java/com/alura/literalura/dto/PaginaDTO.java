@@ -0,0 +1,10 @@
+package com.alura.literalura.dto;
+
+import java.util.List;
+
+//Página de un listado por keyset: 'siguiente' es el id desde el que pedir la próxima página (null al final)
+public record PaginaDTO<T>(
+        List<T> elementos,
+        Long siguiente
+) {
+}
@@ -0,0 +1,7 @@
+package com.alura.literalura.dto;
+
+//Cuerpo de POST /libros: el título que se busca en Gutendex
+public record RegistroLibroDTO(
+        String titulo
+) {
+}
@@ -0,0 +1,10 @@
+package com.alura.literalura.dto;
+
+import java.util.List;
+
+//'total' cuenta todos los libros que cumplen el filtro; 'libros' trae solo los primeros
+public record ResultadoFiltroDTO(
+        long total,
+        List<LibroDTO> libros
+) {
+}
@@ -0,0 +1,20 @@
+package com.alura.literalura.metricas;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+//Evento de Java Flight Recorder por cada operación medida; solo se registra durante una grabación
+//(por ejemplo: java -XX:StartFlightRecording=filename=literalura.jfr -jar literalura.jar)
+@Name("literalura.Operacion")
+@Label("Operación de LiterAlura")
+@Category("LiterAlura")
+@Description("Consulta a Gutendex, conversión, acceso a la base de datos u opción del menú")
+@StackTrace(false)
+class EventoOperacion extends Event {
+    @Label("Operación")
+    String operacion;
+}
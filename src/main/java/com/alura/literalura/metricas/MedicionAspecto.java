@@ -0,0 +1,68 @@
+package com.alura.literalura.metricas;
+
+import io.micrometer.core.instrument.Timer;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.aop.framework.AopProxyUtils;
+import org.springframework.stereotype.Component;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+//Mide las consultas a Gutendex, el registro de libros y cada método de los repositorios con un Timer
+//de Micrometer y un evento de JFR. Es un aspecto y no @Timed porque @Timed no cubre los métodos
+//heredados de JpaRepository ni emite los eventos de JFR
+@Aspect
+@Component
+public class MedicionAspecto {
+    //El Timer se resuelve una vez por método (y por repositorio) en lugar de buscarlo en el registro en cada llamada
+    private final Map<Method, Timer> servicios = new ConcurrentHashMap<>();
+    private final Map<Class<?>, Map<Method, Timer>> repositorios = new ConcurrentHashMap<>();
+
+    @Around("execution(* com.alura.literalura.service.ConsumoAPI.obtener*(..))")
+    public Object medirGutendex(ProceedingJoinPoint punto) throws Throwable {
+        return medir(servicio("gutendex.", punto), punto);
+    }
+
+    @Around("execution(* com.alura.literalura.service.LibroService.registrar*(..))")
+    public Object medirRegistro(ProceedingJoinPoint punto) throws Throwable {
+        return medir(servicio("persistencia.", punto), punto);
+    }
+
+    //Incluye los métodos heredados de JpaRepository (count, findById...), con el nombre del repositorio propio
+    @Around("execution(* org.springframework.data.repository.Repository+.*(..))")
+    public Object medirRepositorio(ProceedingJoinPoint punto) throws Throwable {
+        Method metodo = ((MethodSignature) punto.getSignature()).getMethod();
+        Timer temporizador = repositorios
+                .computeIfAbsent(punto.getThis().getClass(), clase -> new ConcurrentHashMap<>())
+                .computeIfAbsent(metodo, clave -> Metricas.temporizador(
+                        "repositorio." + nombreRepositorio(punto.getThis()) + "." + metodo.getName()));
+        return medir(temporizador, punto);
+    }
+
+    private Timer servicio(String prefijo, ProceedingJoinPoint punto) {
+        Method metodo = ((MethodSignature) punto.getSignature()).getMethod();
+        return servicios.computeIfAbsent(metodo, clave -> Metricas.temporizador(prefijo + metodo.getName()));
+    }
+
+    private static Object medir(Timer temporizador, ProceedingJoinPoint punto) throws Throwable {
+        Metricas.Medicion medicion = Metricas.iniciar(temporizador);
+        try {
+            return punto.proceed();
+        } finally {
+            medicion.terminar();
+        }
+    }
+
+    private static String nombreRepositorio(Object proxy) {
+        return Arrays.stream(AopProxyUtils.proxiedUserInterfaces(proxy))
+                .filter(interfaz -> interfaz.getPackageName().startsWith("com.alura.literalura"))
+                .map(Class::getSimpleName)
+                .findFirst()
+                .orElse(proxy.getClass().getSimpleName());
+    }
+}
@@ -0,0 +1,70 @@
+package com.alura.literalura.metricas;
+
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+//Temporizadores de Micrometer con el nombre literalura.operacion y la operación como etiqueta, en el
+//registro global para que también los usen las clases que no son beans de Spring (ConvierteDatos, el menú).
+//Spring Boot agrega a ese registro el de Prometheus; los percentiles y el histograma se configuran con
+//management.metrics.distribution.* en application.properties. Los beans se miden con MedicionAspecto
+public final class Metricas {
+    public static final String OPERACION = "literalura.operacion";
+    public static final String ETIQUETA = "operacion";
+
+    private Metricas() {
+    }
+
+    public static Timer temporizador(String operacion) {
+        return Timer.builder(OPERACION)
+                .description("Duración de las operaciones de LiterAlura")
+                .tag(ETIQUETA, operacion)
+                .register(Metrics.globalRegistry);
+    }
+
+    public static Medicion iniciar(Timer temporizador) {
+        return new Medicion(temporizador);
+    }
+
+    public static <T> T medir(Timer temporizador, Supplier<T> operacion) {
+        Medicion medicion = iniciar(temporizador);
+        try {
+            return operacion.get();
+        } finally {
+            medicion.terminar();
+        }
+    }
+
+    //Ordenados por tiempo total, de mayor a menor
+    public static List<Timer> temporizadores() {
+        return Metrics.globalRegistry.find(OPERACION).timers().stream()
+                .filter(temporizador -> temporizador.count() > 0)
+                .sorted(Comparator.comparingDouble((Timer temporizador) -> temporizador.totalTime(TimeUnit.NANOSECONDS)).reversed())
+                .toList();
+    }
+
+    //Una ejecución en curso; también emite el evento JFR si hay una grabación activa
+    public static final class Medicion {
+        private final Timer temporizador;
+        private final EventoOperacion evento = new EventoOperacion();
+        private final long inicio;
+
+        private Medicion(Timer temporizador) {
+            this.temporizador = temporizador;
+            evento.begin();
+            this.inicio = System.nanoTime();
+        }
+
+        public void terminar() {
+            temporizador.record(System.nanoTime() - inicio, TimeUnit.NANOSECONDS);
+            if (evento.shouldCommit()) {
+                evento.operacion = temporizador.getId().getTag(ETIQUETA);
+                evento.commit();
+            }
+        }
+    }
+}
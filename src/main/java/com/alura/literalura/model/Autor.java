@@ -1,21 +1,32 @@
 package com.alura.literalura.model;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.BatchSize;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import java.util.ArrayList;
 import java.util.List;
 
 @Entity
-@Table(name = "autores")
+@Table(name = "autores",
+        indexes = @Index(name = "idx_autores_vida", columnList = "fecha_nacimiento, fecha_fallecimiento"),
+        uniqueConstraints = @UniqueConstraint(name = "uk_autores_nombre", columnNames = "nombre"))
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 public class Autor {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "autores_seq")
+    @SequenceGenerator(name = "autores_seq", sequenceName = "autores_seq", allocationSize = 50)
     private Long id;
     private String nombre;
-    private String fechaNacimiento;
-    private String fechaFallecimiento;
+    //Años como enteros (negativos para a.C.) para comparar por rango y no como texto
+    private Integer fechaNacimiento;
+    private Integer fechaFallecimiento;
 
     @ManyToMany(mappedBy = "autores", fetch = FetchType.LAZY)
+    @BatchSize(size = 50)
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
     private List<Libro> librosDelAutor = new ArrayList<>();
     public Autor(){};
     public Autor(DatosAutor datosAutor){
@@ -40,19 +51,19 @@ public class Autor {
         this.nombre = nombre;
     }
 
-    public String getFechaNacimiento() {
+    public Integer getFechaNacimiento() {
         return fechaNacimiento;
     }
 
-    public void setFechaNacimiento(String fechaNacimiento) {
+    public void setFechaNacimiento(Integer fechaNacimiento) {
         this.fechaNacimiento = fechaNacimiento;
     }
 
-    public String getFechaFallecimiento() {
+    public Integer getFechaFallecimiento() {
         return fechaFallecimiento;
     }
 
-    public void setFechaFallecimiento(String fechaFallecimiento) {
+    public void setFechaFallecimiento(Integer fechaFallecimiento) {
         this.fechaFallecimiento = fechaFallecimiento;
     }
 
@@ -6,7 +6,7 @@ import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 @JsonIgnoreProperties(ignoreUnknown = true)
 public record DatosAutor(
         @JsonAlias("name") String nombre,
-        @JsonAlias("birth_year") String fechaNacimiento,
-        @JsonAlias("death_year") String fechaFallecimiento
+        @JsonAlias("birth_year") Integer fechaNacimiento,
+        @JsonAlias("death_year") Integer fechaFallecimiento
 ) {
 }
@@ -10,6 +10,7 @@ public record DatosLibros(
         @JsonAlias("title") String titulo,
         @JsonAlias("authors") List<DatosAutor> autor,
         @JsonAlias("languages") List<String> idiomas,
-        @JsonAlias("download_count") Double numeroDeDescargas
+        @JsonAlias("download_count") Double numeroDeDescargas,
+        @JsonAlias("id") Integer gutendexId
 ) {
 }
@@ -1,41 +1,67 @@
 package com.alura.literalura.model;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.BatchSize;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.List;
+import java.util.*;
 
 
 
 @Entity
-@Table(name = "libros")
+@Table(name = "libros", indexes = @Index(name = "idx_libros_descargas", columnList = "numero_de_descargas DESC, id"))
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 public class Libro {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "libros_seq")
+    //Ids por secuencia con asignación agrupada: permite inserts por lotes en JDBC
+    @SequenceGenerator(name = "libros_seq", sequenceName = "libros_seq", allocationSize = 50)
     private Long id;
 
     @Column(unique = true)
     private String titulo;
 
-    @Column(name = "idiomas")
-    private String idiomas;//Ejemplo: en: inglés, es: español
+    //Un código por fila (ej: en: inglés, es: español); el índice por idioma permite búsquedas exactas
+    @ElementCollection(fetch = FetchType.LAZY)
+    @CollectionTable(
+            name = "libro_idiomas",
+            joinColumns = @JoinColumn(name = "libro_id"),
+            indexes = @Index(name = "idx_libro_idiomas_idioma", columnList = "idioma, libro_id")
+    )
+    @Column(name = "idioma", nullable = false)
+    @BatchSize(size = 50)
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+    private Set<String> idiomas = new LinkedHashSet<>();
 
     private Double numeroDeDescargas;
 
+    //Id del libro en Gutendex: permite volver a consultarlo con ?ids= para refrescar las descargas
+    @Column(unique = true)
+    private Integer gutendexId;
+
     @ManyToMany(fetch = FetchType.LAZY, cascade = {CascadeType.MERGE})
+    @BatchSize(size = 50)
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+    //PostgreSQL no indexa las claves foráneas: sin estos índices cada proyección con autores recorre libro_autor
     @JoinTable(
             name = "libro_autor",
             joinColumns = @JoinColumn(name = "libro_id"),
-            inverseJoinColumns = @JoinColumn(name = "autor_id")
+            inverseJoinColumns = @JoinColumn(name = "autor_id"),
+            indexes = {
+                    @Index(name = "idx_libro_autor_libro", columnList = "libro_id, autor_id"),
+                    @Index(name = "idx_libro_autor_autor", columnList = "autor_id, libro_id")
+            }
     )
     private List<Autor> autores = new ArrayList<>();
     public Libro(){};
 
     public Libro(DatosLibros datosLibros){
         this.titulo = datosLibros.titulo();
-        this.idiomas = String.join(",", datosLibros.idiomas());//Convierte la lista a un string
+        setIdiomas(datosLibros.idiomas());
         this.numeroDeDescargas = datosLibros.numeroDeDescargas();
+        this.gutendexId = datosLibros.gutendexId();
     }
 
     public Long getId() {
@@ -55,11 +81,16 @@ public class Libro {
     }
 
     public List<String> getIdiomas() {
-        return Arrays.asList(idiomas.split(","));
+        return new ArrayList<>(idiomas);
     }
 
     public void setIdiomas(List<String> idiomas) {
-        this.idiomas = String.join(",", idiomas);
+        this.idiomas.clear();
+        idiomas.stream()
+                .filter(Objects::nonNull)
+                .map(String::trim)
+                .filter(idioma -> !idioma.isEmpty())
+                .forEach(this.idiomas::add);
     }
 
     public Double getNumeroDeDescargas() {
@@ -70,6 +101,14 @@ public class Libro {
         this.numeroDeDescargas = numeroDeDescargas;
     }
 
+    public Integer getGutendexId() {
+        return gutendexId;
+    }
+
+    public void setGutendexId(Integer gutendexId) {
+        this.gutendexId = gutendexId;
+    }
+
     public List<Autor> getAutores() {
         return autores;
     }
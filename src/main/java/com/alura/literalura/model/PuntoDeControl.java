@@ -0,0 +1,37 @@
+package com.alura.literalura.model;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+import java.time.LocalDateTime;
+
+//Avance guardado de una tarea por lotes, para retomarla desde el último id procesado
+@Entity
+@Table(name = "puntos_de_control")
+public class PuntoDeControl {
+    @Id
+    private String nombre;
+    private Long ultimoId;
+    private LocalDateTime actualizado;
+
+    public PuntoDeControl(){}
+
+    public PuntoDeControl(String nombre, Long ultimoId) {
+        this.nombre = nombre;
+        this.ultimoId = ultimoId;
+        this.actualizado = LocalDateTime.now();
+    }
+
+    public String getNombre() {
+        return nombre;
+    }
+
+    public Long getUltimoId() {
+        return ultimoId;
+    }
+
+    public LocalDateTime getActualizado() {
+        return actualizado;
+    }
+}
@@ -0,0 +1,52 @@
+package com.alura.literalura.principal;
+
+import com.alura.literalura.LiteraluraApplication;
+import com.alura.literalura.config.SesionDatos;
+import com.alura.literalura.repository.AutorRepository;
+import com.alura.literalura.repository.LibroRepository;
+import com.alura.literalura.service.CatalogoService;
+import com.alura.literalura.service.EstadisticasService;
+import com.alura.literalura.service.ListadoService;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.ManagementFactory;
+
+//Menú interactivo; solo se activa con el perfil 'consola' (incluido en los perfiles por defecto)
+@Component
+@Profile("consola")
+public class MenuConsola implements CommandLineRunner {
+    private final LibroRepository libroRepository;
+    private final AutorRepository autorRepository;
+    private final ListadoService listadoService;
+    private final EstadisticasService estadisticasService;
+    private final CatalogoService catalogoService;
+
+    public MenuConsola(LibroRepository libroRepository, AutorRepository autorRepository, ListadoService listadoService,
+                       EstadisticasService estadisticasService, CatalogoService catalogoService) {
+        this.libroRepository = libroRepository;
+        this.autorRepository = autorRepository;
+        this.listadoService = listadoService;
+        this.estadisticasService = estadisticasService;
+        this.catalogoService = catalogoService;
+    }
+
+    @Override
+    public void run(String... args) {
+        if (LiteraluraApplication.esModoNoInteractivo(args)) {
+            return;
+        }
+        //Tiempo de arranque hasta el primer menú (incluye la carga de los índices en memoria)
+        System.out.printf("Menú disponible %.2f s después de iniciar la JVM%n",
+                ManagementFactory.getRuntimeMXBean().getUptime() / 1000.0);
+        Principal principal = new Principal(libroRepository, autorRepository, listadoService,
+                estadisticasService, catalogoService);
+        SesionDatos.iniciar("consola");
+        try {
+            principal.muestraElMenu();
+        } finally {
+            SesionDatos.terminar();
+        }
+    }
+}
@@ -1,31 +1,49 @@
 package com.alura.literalura.principal;
 
 import com.alura.literalura.dto.AutorDTO;
+import com.alura.literalura.dto.EstadisticaGrupoDTO;
+import com.alura.literalura.dto.EstadisticasApiDTO;
+import com.alura.literalura.dto.EstadisticasCacheDTO;
+import com.alura.literalura.dto.EstadisticasDTO;
+import com.alura.literalura.dto.EstadisticasDescargasDTO;
 import com.alura.literalura.dto.LibroDTO;
-import com.alura.literalura.model.*;
+import com.alura.literalura.dto.ResultadoFiltroDTO;
+import com.alura.literalura.metricas.Metricas;
 import com.alura.literalura.repository.AutorRepository;
 import com.alura.literalura.repository.LibroRepository;
-import com.alura.literalura.service.ConsumoAPI;
-import com.alura.literalura.service.ConvierteDatos;
+import com.alura.literalura.service.CatalogoService;
+import com.alura.literalura.service.ErrorConsultaApi;
+import com.alura.literalura.service.EstadisticasService;
+import com.alura.literalura.service.ListadoService;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.HistogramSnapshot;
 
 import java.time.Year;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public class Principal {
-    private static final String URL_BASE = "https://gutendex.com/books/";
-    private ConsumoAPI consumoAPI = new ConsumoAPI();
-    private ConvierteDatos conversor = new ConvierteDatos();
+    private static final String[] OPERACIONES_MENU = {"salir", "buscarLibroPorTitulo", "listarLibrosRegistrados",
+            "buscarAutoresPorNombre", "listarAutoresRegistrados", "buscarLibrosIdioma", "buscarAutoresVivosAño",
+            "buscarAutoresFallecidosAño", "top10LibrosMasDescargados", "mostrarEstadisticas",
+            "buscarAutoresVivosEntreAños", "buscarLibrosRegistrados", "mostrarMetricas", "filtrarLibros"};
+
+    private ListadoService listadoService;
+    private EstadisticasService estadisticasService;
+    private CatalogoService catalogoService;
     private Scanner teclado = new Scanner(System.in);
     private LibroRepository libroRepository;
     private AutorRepository autorRepository;
 
-    private List<Libro> libros;
-    private List<Autor> autores;
-
-    public Principal(LibroRepository libroRepository, AutorRepository autorRepository){
+    public Principal(LibroRepository libroRepository, AutorRepository autorRepository, ListadoService listadoService,
+                     EstadisticasService estadisticasService, CatalogoService catalogoService){
         this.libroRepository = libroRepository;
         this.autorRepository = autorRepository;
+        this.listadoService = listadoService;
+        this.estadisticasService = estadisticasService;
+        this.catalogoService = catalogoService;
     }
 
     public void muestraElMenu() {
@@ -54,8 +72,12 @@ public class Principal {
                 5. Buscar libros por idiomas
                 6. Buscar autores vivos en determinado año
                 7. Buscar autores fallecidos en determinado año
-                8. Top 10 libros más descargados
+                8. Top libros más descargados
                 9. Generando estadisticas
+                10. Buscar autores vivos en un rango de años
+                11. Buscar en los libros registrados
+                12. Métricas de rendimiento
+                13. Filtrar libros por idioma, época del autor y descargas
                 0. Salir                                                                                       \s
                 ────────────────────────────────────────────────
                 Elige una opción del menú:\s""");
@@ -71,7 +93,30 @@ public class Principal {
         }
     }
 
+    //Si Gutendex no responde se informa y se vuelve al menú en lugar de cerrar la aplicación
     private void procesarOpcionMenu(int option){
+        //Cada opción se mide de principio a fin, incluidas la lectura del teclado y la impresión
+        Metricas.Medicion medicion = option >= 0 && option < OPERACIONES_MENU.length
+                ? Metricas.iniciar(Metricas.temporizador("menu." + OPERACIONES_MENU[option]))
+                : null;
+        try {
+            ejecutarOpcionMenu(option);
+        } catch (ErrorConsultaApi e) {
+            System.out.printf("""
+                    ┌──────────────────────────────────────────────┐
+                    *       GUTENDEX NO ESTÁ DISPONIBLE AHORA      *
+                    └──────────────────────────────────────────────┘
+                    %s. Intenta de nuevo en unos minutos.
+                    """, e.getMessage());
+            pausa();
+        } finally {
+            if (medicion != null) {
+                medicion.terminar();
+            }
+        }
+    }
+
+    private void ejecutarOpcionMenu(int option){
         switch (option) {
             case 1 -> buscarLibroPorTitulo();
             case 2 -> listarLibrosRegistrados();
@@ -82,6 +127,10 @@ public class Principal {
             case 7 -> buscarAutoresFallecidosAño();
             case 8 -> top10LibrosMasDescargados();
             case 9 -> mostrarEstadisticas();
+            case 10 -> buscarAutoresVivosEntreAños();
+            case 11 -> buscarLibrosRegistrados();
+            case 12 -> mostrarMetricas();
+            case 13 -> filtrarLibros();
             case 0 -> System.out.println("Cerrando aplicación");
             default -> System.out.println("Opción inválida");
         }
@@ -89,8 +138,9 @@ public class Principal {
 
     //Creando metodos
     private void buscarLibroPorTitulo() {
-        DatosLibros datosLibros = getDatosLibros();
-        if (datosLibros == null) {
+        System.out.println("Ingresa el nombre del libro que deseas buscar: ");
+        Optional<LibroDTO> libro = catalogoService.buscarYRegistrar(teclado.nextLine());
+        if (libro.isEmpty()) {
             System.out.println("""
                     ┌──────────────────────────────────────────────┐
                     *                LIBRO NO ENCONTRADO           *
@@ -100,28 +150,10 @@ public class Principal {
             return;
         }
 
-        Optional<Libro> libroExistente = libroRepository.findByTitulo(datosLibros.titulo());
-        if (libroExistente.isPresent()) {
-            mostrarLibroEncontrado(libroExistente.get());
-            return;
-        }
-
-        List<Autor> autores = obtetenerAutores(datosLibros.autor());
-        //Validar datos del libro
-        String tituloValidado = truncarSiEsNecesario(datosLibros.titulo(), 255);
-        String idiomasValidados = truncarSiEsNecesario(String.join(", ", datosLibros.idiomas()), 255);
-
-        Libro libro = new Libro(datosLibros);
-        libro.setTitulo(tituloValidado);
-        libro.setIdiomas(Arrays.asList(idiomasValidados.split(", ")));
-        libro.setAutores(autores);
-        libroRepository.save(libro);
-
-        mostrarLibroEncontrado(libro);
+        mostrarLibroEncontrado(libro.get());
     }
 
-    private void mostrarLibroEncontrado(Libro libro){
-        LibroDTO libroDTO = convertirALibroDTO(libro);
+    private void mostrarLibroEncontrado(LibroDTO libroDTO){
         System.out.printf("""
                 ┌──────────────────────────────────────────────┐
                 *                LIBRO ENCONTRADO              *
@@ -130,57 +162,16 @@ public class Principal {
                 Autor: %s
                 Idioma: %s
                 N° Descargas: %.2f%n""", libroDTO.titulo(),
-                libroDTO.autores().stream().map(AutorDTO::nombre).collect(Collectors.joining(", ")),
+                libroDTO.autores(),
                 libroDTO.idiomas(),
                 libroDTO.numeroDeDescargas());
         System.out.println("────────────────────────────────────────────────");
         pausa();
     }
-    private LibroDTO convertirALibroDTO(Libro libro) {
-        List<AutorDTO> autoresDTO = libro.getAutores().stream()
-                .map(autor -> new AutorDTO(autor.getId(), autor.getNombre(), autor.getFechaNacimiento(), autor.getFechaFallecimiento()))
-                .collect(Collectors.toList());
-        return new LibroDTO(
-                libro.getId(),
-                libro.getTitulo(),
-                autoresDTO,
-                String.join(", ", libro.getIdiomas()),
-                libro.getNumeroDeDescargas()
-        );
-    }
-
-    private List<Autor> obtetenerAutores(List<DatosAutor> datosAutores){
-        return datosAutores.stream()
-                .map(datosAutor -> autorRepository.findByNombre(datosAutor.nombre())
-                    .orElseGet(() -> crearNuevoAutor(datosAutor)))
-                .collect(Collectors.toList());
-    }
-
-    private Autor crearNuevoAutor(DatosAutor datosAutor){
-        Autor nuevoAutor = new Autor();
-        nuevoAutor.setNombre(truncarSiEsNecesario(datosAutor.nombre(), 255));
-        nuevoAutor.setFechaNacimiento(datosAutor.fechaNacimiento());
-        nuevoAutor.setFechaFallecimiento(datosAutor.fechaFallecimiento());
-        autorRepository.save(nuevoAutor);
-        return nuevoAutor;
-    }
-
-    private DatosLibros getDatosLibros(){
-        System.out.println("Ingresa el nombre del libro que deseas buscar: ");
-        var nombreLibro = teclado.nextLine();
-        String json = consumoAPI.obtenerDatos(URL_BASE + "?search=" + nombreLibro.replace(" ", "+"));
-        var datosBusqueda = conversor.obtenerDatos(json, Datos.class);
-        return datosBusqueda.resultados().stream()
-                .filter(datosLibros -> datosLibros.titulo().toUpperCase().contains(nombreLibro.toUpperCase()))
-                .findFirst()
-                .orElse(null);
-    }
-
     private void listarLibrosRegistrados(){
-        libros = libroRepository.findAllWithAutores();
- //       libros = libroRepository.findAll();
+        long totalLibros = libroRepository.count();
 
-        if(libros.isEmpty()){
+        if(totalLibros == 0){
             System.out.println("No hay libros registrados con ese nombre en el sistema");
             pausa();
             return;
@@ -189,8 +180,11 @@ public class Principal {
         ┌──────────────────────────────────────────────┐
         *            %d LIBROS REGISTRADOS             *
         └──────────────────────────────────────────────┘
-        """, libros.size());
-        mostrarLibros(libros);
+        """, totalLibros);
+        //Se imprime a medida que llegan las páginas, sin cargar toda la tabla
+        try (Stream<LibroDTO> libros = listadoService.transmitirLibros()) {
+            libros.forEach(this::mostrarLibro);
+        }
         pausa();
     }
 
@@ -198,7 +192,7 @@ public class Principal {
         System.out.println("Ingresa el nombre del autor que deseas buscar: ");
         var nombreAutor = teclado.nextLine().toLowerCase();
 
-        List<Autor> autoresBuscados = autorRepository.findByNombreContainingIgnoreCase(nombreAutor);
+        List<AutorDTO> autoresBuscados = catalogoService.buscarAutores(nombreAutor);
         System.out.printf("""
                 Busqueda de autor por nombre:
                 '%s'
@@ -217,11 +211,28 @@ public class Principal {
         }
     }
 
+    //Búsqueda sin conexión sobre los libros ya guardados: admite palabras parciales, sin acentos y con errores de tipeo
+    private void buscarLibrosRegistrados(){
+        System.out.println("Ingresa el título o autor que deseas buscar: ");
+        var texto = teclado.nextLine().trim();
+        List<LibroDTO> libros = catalogoService.buscarLibrosRegistrados(texto);
+
+        if (libros.isEmpty()){
+            System.out.println("""
+                ┌─────────────────────────────────────────────────┐
+                   NO SE ENCONTRARON LIBROS REGISTRADOS
+                └─────────────────────────────────────────────────┘
+                """);
+        }else {
+            mostrarLibros(libros);
+        }
+        pausa();
+    }
+
     private void listarAutoresRegistrados() {
-        autores = autorRepository.findAllWithLibros();
-//        autores = autorRepository.findAll();
+        long totalAutores = autorRepository.count();
 
-        if (autores.isEmpty()) {
+        if (totalAutores == 0) {
             System.out.println("""
                 ┌──────────────────────────────────────────────┐
                 *  NO HAY AUTORES REGISTRADOS EN EL SISTEMA    *
@@ -233,33 +244,28 @@ public class Principal {
                 ┌──────────────────────────────────────────────┐
                               %d AUTORES REGISTRADOS
                 └──────────────────────────────────────────────┘
-                %n""", autores.size());
-        mostrarAutores(autores);
+                %n""", totalAutores);
+        try (Stream<AutorDTO> autores = listadoService.transmitirAutores()) {
+            autores.forEach(this::mostrarAutor);
+        }
         pausa();
     }
 
-    private void mostrarAutores(List<Autor> autorList){
-        autorList.forEach(autor -> {
-            AutorDTO autorDTO = new AutorDTO(
-                    autor.getId(),
-                    autor.getNombre(),
-                    autor.getFechaNacimiento(),
-                    autor.getFechaFallecimiento()
-            );
-            List<String> librosDelAutor = autor.getLibrosDelAutor().stream()
-                    .map(Libro::getTitulo)
-                    .collect(Collectors.toList());
-            System.out.printf("""
-                    Nombre: %s
-                    Fecha de Nacimiento: %s
-                    Fecha de Fallecimiento: %s
-                    Libros: %s%n""", autorDTO.nombre(),
-                    autorDTO.fechaNacimiento() != null ? autorDTO.fechaNacimiento() : "N/A",
-                    autorDTO.fechaFallecimiento() != null ? autorDTO.fechaFallecimiento() : "N/A",
-                    librosDelAutor
-            );
-            System.out.println("────────────────────────────────────────────────");
-        });
+    private void mostrarAutores(List<AutorDTO> autorList){
+        autorList.forEach(this::mostrarAutor);
+    }
+
+    private void mostrarAutor(AutorDTO autorDTO){
+        System.out.printf("""
+                Nombre: %s
+                Fecha de Nacimiento: %s
+                Fecha de Fallecimiento: %s
+                Libros: %s%n""", autorDTO.nombre(),
+                autorDTO.fechaNacimiento() != null ? autorDTO.fechaNacimiento() : "N/A",
+                autorDTO.fechaFallecimiento() != null ? autorDTO.fechaFallecimiento() : "N/A",
+                autorDTO.libros()
+        );
+        System.out.println("────────────────────────────────────────────────");
     }
 
     private void buscarLibrosIdioma(){
@@ -275,9 +281,15 @@ public class Principal {
                             zh - Chino Mandarín
                             ja - Japonés          
                 """;
+        String librosPorIdioma = libroRepository.contarLibrosPorIdioma().stream()
+                .map(conteo -> "%s (%d)".formatted(conteo.idioma(), conteo.total()))
+                .collect(Collectors.joining(", "));
         String idiomaLibro;
         do {
             System.out.println(menuIdiomas);
+            if (!librosPorIdioma.isEmpty()){
+                System.out.println("Libros registrados por idioma: " + librosPorIdioma);
+            }
             System.out.println("Ingresa el idioma del libro a buscar [ej: es]: ");
             idiomaLibro = teclado.nextLine().toLowerCase();
 
@@ -290,7 +302,7 @@ public class Principal {
                         """);
             }
         }while (!idiomaLibro.matches("^[a-z]{2}$"));
-        List<Libro> librosIdioma = libroRepository.findByIdiomasContaining(idiomaLibro);
+        List<LibroDTO> librosIdioma = catalogoService.librosPorIdioma(idiomaLibro);
         if (librosIdioma.isEmpty()){
             System.out.println("""
                 ┌──────────────────────────────────────────────┐
@@ -318,21 +330,8 @@ public class Principal {
     }
 
     private void buscarAutoresVivosAño(){
-        boolean valorVerdadero = false;
-        String autorAñoVivo;
-        do {
-            System.out.println("Por favor ingrese el año para buscar autores vivos: ");
-            autorAñoVivo = teclado.nextLine();
-
-            if (!validarAñoDigitos(autorAñoVivo)){
-                añoNoValido();
-                continue;
-            }
-            valorVerdadero = true;
-        }while (!valorVerdadero);
-
-        int año = Integer.parseInt(autorAñoVivo);
-        List<Autor> autoresVivos = autorRepository.findAutoresVivosEnAño(String.valueOf(año));
+        int año = leerAño("Por favor ingrese el año para buscar autores vivos: ");
+        List<AutorDTO> autoresVivos = catalogoService.autoresVivosEn(año);
 
         if (autoresVivos.isEmpty()){
             System.out.println("""
@@ -355,21 +354,8 @@ public class Principal {
     }
 
     private void buscarAutoresFallecidosAño(){
-        boolean valorVerdadero = false;
-        String autorAñoMuerto;
-        do {
-            System.out.println("Por favor ingrese el año para buscar autores fallecidos: ");
-            autorAñoMuerto = teclado.nextLine();
-
-            if (!validarAñoDigitos(autorAñoMuerto)){
-                añoNoValido();
-                continue;
-            }
-            valorVerdadero = true;
-        }while (!valorVerdadero);
-
-        int año = Integer.parseInt(autorAñoMuerto);
-        List<Autor> autoresFallecidos = autorRepository.findAutoresFallecidosEnAño(String.valueOf(año));
+        int año = leerAño("Por favor ingrese el año para buscar autores fallecidos: ");
+        List<AutorDTO> autoresFallecidos = catalogoService.autoresFallecidosHasta(año);
 
         if (autoresFallecidos.isEmpty()){
             System.out.println("""
@@ -391,38 +377,111 @@ public class Principal {
         pausa();
     }
 
-    private void mostrarLibros(List<Libro> libroList){
-        libroList.forEach(libro -> {
-            LibroDTO libroDTO = convertirALibroDTO(libro);
+    private void buscarAutoresVivosEntreAños(){
+        int desde = leerAño("Por favor ingrese el año inicial del rango: ");
+        int hasta = leerAño("Por favor ingrese el año final del rango: ");
+        if (desde > hasta){
+            int temporal = desde;
+            desde = hasta;
+            hasta = temporal;
+        }
+        List<AutorDTO> autoresVivos = catalogoService.autoresVivosEntre(desde, hasta);
+
+        if (autoresVivos.isEmpty()){
+            System.out.println("""
+                    ┌──────────────────────────────────────────────┐
+                     NO HAY AUTORES VIVOS REGISTRADOS EN ESE RANGO
+                    └──────────────────────────────────────────────┘
+                    """);
+        }else {
             System.out.printf("""
-                    ────────────────────────────────────────────────
-                    Título: %s
-                    Autor: %s
-                    Idioma: %s
-                    N° Descargas: %.2f%n""", libroDTO.titulo(),
-                    libroDTO.autores().stream().map(AutorDTO::nombre).collect(Collectors.joining(", ")),
-                    String.join(", ", libro.getIdiomas()),
-                    libroDTO.numeroDeDescargas());
-            System.out.println("────────────────────────────────────────────────");
-        });
+                ┌──────────────────────────────────────────────┐
+                  %d AUTORES VIVOS ENTRE %d Y %d
+                └──────────────────────────────────────────────┘
+                """, autoresVivos.size(), desde, hasta);
+            mostrarAutores(autoresVivos);
+        }
+        pausa();
+    }
+
+    //Cada filtro es opcional: Enter lo omite
+    private void filtrarLibros(){
+        System.out.println("Idioma [ej: fr] o Enter para todos: ");
+        String idioma = teclado.nextLine().trim().toLowerCase();
+        if (!idioma.isEmpty() && !idioma.matches("^[a-z]{2}$")){
+            System.out.println("Código de idioma no válido; se muestran todos los idiomas");
+            idioma = "";
+        }
+        System.out.println("Año en que vivía el autor [ej: 1850] o Enter para cualquiera: ");
+        String año = teclado.nextLine().trim();
+        if (!año.isEmpty() && !validarAñoDigitos(año)){
+            añoNoValido();
+            año = "";
+        }
+        System.out.println("Mínimo de descargas [ej: 1000] o Enter para cualquiera: ");
+        String minimo = teclado.nextLine().trim();
+        if (!minimo.isEmpty() && !minimo.matches("\\d{1,9}")){
+            System.out.println("Número no válido; no se filtra por descargas");
+            minimo = "";
+        }
+
+        ResultadoFiltroDTO resultado = catalogoService.filtrarLibros(
+                idioma.isEmpty() ? null : idioma,
+                año.isEmpty() ? null : Integer.valueOf(año),
+                minimo.isEmpty() ? null : Double.valueOf(minimo));
+        if (resultado.total() == 0){
+            System.out.println("""
+                    ┌──────────────────────────────────────────────┐
+                       NINGÚN LIBRO REGISTRADO CUMPLE LOS FILTROS
+                    └──────────────────────────────────────────────┘
+                    """);
+        }else {
+            System.out.printf("""
+                ┌──────────────────────────────────────────────┐
+                  %d LIBROS COINCIDEN (MOSTRANDO %d)
+                └──────────────────────────────────────────────┘
+                """, resultado.total(), resultado.libros().size());
+            mostrarLibros(resultado.libros());
+        }
+        pausa();
+    }
+
+    private void mostrarLibros(List<LibroDTO> libroList){
+        libroList.forEach(this::mostrarLibro);
+    }
+
+    private void mostrarLibro(LibroDTO libroDTO){
+        System.out.printf("""
+                ────────────────────────────────────────────────
+                Título: %s
+                Autor: %s
+                Idioma: %s
+                N° Descargas: %.2f%n""", libroDTO.titulo(),
+                libroDTO.autores(),
+                libroDTO.idiomas(),
+                libroDTO.numeroDeDescargas());
+        System.out.println("────────────────────────────────────────────────");
     }
 
 
 
         //Top 10 libros más decargados
     private void top10LibrosMasDescargados(){
-        List<Libro> top10Libros = libroRepository.findTop10ByOrderByNumeroDeDescargasDesc();
-        System.out.println("""
+        System.out.println("Ingresa un idioma para filtrar [ej: es] o presiona Enter para ver todos: ");
+        String idioma = teclado.nextLine().trim().toLowerCase();
+        boolean porIdioma = idioma.matches("^[a-z]{2}$");
+        List<LibroDTO> top10Libros = catalogoService.masDescargados(porIdioma ? idioma : null);
+        System.out.printf("""
                      ┌──────────────────────────────────────────────┐
-                              TOP 10 LIBROS MAS DESCARGADOS
+                              TOP %d LIBROS MAS DESCARGADOS %s
                      └──────────────────────────────────────────────┘
-                     """);
+                     %n""", top10Libros.size(), porIdioma ? "(" + idioma + ")" : "");
         int contador = 1; //Inicializa el contador
-        for (Libro libro : top10Libros){
+        for (LibroDTO libro : top10Libros){
             System.out.printf("%d. %s - Descargas: %.0f%n",
                             contador,
-                            libro.getTitulo().toUpperCase(),
-                            libro.getNumeroDeDescargas());
+                            libro.titulo().toUpperCase(),
+                            libro.numeroDeDescargas());
             contador++;
         }
         System.out.println("────────────────────────────────────────────────");
@@ -436,21 +495,97 @@ public class Principal {
         pausa();
     }
     private void mostrarEstadisticasLibrosRegistrados(){
-        DoubleSummaryStatistics estadisticasDescargas = libroRepository.findAll().stream()
-                        .mapToDouble(Libro::getNumeroDeDescargas)
-                                .summaryStatistics();
+        EstadisticasDTO estadisticas = estadisticasService.obtenerEstadisticas();
+        EstadisticasDescargasDTO descargas = estadisticas.descargas();
         System.out.println("""
              ┌──────────────────────────────────────────────┐
                 ESTADISTICAS DE LIBROS MAS DESCARGADOS
              └──────────────────────────────────────────────┘
              """);
-        System.out.printf("Total de libros registrados: %d%n", estadisticasDescargas.getCount());
-        System.out.printf("Descargas totales: %.2f%n", estadisticasDescargas.getSum());
-        System.out.printf("Descargas máximas en un libro: %.2f%n", estadisticasDescargas.getMax());
-        System.out.printf("Descargas mínimas en un libro: %.2f%n", estadisticasDescargas.getMin());
+        System.out.printf("Total de libros registrados: %d%n", descargas.libros());
+        System.out.printf("Descargas totales: %s%n", formatearDescargas(descargas.total()));
+        System.out.printf("Descargas máximas en un libro: %s%n", formatearDescargas(descargas.maximo()));
+        System.out.printf("Descargas mínimas en un libro: %s%n", formatearDescargas(descargas.minimo()));
+        System.out.printf("Promedio de descargas: %s%n", formatearDescargas(descargas.promedio()));
+        System.out.printf("Mediana / p90 / p99: %s / %s / %s%n", formatearDescargas(descargas.mediana()),
+                formatearDescargas(descargas.percentil90()), formatearDescargas(descargas.percentil99()));
+        if (!descargas.libros().equals(descargas.librosConDescargas())){
+            System.out.printf("Libros sin dato de descargas: %d%n", descargas.libros() - descargas.librosConDescargas());
+        }
+        mostrarGrupos("Descargas por idioma:", estadisticas.porIdioma());
+        mostrarGrupos("Autores más descargados:", estadisticas.porAutor());
+        mostrarEstadisticasCache();
         System.out.println("────────────────────────────────────────────────");
     }
 
+    private void mostrarEstadisticasCache(){
+        Optional<EstadisticasCacheDTO> contadores = estadisticasService.obtenerEstadisticasCache();
+        System.out.println("────────────────────────────────────────────────");
+        System.out.println("Caché de la base de datos:");
+        if (contadores.isPresent()){
+            EstadisticasCacheDTO cache = contadores.get();
+            System.out.printf("  Entidades: %d aciertos, %d fallos, %d guardadas%n",
+                    cache.entidadesAciertos(), cache.entidadesFallos(), cache.entidadesGuardadas());
+            System.out.printf("  Consultas: %d aciertos, %d fallos, %d guardadas%n",
+                    cache.consultasAciertos(), cache.consultasFallos(), cache.consultasGuardadas());
+            System.out.printf("  Sentencias enviadas a la base de datos: %d%n", cache.sentenciasJdbc());
+        } else {
+            System.out.println("  Sin contadores (se habilitan con spring.jpa.properties.hibernate.generate_statistics=true)");
+        }
+        EstadisticasApiDTO api = estadisticasService.obtenerEstadisticasApi();
+        System.out.println("Gutendex:");
+        System.out.printf("  Circuito %s, %d errores transitorios, %d respuestas vencidas servidas%n",
+                api.estadoCircuito(), api.erroresTransitorios(), api.respuestasVencidas());
+    }
+
+    //Tiempos por operación: menú, Gutendex, conversión JSON, registro y repositorios. Veces y promedio
+    //son desde el arranque; los percentiles y el máximo, de los últimos minutos (como en /actuator/prometheus)
+    private void mostrarMetricas(){
+        List<Timer> temporizadores = Metricas.temporizadores();
+        System.out.println("""
+                ┌──────────────────────────────────────────────┐
+                *           MÉTRICAS DE RENDIMIENTO            *
+                └──────────────────────────────────────────────┘""");
+        if (temporizadores.isEmpty()){
+            System.out.println("Todavía no hay operaciones medidas");
+        }
+        System.out.printf("%-52s %8s %10s %10s %10s %10s%n", "Operación", "Veces", "Prom. ms", "p95 ms", "p99 ms", "Máx. ms");
+        temporizadores.forEach(temporizador -> {
+            HistogramSnapshot instantanea = temporizador.takeSnapshot();
+            System.out.printf("%-52s %8d %10.2f %10s %10s %10.2f%n",
+                    temporizador.getId().getTag(Metricas.ETIQUETA), instantanea.count(),
+                    instantanea.mean(TimeUnit.MILLISECONDS), percentil(instantanea, 0.95),
+                    percentil(instantanea, 0.99), instantanea.max(TimeUnit.MILLISECONDS));
+        });
+        System.out.println("────────────────────────────────────────────────");
+        pausa();
+    }
+
+    //Solo si el percentil está en management.metrics.distribution.percentiles. Es aproximado y puede
+    //pasar un poco del máximo observado, así que se limita a ese máximo
+    private String percentil(HistogramSnapshot instantanea, double percentil){
+        return Arrays.stream(instantanea.percentileValues())
+                .filter(valor -> valor.percentile() == percentil)
+                .findFirst()
+                .map(valor -> String.format("%.2f", Math.min(valor.value(TimeUnit.MILLISECONDS),
+                        instantanea.max(TimeUnit.MILLISECONDS))))
+                .orElse("-");
+    }
+
+    private void mostrarGrupos(String titulo, List<EstadisticaGrupoDTO> grupos){
+        if (grupos.isEmpty()){
+            return;
+        }
+        System.out.println("────────────────────────────────────────────────");
+        System.out.println(titulo);
+        grupos.forEach(grupo -> System.out.printf("  %s - %d libros, %s descargas (promedio %s)%n",
+                grupo.grupo(), grupo.libros(), formatearDescargas(grupo.descargas()), formatearDescargas(grupo.promedio())));
+    }
+
+    private String formatearDescargas(Double descargas){
+        return descargas != null ? "%.2f".formatted(descargas) : "N/A";
+    }
+
 
 
 
@@ -458,19 +593,27 @@ public class Principal {
         System.out.println("\nPresione 'Enter' para continuar...");
     }
 
+    private int leerAño(String mensaje){
+        String año;
+        do {
+            System.out.println(mensaje);
+            año = teclado.nextLine().trim();
+            if (!validarAñoDigitos(año)){
+                añoNoValido();
+            }
+        }while (!validarAñoDigitos(año));
+        return Integer.parseInt(año);
+    }
+
     private boolean validarAñoDigitos(String año){
-        return año.matches("\\d{4}");
+        return año.matches("-?\\d{1,4}");
     }
 
     private void añoNoValido(){
         System.out.println("""
-                Año no válido.Por favor, ingrese un año en 4 digitos.
+                Año no válido.Por favor, ingrese un año de hasta 4 digitos (negativo para a.C.).
                 """);
     }
-
-    private String truncarSiEsNecesario(String valor, int longitudMaxima){
-        return (valor != null && valor.length() > longitudMaxima) ? valor.substring(0, longitudMaxima) : valor;
-    }
 }
 
 
@@ -1,32 +1,82 @@
 package com.alura.literalura.repository;
 
+import com.alura.literalura.dto.AutorDTO;
+import com.alura.literalura.dto.AutorDescargasDTO;
+import com.alura.literalura.dto.AutorTituloDTO;
+import com.alura.literalura.dto.EstadisticaGrupoDTO;
 import com.alura.literalura.model.Autor;
-import jakarta.persistence.Entity;
-import org.springframework.data.jpa.repository.EntityGraph;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.List;
-import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
+@Transactional(readOnly = true)
 public interface AutorRepository extends JpaRepository<Autor, Long> {
-    Optional<Autor> findByNombre(String nombre);
+    String AUTOR_DTO = "SELECT new com.alura.literalura.dto.AutorDTO(a.id, a.nombre, a.fechaNacimiento, a.fechaFallecimiento) " +
+            "FROM Autor a ";
 
-    @Query("SELECT a FROM Autor a LEFT JOIN FETCH a.librosDelAutor")
-    List<Autor> findAllWithLibros();
+    List<Autor> findByNombreIn(Collection<String> nombres);
 
-    @EntityGraph(attributePaths = "librosDelAutor")
-    @Query("SELECT a FROM Autor a WHERE " +
-            "(a.fechaNacimiento <= :fecha AND (a.fechaFallecimiento IS NULL OR a.fechaFallecimiento > :fecha))")
-    List<Autor>findAutoresVivosEnAño(String fecha);
+    //Igual que LibroRepository.insertarSiNoExistePorGutendexId, con uk_autores_nombre como restricción
+    @Modifying
+    @Transactional
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "autores"))
+    @Query(value = "INSERT INTO autores (id, nombre, fecha_nacimiento, fecha_fallecimiento) " +
+            "VALUES (nextval('autores_seq'), :nombre, :fechaNacimiento, :fechaFallecimiento) " +
+            "ON CONFLICT (nombre) DO NOTHING", nativeQuery = true)
+    int insertarSiNoExiste(String nombre, Integer fechaNacimiento, Integer fechaFallecimiento);
 
-    @EntityGraph(attributePaths = "librosDelAutor")
-    List<Autor> findByNombreContainingIgnoreCase(String nombre);
+    //Paginación por keyset: cada página continúa después del último id de la anterior
+    @Query(AUTOR_DTO + "WHERE a.id > :ultimoId ORDER BY a.id")
+    List<AutorDTO> findAutoresDTODespuesDe(Long ultimoId, Limit limite);
 
-    @EntityGraph(attributePaths = "librosDelAutor")
-    @Query("SELECT a FROM Autor a WHERE " +
-            "a.fechaFallecimiento <= :fecha AND a.fechaNacimiento IS NOT NULL")
-    List<Autor> findAutoresFallecidosEnAño(String fecha);
+    //Títulos de varios autores en una sola consulta, para completar las proyecciones AutorDTO
+    @Query("SELECT new com.alura.literalura.dto.AutorTituloDTO(a.id, l.titulo) " +
+            "FROM Autor a JOIN a.librosDelAutor l WHERE a.id IN :ids ORDER BY l.titulo")
+    List<AutorTituloDTO> findTitulosDeAutores(Collection<Long> ids);
+
+    @Query(AUTOR_DTO + "WHERE " +
+            "(a.fechaNacimiento <= :anio AND (a.fechaFallecimiento IS NULL OR a.fechaFallecimiento > :anio))")
+    List<AutorDTO> findAutoresVivosEnAño(Integer anio);
+
+    //Vivos en algún momento del rango: nacieron antes del final y no habían fallecido al inicio
+    @Query(AUTOR_DTO + "WHERE " +
+            "(a.fechaNacimiento <= :hasta AND (a.fechaFallecimiento IS NULL OR a.fechaFallecimiento > :desde))")
+    List<AutorDTO> findAutoresVivosEntreAños(Integer desde, Integer hasta);
+
+    @Query(AUTOR_DTO + "WHERE LOWER(a.nombre) LIKE LOWER(CONCAT('%', :nombre, '%'))")
+    List<AutorDTO> findByNombreContainingIgnoreCase(String nombre);
+
+    @Query(AUTOR_DTO + "WHERE " +
+            "a.fechaFallecimiento <= :anio AND a.fechaNacimiento IS NOT NULL")
+    List<AutorDTO> findAutoresFallecidosEnAño(Integer anio);
+
+    //Consultas para construir índices en memoria sin cargar entidades
+    @Query(AUTOR_DTO + "WHERE a.fechaNacimiento IS NOT NULL")
+    Stream<AutorDTO> streamAutoresConNacimiento();
+
+    @Query("SELECT new com.alura.literalura.dto.AutorTituloDTO(a.id, l.titulo) " +
+            "FROM Autor a JOIN a.librosDelAutor l WHERE a.fechaNacimiento IS NOT NULL")
+    Stream<AutorTituloDTO> streamTitulosDeAutoresConNacimiento();
+
+    @Query(AUTOR_DTO)
+    Stream<AutorDTO> streamAutoresDTO();
+
+    @Query("SELECT new com.alura.literalura.dto.AutorDescargasDTO(a.id, SUM(l.numeroDeDescargas)) " +
+            "FROM Autor a JOIN a.librosDelAutor l GROUP BY a.id")
+    Stream<AutorDescargasDTO> streamDescargasPorAutor();
+
+    @Query("SELECT new com.alura.literalura.dto.EstadisticaGrupoDTO(a.nombre, COUNT(l), SUM(l.numeroDeDescargas), AVG(l.numeroDeDescargas)) " +
+            "FROM Autor a JOIN a.librosDelAutor l GROUP BY a.id, a.nombre ORDER BY SUM(l.numeroDeDescargas) DESC NULLS LAST")
+    List<EstadisticaGrupoDTO> resumirDescargasPorAutor(Limit limite);
 }
@@ -1,31 +1,162 @@
 package com.alura.literalura.repository;
 
+import com.alura.literalura.dto.EstadisticaGrupoDTO;
+import com.alura.literalura.dto.EstadisticasDescargasDTO;
+import com.alura.literalura.dto.IdiomaConteoDTO;
+import com.alura.literalura.dto.LibroAutorDTO;
+import com.alura.literalura.dto.LibroDTO;
+import com.alura.literalura.dto.LibroDescargasDTO;
+import com.alura.literalura.dto.LibroIdiomaDTO;
+import com.alura.literalura.dto.LibroVidaAutorDTO;
 import com.alura.literalura.model.Libro;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
 
 @Repository
+@Transactional(readOnly = true)
 public interface LibroRepository extends JpaRepository<Libro, Long> {
-    @EntityGraph(attributePaths = "autores")
+    //Proyección de solo lectura: una fila por libro con autores e idiomas agregados, sin cargar entidades
+    String LIBRO_DTO = "SELECT new com.alura.literalura.dto.LibroDTO(l.id, l.titulo, " +
+            "listagg(DISTINCT a.nombre, ', ') WITHIN GROUP (ORDER BY a.nombre), " +
+            "listagg(DISTINCT i, ', ') WITHIN GROUP (ORDER BY i), " +
+            "l.numeroDeDescargas) " +
+            "FROM Libro l LEFT JOIN l.autores a LEFT JOIN l.idiomas i ";
+    String AGRUPAR_POR_LIBRO = "GROUP BY l.id, l.titulo, l.numeroDeDescargas ";
+    //Filtros combinados opcionales (null: sin filtro); mismo criterio de "vivo" que AutorRepository
+    String FILTRO = "WHERE (:idioma IS NULL OR l.id IN (SELECT li.id FROM Libro li JOIN li.idiomas idioma WHERE idioma = :idioma)) " +
+            "AND (:vivoEn IS NULL OR l.id IN (SELECT la.id FROM Libro la JOIN la.autores autor " +
+            "WHERE autor.fechaNacimiento <= :vivoEn AND (autor.fechaFallecimiento IS NULL OR autor.fechaFallecimiento > :vivoEn))) " +
+            "AND (:descargasMinimas IS NULL OR l.numeroDeDescargas >= :descargasMinimas) ";
+
+    //Resultado en la caché de consultas; se invalida cuando cambia alguna de las tablas consultadas
+    @EntityGraph(attributePaths = {"autores", "idiomas"})
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     Optional<Libro> findByTitulo(String titulo);
 
-    //>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>
-    // Tengo dos formas de evitar la excepción: LazyInitializationException
-    // Forma 1
-    @Query("SELECT l FROM Libro l LEFT JOIN FETCH l.autores")
-    List<Libro> findAllWithAutores();
+    @EntityGraph(attributePaths = {"autores", "idiomas"})
+    Optional<Libro> findByGutendexId(Integer gutendexId);
+
+    //Inserta solo la fila del libro si no existe otra con el mismo gutendex_id (o título, si no lo tiene):
+    //entre registros simultáneos uno inserta y el resto recibe 0 filas, sin error ni transacción abortada.
+    //El espacio "libros" limita la invalidación de la caché de segundo nivel a esa tabla
+    @Modifying
+    @Transactional
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "libros"))
+    @Query(value = "INSERT INTO libros (id, titulo, numero_de_descargas, gutendex_id) " +
+            "VALUES (nextval('libros_seq'), :titulo, :numeroDeDescargas, :gutendexId) " +
+            "ON CONFLICT (gutendex_id) DO NOTHING", nativeQuery = true)
+    int insertarSiNoExistePorGutendexId(String titulo, Double numeroDeDescargas, Integer gutendexId);
+
+    @Modifying
+    @Transactional
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "libros"))
+    @Query(value = "INSERT INTO libros (id, titulo, numero_de_descargas) " +
+            "VALUES (nextval('libros_seq'), :titulo, :numeroDeDescargas) " +
+            "ON CONFLICT (titulo) DO NOTHING", nativeQuery = true)
+    int insertarSiNoExistePorTitulo(String titulo, Double numeroDeDescargas);
+
+    @Query("SELECT l.titulo FROM Libro l WHERE l.titulo IN :titulos")
+    Set<String> findTitulosRegistrados(Collection<String> titulos);
+
+    @Query(LIBRO_DTO +
+            "WHERE l.id IN (SELECT li.id FROM Libro li JOIN li.idiomas idioma WHERE idioma = :idioma) " +
+            AGRUPAR_POR_LIBRO + "ORDER BY l.titulo")
+    List<LibroDTO> findLibrosDTOPorIdioma(String idioma);
+
+    //Cada fila de libro_idiomas es un libro en un idioma: se cuenta sin unir libros (en JPQL la colección
+    //solo se alcanza desde Libro, y ese join triplicaba el tiempo en PostgreSQL)
+    @Query(value = "SELECT idioma, COUNT(*) FROM libro_idiomas GROUP BY idioma ORDER BY COUNT(*) DESC", nativeQuery = true)
+    List<Object[]> contarFilasPorIdioma();
+
+    default List<IdiomaConteoDTO> contarLibrosPorIdioma() {
+        return contarFilasPorIdioma().stream()
+                .map(fila -> new IdiomaConteoDTO((String) fila[0], ((Number) fila[1]).longValue()))
+                .toList();
+    }
+
+    //Una sola consulta de agregación; los libros sin descargas cuentan en 'libros' pero no en el resto
+    @Query("SELECT new com.alura.literalura.dto.EstadisticasDescargasDTO(COUNT(l), COUNT(l.numeroDeDescargas), " +
+            "SUM(l.numeroDeDescargas), MIN(l.numeroDeDescargas), MAX(l.numeroDeDescargas), AVG(l.numeroDeDescargas), " +
+            "percentile_cont(0.5) WITHIN GROUP (ORDER BY l.numeroDeDescargas), " +
+            "percentile_cont(0.9) WITHIN GROUP (ORDER BY l.numeroDeDescargas), " +
+            "percentile_cont(0.99) WITHIN GROUP (ORDER BY l.numeroDeDescargas)) " +
+            "FROM Libro l")
+    EstadisticasDescargasDTO resumirDescargas();
+
+    @Query("SELECT new com.alura.literalura.dto.EstadisticaGrupoDTO(i, COUNT(l), SUM(l.numeroDeDescargas), AVG(l.numeroDeDescargas)) " +
+            "FROM Libro l JOIN l.idiomas i GROUP BY i ORDER BY SUM(l.numeroDeDescargas) DESC NULLS LAST")
+    List<EstadisticaGrupoDTO> resumirDescargasPorIdioma(Limit limite);
+
+    //Mismo criterio que RankingDescargas: solo libros con dato de descargas, desempate por id
+    @Query(LIBRO_DTO + "WHERE l.numeroDeDescargas IS NOT NULL " + AGRUPAR_POR_LIBRO +
+            "ORDER BY l.numeroDeDescargas DESC, l.id")
+    List<LibroDTO> findLibrosDTOMasDescargados(Limit limite);
+
+    //Recorren idx_libros_descargas en orden y se detienen al llegar al límite, sin ordenar la tabla
+    @Query("SELECT l.id FROM Libro l WHERE l.numeroDeDescargas IS NOT NULL ORDER BY l.numeroDeDescargas DESC, l.id")
+    List<Long> findIdsMasDescargados(Limit limite);
+
+    @Query("SELECT l.id FROM Libro l JOIN l.idiomas i " +
+            "WHERE i = :idioma AND l.numeroDeDescargas IS NOT NULL ORDER BY l.numeroDeDescargas DESC, l.id")
+    List<Long> findIdsMasDescargadosPorIdioma(String idioma, Limit limite);
+
+    @Query("SELECT l.id FROM Libro l JOIN l.autores a " +
+            "WHERE a.id = :autorId AND l.numeroDeDescargas IS NOT NULL ORDER BY l.numeroDeDescargas DESC, l.id")
+    List<Long> findIdsMasDescargadosPorAutor(Long autorId, Limit limite);
+
+    @Query(LIBRO_DTO + "WHERE l.id IN :ids " + AGRUPAR_POR_LIBRO)
+    List<LibroDTO> findLibrosDTOPorIds(Collection<Long> ids);
+
+    //Paginación por keyset: cada página continúa después del último id de la anterior. Solo recorre la
+    //clave primaria; con el GROUP BY de LIBRO_DTO el límite se aplicaba después de agrupar toda la tabla
+    @Query("SELECT l.id FROM Libro l WHERE l.id > :ultimoId ORDER BY l.id")
+    List<Long> findIdsDespuesDe(Long ultimoId, Limit limite);
+
+    //Respaldo de la búsqueda local cuando el índice en memoria está deshabilitado
+    @Query(LIBRO_DTO + "WHERE LOWER(l.titulo) LIKE LOWER(CONCAT('%', :texto, '%')) " +
+            AGRUPAR_POR_LIBRO + "ORDER BY l.numeroDeDescargas DESC NULLS LAST, l.id")
+    List<LibroDTO> findLibrosDTOPorTituloParecido(String texto, Limit limite);
+
+    @Query(LIBRO_DTO + AGRUPAR_POR_LIBRO)
+    Stream<LibroDTO> streamLibrosDTO();
+
+    //Respaldo del índice de facetas cuando está deshabilitado
+    @Query(LIBRO_DTO + FILTRO + AGRUPAR_POR_LIBRO + "ORDER BY l.numeroDeDescargas DESC NULLS LAST, l.id")
+    List<LibroDTO> filtrarLibrosDTO(String idioma, Integer vivoEn, Double descargasMinimas, Limit limite);
+
+    @Query("SELECT COUNT(l) FROM Libro l " + FILTRO)
+    long contarLibrosFiltrados(String idioma, Integer vivoEn, Double descargasMinimas);
+
+    //Datos mínimos para el índice de facetas, sin agregar autores ni idiomas como texto
+    @Query("SELECT new com.alura.literalura.dto.LibroDescargasDTO(l.id, l.gutendexId, l.numeroDeDescargas) FROM Libro l")
+    Stream<LibroDescargasDTO> streamDescargas();
+
+    @Query("SELECT new com.alura.literalura.dto.LibroIdiomaDTO(l.id, i) FROM Libro l JOIN l.idiomas i")
+    Stream<LibroIdiomaDTO> streamIdiomas();
 
-    // Forma 2
-//    @EntityGraph(attributePaths = "autores")
-//    List<Libro> findAll();
+    @Query("SELECT new com.alura.literalura.dto.LibroVidaAutorDTO(l.id, a.fechaNacimiento, a.fechaFallecimiento) " +
+            "FROM Libro l JOIN l.autores a")
+    Stream<LibroVidaAutorDTO> streamVidasDeAutores();
 
-    @EntityGraph(attributePaths = "autores")
-    List<Libro> findByIdiomasContaining(String idiomas);
+    @Query("SELECT new com.alura.literalura.dto.LibroAutorDTO(l.id, a.id) FROM Libro l JOIN l.autores a WHERE l.id IN :ids")
+    List<LibroAutorDTO> findAutoresDeLibros(Collection<Long> ids);
 
-    List<Libro> findTop10ByOrderByNumeroDeDescargasDesc();
+    //Libros que se pueden volver a consultar en Gutendex, recorridos por keyset
+    @Query("SELECT new com.alura.literalura.dto.LibroDescargasDTO(l.id, l.gutendexId, l.numeroDeDescargas) " +
+            "FROM Libro l WHERE l.gutendexId IS NOT NULL AND l.id > :ultimoId ORDER BY l.id")
+    List<LibroDescargasDTO> findDescargasDespuesDe(Long ultimoId, Limit limite);
 }
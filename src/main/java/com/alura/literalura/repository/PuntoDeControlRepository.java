@@ -0,0 +1,9 @@
+package com.alura.literalura.repository;
+
+import com.alura.literalura.model.PuntoDeControl;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface PuntoDeControlRepository extends JpaRepository<PuntoDeControl, String> {
+}
@@ -0,0 +1,185 @@
+package com.alura.literalura.service;
+
+import com.alura.literalura.dto.LibroAutorDTO;
+import com.alura.literalura.dto.LibroDTO;
+import com.alura.literalura.dto.LibroDescargasDTO;
+import com.alura.literalura.model.Datos;
+import com.alura.literalura.model.Libro;
+import com.alura.literalura.model.PuntoDeControl;
+import com.alura.literalura.repository.LibroRepository;
+import com.alura.literalura.repository.PuntoDeControlRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+//Tarea periódica que vuelve a consultar en Gutendex las descargas de los libros guardados (?ids=1,2,3)
+//y escribe solo las filas que cambiaron. El avance se guarda después de cada lote: si la tarea se
+//interrumpe, la siguiente ejecución continúa desde el último libro procesado. Sin conexión no se ejecuta
+@Service
+@ConditionalOnExpression("${literalura.actualizacion.habilitada} and !${literalura.sin-conexion}")
+public class ActualizadorDescargas {
+    private static final String PUNTO_DE_CONTROL = "actualizacion-descargas";
+
+    private final LibroRepository libroRepository;
+    private final PuntoDeControlRepository puntoDeControlRepository;
+    private final ConsumoAPI consumoAPI;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transacciones;
+    private final EntityManagerFactory entityManagerFactory;
+    private final ApplicationEventPublisher eventos;
+    private final ConvierteDatos conversor = new ConvierteDatos();
+    private final String urlApi;
+    private final int lote;
+    private final long nanosEntreSolicitudes;
+    private long ultimaSolicitud;
+
+    public ActualizadorDescargas(LibroRepository libroRepository, PuntoDeControlRepository puntoDeControlRepository,
+                                 ConsumoAPI consumoAPI, JdbcTemplate jdbcTemplate, TransactionTemplate transacciones,
+                                 EntityManagerFactory entityManagerFactory, ApplicationEventPublisher eventos,
+                                 @Value("${literalura.api.url}") String urlApi,
+                                 @Value("${literalura.actualizacion.lote}") int lote,
+                                 @Value("${literalura.actualizacion.solicitudes-por-segundo}") double solicitudesPorSegundo) {
+        this.libroRepository = libroRepository;
+        this.puntoDeControlRepository = puntoDeControlRepository;
+        this.consumoAPI = consumoAPI;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transacciones = transacciones;
+        this.entityManagerFactory = entityManagerFactory;
+        this.eventos = eventos;
+        this.urlApi = urlApi;
+        this.lote = Math.max(1, lote);
+        if (!(solicitudesPorSegundo > 0)) {
+            throw new IllegalArgumentException(
+                    "literalura.actualizacion.solicitudes-por-segundo debe ser mayor que 0: " + solicitudesPorSegundo);
+        }
+        this.nanosEntreSolicitudes = (long) (TimeUnit.SECONDS.toNanos(1) / solicitudesPorSegundo);
+    }
+
+    @Scheduled(initialDelayString = "${literalura.actualizacion.espera-inicial}",
+            fixedDelayString = "${literalura.actualizacion.intervalo}")
+    public void actualizar() {
+        long inicio = System.nanoTime();
+        long revisados = 0;
+        long cambiados = 0;
+        long escritos = 0;
+        long ultimoId = leerPuntoDeControl();
+        if (ultimoId > 0) {
+            System.out.printf("Actualización de descargas: continúa después del libro %d%n", ultimoId);
+        }
+        try {
+            List<LibroDescargasDTO> pagina;
+            while (!(pagina = leerPagina(ultimoId)).isEmpty()) {
+                Map<Integer, Double> remotas = consultarDescargas(pagina);
+                List<LibroDescargasDTO> cambios = pagina.stream()
+                        .filter(libro -> remotas.get(libro.gutendexId()) != null
+                                && !remotas.get(libro.gutendexId()).equals(libro.numeroDeDescargas()))
+                        .collect(Collectors.toList());
+                ultimoId = pagina.get(pagina.size() - 1).id();
+                escritos += guardar(cambios, remotas, ultimoId);
+                revisados += pagina.size();
+                cambiados += cambios.size();
+            }
+            guardarPuntoDeControl(0L);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.out.println("Actualización de descargas detenida; se retomará en la próxima ejecución");
+        } catch (RuntimeException e) {
+            System.out.println("Actualización de descargas interrumpida: " + e.getMessage());
+        }
+        double segundos = Math.max(1e-9, (System.nanoTime() - inicio) / 1e9);
+        System.out.printf("Actualización de descargas: %d revisados, %d con cambios, %d escritos en %.1f s " +
+                        "(%.1f revisados/s, %.1f escritos/s)%n",
+                revisados, cambiados, escritos, segundos, revisados / segundos, escritos / segundos);
+    }
+
+    //El punto de control y las páginas se leen en una transacción de escritura para que vayan a la primaria:
+    //la réplica puede no tener aún el avance ni las descargas que la ejecución anterior acaba de guardar
+    private long leerPuntoDeControl() {
+        Long ultimoId = transacciones.execute(estado -> puntoDeControlRepository.findById(PUNTO_DE_CONTROL)
+                .map(PuntoDeControl::getUltimoId).orElse(0L));
+        return ultimoId != null ? ultimoId : 0L;
+    }
+
+    private List<LibroDescargasDTO> leerPagina(long ultimoId) {
+        return transacciones.execute(estado -> libroRepository.findDescargasDespuesDe(ultimoId, Limit.of(lote)));
+    }
+
+    //Gutendex pagina de a 32 resultados; si el lote es mayor se siguen los enlaces 'next'
+    private Map<Integer, Double> consultarDescargas(List<LibroDescargasDTO> pagina) throws InterruptedException {
+        Map<Integer, Double> descargas = new HashMap<>();
+        String url = urlApi + "?ids=" + pagina.stream()
+                .map(libro -> libro.gutendexId().toString())
+                .collect(Collectors.joining(","));
+        while (url != null) {
+            esperarTurno();
+            Datos datos;
+            try (InputStream cuerpo = consumoAPI.obtenerFlujo(url)) {
+                datos = conversor.obtenerLibros(cuerpo, libro -> {
+                    if (libro.gutendexId() != null) {
+                        descargas.put(libro.gutendexId(), libro.numeroDeDescargas());
+                    }
+                });
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            url = datos.siguiente();
+        }
+        return descargas;
+    }
+
+    //UPDATE por lotes JDBC solo de las filas que cambiaron, junto con el punto de control, en una transacción
+    private int guardar(List<LibroDescargasDTO> cambios, Map<Integer, Double> remotas, long ultimoId) {
+        Integer escritos = transacciones.execute(estado -> {
+            int filas = 0;
+            if (!cambios.isEmpty()) {
+                int[] resultado = jdbcTemplate.batchUpdate(
+                        "UPDATE libros SET numero_de_descargas = ? WHERE id = ? AND numero_de_descargas IS DISTINCT FROM ?",
+                        cambios.stream()
+                                .map(libro -> {
+                                    Double nuevas = remotas.get(libro.gutendexId());
+                                    return new Object[]{nuevas, libro.id(), nuevas};
+                                })
+                                .collect(Collectors.toList()));
+                filas = (int) Arrays.stream(resultado).filter(fila -> fila != 0).count();
+                List<Long> ids = cambios.stream().map(LibroDescargasDTO::id).collect(Collectors.toList());
+                List<LibroDTO> actualizados = libroRepository.findLibrosDTOPorIds(ids);
+                Map<Long, List<Long>> autores = libroRepository.findAutoresDeLibros(ids).stream()
+                        .collect(Collectors.groupingBy(LibroAutorDTO::libroId,
+                                Collectors.mapping(LibroAutorDTO::autorId, Collectors.toList())));
+                eventos.publishEvent(new DescargasActualizadasEvento(actualizados, autores));
+            }
+            guardarPuntoDeControl(ultimoId);
+            return filas;
+        });
+        //El UPDATE no pasa por Hibernate: las versiones anteriores se quitan de la caché de segundo nivel
+        //después de confirmar. Antes del commit, una lectura simultánea podría volver a guardar el valor anterior
+        cambios.forEach(libro -> entityManagerFactory.getCache().evict(Libro.class, libro.id()));
+        return escritos != null ? escritos : 0;
+    }
+
+    private void guardarPuntoDeControl(long ultimoId) {
+        puntoDeControlRepository.save(new PuntoDeControl(PUNTO_DE_CONTROL, ultimoId));
+    }
+
+    //Limita el ritmo de solicitudes a Gutendex
+    private void esperarTurno() throws InterruptedException {
+        long espera = ultimaSolicitud + nanosEntreSolicitudes - System.nanoTime();
+        if (espera > 0) {
+            TimeUnit.NANOSECONDS.sleep(espera);
+        }
+        ultimaSolicitud = System.nanoTime();
+    }
+}
@@ -0,0 +1,235 @@
+package com.alura.literalura.service;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+//Formato binario de la instantánea del catálogo. Cabecera "LITL" + versión y cuatro secciones en orden:
+//autores, libros, idiomas de cada libro y autores de cada libro. Cada sección empieza con la cantidad de
+//filas; los ids van ordenados y se guardan como diferencia con el anterior en enteros de longitud
+//variable, y los textos con su longitud delante. Los códigos de idioma forman un diccionario: la
+//primera vez que aparece uno se escribe el texto y después solo su posición
+final class ArchivoInstantanea {
+    private static final byte[] CABECERA = {'L', 'I', 'T', 'L'};
+    private static final int VERSION = 1;
+
+    private static final int DESCARGAS_NULAS = 0;
+    private static final int DESCARGAS_ENTERAS = 1;
+    private static final int DESCARGAS_DECIMALES = 2;
+
+    record FilaAutor(long id, String nombre, Integer nacimiento, Integer fallecimiento) {
+    }
+
+    record FilaLibro(long id, String titulo, Integer gutendexId, Double descargas) {
+    }
+
+    record FilaIdioma(long libroId, String idioma) {
+    }
+
+    record FilaLibroAutor(long libroId, long autorId) {
+    }
+
+    private ArchivoInstantanea() {
+    }
+
+    static final class Escritor implements Closeable {
+        private final DataOutputStream salida;
+        private final Map<String, Integer> idiomas = new HashMap<>();
+        private long idAnterior;
+
+        Escritor(OutputStream salida) throws IOException {
+            this.salida = new DataOutputStream(new BufferedOutputStream(salida, 1 << 16));
+            this.salida.write(CABECERA);
+            escribirVarint(VERSION);
+        }
+
+        //Cada sección reinicia la base de las diferencias entre ids
+        void seccion(long filas) throws IOException {
+            escribirVarint(filas);
+            idAnterior = 0;
+        }
+
+        void autor(FilaAutor autor) throws IOException {
+            escribirId(autor.id());
+            escribirTexto(autor.nombre());
+            escribirEnteroNulo(autor.nacimiento());
+            escribirEnteroNulo(autor.fallecimiento());
+        }
+
+        void libro(FilaLibro libro) throws IOException {
+            escribirId(libro.id());
+            escribirTexto(libro.titulo());
+            escribirEnteroNulo(libro.gutendexId());
+            Double descargas = libro.descargas();
+            if (descargas == null) {
+                salida.writeByte(DESCARGAS_NULAS);
+            } else if (descargas >= 0 && descargas == Math.rint(descargas) && descargas < Long.MAX_VALUE) {
+                salida.writeByte(DESCARGAS_ENTERAS);
+                escribirVarint(descargas.longValue());
+            } else {
+                salida.writeByte(DESCARGAS_DECIMALES);
+                salida.writeDouble(descargas);
+            }
+        }
+
+        void idioma(FilaIdioma idioma) throws IOException {
+            escribirId(idioma.libroId());
+            Integer posicion = idiomas.get(idioma.idioma());
+            if (posicion != null) {
+                escribirVarint(posicion);
+            } else {
+                escribirVarint(idiomas.size());
+                escribirTexto(idioma.idioma());
+                idiomas.put(idioma.idioma(), idiomas.size());
+            }
+        }
+
+        void libroAutor(FilaLibroAutor libroAutor) throws IOException {
+            escribirId(libroAutor.libroId());
+            escribirVarint(libroAutor.autorId());
+        }
+
+        @Override
+        public void close() throws IOException {
+            salida.close();
+        }
+
+        private void escribirId(long id) throws IOException {
+            if (id < idAnterior) {
+                throw new IllegalStateException("Los ids deben escribirse en orden ascendente");
+            }
+            escribirVarint(id - idAnterior);
+            idAnterior = id;
+        }
+
+        //null se guarda como 0; el resto desplazado en uno y en zigzag para que los negativos ocupen poco
+        private void escribirEnteroNulo(Integer valor) throws IOException {
+            if (valor == null) {
+                escribirVarint(0);
+                return;
+            }
+            int zigzag = (valor << 1) ^ (valor >> 31);
+            escribirVarint((zigzag & 0xFFFFFFFFL) + 1);
+        }
+
+        //null se guarda con longitud 0; el resto con longitud + 1
+        private void escribirTexto(String texto) throws IOException {
+            if (texto == null) {
+                escribirVarint(0);
+                return;
+            }
+            byte[] bytes = texto.getBytes(StandardCharsets.UTF_8);
+            escribirVarint(bytes.length + 1L);
+            salida.write(bytes);
+        }
+
+        private void escribirVarint(long valor) throws IOException {
+            while ((valor & ~0x7FL) != 0) {
+                salida.writeByte((int) (valor & 0x7F) | 0x80);
+                valor >>>= 7;
+            }
+            salida.writeByte((int) valor);
+        }
+    }
+
+    static final class Lector implements Closeable {
+        private final DataInputStream entrada;
+        private final List<String> idiomas = new ArrayList<>();
+        private long idAnterior;
+
+        Lector(InputStream entrada) throws IOException {
+            this.entrada = new DataInputStream(new BufferedInputStream(entrada, 1 << 16));
+            byte[] cabecera = new byte[CABECERA.length];
+            this.entrada.readFully(cabecera);
+            if (!Arrays.equals(cabecera, CABECERA)) {
+                throw new IOException("El archivo no es una instantánea del catálogo");
+            }
+            long version = leerVarint();
+            if (version != VERSION) {
+                throw new IOException("Versión de instantánea no soportada: " + version);
+            }
+        }
+
+        long seccion() throws IOException {
+            idAnterior = 0;
+            return leerVarint();
+        }
+
+        FilaAutor autor() throws IOException {
+            return new FilaAutor(leerId(), leerTexto(), leerEnteroNulo(), leerEnteroNulo());
+        }
+
+        FilaLibro libro() throws IOException {
+            long id = leerId();
+            String titulo = leerTexto();
+            Integer gutendexId = leerEnteroNulo();
+            Double descargas = switch (entrada.readUnsignedByte()) {
+                case DESCARGAS_NULAS -> null;
+                case DESCARGAS_ENTERAS -> (double) leerVarint();
+                case DESCARGAS_DECIMALES -> entrada.readDouble();
+                default -> throw new IOException("Instantánea dañada: tipo de descargas desconocido");
+            };
+            return new FilaLibro(id, titulo, gutendexId, descargas);
+        }
+
+        FilaIdioma idioma() throws IOException {
+            long libroId = leerId();
+            int posicion = (int) leerVarint();
+            if (posicion == idiomas.size()) {
+                idiomas.add(leerTexto());
+            } else if (posicion > idiomas.size()) {
+                throw new IOException("Instantánea dañada: idioma fuera del diccionario");
+            }
+            return new FilaIdioma(libroId, idiomas.get(posicion));
+        }
+
+        FilaLibroAutor libroAutor() throws IOException {
+            return new FilaLibroAutor(leerId(), leerVarint());
+        }
+
+        @Override
+        public void close() throws IOException {
+            entrada.close();
+        }
+
+        private long leerId() throws IOException {
+            idAnterior += leerVarint();
+            return idAnterior;
+        }
+
+        private Integer leerEnteroNulo() throws IOException {
+            long valor = leerVarint();
+            if (valor == 0) {
+                return null;
+            }
+            int zigzag = (int) (valor - 1);
+            return (zigzag >>> 1) ^ -(zigzag & 1);
+        }
+
+        private String leerTexto() throws IOException {
+            int longitud = (int) leerVarint();
+            if (longitud == 0) {
+                return null;
+            }
+            byte[] bytes = new byte[longitud - 1];
+            entrada.readFully(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        private long leerVarint() throws IOException {
+            long valor = 0;
+            for (int desplazamiento = 0; desplazamiento < 64; desplazamiento += 7) {
+                int octeto = entrada.readUnsignedByte();
+                valor |= (long) (octeto & 0x7F) << desplazamiento;
+                if ((octeto & 0x80) == 0) {
+                    return valor;
+                }
+            }
+            throw new IOException("Instantánea dañada: entero demasiado largo");
+        }
+    }
+}
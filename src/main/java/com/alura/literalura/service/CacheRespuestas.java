@@ -0,0 +1,300 @@
+package com.alura.literalura.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+//Caché de respuestas de Gutendex: un nivel en memoria limitado por bytes (LRU) y otro opcional en disco,
+//también limitado: al superar el máximo se borran primero los archivos escritos hace más tiempo
+@Component
+public class CacheRespuestas {
+    private final boolean habilitada;
+    private final long duracionMillis;
+    private final long bytesMaximos;
+    private final Path directorio;
+    private final long bytesMaximosDisco;
+
+    private final LinkedHashMap<String, Entrada> memoria = new LinkedHashMap<>(64, 0.75f, true);
+    private long bytesEnMemoria;
+    //Escrituras y borrados del directorio, y el total de bytes que ocupa
+    private final Object disco = new Object();
+    private long bytesEnDisco;
+
+    private final LongAdder aciertosMemoria = new LongAdder();
+    private final LongAdder aciertosDisco = new LongAdder();
+    private final LongAdder fallos = new LongAdder();
+    private final LongAdder expulsiones = new LongAdder();
+    private final LongAdder expulsionesDisco = new LongAdder();
+    private final LongAdder vencidasServidas = new LongAdder();
+
+    public CacheRespuestas(@Value("${literalura.cache.habilitada}") boolean habilitada,
+                           @Value("${literalura.cache.duracion}") Duration duracion,
+                           @Value("${literalura.cache.tamano-maximo}") DataSize tamanoMaximo,
+                           @Value("${literalura.cache.directorio:}") String directorio,
+                           @Value("${literalura.cache.tamano-maximo-disco}") DataSize tamanoMaximoDisco) {
+        this.habilitada = habilitada;
+        this.duracionMillis = duracion.toMillis();
+        this.bytesMaximos = tamanoMaximo.toBytes();
+        this.directorio = directorio.isBlank() ? null : Path.of(directorio);
+        this.bytesMaximosDisco = tamanoMaximoDisco.toBytes();
+        if (this.directorio != null) {
+            try {
+                Files.createDirectories(this.directorio);
+                //Lo que quedó de ejecuciones anteriores cuenta para el máximo
+                try (Stream<Path> archivos = archivosEnDisco()) {
+                    bytesEnDisco = archivos.mapToLong(CacheRespuestas::tamano).sum();
+                }
+                synchronized (disco) {
+                    limitarDisco();
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    public Optional<String> obtener(String url) {
+        if (!habilitada) {
+            return Optional.empty();
+        }
+        String clave = normalizarClave(url);
+        long ahora = System.currentTimeMillis();
+        synchronized (memoria) {
+            Entrada entrada = memoria.get(clave);
+            if (entrada != null && entrada.expiraEn() > ahora) {
+                aciertosMemoria.increment();
+                return Optional.of(entrada.cuerpo());
+            }
+        }
+        Optional<Entrada> enDisco = leerDisco(clave, ahora);
+        if (enDisco.isPresent()) {
+            guardarEnMemoria(clave, enDisco.get());
+            if (enDisco.get().expiraEn() > ahora) {
+                aciertosDisco.increment();
+                return Optional.of(enDisco.get().cuerpo());
+            }
+        }
+        fallos.increment();
+        return Optional.empty();
+    }
+
+    //Respuesta guardada aunque haya expirado: se usa cuando Gutendex no está disponible.
+    //En memoria las entradas expiradas se conservan hasta que se reemplazan o las expulsa el LRU; en disco
+    //el archivo se borra al encontrarlo expirado y la entrada pasa a memoria
+    public Optional<String> obtenerVencida(String url) {
+        if (!habilitada) {
+            return Optional.empty();
+        }
+        String clave = normalizarClave(url);
+        Optional<String> vencida;
+        synchronized (memoria) {
+            vencida = Optional.ofNullable(memoria.get(clave)).map(Entrada::cuerpo);
+        }
+        if (vencida.isEmpty()) {
+            Optional<Entrada> enDisco = leerDisco(clave, System.currentTimeMillis());
+            enDisco.ifPresent(entrada -> guardarEnMemoria(clave, entrada));
+            vencida = enDisco.map(Entrada::cuerpo);
+        }
+        vencida.ifPresent(cuerpo -> vencidasServidas.increment());
+        return vencida;
+    }
+
+    public void guardar(String url, String cuerpo) {
+        if (!habilitada) {
+            return;
+        }
+        String clave = normalizarClave(url);
+        Entrada entrada = new Entrada(cuerpo, System.currentTimeMillis() + duracionMillis);
+        guardarEnMemoria(clave, entrada);
+        escribirDisco(clave, entrada);
+    }
+
+    public EstadisticasCache estadisticas() {
+        synchronized (memoria) {
+            synchronized (disco) {
+                return new EstadisticasCache(aciertosMemoria.sum(), aciertosDisco.sum(), fallos.sum(),
+                        expulsiones.sum(), vencidasServidas.sum(), memoria.size(), bytesEnMemoria,
+                        expulsionesDisco.sum(), bytesEnDisco);
+            }
+        }
+    }
+
+    //"?search=Don+Quijote" y "?search=don%20quijote " comparten entrada: se decodifican, ordenan y pasan a minúsculas
+    static String normalizarClave(String url) {
+        int inicioConsulta = url.indexOf('?');
+        if (inicioConsulta < 0) {
+            return url;
+        }
+        String parametros = Arrays.stream(url.substring(inicioConsulta + 1).split("&"))
+                .filter(parametro -> !parametro.isBlank())
+                .map(parametro -> URLDecoder.decode(parametro, StandardCharsets.UTF_8)
+                        .trim()
+                        .toLowerCase(Locale.ROOT)
+                        .replaceAll("\\s+", " "))
+                .sorted()
+                .collect(Collectors.joining("&"));
+        return url.substring(0, inicioConsulta) + "?" + parametros;
+    }
+
+    private void guardarEnMemoria(String clave, Entrada entrada) {
+        //Las respuestas más grandes que toda la caché no se guardan en memoria
+        if (entrada.bytes() > bytesMaximos) {
+            return;
+        }
+        synchronized (memoria) {
+            quitar(clave);
+            memoria.put(clave, entrada);
+            bytesEnMemoria += entrada.bytes();
+            Iterator<Map.Entry<String, Entrada>> menosUsadas = memoria.entrySet().iterator();
+            while (bytesEnMemoria > bytesMaximos && menosUsadas.hasNext()) {
+                Map.Entry<String, Entrada> eliminada = menosUsadas.next();
+                bytesEnMemoria -= eliminada.getValue().bytes();
+                menosUsadas.remove();
+                expulsiones.increment();
+            }
+        }
+    }
+
+    private void quitar(String clave) {
+        Entrada anterior = memoria.remove(clave);
+        if (anterior != null) {
+            bytesEnMemoria -= anterior.bytes();
+        }
+    }
+
+    //Formato del archivo: primera línea con la expiración en milisegundos y el resto con el cuerpo.
+    //Devuelve también las entradas expiradas, pero borra su archivo
+    private Optional<Entrada> leerDisco(String clave, long ahora) {
+        if (directorio == null) {
+            return Optional.empty();
+        }
+        Path archivo = archivoPara(clave);
+        try {
+            if (!Files.exists(archivo)) {
+                return Optional.empty();
+            }
+            FileTime modificado = Files.getLastModifiedTime(archivo);
+            String contenido = Files.readString(archivo, StandardCharsets.UTF_8);
+            int finDeLinea = contenido.indexOf('\n');
+            long expiraEn = Long.parseLong(contenido.substring(0, finDeLinea));
+            if (expiraEn <= ahora) {
+                synchronized (disco) {
+                    //Si otra consulta lo reemplazó mientras se leía, el archivo nuevo se conserva
+                    if (modificado.equals(Files.getLastModifiedTime(archivo))) {
+                        borrar(archivo);
+                    }
+                }
+            }
+            return Optional.of(new Entrada(contenido.substring(finDeLinea + 1), expiraEn));
+        } catch (IOException | RuntimeException e) {
+            return Optional.empty();
+        }
+    }
+
+    private void escribirDisco(String clave, Entrada entrada) {
+        if (directorio == null) {
+            return;
+        }
+        try {
+            //Se escribe en un temporal y se renombra para no dejar archivos a medias
+            Path temporal = Files.createTempFile(directorio, "respuesta", ".tmp");
+            Files.writeString(temporal, entrada.expiraEn() + "\n" + entrada.cuerpo(), StandardCharsets.UTF_8);
+            Path archivo = archivoPara(clave);
+            synchronized (disco) {
+                long anterior = Files.exists(archivo) ? tamano(archivo) : 0;
+                long nuevo = tamano(temporal);
+                Files.move(temporal, archivo, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                bytesEnDisco += nuevo - anterior;
+                limitarDisco();
+            }
+        } catch (IOException e) {
+            System.out.println("No se pudo guardar la respuesta en la caché de disco: " + e.getMessage());
+        }
+    }
+
+    //Se llama con 'disco' tomado. Baja hasta el 90 % del máximo para no recorrer el directorio en cada escritura
+    private void limitarDisco() throws IOException {
+        if (bytesEnDisco <= bytesMaximosDisco) {
+            return;
+        }
+        List<Path> masAntiguos;
+        try (Stream<Path> archivos = archivosEnDisco()) {
+            masAntiguos = archivos.sorted(Comparator.comparing(CacheRespuestas::modificado)).toList();
+        }
+        for (Path archivo : masAntiguos) {
+            if (bytesEnDisco <= bytesMaximosDisco * 9 / 10) {
+                break;
+            }
+            if (borrar(archivo)) {
+                expulsionesDisco.increment();
+            }
+        }
+    }
+
+    private boolean borrar(Path archivo) throws IOException {
+        long bytes = tamano(archivo);
+        if (Files.deleteIfExists(archivo)) {
+            bytesEnDisco -= bytes;
+            return true;
+        }
+        return false;
+    }
+
+    private Stream<Path> archivosEnDisco() throws IOException {
+        return Files.list(directorio).filter(archivo -> archivo.getFileName().toString().endsWith(".json"));
+    }
+
+    //Un archivo borrado entre el listado y la consulta cuenta como vacío
+    private static long tamano(Path archivo) {
+        try {
+            return Files.size(archivo);
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private static FileTime modificado(Path archivo) {
+        try {
+            return Files.getLastModifiedTime(archivo);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    private Path archivoPara(String clave) {
+        try {
+            byte[] resumen = MessageDigest.getInstance("SHA-256").digest(clave.getBytes(StandardCharsets.UTF_8));
+            return directorio.resolve(HexFormat.of().formatHex(resumen) + ".json");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private record Entrada(String cuerpo, long expiraEn) {
+        //Aproximación: dos bytes por carácter más la cabecera del objeto
+        long bytes() {
+            return 2L * cuerpo.length() + 64;
+        }
+    }
+
+    public record EstadisticasCache(long aciertosMemoria, long aciertosDisco, long fallos,
+                                    long expulsiones, long vencidasServidas, int entradas, long bytes,
+                                    long expulsionesDisco, long bytesDisco) {
+    }
+}
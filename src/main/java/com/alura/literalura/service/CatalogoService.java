@@ -0,0 +1,154 @@
+package com.alura.literalura.service;
+
+import com.alura.literalura.dto.AutorDTO;
+import com.alura.literalura.dto.LibroDTO;
+import com.alura.literalura.dto.ResultadoFiltroDTO;
+import com.alura.literalura.model.Datos;
+import com.alura.literalura.model.DatosLibros;
+import com.alura.literalura.model.Libro;
+import com.alura.literalura.repository.AutorRepository;
+import com.alura.literalura.repository.LibroRepository;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+//Operaciones de consulta compartidas por el menú de consola y la API REST.
+//Usa los índices en memoria cuando están habilitados y, si no, consulta la base de datos
+@Service
+public class CatalogoService {
+    private static final int RESULTADOS_BUSQUEDA = 20;
+
+    private final LibroRepository libroRepository;
+    private final AutorRepository autorRepository;
+    private final LibroService libroService;
+    private final ListadoService listadoService;
+    private final ConsumoAPI consumoAPI;
+    private final ConvierteDatos conversor = new ConvierteDatos();
+    private final String urlApi;
+    private final boolean sinConexion;
+    private final IndiceVidaAutores indiceVidaAutores;
+    private final IndiceBusqueda indiceBusqueda;
+    private final RankingDescargas rankingDescargas;
+    private final IndiceFacetas indiceFacetas;
+    private final SolicitudesEnCurso<String, Optional<LibroDTO>> registrosEnCurso = new SolicitudesEnCurso<>();
+
+    public CatalogoService(LibroRepository libroRepository, AutorRepository autorRepository,
+                           LibroService libroService, ListadoService listadoService, ConsumoAPI consumoAPI,
+                           @Value("${literalura.api.url}") String urlApi,
+                           @Value("${literalura.sin-conexion}") boolean sinConexion,
+                           ObjectProvider<IndiceVidaAutores> indiceVidaAutores,
+                           ObjectProvider<IndiceBusqueda> indiceBusqueda,
+                           ObjectProvider<RankingDescargas> rankingDescargas,
+                           ObjectProvider<IndiceFacetas> indiceFacetas) {
+        this.libroRepository = libroRepository;
+        this.autorRepository = autorRepository;
+        this.libroService = libroService;
+        this.listadoService = listadoService;
+        this.consumoAPI = consumoAPI;
+        this.urlApi = urlApi;
+        this.sinConexion = sinConexion;
+        //Opcionales: null si el índice correspondiente está deshabilitado
+        this.indiceVidaAutores = indiceVidaAutores.getIfAvailable();
+        this.indiceBusqueda = indiceBusqueda.getIfAvailable();
+        this.rankingDescargas = rankingDescargas.getIfAvailable();
+        this.indiceFacetas = indiceFacetas.getIfAvailable();
+    }
+
+    //Busca el título en Gutendex y registra el primer resultado que lo contiene.
+    //Las búsquedas simultáneas del mismo título comparten la consulta y el registro.
+    //Sin conexión se busca entre los libros ya guardados (por ejemplo, importados de pg_catalog.csv)
+    public Optional<LibroDTO> buscarYRegistrar(String titulo) {
+        String normalizado = titulo.trim().replaceAll("\\s+", " ");
+        if (sinConexion) {
+            return libroRepository.findLibrosDTOPorTituloParecido(normalizado, Limit.of(1)).stream().findFirst();
+        }
+        return registrosEnCurso.ejecutar(normalizado.toLowerCase(Locale.ROOT), () -> {
+            String json = consumoAPI.obtenerDatos(urlApi + "?search=" + URLEncoder.encode(normalizado, StandardCharsets.UTF_8));
+            Optional<DatosLibros> encontrado = conversor.obtenerDatos(json, Datos.class).resultados().stream()
+                    .filter(datosLibros -> datosLibros.titulo().toUpperCase().contains(normalizado.toUpperCase()))
+                    .findFirst();
+            return encontrado.map(datosLibros -> listadoService.convertirALibroDTO(libroService.registrarLibro(datosLibros)));
+        });
+    }
+
+    public List<LibroDTO> buscarLibrosRegistrados(String texto) {
+        return indiceBusqueda != null
+                ? indiceBusqueda.buscarLibros(texto, RESULTADOS_BUSQUEDA)
+                : libroRepository.findLibrosDTOPorTituloParecido(texto, Limit.of(RESULTADOS_BUSQUEDA));
+    }
+
+    public List<AutorDTO> buscarAutores(String nombre) {
+        return listadoService.conLibros(indiceBusqueda != null
+                ? indiceBusqueda.buscarAutores(nombre, RESULTADOS_BUSQUEDA)
+                : autorRepository.findByNombreContainingIgnoreCase(nombre));
+    }
+
+    public List<LibroDTO> librosPorIdioma(String idioma) {
+        return libroRepository.findLibrosDTOPorIdioma(idioma);
+    }
+
+    public List<AutorDTO> autoresVivosEn(int año) {
+        return indiceVidaAutores != null
+                ? indiceVidaAutores.vivosEnAño(año)
+                : listadoService.conLibros(autorRepository.findAutoresVivosEnAño(año));
+    }
+
+    public List<AutorDTO> autoresVivosEntre(int desde, int hasta) {
+        return indiceVidaAutores != null
+                ? indiceVidaAutores.vivosEntreAños(desde, hasta)
+                : listadoService.conLibros(autorRepository.findAutoresVivosEntreAños(desde, hasta));
+    }
+
+    public List<AutorDTO> autoresFallecidosHasta(int año) {
+        return indiceVidaAutores != null
+                ? indiceVidaAutores.fallecidosHastaAño(año)
+                : listadoService.conLibros(autorRepository.findAutoresFallecidosEnAño(año));
+    }
+
+    //Filtros combinados, cada uno opcional (null); ordenados por descargas
+    public ResultadoFiltroDTO filtrarLibros(String idioma, Integer vivoEn, Double descargasMinimas) {
+        if (indiceFacetas == null) {
+            return new ResultadoFiltroDTO(libroRepository.contarLibrosFiltrados(idioma, vivoEn, descargasMinimas),
+                    libroRepository.filtrarLibrosDTO(idioma, vivoEn, descargasMinimas, Limit.of(RESULTADOS_BUSQUEDA)));
+        }
+        IndiceFacetas.Resultado resultado = indiceFacetas.filtrar(
+                new IndiceFacetas.Filtro(idioma, vivoEn, descargasMinimas), RESULTADOS_BUSQUEDA);
+        if (resultado.ids().isEmpty()) {
+            return new ResultadoFiltroDTO(resultado.total(), List.of());
+        }
+        //La consulta por ids no conserva el orden del índice
+        Map<Long, LibroDTO> porId = libroRepository.findLibrosDTOPorIds(resultado.ids()).stream()
+                .collect(Collectors.toMap(LibroDTO::id, Function.identity()));
+        return new ResultadoFiltroDTO(resultado.total(), resultado.ids().stream()
+                .map(porId::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList()));
+    }
+
+    //idioma null: clasificación global
+    public List<LibroDTO> masDescargados(String idioma) {
+        if (rankingDescargas != null) {
+            return idioma != null ? rankingDescargas.topPorIdioma(idioma) : rankingDescargas.top();
+        }
+        if (idioma == null) {
+            return libroRepository.findLibrosDTOMasDescargados(Limit.of(10));
+        }
+        return libroRepository.findLibrosDTOPorIds(libroRepository.findIdsMasDescargadosPorIdioma(idioma, Limit.of(10)))
+                .stream()
+                .sorted(Comparator.comparing(LibroDTO::numeroDeDescargas, Comparator.reverseOrder())
+                        .thenComparing(LibroDTO::id))
+                .collect(Collectors.toList());
+    }
+}
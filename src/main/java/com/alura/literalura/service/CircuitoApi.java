@@ -0,0 +1,73 @@
+package com.alura.literalura.service;
+
+import java.time.Duration;
+
+//Cortacircuitos de las consultas a Gutendex. Tras 'fallosParaAbrir' fallos seguidos se abre y las
+//consultas fallan de inmediato; pasado 'tiempoAbierto' deja pasar una sola consulta de prueba
+//(semiabierto) que lo vuelve a cerrar si tiene éxito.
+//Cada consulta informa su resultado con el permiso que recibió: desde semiabierto solo decide la
+//consulta de prueba, no las que se admitieron antes de abrirse y terminan después
+final class CircuitoApi {
+    enum Estado { CERRADO, ABIERTO, SEMIABIERTO }
+
+    enum Permiso { DENEGADO, NORMAL, PRUEBA }
+
+    private final int fallosParaAbrir;
+    private final long nanosAbierto;
+
+    private Estado estado = Estado.CERRADO;
+    private int fallosSeguidos;
+    private long abiertoDesde;
+
+    CircuitoApi(int fallosParaAbrir, Duration tiempoAbierto) {
+        this.fallosParaAbrir = Math.max(1, fallosParaAbrir);
+        this.nanosAbierto = tiempoAbierto.toNanos();
+    }
+
+    synchronized Permiso permitir() {
+        if (estado == Estado.ABIERTO && System.nanoTime() - abiertoDesde >= nanosAbierto) {
+            estado = Estado.SEMIABIERTO;
+            return Permiso.PRUEBA;
+        }
+        return estado == Estado.CERRADO ? Permiso.NORMAL : Permiso.DENEGADO;
+    }
+
+    synchronized void exito(Permiso permiso) {
+        if (permiso == Permiso.PRUEBA && estado == Estado.SEMIABIERTO) {
+            System.out.println("Gutendex vuelve a responder: circuito cerrado");
+            estado = Estado.CERRADO;
+        }
+        if (estado == Estado.CERRADO) {
+            fallosSeguidos = 0;
+        }
+    }
+
+    //También se llama si la consulta de prueba termina sin resultado (interrumpida), para que el
+    //circuito no quede semiabierto sin nadie que lo resuelva
+    synchronized void fallo(Permiso permiso) {
+        if (permiso == Permiso.PRUEBA) {
+            if (estado == Estado.SEMIABIERTO) {
+                abrir();
+            }
+            return;
+        }
+        if (estado != Estado.CERRADO) {
+            return;
+        }
+        fallosSeguidos++;
+        if (fallosSeguidos >= fallosParaAbrir) {
+            System.out.printf("Gutendex no responde (%d fallos seguidos): circuito abierto por %d s%n",
+                    fallosSeguidos, Duration.ofNanos(nanosAbierto).toSeconds());
+            abrir();
+        }
+    }
+
+    private void abrir() {
+        estado = Estado.ABIERTO;
+        abiertoDesde = System.nanoTime();
+    }
+
+    synchronized Estado getEstado() {
+        return estado;
+    }
+}
@@ -1,28 +1,336 @@
 package com.alura.literalura.service;
 
+import com.alura.literalura.config.Ejecutores;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.Closeable;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
 
+//Un único cliente compartido: reutiliza conexiones (keep-alive / HTTP/2) entre consultas.
+//Los errores transitorios (429, 5xx, red) se reintentan con espera exponencial aleatoria y, si
+//persisten, el circuito se abre y las búsquedas se responden desde la caché aunque haya expirado
+@Service
 public class ConsumoAPI {
-    public String obtenerDatos(String url) {
-        HttpClient client = HttpClient.newHttpClient();
-        HttpRequest request = HttpRequest.newBuilder()
-                .uri(URI.create(url))
+    private final HttpClient client;
+    private final ExecutorService ejecutor;
+    private final ExecutorService ejecutorCliente;
+    private final Duration tiempoMaximoRespuesta;
+    private final CacheRespuestas cache;
+    private final SolicitudesEnCurso<String, String> consultasEnCurso = new SolicitudesEnCurso<>();
+    private final CircuitoApi circuito;
+    private final int reintentos;
+    private final long esperaReintentoMillis;
+    private final long esperaMaximaMillis;
+    private final LongAdder sobrecargas = new LongAdder();
+
+    public ConsumoAPI(CacheRespuestas cache,
+                      @Value("${literalura.api.tiempo-conexion}") Duration tiempoMaximoConexion,
+                      @Value("${literalura.api.tiempo-respuesta}") Duration tiempoMaximoRespuesta,
+                      @Value("${literalura.api.hilos}") int hilos,
+                      @Value("${literalura.api.reintentos}") int reintentos,
+                      @Value("${literalura.api.espera-reintento}") Duration esperaReintento,
+                      @Value("${literalura.api.espera-maxima}") Duration esperaMaxima,
+                      @Value("${literalura.api.circuito.fallos}") int fallosParaAbrir,
+                      @Value("${literalura.api.circuito.tiempo-abierto}") Duration tiempoAbierto) {
+        this.cache = cache;
+        this.tiempoMaximoRespuesta = tiempoMaximoRespuesta;
+        this.reintentos = Math.max(0, reintentos);
+        this.esperaReintentoMillis = Math.max(1, esperaReintento.toMillis());
+        this.esperaMaximaMillis = Math.max(this.esperaReintentoMillis, esperaMaxima.toMillis());
+        this.circuito = new CircuitoApi(fallosParaAbrir, tiempoAbierto);
+        this.ejecutor = Ejecutores.crear("gutendex", hilos);
+        //El cliente usa su propio pool para completar las respuestas: si compartiera el de las descargas,
+        //los hilos bloqueados en send() podrían ocupar todos los que necesita para entregarlas
+        this.ejecutorCliente = Ejecutores.crear("gutendex-cliente", Math.max(2, Runtime.getRuntime().availableProcessors()));
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .connectTimeout(tiempoMaximoConexion)
+                .executor(ejecutorCliente)
                 .build();
-        HttpResponse<String> response = null;
+    }
+
+    //Lectura a través de la caché: solo se consulta Gutendex si la búsqueda no está guardada o expiró.
+    //Las consultas simultáneas a la misma url (normalizada) comparten una sola solicitud
+    public String obtenerDatos(String url) {
+        Optional<String> guardada = cache.obtener(url);
+        if (guardada.isPresent()) {
+            return guardada.get();
+        }
+        return consultasEnCurso.ejecutar(CacheRespuestas.normalizarClave(url), () -> consultar(url));
+    }
+
+    private String consultar(String url) {
+        //Otra solicitud pudo guardar la respuesta entre la lectura de la caché y este punto
+        Optional<String> guardada = cache.obtener(url);
+        if (guardada.isPresent()) {
+            return guardada.get();
+        }
+        try {
+            String json = enviar(url, HttpResponse.BodyHandlers.ofString());
+            cache.guardar(url, json);
+            return json;
+        } catch (ErrorConsultaApi e) {
+            if (!e.esReintentable()) {
+                throw e;
+            }
+            Optional<String> vencida = cache.obtenerVencida(url);
+            if (vencida.isEmpty()) {
+                throw e;
+            }
+            System.out.println("Gutendex no está disponible; se usa una respuesta guardada anteriormente");
+            return vencida.get();
+        }
+    }
+
+    //El cuerpo se entrega como flujo para decodificarlo sin copiarlo a un String
+    public InputStream obtenerFlujo(String url) {
+        return enviar(url, HttpResponse.BodyHandlers.ofInputStream());
+    }
+
+    //Igual que obtenerDatos, pero ningún hilo queda bloqueado esperando a Gutendex: la solicitud, los
+    //reintentos y el guardado en la caché se encadenan sobre el resultado de sendAsync
+    public CompletableFuture<String> obtenerDatosAsync(String url) {
+        Optional<String> guardada = cache.obtener(url);
+        if (guardada.isPresent()) {
+            return CompletableFuture.completedFuture(guardada.get());
+        }
+        return consultasEnCurso.ejecutarAsync(CacheRespuestas.normalizarClave(url), () -> consultarAsync(url));
+    }
+
+    private CompletableFuture<String> consultarAsync(String url) {
+        Optional<String> guardada = cache.obtener(url);
+        if (guardada.isPresent()) {
+            return CompletableFuture.completedFuture(guardada.get());
+        }
+        return enviarAsync(url, HttpResponse.BodyHandlers.ofString(), 0)
+                .thenApply(json -> {
+                    cache.guardar(url, json);
+                    return json;
+                })
+                .exceptionally(excepcion -> {
+                    Throwable causa = causa(excepcion);
+                    if (causa instanceof ErrorConsultaApi error && error.esReintentable()) {
+                        Optional<String> vencida = cache.obtenerVencida(url);
+                        if (vencida.isPresent()) {
+                            System.out.println("Gutendex no está disponible; se usa una respuesta guardada anteriormente");
+                            return vencida.get();
+                        }
+                    }
+                    throw excepcion instanceof CompletionException completion ? completion : new CompletionException(causa);
+                });
+    }
+
+    //Ejecutor para llamadas bloqueantes, con literalura.api.hilos hilos como máximo
+    public ExecutorService getEjecutor() {
+        return ejecutor;
+    }
+
+    //Respuestas 429/5xx y errores de red recibidos: el importador ajusta su concurrencia con este contador
+    public long getSobrecargas() {
+        return sobrecargas.sum();
+    }
+
+    public String getEstadoCircuito() {
+        return circuito.getEstado().name();
+    }
+
+    @PreDestroy
+    public void cerrar() {
+        ejecutor.shutdownNow();
+        ejecutorCliente.shutdownNow();
+    }
+
+    private <T> T enviar(String url, HttpResponse.BodyHandler<T> manejador) {
+        for (int intento = 0; ; intento++) {
+            CircuitoApi.Permiso permiso = circuito.permitir();
+            if (permiso == CircuitoApi.Permiso.DENEGADO) {
+                throw circuitoAbierto();
+            }
+            long espera;
+            boolean informado = false;
+            try {
+                ErrorConsultaApi error;
+                long esperaIndicada = 0;
+                try {
+                    HttpResponse<T> response = client.send(crearRequest(url), manejador);
+                    if (response.statusCode() / 100 == 2) {
+                        informado = true;
+                        circuito.exito(permiso);
+                        return response.body();
+                    }
+                    descartar(response.body());
+                    error = errorDeRespuesta(response);
+                    esperaIndicada = esperaIndicada(response);
+                } catch (IOException e) {
+                    error = errorDeRed(e);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new ErrorConsultaApi("Consulta a Gutendex interrumpida", e);
+                }
+                informado = true;
+                espera = resolverFallo(error, permiso, intento, esperaIndicada);
+            } finally {
+                //Una consulta de prueba interrumpida (o con otro error) también resuelve el circuito
+                if (!informado && permiso == CircuitoApi.Permiso.PRUEBA) {
+                    circuito.fallo(permiso);
+                }
+            }
+            dormir(espera);
+        }
+    }
+
+    //Versión sin bloqueo de enviar: la espera entre reintentos usa un ejecutor diferido en lugar de sleep
+    private <T> CompletableFuture<T> enviarAsync(String url, HttpResponse.BodyHandler<T> manejador, int intento) {
+        CircuitoApi.Permiso permiso = circuito.permitir();
+        if (permiso == CircuitoApi.Permiso.DENEGADO) {
+            return CompletableFuture.failedFuture(circuitoAbierto());
+        }
+        CompletableFuture<HttpResponse<T>> respuesta;
+        try {
+            respuesta = client.sendAsync(crearRequest(url), manejador);
+        } catch (RuntimeException e) {
+            if (permiso == CircuitoApi.Permiso.PRUEBA) {
+                circuito.fallo(permiso);
+            }
+            return CompletableFuture.failedFuture(e);
+        }
+        return respuesta.handle((response, excepcion) -> {
+            ErrorConsultaApi error;
+            long esperaIndicada = 0;
+            if (excepcion == null) {
+                if (response.statusCode() / 100 == 2) {
+                    circuito.exito(permiso);
+                    return CompletableFuture.completedFuture(response.body());
+                }
+                descartar(response.body());
+                error = errorDeRespuesta(response);
+                esperaIndicada = esperaIndicada(response);
+            } else if (causa(excepcion) instanceof IOException e) {
+                error = errorDeRed(e);
+            } else {
+                if (permiso == CircuitoApi.Permiso.PRUEBA) {
+                    circuito.fallo(permiso);
+                }
+                return CompletableFuture.<T>failedFuture(causa(excepcion));
+            }
+            long espera;
+            try {
+                espera = resolverFallo(error, permiso, intento, esperaIndicada);
+            } catch (ErrorConsultaApi definitivo) {
+                return CompletableFuture.<T>failedFuture(definitivo);
+            }
+            Executor demorado = CompletableFuture.delayedExecutor(espera, TimeUnit.MILLISECONDS, ejecutorCliente);
+            return CompletableFuture.supplyAsync(() -> enviarAsync(url, manejador, intento + 1), demorado)
+                    .thenCompose(Function.identity());
+        }).thenCompose(Function.identity());
+    }
+
+    //Decide qué hacer con un intento fallido: lanza el error si no corresponde reintentar (y lo informa
+    //al circuito) o devuelve cuánto esperar antes del siguiente intento
+    private long resolverFallo(ErrorConsultaApi error, CircuitoApi.Permiso permiso, int intento, long esperaIndicada) {
+        if (!error.esReintentable()) {
+            //Un 4xx indica que el servidor responde: no cuenta como fallo del circuito
+            circuito.exito(permiso);
+            throw error;
+        }
+        sobrecargas.increment();
+        //Para el circuito solo cuentan las consultas que fallan después de agotar los reintentos.
+        //La consulta de prueba del circuito semiabierto no se reintenta: si falla, vuelve a abrirse
+        if (intento >= reintentos || permiso == CircuitoApi.Permiso.PRUEBA) {
+            circuito.fallo(permiso);
+            throw error;
+        }
+        return espera(intento, esperaIndicada);
+    }
+
+    private static ErrorConsultaApi circuitoAbierto() {
+        return new ErrorConsultaApi("Gutendex no está disponible; se reintentará más tarde", 503);
+    }
+
+    private static ErrorConsultaApi errorDeRespuesta(HttpResponse<?> response) {
+        return new ErrorConsultaApi("Gutendex respondió " + response.statusCode(), response.statusCode());
+    }
+
+    //Incluye tiempo de respuesta agotado y conexiones cortadas
+    private static ErrorConsultaApi errorDeRed(IOException e) {
+        return new ErrorConsultaApi("No se pudo consultar Gutendex: " + e, e);
+    }
+
+    private static Throwable causa(Throwable excepcion) {
+        return excepcion instanceof CompletionException && excepcion.getCause() != null ? excepcion.getCause() : excepcion;
+    }
+
+    private static void dormir(long milisegundos) {
         try {
-            response = client
-                    .send(request, HttpResponse.BodyHandlers.ofString());
-        } catch (IOException e) {
-            throw new RuntimeException(e);
+            Thread.sleep(milisegundos);
         } catch (InterruptedException e) {
-            throw new RuntimeException(e);
+            Thread.currentThread().interrupt();
+            throw new ErrorConsultaApi("Consulta a Gutendex interrumpida", e);
+        }
+    }
+
+    //Espera exponencial con variación aleatoria completa, para que los clientes no reintenten a la vez.
+    //Si el servidor envió Retry-After se espera al menos eso
+    private long espera(int intento, long esperaIndicada) {
+        long tope = Math.min(esperaMaximaMillis, esperaReintentoMillis << Math.min(intento, 20));
+        long aleatoria = ThreadLocalRandom.current().nextLong(tope / 2, tope + 1);
+        return Math.min(esperaMaximaMillis, Math.max(aleatoria, esperaIndicada));
+    }
+
+    //Retry-After puede venir en segundos o como fecha HTTP
+    private static long esperaIndicada(HttpResponse<?> response) {
+        Optional<String> valor = response.headers().firstValue("Retry-After");
+        if (valor.isEmpty()) {
+            return 0;
         }
+        try {
+            return Duration.ofSeconds(Long.parseLong(valor.get().trim())).toMillis();
+        } catch (NumberFormatException e) {
+            try {
+                ZonedDateTime fecha = ZonedDateTime.parse(valor.get().trim(), DateTimeFormatter.RFC_1123_DATE_TIME);
+                return Math.max(0, Duration.between(ZonedDateTime.now(fecha.getZone()), fecha).toMillis());
+            } catch (DateTimeParseException ignorada) {
+                return 0;
+            }
+        }
+    }
+
+    //Los cuerpos en flujo de respuestas con error se cierran para liberar la conexión
+    private static void descartar(Object cuerpo) {
+        if (cuerpo instanceof Closeable cerrable) {
+            try {
+                cerrable.close();
+            } catch (IOException ignorada) {
+                //La conexión se descarta de todos modos
+            }
+        }
+    }
 
-        String json = response.body();
-        return json;
+    private HttpRequest crearRequest(String url) {
+        return HttpRequest.newBuilder()
+                .uri(URI.create(url))
+                .timeout(tiempoMaximoRespuesta)
+                .build();
     }
 }
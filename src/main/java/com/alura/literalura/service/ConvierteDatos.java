@@ -1,17 +1,126 @@
 package com.alura.literalura.service;
 
+import com.alura.literalura.metricas.Metricas;
+import com.alura.literalura.model.Datos;
+import com.alura.literalura.model.DatosAutor;
+import com.alura.literalura.model.DatosLibros;
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Timer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
 
 public class ConvierteDatos implements IConvierteDatos{
+    private static final Timer CONVERSION = Metricas.temporizador("conversion.obtenerDatos");
+    private static final Timer CONVERSION_FLUJO = Metricas.temporizador("conversion.obtenerLibros");
+
     private ObjectMapper objectMapper = new ObjectMapper();
 
     @Override
     public <T> T obtenerDatos(String json, Class<T> clase) {
+        Metricas.Medicion medicion = Metricas.iniciar(CONVERSION);
         try {
             return objectMapper.readValue(json, clase);
         } catch (JsonProcessingException e) {
             throw new RuntimeException(e);
+        } finally {
+            medicion.terminar();
+        }
+    }
+
+    //Incluye el tiempo del consumidor (por ejemplo, acumular los libros para guardarlos)
+    @Override
+    public Datos obtenerLibros(InputStream json, Consumer<DatosLibros> consumidor) {
+        return Metricas.medir(CONVERSION_FLUJO, () -> leerRespuesta(json, consumidor));
+    }
+
+    private Datos leerRespuesta(InputStream json, Consumer<DatosLibros> consumidor) {
+        Integer total = null;
+        String siguiente = null;
+        try (JsonParser parser = objectMapper.getFactory().createParser(json)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IllegalStateException("La respuesta no es un objeto JSON");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String campo = parser.currentName();
+                JsonToken valor = parser.nextToken();
+                switch (campo) {
+                    case "count" -> total = valor == JsonToken.VALUE_NULL ? null : parser.getIntValue();
+                    case "next" -> siguiente = parser.getValueAsString();
+                    case "results" -> leerLibros(parser, consumidor);
+                    default -> parser.skipChildren();
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        return new Datos(total, siguiente, List.of());
+    }
+
+    private void leerLibros(JsonParser parser, Consumer<DatosLibros> consumidor) throws IOException {
+        if (parser.currentToken() != JsonToken.START_ARRAY) {
+            parser.skipChildren();
+            return;
+        }
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+            consumidor.accept(leerLibro(parser));
+        }
+    }
+
+    //Solo se materializan los campos que usa DatosLibros; resúmenes, formatos y temas se saltan
+    private DatosLibros leerLibro(JsonParser parser) throws IOException {
+        String titulo = null;
+        List<DatosAutor> autores = new ArrayList<>();
+        List<String> idiomas = new ArrayList<>();
+        Double numeroDeDescargas = null;
+        Integer gutendexId = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String campo = parser.currentName();
+            JsonToken valor = parser.nextToken();
+            switch (campo) {
+                case "id" -> gutendexId = valor == JsonToken.VALUE_NULL ? null : parser.getValueAsInt();
+                case "title" -> titulo = parser.getValueAsString();
+                case "authors" -> {
+                    if (valor == JsonToken.START_ARRAY) {
+                        while (parser.nextToken() == JsonToken.START_OBJECT) {
+                            autores.add(leerAutor(parser));
+                        }
+                    }
+                }
+                case "languages" -> {
+                    if (valor == JsonToken.START_ARRAY) {
+                        while (parser.nextToken() != JsonToken.END_ARRAY) {
+                            idiomas.add(parser.getValueAsString());
+                        }
+                    }
+                }
+                case "download_count" -> numeroDeDescargas = valor == JsonToken.VALUE_NULL ? null : parser.getDoubleValue();
+                default -> parser.skipChildren();
+            }
+        }
+        return new DatosLibros(titulo, autores, idiomas, numeroDeDescargas, gutendexId);
+    }
+
+    private DatosAutor leerAutor(JsonParser parser) throws IOException {
+        String nombre = null;
+        Integer fechaNacimiento = null;
+        Integer fechaFallecimiento = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String campo = parser.currentName();
+            JsonToken valor = parser.nextToken();
+            switch (campo) {
+                case "name" -> nombre = parser.getValueAsString();
+                case "birth_year" -> fechaNacimiento = valor == JsonToken.VALUE_NULL ? null : parser.getValueAsInt();
+                case "death_year" -> fechaFallecimiento = valor == JsonToken.VALUE_NULL ? null : parser.getValueAsInt();
+                default -> parser.skipChildren();
+            }
         }
+        return new DatosAutor(nombre, fechaNacimiento, fechaFallecimiento);
     }
 }
@@ -0,0 +1,15 @@
+package com.alura.literalura.service;
+
+import com.alura.literalura.dto.LibroDTO;
+
+import java.util.List;
+import java.util.Map;
+
+//Libros cuyo número de descargas cambió, con los ids de sus autores para actualizar los totales por autor.
+//Se publica dentro de la transacción que lo guarda
+public record DescargasActualizadasEvento(List<LibroDTO> libros, Map<Long, List<Long>> autoresPorLibro) {
+
+    List<Long> autoresDe(Long libroId) {
+        return autoresPorLibro.getOrDefault(libroId, List.of());
+    }
+}
@@ -0,0 +1,26 @@
+package com.alura.literalura.service;
+
+//Gutendex respondió con error, no respondió a tiempo o el circuito está abierto.
+//'estado' es el código HTTP, o 0 cuando no hubo respuesta
+public class ErrorConsultaApi extends RuntimeException {
+    private final int estado;
+
+    public ErrorConsultaApi(String mensaje, int estado) {
+        super(mensaje);
+        this.estado = estado;
+    }
+
+    public ErrorConsultaApi(String mensaje, Throwable causa) {
+        super(mensaje, causa);
+        this.estado = 0;
+    }
+
+    public int getEstado() {
+        return estado;
+    }
+
+    //429 y 5xx son transitorios; los errores de red también
+    public boolean esReintentable() {
+        return estado == 0 || estado == 429 || estado >= 500;
+    }
+}
@@ -0,0 +1,69 @@
+package com.alura.literalura.service;
+
+import com.alura.literalura.dto.EstadisticasApiDTO;
+import com.alura.literalura.dto.EstadisticasCacheDTO;
+import com.alura.literalura.dto.EstadisticasDTO;
+import com.alura.literalura.repository.AutorRepository;
+import com.alura.literalura.repository.LibroRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+
+import java.util.Optional;
+
+//Las estadísticas se calculan en la base de datos: la aplicación solo recibe unas pocas filas
+@Service
+public class EstadisticasService {
+    private final LibroRepository libroRepository;
+    private final AutorRepository autorRepository;
+    private final EntityManagerFactory entityManagerFactory;
+    private final ConsumoAPI consumoAPI;
+    private final CacheRespuestas cacheRespuestas;
+    private final int gruposMaximos;
+
+    public EstadisticasService(LibroRepository libroRepository, AutorRepository autorRepository,
+                               EntityManagerFactory entityManagerFactory, ConsumoAPI consumoAPI,
+                               CacheRespuestas cacheRespuestas,
+                               @Value("${literalura.estadisticas.grupos}") int gruposMaximos) {
+        this.libroRepository = libroRepository;
+        this.autorRepository = autorRepository;
+        this.entityManagerFactory = entityManagerFactory;
+        this.consumoAPI = consumoAPI;
+        this.cacheRespuestas = cacheRespuestas;
+        this.gruposMaximos = Math.max(1, gruposMaximos);
+    }
+
+    public EstadisticasDTO obtenerEstadisticas() {
+        return new EstadisticasDTO(
+                libroRepository.resumirDescargas(),
+                libroRepository.resumirDescargasPorIdioma(Limit.of(gruposMaximos)),
+                autorRepository.resumirDescargasPorAutor(Limit.of(gruposMaximos))
+        );
+    }
+
+    //Contadores acumulados desde el arranque. Vacío si no se habilitaron con hibernate.generate_statistics,
+    //que solo está en el perfil de las pruebas
+    public Optional<EstadisticasCacheDTO> obtenerEstadisticasCache() {
+        Statistics estadisticas = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        if (!estadisticas.isStatisticsEnabled()) {
+            return Optional.empty();
+        }
+        return Optional.of(new EstadisticasCacheDTO(
+                estadisticas.getSecondLevelCacheHitCount(),
+                estadisticas.getSecondLevelCacheMissCount(),
+                estadisticas.getSecondLevelCachePutCount(),
+                estadisticas.getQueryCacheHitCount(),
+                estadisticas.getQueryCacheMissCount(),
+                estadisticas.getQueryCachePutCount(),
+                estadisticas.getPrepareStatementCount()
+        ));
+    }
+
+    public EstadisticasApiDTO obtenerEstadisticasApi() {
+        return new EstadisticasApiDTO(consumoAPI.getEstadoCircuito(), consumoAPI.getSobrecargas(),
+                cacheRespuestas.estadisticas().vencidasServidas());
+    }
+}
@@ -1,6 +1,16 @@
 package com.alura.literalura.service;
 
+import com.alura.literalura.model.Datos;
+import com.alura.literalura.model.DatosLibros;
+
+import java.io.InputStream;
+import java.util.function.Consumer;
+
 public interface IConvierteDatos {
 
     <T> T obtenerDatos(String json, Class<T> clase);
+
+    //Lee una página de resultados sin cargarla entera: cada libro se entrega al consumidor
+    //y la página devuelta solo trae 'count' y 'next'
+    Datos obtenerLibros(InputStream json, Consumer<DatosLibros> consumidor);
 }
@@ -0,0 +1,210 @@
+package com.alura.literalura.service;
+
+import com.alura.literalura.model.Datos;
+import com.alura.literalura.model.DatosLibros;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+//Recorre todo el catálogo de Gutendex siguiendo la paginación y registra cada libro
+@Service
+public class ImportadorCatalogo {
+    private static final Pattern PARAMETRO_PAGINA = Pattern.compile("([?&]page=)\\d+");
+
+    private final LibroService libroService;
+    private final ConsumoAPI consumoAPI;
+    private final ConvierteDatos conversor = new ConvierteDatos();
+    private final String urlBase;
+    private final int paginasSimultaneas;
+    private final int paginasSimultaneasMaximo;
+    private final int tamanoLote;
+
+    public ImportadorCatalogo(LibroService libroService,
+                              ConsumoAPI consumoAPI,
+                              @Value("${literalura.api.url}") String urlBase,
+                              @Value("${literalura.importacion.paginas-simultaneas}") int paginasSimultaneas,
+                              @Value("${literalura.importacion.paginas-simultaneas-maximo}") int paginasSimultaneasMaximo,
+                              @Value("${literalura.importacion.lote}") int tamanoLote) {
+        this.libroService = libroService;
+        this.consumoAPI = consumoAPI;
+        this.urlBase = urlBase;
+        this.paginasSimultaneas = Math.max(1, paginasSimultaneas);
+        this.paginasSimultaneasMaximo = Math.max(this.paginasSimultaneas, paginasSimultaneasMaximo);
+        this.tamanoLote = Math.max(1, tamanoLote);
+    }
+
+    public void importarCatalogo() {
+        long inicio = System.nanoTime();
+        long sobrecargasIniciales = consumoAPI.getSobrecargas();
+        Datos primeraPagina = obtenerPagina(urlBase);
+        int paginas = 1;
+        int fallidas = 0;
+        List<DatosLibros> pendientes = new ArrayList<>(tamanoLote);
+        Conteo libros = new Conteo();
+        registrar(primeraPagina, pendientes, libros);
+
+        int librosPorPagina = primeraPagina.resultados() == null ? 0 : primeraPagina.resultados().size();
+        if (primeraPagina.siguiente() != null && primeraPagina.total() != null && librosPorPagina > 0) {
+            int totalPaginas = (primeraPagina.total() + librosPorPagina - 1) / librosPorPagina;
+            System.out.printf("Importando %d libros en %d páginas (%d simultáneas, hasta %d)%n",
+                    primeraPagina.total(), totalPaginas, paginasSimultaneas, paginasSimultaneasMaximo);
+
+            CompletionService<Datos> descargas = new ExecutorCompletionService<>(consumoAPI.getEjecutor());
+            List<Future<Datos>> enviadas = new ArrayList<>();
+            try {
+                //Las descargas en vuelo se limitan según cómo responde Gutendex: el límite crece mientras
+                //todo va bien y se reduce a la mitad ante respuestas 429/5xx o errores de red.
+                //El registro ocurre en este hilo
+                LimiteConcurrencia limite = new LimiteConcurrencia(paginasSimultaneas, paginasSimultaneasMaximo);
+                long sobrecargasVistas = consumoAPI.getSobrecargas();
+                int siguientePagina = 2;
+                int enVuelo = 0;
+                while (siguientePagina <= totalPaginas || enVuelo > 0) {
+                    while (enVuelo < limite.actual() && siguientePagina <= totalPaginas) {
+                        String url = urlPagina(primeraPagina.siguiente(), siguientePagina++);
+                        enviadas.add(descargas.submit(() -> obtenerPagina(url)));
+                        enVuelo++;
+                    }
+                    Future<Datos> completada = descargas.take();
+                    enviadas.remove(completada);
+                    enVuelo--;
+                    long sobrecargas = consumoAPI.getSobrecargas();
+                    if (sobrecargas > sobrecargasVistas) {
+                        limite.sobrecarga();
+                        sobrecargasVistas = sobrecargas;
+                    } else {
+                        limite.exito();
+                    }
+                    try {
+                        registrar(completada.get(), pendientes, libros);
+                        paginas++;
+                    } catch (ExecutionException e) {
+                        fallidas++;
+                        System.out.println("No se pudo descargar una página: " + e.getCause().getMessage());
+                    }
+                }
+            } catch (InterruptedException e) {
+                //Las descargas pendientes usan el ejecutor compartido de ConsumoAPI: se cancelan para que
+                //no sigan consultando Gutendex después de informar la interrupción
+                enviadas.forEach(descarga -> descarga.cancel(true));
+                Thread.currentThread().interrupt();
+                System.out.println("Importación interrumpida");
+            }
+        }
+
+        guardarLote(pendientes, libros);
+
+        double segundos = Math.max((System.nanoTime() - inicio) / 1_000_000_000.0, 0.001);
+        System.out.printf("""
+                ────────────────────────────────────────────────
+                Importación finalizada en %.1f s
+                Páginas: %d (fallidas: %d) - %.2f páginas/s
+                Libros: %d - %.2f libros/s (lotes de %d)
+                Nuevos: %d (ya registrados: %d)
+                Errores transitorios de Gutendex: %d
+                ────────────────────────────────────────────────
+                """, segundos, paginas, fallidas, paginas / segundos, libros.procesados, libros.procesados / segundos,
+                tamanoLote, libros.nuevos, libros.procesados - libros.nuevos,
+                consumoAPI.getSobrecargas() - sobrecargasIniciales);
+    }
+
+    //Importa el catálogo de Project Gutenberg desde un archivo local (pg_catalog.csv), sin usar la red.
+    //Los libros se guardan por lotes igual que en la importación desde Gutendex
+    public void importarArchivo(Path archivo) {
+        long inicio = System.nanoTime();
+        List<DatosLibros> pendientes = new ArrayList<>(tamanoLote);
+        Conteo libros = new Conteo();
+        LectorCatalogoGutenberg.Resultado resultado;
+        try (Reader entrada = Files.newBufferedReader(archivo, StandardCharsets.UTF_8)) {
+            resultado = new LectorCatalogoGutenberg(entrada).leer(datosLibros -> {
+                pendientes.add(datosLibros);
+                if (pendientes.size() >= tamanoLote) {
+                    guardarLote(pendientes, libros);
+                }
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        guardarLote(pendientes, libros);
+
+        double segundos = Math.max((System.nanoTime() - inicio) / 1_000_000_000.0, 0.001);
+        System.out.printf("""
+                ────────────────────────────────────────────────
+                Catálogo local importado en %.1f s: %s
+                Registros: %d - %.0f registros/s
+                Libros nuevos: %d (ya registrados: %d, descartados: %d, no son texto o no tienen título)
+                ────────────────────────────────────────────────
+                """, segundos, archivo, resultado.registros(), resultado.registros() / segundos,
+                libros.nuevos, libros.procesados - libros.nuevos, resultado.descartados());
+    }
+
+    private Datos obtenerPagina(String url) {
+        List<DatosLibros> libros = new ArrayList<>();
+        try (InputStream json = consumoAPI.obtenerFlujo(url)) {
+            Datos pagina = conversor.obtenerLibros(json, libros::add);
+            return new Datos(pagina.total(), pagina.siguiente(), libros);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    //Libros leídos y libros realmente insertados (los que ya estaban registrados no cuentan como nuevos)
+    private static final class Conteo {
+        private long procesados;
+        private long nuevos;
+    }
+
+    //Acumula los libros de la página y guarda cada vez que se completa un lote
+    private void registrar(Datos pagina, List<DatosLibros> pendientes, Conteo libros) {
+        if (pagina.resultados() == null) {
+            return;
+        }
+        for (DatosLibros datosLibros : pagina.resultados()) {
+            if (datosLibros.titulo() != null) {
+                pendientes.add(datosLibros);
+            }
+            if (pendientes.size() >= tamanoLote) {
+                guardarLote(pendientes, libros);
+            }
+        }
+    }
+
+    private void guardarLote(List<DatosLibros> pendientes, Conteo libros) {
+        if (pendientes.isEmpty()) {
+            return;
+        }
+        int nuevos;
+        try {
+            nuevos = libroService.registrarLote(pendientes);
+        } catch (DataIntegrityViolationException e) {
+            //Un registro simultáneo (menú o API) guardó alguno de los títulos o autores: se repite el
+            //lote, que ahora los encuentra ya registrados
+            nuevos = libroService.registrarLote(pendientes);
+        }
+        libros.procesados += pendientes.size();
+        libros.nuevos += nuevos;
+        pendientes.clear();
+    }
+
+    //Gutendex numera las páginas con el parámetro 'page' de la url 'next'
+    static String urlPagina(String urlSiguiente, int pagina) {
+        Matcher matcher = PARAMETRO_PAGINA.matcher(urlSiguiente);
+        if (!matcher.find()) {
+            throw new IllegalArgumentException("La url no tiene parámetro de página: " + urlSiguiente);
+        }
+        return matcher.replaceFirst(Matcher.quoteReplacement(matcher.group(1) + pagina));
+    }
+}
@@ -0,0 +1,352 @@
+package com.alura.literalura.service;
+
+import com.alura.literalura.dto.AutorDTO;
+import com.alura.literalura.dto.AutorDescargasDTO;
+import com.alura.literalura.dto.LibroDTO;
+import com.alura.literalura.model.Autor;
+import com.alura.literalura.model.Libro;
+import com.alura.literalura.repository.AutorRepository;
+import com.alura.literalura.repository.LibroRepository;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.text.Normalizer;
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.ToDoubleFunction;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+//Índice invertido en memoria sobre títulos y nombres de autores para la búsqueda local.
+//Los términos se pliegan (sin acentos, minúsculas) y se buscan de forma exacta, por prefijo y aproximada
+@Service
+@ConditionalOnProperty(name = "literalura.busqueda.indice.habilitado", havingValue = "true")
+public class IndiceBusqueda {
+    private static final Pattern MARCAS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARADORES = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private static final byte CAMPO_TITULO = 1;
+    private static final byte CAMPO_AUTOR = 2;
+    //Peso por combinación de campos (índice = máscara de bits): un término del título vale más que uno del autor
+    private static final double[] PESO_LIBROS = {0, 1.0, 0.7, 1.0};
+    private static final double[] PESO_AUTORES = {0, 1.0, 1.0, 1.0};
+
+    private static final double PESO_EXACTO = 1.0;
+    private static final double PESO_PREFIJO = 0.6;
+    private static final double PESO_APROXIMADO = 0.4;
+    private static final double PESO_DESCARGAS = 0.15;
+
+    private final LibroRepository libroRepository;
+    private final AutorRepository autorRepository;
+    private final ListadoService listadoService;
+    private final ReadWriteLock candado = new ReentrantReadWriteLock();
+
+    private Invertido terminosLibros = new Invertido();
+    private Invertido terminosAutores = new Invertido();
+    private Map<Long, LibroDTO> libros = new HashMap<>();
+    private Map<Long, AutorDTO> autores = new HashMap<>();
+    private Map<Long, Double> descargasPorAutor = new HashMap<>();
+
+    public IndiceBusqueda(LibroRepository libroRepository, AutorRepository autorRepository,
+                          ListadoService listadoService) {
+        this.libroRepository = libroRepository;
+        this.autorRepository = autorRepository;
+        this.listadoService = listadoService;
+    }
+
+    @EventListener(ContextRefreshedEvent.class)
+    @Transactional(readOnly = true)
+    public void reconstruir() {
+        long inicio = System.nanoTime();
+        candado.writeLock().lock();
+        try {
+            terminosLibros = new Invertido();
+            terminosAutores = new Invertido();
+            libros = new HashMap<>();
+            autores = new HashMap<>();
+            descargasPorAutor = new HashMap<>();
+            try (Stream<LibroDTO> todos = libroRepository.streamLibrosDTO()) {
+                todos.forEach(this::agregarLibro);
+            }
+            try (Stream<AutorDTO> todos = autorRepository.streamAutoresDTO()) {
+                todos.forEach(this::agregarAutor);
+            }
+            try (Stream<AutorDescargasDTO> descargas = autorRepository.streamDescargasPorAutor()) {
+                descargas.forEach(autor -> descargasPorAutor.put(autor.autorId(), valor(autor.descargas())));
+            }
+        } finally {
+            candado.writeLock().unlock();
+        }
+        System.out.printf("Índice de búsqueda: %d libros, %d autores, %d términos en %d ms%n",
+                libros.size(), autores.size(), terminosLibros.terminos.size() + terminosAutores.terminos.size(),
+                (System.nanoTime() - inicio) / 1_000_000);
+    }
+
+    @TransactionalEventListener
+    public void alRegistrarLibros(LibrosRegistradosEvento evento) {
+        candado.writeLock().lock();
+        try {
+            for (Libro libro : evento.libros()) {
+                agregarLibro(listadoService.convertirALibroDTO(libro));
+                for (Autor autor : libro.getAutores()) {
+                    agregarAutor(new AutorDTO(autor.getId(), autor.getNombre(),
+                            autor.getFechaNacimiento(), autor.getFechaFallecimiento()));
+                    descargasPorAutor.merge(autor.getId(), valor(libro.getNumeroDeDescargas()), Double::sum);
+                }
+            }
+        } finally {
+            candado.writeLock().unlock();
+        }
+    }
+
+    //Solo cambia el peso por descargas del libro y el total de sus autores; los términos siguen siendo los mismos
+    @TransactionalEventListener
+    public void alActualizarDescargas(DescargasActualizadasEvento evento) {
+        candado.writeLock().lock();
+        try {
+            for (LibroDTO libro : evento.libros()) {
+                LibroDTO anterior = libros.replace(libro.id(), libro);
+                if (anterior == null) {
+                    continue;
+                }
+                double diferencia = valor(libro.numeroDeDescargas()) - valor(anterior.numeroDeDescargas());
+                if (diferencia != 0) {
+                    evento.autoresDe(libro.id()).forEach(autorId -> descargasPorAutor.merge(autorId, diferencia, Double::sum));
+                }
+            }
+        } finally {
+            candado.writeLock().unlock();
+        }
+    }
+
+    //Ordena por relevancia y, en segundo término, por descargas (escala logarítmica)
+    public List<LibroDTO> buscarLibros(String texto, int limite) {
+        List<String> consulta = tokenizar(texto);
+        if (consulta.isEmpty()) {
+            return List.of();
+        }
+        candado.readLock().lock();
+        try {
+            return ordenar(terminosLibros.puntuar(consulta, PESO_LIBROS),
+                    id -> valor(libros.get(id).numeroDeDescargas()), limite)
+                    .stream()
+                    .map(libros::get)
+                    .collect(Collectors.toList());
+        } finally {
+            candado.readLock().unlock();
+        }
+    }
+
+    //Devuelve autores sin títulos; se completan con ListadoService.conLibros
+    public List<AutorDTO> buscarAutores(String texto, int limite) {
+        List<String> consulta = tokenizar(texto);
+        if (consulta.isEmpty()) {
+            return List.of();
+        }
+        candado.readLock().lock();
+        try {
+            return ordenar(terminosAutores.puntuar(consulta, PESO_AUTORES),
+                    id -> descargasPorAutor.getOrDefault(id, 0.0), limite)
+                    .stream()
+                    .map(autores::get)
+                    .collect(Collectors.toList());
+        } finally {
+            candado.readLock().unlock();
+        }
+    }
+
+    //"Los Miserábles" -> [los, miserables]; œ, æ y ß se expanden para el francés y el alemán
+    static List<String> tokenizar(String texto) {
+        if (texto == null) {
+            return List.of();
+        }
+        String plegado = MARCAS.matcher(Normalizer.normalize(texto, Normalizer.Form.NFD)).replaceAll("")
+                .toLowerCase(Locale.ROOT)
+                .replace("œ", "oe")
+                .replace("æ", "ae")
+                .replace("ß", "ss");
+        return Arrays.stream(SEPARADORES.split(plegado))
+                .filter(termino -> !termino.isEmpty())
+                .distinct()
+                .collect(Collectors.toList());
+    }
+
+    private void agregarLibro(LibroDTO libro) {
+        if (libros.putIfAbsent(libro.id(), libro) != null) {
+            return;
+        }
+        Map<String, Byte> campos = new HashMap<>();
+        tokenizar(libro.titulo()).forEach(termino -> campos.merge(termino, CAMPO_TITULO, (a, b) -> (byte) (a | b)));
+        tokenizar(libro.autores()).forEach(termino -> campos.merge(termino, CAMPO_AUTOR, (a, b) -> (byte) (a | b)));
+        terminosLibros.agregar(libro.id(), campos);
+    }
+
+    private void agregarAutor(AutorDTO autor) {
+        if (autores.putIfAbsent(autor.id(), autor) != null) {
+            return;
+        }
+        Map<String, Byte> campos = new HashMap<>();
+        tokenizar(autor.nombre()).forEach(termino -> campos.put(termino, CAMPO_TITULO));
+        terminosAutores.agregar(autor.id(), campos);
+    }
+
+    private static List<Long> ordenar(Map<Long, Double> puntajes, ToDoubleFunction<Long> descargas,
+                                      int limite) {
+        Comparator<Map.Entry<Long, Double>> orden =
+                Map.Entry.<Long, Double>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey());
+        //Solo se conservan los 'limite' mejores: una palabra frecuente puntúa miles de libros
+        PriorityQueue<Map.Entry<Long, Double>> primeros = new PriorityQueue<>(orden.reversed());
+        puntajes.forEach((id, puntaje) -> {
+            primeros.add(Map.entry(id, puntaje * (1 + PESO_DESCARGAS * Math.log10(1 + descargas.applyAsDouble(id)))));
+            if (primeros.size() > limite) {
+                primeros.poll();
+            }
+        });
+        return primeros.stream()
+                .sorted(orden)
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toList());
+    }
+
+    private static double valor(Double descargas) {
+        return descargas != null ? descargas : 0.0;
+    }
+
+    //Distancia de Levenshtein que abandona en cuanto toda la fila supera el máximo
+    static int distancia(String a, String b, int maximo) {
+        int[] previa = new int[b.length() + 1];
+        int[] actual = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previa[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            actual[0] = i;
+            int minimoFila = i;
+            for (int j = 1; j <= b.length(); j++) {
+                int costo = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                actual[j] = Math.min(Math.min(actual[j - 1] + 1, previa[j] + 1), previa[j - 1] + costo);
+                minimoFila = Math.min(minimoFila, actual[j]);
+            }
+            if (minimoFila > maximo) {
+                return maximo + 1;
+            }
+            int[] intercambio = previa;
+            previa = actual;
+            actual = intercambio;
+        }
+        return previa[b.length()];
+    }
+
+    private static final class Invertido {
+        private final TreeMap<String, Postings> terminos = new TreeMap<>();
+        //Términos agrupados por primera letra y longitud: la búsqueda aproximada solo revisa los grupos
+        //de longitud cercana, no todos los términos que empiezan con la misma letra
+        private final Map<Long, List<String>> porLetraYLongitud = new HashMap<>();
+        private int documentos;
+
+        private void agregar(long id, Map<String, Byte> campos) {
+            documentos++;
+            campos.forEach((termino, campo) -> terminos.computeIfAbsent(termino, nuevo -> {
+                porLetraYLongitud.computeIfAbsent(grupo(nuevo.charAt(0), nuevo.length()), g -> new ArrayList<>()).add(nuevo);
+                return new Postings();
+            }).agregar(id, campo));
+        }
+
+        private static long grupo(char primera, int longitud) {
+            return (long) primera << 32 | longitud;
+        }
+
+        //Todos los términos de la consulta deben coincidir; cada coincidencia suma peso * idf * peso del campo.
+        //Se empieza por el término con menos apariciones y los siguientes solo puntúan a los documentos que
+        //ya coinciden, así "de" o "la" no recorren el catálogo entero cuando otro término lo acota
+        private Map<Long, Double> puntuar(List<String> consulta, double[] pesoPorCampo) {
+            List<Map<String, Double>> expansiones = consulta.stream()
+                    .map(this::expandir)
+                    .sorted(Comparator.comparingLong(this::apariciones))
+                    .collect(Collectors.toList());
+            Map<Long, Double> acumulado = null;
+            for (Map<String, Double> candidatos : expansiones) {
+                Map<Long, Double> delTermino = new HashMap<>();
+                Map<Long, Double> anteriores = acumulado;
+                candidatos.forEach((candidato, peso) -> {
+                    Postings postings = terminos.get(candidato);
+                    double idf = Math.log(1 + (double) documentos / postings.tamano);
+                    for (int i = 0; i < postings.tamano; i++) {
+                        if (anteriores == null || anteriores.containsKey(postings.ids[i])) {
+                            delTermino.merge(postings.ids[i], peso * idf * pesoPorCampo[postings.campos[i]], Math::max);
+                        }
+                    }
+                });
+                if (acumulado == null) {
+                    acumulado = delTermino;
+                } else {
+                    acumulado.keySet().retainAll(delTermino.keySet());
+                    acumulado.replaceAll((id, puntaje) -> puntaje + delTermino.get(id));
+                }
+                if (acumulado.isEmpty()) {
+                    break;
+                }
+            }
+            return acumulado;
+        }
+
+        private long apariciones(Map<String, Double> candidatos) {
+            long total = 0;
+            for (String candidato : candidatos.keySet()) {
+                total += terminos.get(candidato).tamano;
+            }
+            return total;
+        }
+
+        //Términos del índice que corresponden a uno de la consulta, con el peso de cada tipo de coincidencia
+        private Map<String, Double> expandir(String termino) {
+            Map<String, Double> candidatos = new HashMap<>();
+            if (terminos.containsKey(termino)) {
+                candidatos.put(termino, PESO_EXACTO);
+            }
+            if (termino.length() >= 2) {
+                terminos.subMap(termino, false, termino + Character.MAX_VALUE, false).keySet()
+                        .forEach(prefijado -> candidatos.putIfAbsent(prefijado, PESO_PREFIJO));
+            }
+            //Errores de tipeo: 1 edición hasta 7 letras, 2 a partir de 8; se asume correcta la primera letra
+            if (termino.length() >= 4) {
+                int maximo = termino.length() >= 8 ? 2 : 1;
+                for (int longitud = termino.length() - maximo; longitud <= termino.length() + maximo; longitud++) {
+                    for (String candidato : porLetraYLongitud.getOrDefault(grupo(termino.charAt(0), longitud), List.of())) {
+                        if (candidatos.containsKey(candidato)) {
+                            continue;
+                        }
+                        int ediciones = distancia(termino, candidato, maximo);
+                        if (ediciones <= maximo) {
+                            candidatos.put(candidato, PESO_APROXIMADO / ediciones);
+                        }
+                    }
+                }
+            }
+            return candidatos;
+        }
+    }
+
+    //Lista de documentos de un término en arreglos primitivos para no crear un objeto por aparición
+    private static final class Postings {
+        private long[] ids = new long[2];
+        private byte[] campos = new byte[2];
+        private int tamano;
+
+        private void agregar(long id, byte campo) {
+            if (tamano == ids.length) {
+                ids = Arrays.copyOf(ids, tamano * 2);
+                campos = Arrays.copyOf(campos, tamano * 2);
+            }
+            ids[tamano] = id;
+            campos[tamano] = campo;
+            tamano++;
+        }
+    }
+}
@@ -0,0 +1,395 @@
+package com.alura.literalura.service;
+
+import com.alura.literalura.dto.LibroDTO;
+import com.alura.literalura.dto.LibroDescargasDTO;
+import com.alura.literalura.dto.LibroIdiomaDTO;
+import com.alura.literalura.dto.LibroVidaAutorDTO;
+import com.alura.literalura.model.Autor;
+import com.alura.literalura.model.Libro;
+import com.alura.literalura.repository.LibroRepository;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+//Filtros combinados (idioma, autores vivos en un año, mínimo de descargas) con mapas de bits en memoria.
+//Los ids de libros vienen de una secuencia y son casi consecutivos: se usan directamente como posición
+//en los mapas de bits y en los arreglos. Los siglos y los rangos de descargas se guardan acumulados
+//("nacidos hasta el siglo s", "con al menos 10^k descargas") para que cada filtro sea un solo AND;
+//los candidatos que quedan se comprueban con los valores exactos
+@Service
+@ConditionalOnProperty(name = "literalura.facetas.habilitado", havingValue = "true")
+public class IndiceFacetas {
+    //Siglos desde el -10 (1000 a.C.) hasta el 21; los años fuera del rango se asignan al extremo
+    private static final int SIGLO_MINIMO = -10;
+    private static final int SIGLO_MAXIMO = 21;
+    private static final int SIGLOS = SIGLO_MAXIMO - SIGLO_MINIMO + 1;
+    //Rangos de descargas: [0, 1), [1, 10), [10, 100) ... [10^6, ∞)
+    private static final int RANGOS_DESCARGAS = 8;
+
+    //Mismo criterio que AutorRepository: sin nacimiento nunca está vivo, sin fallecimiento sigue vivo
+    private static final int SIN_NACIMIENTO = Integer.MAX_VALUE;
+    private static final int SIN_FALLECIMIENTO = Integer.MAX_VALUE;
+
+    private final LibroRepository libroRepository;
+    private final ReadWriteLock candado = new ReentrantReadWriteLock();
+
+    private BitSet libros = new BitSet();
+    private Map<String, BitSet> porIdioma = new HashMap<>();
+    private BitSet[] nacidosHastaSiglo = nuevos(SIGLOS);
+    private BitSet[] vivosDesdeSiglo = nuevos(SIGLOS);
+    private BitSet[] descargasDesdeRango = nuevos(RANGOS_DESCARGAS);
+    //NaN cuando el libro no tiene dato de descargas
+    private double[] descargas = new double[0];
+    //Vida del primer autor; los demás autores del libro (pocos) van en otrasVidas como pares
+    private int[] nacimiento = new int[0];
+    private int[] fallecimiento = new int[0];
+    private Map<Integer, int[]> otrasVidas = new HashMap<>();
+
+    public IndiceFacetas(LibroRepository libroRepository) {
+        this.libroRepository = libroRepository;
+    }
+
+    //idioma, vivoEn y descargasMinimas pueden ser null (sin ese filtro)
+    public record Filtro(String idioma, Integer vivoEn, Double descargasMinimas) {
+    }
+
+    //Ids de los primeros 'limite' libros ordenados por descargas (los que no tienen dato al final) y el total
+    public record Resultado(long total, List<Long> ids) {
+    }
+
+    @EventListener(ContextRefreshedEvent.class)
+    @Transactional(readOnly = true)
+    public void reconstruir() {
+        long inicio = System.nanoTime();
+        candado.writeLock().lock();
+        try {
+            vaciar();
+            try (Stream<LibroDescargasDTO> todos = libroRepository.streamDescargas()) {
+                todos.forEach(libro -> agregarLibro(libro.id(), libro.numeroDeDescargas()));
+            }
+            try (Stream<LibroIdiomaDTO> idiomas = libroRepository.streamIdiomas()) {
+                idiomas.forEach(idioma -> agregarIdioma(idioma.libroId(), idioma.idioma()));
+            }
+            try (Stream<LibroVidaAutorDTO> vidas = libroRepository.streamVidasDeAutores()) {
+                vidas.forEach(vida -> agregarAutor(vida.libroId(), vida.fechaNacimiento(), vida.fechaFallecimiento()));
+            }
+        } finally {
+            candado.writeLock().unlock();
+        }
+        System.out.printf("Índice de facetas: %d libros, %d idiomas en %d ms, ~%.1f MB%n",
+                tamano(), porIdioma.size(), (System.nanoTime() - inicio) / 1_000_000,
+                memoriaEstimadaBytes() / (1024.0 * 1024.0));
+    }
+
+    @TransactionalEventListener
+    public void alRegistrarLibros(LibrosRegistradosEvento evento) {
+        candado.writeLock().lock();
+        try {
+            for (Libro libro : evento.libros()) {
+                if (libros.get(posicion(libro.getId()))) {
+                    continue;
+                }
+                agregarLibro(libro.getId(), libro.getNumeroDeDescargas());
+                libro.getIdiomas().forEach(idioma -> agregarIdioma(libro.getId(), idioma));
+                for (Autor autor : libro.getAutores()) {
+                    agregarAutor(libro.getId(), autor.getFechaNacimiento(), autor.getFechaFallecimiento());
+                }
+            }
+        } finally {
+            candado.writeLock().unlock();
+        }
+    }
+
+    @TransactionalEventListener
+    public void alActualizarDescargas(DescargasActualizadasEvento evento) {
+        candado.writeLock().lock();
+        try {
+            for (LibroDTO libro : evento.libros()) {
+                int posicion = posicion(libro.id());
+                if (libros.get(posicion)) {
+                    asignarDescargas(posicion, libro.numeroDeDescargas());
+                }
+            }
+        } finally {
+            candado.writeLock().unlock();
+        }
+    }
+
+    public Resultado filtrar(Filtro filtro, int limite) {
+        candado.readLock().lock();
+        try {
+            BitSet coincidencias = candidatos(filtro);
+            descartarInexactos(coincidencias, filtro);
+            int total = coincidencias.cardinality();
+            //Con pocos libros es más barato ordenarlos todos que separar los rangos de descargas
+            List<Long> ids = total <= coincidencias.size() / Long.SIZE
+                    ? ordenarTodos(coincidencias, Math.max(0, limite))
+                    : primeros(coincidencias, Math.max(0, limite));
+            return new Resultado(total, ids);
+        } finally {
+            candado.readLock().unlock();
+        }
+    }
+
+    public int tamano() {
+        candado.readLock().lock();
+        try {
+            return libros.cardinality();
+        } finally {
+            candado.readLock().unlock();
+        }
+    }
+
+    //Tamaño de los mapas de bits (una palabra de 64 bits por cada 64 ids) y de los arreglos por id
+    public long memoriaEstimadaBytes() {
+        candado.readLock().lock();
+        try {
+            long bytes = libros.size() / 8;
+            for (BitSet idioma : porIdioma.values()) {
+                bytes += idioma.size() / 8;
+            }
+            for (BitSet[] grupo : List.of(nacidosHastaSiglo, vivosDesdeSiglo, descargasDesdeRango)) {
+                for (BitSet bits : grupo) {
+                    bytes += bits.size() / 8;
+                }
+            }
+            bytes += descargas.length * 8L + nacimiento.length * 4L + fallecimiento.length * 4L;
+            bytes += otrasVidas.size() * (48L + 16 + 24);
+            return bytes;
+        } finally {
+            candado.readLock().unlock();
+        }
+    }
+
+    //AND de los mapas de bits de cada filtro; el resultado es un superconjunto de los libros buscados
+    private BitSet candidatos(Filtro filtro) {
+        BitSet candidatos;
+        if (filtro.idioma() != null) {
+            BitSet idioma = porIdioma.get(filtro.idioma());
+            if (idioma == null) {
+                return new BitSet();
+            }
+            candidatos = (BitSet) idioma.clone();
+        } else {
+            candidatos = (BitSet) libros.clone();
+        }
+        if (filtro.vivoEn() != null) {
+            int siglo = indiceSiglo(filtro.vivoEn());
+            candidatos.and(nacidosHastaSiglo[siglo]);
+            candidatos.and(vivosDesdeSiglo[siglo]);
+        }
+        if (filtro.descargasMinimas() != null) {
+            candidatos.and(descargasDesdeRango[rango(filtro.descargasMinimas())]);
+        }
+        return candidatos;
+    }
+
+    //Solo recorre los candidatos si algún filtro no coincide exactamente con los mapas de bits:
+    //un año (los mapas son por siglo) o un mínimo de descargas que no es potencia de 10
+    private void descartarInexactos(BitSet candidatos, Filtro filtro) {
+        Double minimo = filtro.descargasMinimas();
+        int rangoMinimo = minimo == null ? 0 : rango(minimo);
+        boolean revisarDescargas = minimo != null && (rangoMinimo == 0 || minimo != Math.pow(10, rangoMinimo - 1));
+        if (!revisarDescargas && filtro.vivoEn() == null) {
+            return;
+        }
+        for (int posicion = candidatos.nextSetBit(0); posicion >= 0; posicion = candidatos.nextSetBit(posicion + 1)) {
+            if (revisarDescargas && !(descargas[posicion] >= minimo)
+                    || filtro.vivoEn() != null && !vivoEn(posicion, filtro.vivoEn())) {
+                candidatos.clear(posicion);
+            }
+        }
+    }
+
+    //Recorre los rangos de descargas de mayor a menor y se detiene cuando ya tiene 'limite' libros:
+    //los de rangos inferiores tienen menos descargas
+    private List<Long> primeros(BitSet coincidencias, int limite) {
+        int[] primeros = new int[limite];
+        int cantidad = 0;
+        for (int rango = RANGOS_DESCARGAS - 1; rango >= 0 && cantidad < limite; rango--) {
+            BitSet delRango = (BitSet) coincidencias.clone();
+            delRango.and(descargasDesdeRango[rango]);
+            if (rango + 1 < RANGOS_DESCARGAS) {
+                delRango.andNot(descargasDesdeRango[rango + 1]);
+            }
+            cantidad = insertar(delRango, primeros, cantidad);
+        }
+        //Libros sin dato de descargas, por id
+        if (cantidad < limite) {
+            BitSet sinDescargas = (BitSet) coincidencias.clone();
+            sinDescargas.andNot(descargasDesdeRango[0]);
+            cantidad = insertar(sinDescargas, primeros, cantidad);
+        }
+        return ids(primeros, cantidad);
+    }
+
+    private List<Long> ordenarTodos(BitSet coincidencias, int limite) {
+        int[] primeros = new int[limite];
+        return ids(primeros, insertar(coincidencias, primeros, 0));
+    }
+
+    //Conserva en 'primeros' (ordenado, con 'cantidad' ocupados) los mejores libros vistos hasta ahora
+    private int insertar(BitSet libros, int[] primeros, int cantidad) {
+        int limite = primeros.length;
+        if (limite == 0) {
+            return 0;
+        }
+        for (int posicion = libros.nextSetBit(0); posicion >= 0; posicion = libros.nextSetBit(posicion + 1)) {
+            if (cantidad == limite && !antes(posicion, primeros[limite - 1])) {
+                continue;
+            }
+            int lugar = cantidad < limite ? cantidad++ : limite - 1;
+            while (lugar > 0 && antes(posicion, primeros[lugar - 1])) {
+                primeros[lugar] = primeros[lugar - 1];
+                lugar--;
+            }
+            primeros[lugar] = posicion;
+        }
+        return cantidad;
+    }
+
+    private static List<Long> ids(int[] posiciones, int cantidad) {
+        List<Long> ids = new ArrayList<>(cantidad);
+        for (int i = 0; i < cantidad; i++) {
+            ids.add((long) posiciones[i]);
+        }
+        return ids;
+    }
+
+    //Más descargas primero; sin dato al final; desempate por id como en RankingDescargas
+    private boolean antes(int posicion, int otra) {
+        double a = descargas[posicion];
+        double b = descargas[otra];
+        if (Double.isNaN(a) != Double.isNaN(b)) {
+            return !Double.isNaN(a);
+        }
+        if (a != b && !Double.isNaN(a)) {
+            return a > b;
+        }
+        return posicion < otra;
+    }
+
+    private boolean vivoEn(int posicion, int año) {
+        if (nacimiento[posicion] <= año && fallecimiento[posicion] > año) {
+            return true;
+        }
+        int[] otras = otrasVidas.get(posicion);
+        if (otras != null) {
+            for (int i = 0; i < otras.length; i += 2) {
+                if (otras[i] <= año && otras[i + 1] > año) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    void agregarLibro(long id, Double numeroDeDescargas) {
+        int posicion = posicion(id);
+        asegurarCapacidad(posicion);
+        libros.set(posicion);
+        nacimiento[posicion] = SIN_NACIMIENTO;
+        fallecimiento[posicion] = SIN_FALLECIMIENTO;
+        descargas[posicion] = Double.NaN;
+        asignarDescargas(posicion, numeroDeDescargas);
+    }
+
+    //Los idiomas y autores de un libro que no está en el índice (guardado mientras se reconstruía) se ignoran
+    void agregarIdioma(long id, String idioma) {
+        if (idioma != null && !idioma.isBlank() && libros.get(posicion(id))) {
+            porIdioma.computeIfAbsent(idioma.trim(), codigo -> new BitSet()).set(posicion(id));
+        }
+    }
+
+    void agregarAutor(long id, Integer fechaNacimiento, Integer fechaFallecimiento) {
+        int posicion = posicion(id);
+        if (fechaNacimiento == null || !libros.get(posicion)) {
+            return;
+        }
+        int fin = fechaFallecimiento == null ? SIN_FALLECIMIENTO : fechaFallecimiento;
+        if (nacimiento[posicion] == SIN_NACIMIENTO) {
+            nacimiento[posicion] = fechaNacimiento;
+            fallecimiento[posicion] = fin;
+        } else {
+            otrasVidas.merge(posicion, new int[]{fechaNacimiento, fin}, (anteriores, nueva) -> {
+                int[] todas = Arrays.copyOf(anteriores, anteriores.length + 2);
+                todas[anteriores.length] = nueva[0];
+                todas[anteriores.length + 1] = nueva[1];
+                return todas;
+            });
+        }
+        //Vivo en el año A solo si nació en el siglo de A o antes y murió en ese siglo o después
+        for (int siglo = indiceSiglo(fechaNacimiento); siglo < SIGLOS; siglo++) {
+            nacidosHastaSiglo[siglo].set(posicion);
+        }
+        int ultimo = fechaFallecimiento == null ? SIGLOS - 1 : indiceSiglo(fechaFallecimiento);
+        for (int siglo = 0; siglo <= ultimo; siglo++) {
+            vivosDesdeSiglo[siglo].set(posicion);
+        }
+    }
+
+    private void asignarDescargas(int posicion, Double numeroDeDescargas) {
+        descargas[posicion] = numeroDeDescargas == null ? Double.NaN : numeroDeDescargas;
+        int rango = numeroDeDescargas == null ? -1 : rango(numeroDeDescargas);
+        for (int i = 0; i < RANGOS_DESCARGAS; i++) {
+            descargasDesdeRango[i].set(posicion, i <= rango);
+        }
+    }
+
+    private void vaciar() {
+        libros = new BitSet();
+        porIdioma = new HashMap<>();
+        nacidosHastaSiglo = nuevos(SIGLOS);
+        vivosDesdeSiglo = nuevos(SIGLOS);
+        descargasDesdeRango = nuevos(RANGOS_DESCARGAS);
+        descargas = new double[0];
+        nacimiento = new int[0];
+        fallecimiento = new int[0];
+        otrasVidas = new HashMap<>();
+    }
+
+    private void asegurarCapacidad(int posicion) {
+        if (posicion < descargas.length) {
+            return;
+        }
+        int capacidad = Math.max(posicion + 1, descargas.length + (descargas.length >> 1));
+        descargas = Arrays.copyOf(descargas, capacidad);
+        nacimiento = Arrays.copyOf(nacimiento, capacidad);
+        fallecimiento = Arrays.copyOf(fallecimiento, capacidad);
+    }
+
+    private static int posicion(long id) {
+        if (id < 0 || id >= Integer.MAX_VALUE) {
+            throw new IllegalStateException("Id de libro fuera del rango del índice de facetas: " + id);
+        }
+        return (int) id;
+    }
+
+    private static int indiceSiglo(int año) {
+        int siglo = Math.floorDiv(año, 100);
+        return Math.min(SIGLO_MAXIMO, Math.max(SIGLO_MINIMO, siglo)) - SIGLO_MINIMO;
+    }
+
+    private static int rango(double descargas) {
+        if (descargas < 1) {
+            return 0;
+        }
+        return Math.min(RANGOS_DESCARGAS - 1, 1 + (int) Math.floor(Math.log10(descargas)));
+    }
+
+    private static BitSet[] nuevos(int cantidad) {
+        BitSet[] bits = new BitSet[cantidad];
+        for (int i = 0; i < cantidad; i++) {
+            bits[i] = new BitSet();
+        }
+        return bits;
+    }
+}
@@ -0,0 +1,278 @@
+package com.alura.literalura.service;
+
+import com.alura.literalura.dto.AutorDTO;
+import com.alura.literalura.dto.AutorTituloDTO;
+import com.alura.literalura.model.Autor;
+import com.alura.literalura.model.Libro;
+import com.alura.literalura.repository.AutorRepository;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+//Árbol de intervalos en memoria con la vida de cada autor [nacimiento, fallecimiento).
+//Responde "vivos en un año", "vivos en un rango" y "fallecidos hasta un año" sin consultar la base de datos
+@Service
+@ConditionalOnProperty(name = "literalura.indice-autores.habilitado", havingValue = "true")
+public class IndiceVidaAutores {
+    //Autores sin fecha de fallecimiento: siguen "vivos" como en las consultas del repositorio
+    private static final int SIN_FALLECIMIENTO = Integer.MAX_VALUE;
+
+    private final AutorRepository autorRepository;
+    private final ReadWriteLock candado = new ReentrantReadWriteLock();
+
+    private Nodo raiz;
+    private Map<Long, Entrada> porId = new HashMap<>();
+    private TreeMap<Integer, List<Entrada>> porFallecimiento = new TreeMap<>();
+    private long titulos;
+
+    public IndiceVidaAutores(AutorRepository autorRepository) {
+        this.autorRepository = autorRepository;
+    }
+
+    @EventListener(ContextRefreshedEvent.class)
+    @Transactional(readOnly = true)
+    public void reconstruir() {
+        long inicio = System.nanoTime();
+        candado.writeLock().lock();
+        try {
+            raiz = null;
+            porId = new HashMap<>();
+            porFallecimiento = new TreeMap<>();
+            titulos = 0;
+            try (Stream<AutorDTO> autores = autorRepository.streamAutoresConNacimiento()) {
+                autores.forEach(this::agregar);
+            }
+            try (Stream<AutorTituloDTO> libros = autorRepository.streamTitulosDeAutoresConNacimiento()) {
+                libros.forEach(libro -> agregarTitulo(porId.get(libro.autorId()), libro.titulo()));
+            }
+        } finally {
+            candado.writeLock().unlock();
+        }
+        System.out.printf("Índice de autores: %d autores en %d ms, ~%.1f MB%n",
+                tamano(), (System.nanoTime() - inicio) / 1_000_000, memoriaEstimadaBytes() / (1024.0 * 1024.0));
+    }
+
+    @TransactionalEventListener
+    public void alRegistrarLibros(LibrosRegistradosEvento evento) {
+        candado.writeLock().lock();
+        try {
+            for (Libro libro : evento.libros()) {
+                for (Autor autor : libro.getAutores()) {
+                    if (autor.getFechaNacimiento() == null) {
+                        continue;
+                    }
+                    Entrada entrada = porId.get(autor.getId());
+                    if (entrada == null) {
+                        entrada = agregar(new AutorDTO(autor.getId(), autor.getNombre(),
+                                autor.getFechaNacimiento(), autor.getFechaFallecimiento()));
+                    }
+                    agregarTitulo(entrada, libro.getTitulo());
+                }
+            }
+        } finally {
+            candado.writeLock().unlock();
+        }
+    }
+
+    public List<AutorDTO> vivosEnAño(int año) {
+        return vivosEntreAños(año, año);
+    }
+
+    //Mismo criterio que AutorRepository: nacimiento <= hasta y fallecimiento > desde
+    public List<AutorDTO> vivosEntreAños(int desde, int hasta) {
+        candado.readLock().lock();
+        try {
+            List<AutorDTO> resultado = new ArrayList<>();
+            buscarSolapados(raiz, desde, hasta, resultado);
+            return resultado;
+        } finally {
+            candado.readLock().unlock();
+        }
+    }
+
+    public List<AutorDTO> fallecidosHastaAño(int año) {
+        candado.readLock().lock();
+        try {
+            List<AutorDTO> resultado = new ArrayList<>();
+            porFallecimiento.headMap(año, true).values()
+                    .forEach(entradas -> entradas.forEach(entrada -> resultado.add(entrada.aDTO())));
+            return resultado;
+        } finally {
+            candado.readLock().unlock();
+        }
+    }
+
+    public int tamano() {
+        candado.readLock().lock();
+        try {
+            return porId.size();
+        } finally {
+            candado.readLock().unlock();
+        }
+    }
+
+    //Estimación con tamaños típicos de objetos en una JVM de 64 bits con oops comprimidos
+    public long memoriaEstimadaBytes() {
+        candado.readLock().lock();
+        try {
+            long bytes = 0;
+            for (Entrada entrada : porId.values()) {
+                bytes += 40                                   //Nodo del árbol
+                        + 24 + 32                             //Entrada y su AutorDTO
+                        + 48 + 32                             //HashMap por id (entrada + Long)
+                        + 56                                  //ArrayList de títulos
+                        + tamanoTexto(entrada.autor.nombre());
+            }
+            bytes += porFallecimiento.size() * (40L + 56);    //TreeMap por año de fallecimiento
+            bytes += titulos * 4;                             //Referencias a los títulos (compartidos con el contexto)
+            return bytes;
+        } finally {
+            candado.readLock().unlock();
+        }
+    }
+
+    private static long tamanoTexto(String texto) {
+        return texto == null ? 0 : 24 + 16 + texto.length();
+    }
+
+    private Entrada agregar(AutorDTO autor) {
+        Entrada entrada = new Entrada(autor);
+        porId.put(autor.id(), entrada);
+        raiz = insertar(raiz, new Nodo(entrada));
+        if (autor.fechaFallecimiento() != null) {
+            porFallecimiento.computeIfAbsent(autor.fechaFallecimiento(), año -> new ArrayList<>()).add(entrada);
+        }
+        return entrada;
+    }
+
+    private void agregarTitulo(Entrada entrada, String titulo) {
+        if (entrada != null && !entrada.libros.contains(titulo)) {
+            entrada.libros.add(titulo);
+            titulos++;
+        }
+    }
+
+    private void buscarSolapados(Nodo nodo, int desde, int hasta, List<AutorDTO> resultado) {
+        //Ningún intervalo del subárbol termina después de 'desde'
+        if (nodo == null || nodo.maxFin <= desde) {
+            return;
+        }
+        buscarSolapados(nodo.izquierdo, desde, hasta, resultado);
+        if (nodo.inicio > hasta) {
+            return;
+        }
+        if (nodo.fin > desde) {
+            resultado.add(nodo.entrada.aDTO());
+        }
+        buscarSolapados(nodo.derecho, desde, hasta, resultado);
+    }
+
+    //Inserción AVL ordenada por (nacimiento, id), manteniendo el máximo fin de cada subárbol
+    private Nodo insertar(Nodo nodo, Nodo nuevo) {
+        if (nodo == null) {
+            return nuevo;
+        }
+        if (nuevo.compareTo(nodo) < 0) {
+            nodo.izquierdo = insertar(nodo.izquierdo, nuevo);
+        } else {
+            nodo.derecho = insertar(nodo.derecho, nuevo);
+        }
+        return balancear(nodo);
+    }
+
+    private Nodo balancear(Nodo nodo) {
+        nodo.actualizar();
+        int balance = altura(nodo.izquierdo) - altura(nodo.derecho);
+        if (balance > 1) {
+            if (altura(nodo.izquierdo.izquierdo) < altura(nodo.izquierdo.derecho)) {
+                nodo.izquierdo = rotarIzquierda(nodo.izquierdo);
+            }
+            return rotarDerecha(nodo);
+        }
+        if (balance < -1) {
+            if (altura(nodo.derecho.derecho) < altura(nodo.derecho.izquierdo)) {
+                nodo.derecho = rotarDerecha(nodo.derecho);
+            }
+            return rotarIzquierda(nodo);
+        }
+        return nodo;
+    }
+
+    private Nodo rotarDerecha(Nodo nodo) {
+        Nodo izquierdo = nodo.izquierdo;
+        nodo.izquierdo = izquierdo.derecho;
+        izquierdo.derecho = nodo;
+        nodo.actualizar();
+        izquierdo.actualizar();
+        return izquierdo;
+    }
+
+    private Nodo rotarIzquierda(Nodo nodo) {
+        Nodo derecho = nodo.derecho;
+        nodo.derecho = derecho.izquierdo;
+        derecho.izquierdo = nodo;
+        nodo.actualizar();
+        derecho.actualizar();
+        return derecho;
+    }
+
+    private static int altura(Nodo nodo) {
+        return nodo == null ? 0 : nodo.altura;
+    }
+
+    private static final class Entrada {
+        private final AutorDTO autor;
+        private final List<String> libros = new ArrayList<>(1);
+
+        private Entrada(AutorDTO autor) {
+            this.autor = autor;
+        }
+
+        private AutorDTO aDTO() {
+            return new AutorDTO(autor.id(), autor.nombre(), autor.fechaNacimiento(), autor.fechaFallecimiento(),
+                    List.copyOf(libros));
+        }
+    }
+
+    private static final class Nodo implements Comparable<Nodo> {
+        private final int inicio;
+        private final int fin;
+        private final Entrada entrada;
+        private int maxFin;
+        private int altura = 1;
+        private Nodo izquierdo;
+        private Nodo derecho;
+
+        private Nodo(Entrada entrada) {
+            this.entrada = entrada;
+            this.inicio = entrada.autor.fechaNacimiento();
+            this.fin = entrada.autor.fechaFallecimiento() == null ? SIN_FALLECIMIENTO : entrada.autor.fechaFallecimiento();
+            this.maxFin = fin;
+        }
+
+        private void actualizar() {
+            altura = 1 + Math.max(IndiceVidaAutores.altura(izquierdo), IndiceVidaAutores.altura(derecho));
+            maxFin = fin;
+            if (izquierdo != null) {
+                maxFin = Math.max(maxFin, izquierdo.maxFin);
+            }
+            if (derecho != null) {
+                maxFin = Math.max(maxFin, derecho.maxFin);
+            }
+        }
+
+        @Override
+        public int compareTo(Nodo otro) {
+            int comparacion = Integer.compare(inicio, otro.inicio);
+            return comparacion != 0 ? comparacion : Long.compare(entrada.autor.id(), otro.entrada.autor.id());
+        }
+    }
+}
@@ -0,0 +1,251 @@
+package com.alura.literalura.service;
+
+import com.alura.literalura.service.ArchivoInstantanea.FilaAutor;
+import com.alura.literalura.service.ArchivoInstantanea.FilaIdioma;
+import com.alura.literalura.service.ArchivoInstantanea.FilaLibro;
+import com.alura.literalura.service.ArchivoInstantanea.FilaLibroAutor;
+import jakarta.persistence.EntityManagerFactory;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+//Exporta las tablas libros, autores, libro_idiomas y libro_autor a un archivo binario compacto
+//(ver ArchivoInstantanea) y lo restaura con COPY en una base vacía. Si el nombre termina en .gz
+//el archivo se comprime
+@Service
+public class InstantaneaCatalogo {
+    private static final int FILAS_POR_LECTURA = 10_000;
+    //Tamaño aproximado de cada bloque enviado con COPY
+    private static final int BYTES_POR_ENVIO = 1 << 20;
+
+    private final DataSource dataSource;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate lectura;
+    private final TransactionTemplate escritura;
+    private final EntityManagerFactory entityManagerFactory;
+
+    public InstantaneaCatalogo(DataSource dataSource, PlatformTransactionManager transactionManager,
+                               EntityManagerFactory entityManagerFactory) {
+        this.dataSource = dataSource;
+        this.entityManagerFactory = entityManagerFactory;
+        //Dentro de una transacción el driver de PostgreSQL lee por bloques en lugar de traer toda la tabla
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(FILAS_POR_LECTURA);
+        //Las cuatro consultas ven la misma versión de los datos
+        this.lectura = new TransactionTemplate(transactionManager);
+        this.lectura.setReadOnly(true);
+        this.lectura.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        this.escritura = new TransactionTemplate(transactionManager);
+    }
+
+    public void exportar(Path archivo) {
+        long inicio = System.nanoTime();
+        long filas = lectura.execute(estado -> {
+            try (ArchivoInstantanea.Escritor escritor = new ArchivoInstantanea.Escritor(abrirSalida(archivo))) {
+                long total = 0;
+                total += exportarSeccion(escritor, "autores", """
+                        SELECT id, nombre, fecha_nacimiento, fecha_fallecimiento FROM autores ORDER BY id
+                        """, resultado -> escritor.autor(new FilaAutor(resultado.getLong(1), resultado.getString(2),
+                        resultado.getObject(3, Integer.class), resultado.getObject(4, Integer.class))));
+                total += exportarSeccion(escritor, "libros", """
+                        SELECT id, titulo, gutendex_id, numero_de_descargas FROM libros ORDER BY id
+                        """, resultado -> escritor.libro(new FilaLibro(resultado.getLong(1), resultado.getString(2),
+                        resultado.getObject(3, Integer.class), resultado.getObject(4, Double.class))));
+                total += exportarSeccion(escritor, "libro_idiomas", """
+                        SELECT libro_id, idioma FROM libro_idiomas ORDER BY libro_id, idioma
+                        """, resultado -> escritor.idioma(new FilaIdioma(resultado.getLong(1), resultado.getString(2))));
+                total += exportarSeccion(escritor, "libro_autor", """
+                        SELECT libro_id, autor_id FROM libro_autor ORDER BY libro_id, autor_id
+                        """, resultado -> escritor.libroAutor(new FilaLibroAutor(resultado.getLong(1), resultado.getLong(2))));
+                return total;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        informar("Instantánea exportada", archivo, filas, inicio);
+    }
+
+    //Solo sobre una base sin libros ni autores: los ids del archivo se conservan tal cual
+    public void restaurar(Path archivo) {
+        Long existentes = jdbcTemplate.queryForObject(
+                "SELECT (SELECT COUNT(*) FROM libros) + (SELECT COUNT(*) FROM autores)", Long.class);
+        if (existentes != null && existentes > 0) {
+            throw new IllegalStateException("La base ya tiene libros o autores; la instantánea solo se restaura en una base vacía");
+        }
+        long inicio = System.nanoTime();
+        long filas = escritura.execute(estado -> {
+            Connection conexion = DataSourceUtils.getConnection(dataSource);
+            try (ArchivoInstantanea.Lector lector = new ArchivoInstantanea.Lector(abrirEntrada(archivo))) {
+                PGConnection postgres = conexion.unwrap(PGConnection.class);
+                long total = 0;
+                total += copiar(postgres, "autores (id, nombre, fecha_nacimiento, fecha_fallecimiento)", lector, fila -> {
+                    FilaAutor autor = lector.autor();
+                    fila.valor(autor.id()).valor(autor.nombre()).valor(autor.nacimiento()).valor(autor.fallecimiento());
+                });
+                total += copiar(postgres, "libros (id, titulo, gutendex_id, numero_de_descargas)", lector, fila -> {
+                    FilaLibro libro = lector.libro();
+                    fila.valor(libro.id()).valor(libro.titulo()).valor(libro.gutendexId()).valor(libro.descargas());
+                });
+                total += copiar(postgres, "libro_idiomas (libro_id, idioma)", lector, fila -> {
+                    FilaIdioma idioma = lector.idioma();
+                    fila.valor(idioma.libroId()).valor(idioma.idioma());
+                });
+                total += copiar(postgres, "libro_autor (libro_id, autor_id)", lector, fila -> {
+                    FilaLibroAutor libroAutor = lector.libroAutor();
+                    fila.valor(libroAutor.libroId()).valor(libroAutor.autorId());
+                });
+                //Las secuencias deben quedar por encima de los ids copiados
+                alinearSecuencia("libros_seq", "libros");
+                alinearSecuencia("autores_seq", "autores");
+                return total;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } catch (SQLException e) {
+                throw new IllegalStateException("No se pudo restaurar la instantánea: " + e.getMessage(), e);
+            } finally {
+                DataSourceUtils.releaseConnection(conexion, dataSource);
+            }
+        });
+        entityManagerFactory.getCache().evictAll();
+        informar("Instantánea restaurada", archivo, filas, inicio);
+    }
+
+    private long exportarSeccion(ArchivoInstantanea.Escritor escritor, String tabla, String consulta,
+                                 FilaLeida fila) throws IOException {
+        Long filas = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + tabla, Long.class);
+        escritor.seccion(filas);
+        long[] escritas = {0};
+        jdbcTemplate.query(consulta, resultado -> {
+            try {
+                fila.escribir(resultado);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            escritas[0]++;
+        });
+        if (escritas[0] != filas) {
+            throw new IllegalStateException("La tabla " + tabla + " cambió durante la exportación");
+        }
+        return filas;
+    }
+
+    //Las filas se envían en el formato de texto de COPY (columnas separadas por tabulador, \N para null)
+    private long copiar(PGConnection postgres, String tabla, ArchivoInstantanea.Lector lector,
+                        FilaCopiada leerFila) throws IOException, SQLException {
+        long filas = lector.seccion();
+        CopyIn copia = postgres.getCopyAPI().copyIn("COPY " + tabla + " FROM STDIN");
+        try {
+            FilaCopy fila = new FilaCopy();
+            for (long i = 0; i < filas; i++) {
+                leerFila.leer(fila);
+                fila.terminar();
+                if (fila.texto.length() >= BYTES_POR_ENVIO) {
+                    enviar(copia, fila.texto);
+                }
+            }
+            enviar(copia, fila.texto);
+            copia.endCopy();
+        } finally {
+            if (copia.isActive()) {
+                copia.cancelCopy();
+            }
+        }
+        return filas;
+    }
+
+    private static void enviar(CopyIn copia, StringBuilder texto) throws SQLException {
+        byte[] bytes = texto.toString().getBytes(StandardCharsets.UTF_8);
+        copia.writeToCopy(bytes, 0, bytes.length);
+        texto.setLength(0);
+    }
+
+    private void alinearSecuencia(String secuencia, String tabla) {
+        jdbcTemplate.queryForObject("SELECT setval('%s', GREATEST((SELECT COALESCE(MAX(id), 0) FROM %s), (SELECT last_value FROM %s)))"
+                .formatted(secuencia, tabla, secuencia), Long.class);
+    }
+
+    private static OutputStream abrirSalida(Path archivo) throws IOException {
+        OutputStream salida = Files.newOutputStream(archivo);
+        return archivo.toString().endsWith(".gz") ? new GZIPOutputStream(salida, 1 << 16) : salida;
+    }
+
+    private static InputStream abrirEntrada(Path archivo) throws IOException {
+        InputStream entrada = Files.newInputStream(archivo);
+        return archivo.toString().endsWith(".gz") ? new GZIPInputStream(entrada, 1 << 16) : entrada;
+    }
+
+    private static void informar(String accion, Path archivo, long filas, long inicio) {
+        double segundos = Math.max((System.nanoTime() - inicio) / 1_000_000_000.0, 0.001);
+        long bytes;
+        try {
+            bytes = Files.size(archivo);
+        } catch (IOException e) {
+            bytes = -1;
+        }
+        System.out.printf("%s: %s - %d filas, %.1f MB en %.1f s (%.0f filas/s)%n",
+                accion, archivo, filas, bytes / 1_048_576.0, segundos, filas / segundos);
+    }
+
+    private interface FilaLeida {
+        void escribir(ResultSet resultado) throws SQLException, IOException;
+    }
+
+    private interface FilaCopiada {
+        void leer(FilaCopy fila) throws IOException;
+    }
+
+    //Una fila de COPY en formato de texto
+    private static final class FilaCopy {
+        private final StringBuilder texto = new StringBuilder(BYTES_POR_ENVIO + 1024);
+        private boolean primera = true;
+
+        FilaCopy valor(Object valor) {
+            if (!primera) {
+                texto.append('\t');
+            }
+            primera = false;
+            if (valor == null) {
+                texto.append("\\N");
+            } else if (valor instanceof String cadena) {
+                escapar(cadena);
+            } else {
+                texto.append(valor);
+            }
+            return this;
+        }
+
+        void terminar() {
+            texto.append('\n');
+            primera = true;
+        }
+
+        private void escapar(String cadena) {
+            for (int i = 0; i < cadena.length(); i++) {
+                char caracter = cadena.charAt(i);
+                switch (caracter) {
+                    case '\\' -> texto.append("\\\\");
+                    case '\t' -> texto.append("\\t");
+                    case '\n' -> texto.append("\\n");
+                    case '\r' -> texto.append("\\r");
+                    default -> texto.append(caracter);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package com.alura.literalura.service;
+
+import com.alura.literalura.model.DatosAutor;
+import com.alura.literalura.model.DatosLibros;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+//Lee el catálogo de Project Gutenberg en CSV (pg_catalog.csv) registro por registro: en memoria solo
+//está el registro actual, así que el consumo no depende del tamaño del archivo.
+//Columnas: Text#, Type, Issued, Title, Language, Authors, Subjects, LoCC, Bookshelves
+final class LectorCatalogoGutenberg {
+    //Un campo más largo indica un archivo dañado (comillas sin cerrar)
+    private static final int LONGITUD_MAXIMA_CAMPO = 1 << 20;
+    //"Shelley, Mary Wollstonecraft, 1797-1851", "Homer, 751? BCE-651? BCE", "Anónimo, -1850"
+    private static final Pattern AUTOR_CON_AÑOS = Pattern.compile(
+            "^(.*?),\\s*(?:(\\d{1,4})\\??(\\s*BCE)?)?\\s*-\\s*(?:(\\d{1,4})\\??(\\s*BCE)?)?$");
+    //Rol al final del nombre: "[Editor]", "[Translator]"
+    private static final Pattern ROL = Pattern.compile("\\s*\\[[^]]*]$");
+
+    record Resultado(long registros, long libros, long descartados) {
+    }
+
+    private final Reader entrada;
+    private final char[] bufer = new char[1 << 16];
+    private int posicion;
+    private int limite;
+    private final StringBuilder campo = new StringBuilder(256);
+
+    LectorCatalogoGutenberg(Reader entrada) {
+        this.entrada = entrada;
+    }
+
+    //Entrega cada libro de tipo "Text" con título; el resto se cuenta como descartado
+    Resultado leer(Consumer<DatosLibros> consumidor) throws IOException {
+        List<String> cabecera = leerRegistro();
+        if (cabecera == null) {
+            return new Resultado(0, 0, 0);
+        }
+        //Marca de orden de bytes al inicio del archivo
+        cabecera.set(0, cabecera.get(0).replace("\uFEFF", ""));
+        int columnaId = columna(cabecera, "Text#");
+        int columnaTipo = columna(cabecera, "Type");
+        int columnaTitulo = columna(cabecera, "Title");
+        int columnaIdioma = columna(cabecera, "Language");
+        int columnaAutores = columna(cabecera, "Authors");
+
+        long registros = 0;
+        long libros = 0;
+        List<String> registro;
+        while ((registro = leerRegistro()) != null) {
+            registros++;
+            DatosLibros libro = convertir(registro, columnaId, columnaTipo, columnaTitulo, columnaIdioma, columnaAutores);
+            if (libro != null) {
+                consumidor.accept(libro);
+                libros++;
+            }
+        }
+        return new Resultado(registros, libros, registros - libros);
+    }
+
+    private static DatosLibros convertir(List<String> registro, int columnaId, int columnaTipo, int columnaTitulo,
+                                         int columnaIdioma, int columnaAutores) {
+        if (registro.size() <= Math.max(columnaAutores, Math.max(columnaTitulo, columnaIdioma))
+                || !"Text".equals(registro.get(columnaTipo).trim())) {
+            return null;
+        }
+        //Los subtítulos vienen en otra línea dentro del mismo campo
+        String titulo = registro.get(columnaTitulo).trim().replaceAll("\\s+", " ");
+        if (titulo.isEmpty()) {
+            return null;
+        }
+        Integer id;
+        try {
+            id = Integer.valueOf(registro.get(columnaId).trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        return new DatosLibros(titulo, autores(registro.get(columnaAutores)), lista(registro.get(columnaIdioma)), null, id);
+    }
+
+    private static List<DatosAutor> autores(String campo) {
+        List<DatosAutor> autores = new ArrayList<>();
+        for (String autor : lista(campo)) {
+            String nombre = ROL.matcher(autor).replaceFirst("");
+            Matcher años = AUTOR_CON_AÑOS.matcher(nombre);
+            if (años.matches()) {
+                autores.add(new DatosAutor(años.group(1).trim(), año(años.group(2), años.group(3)), año(años.group(4), años.group(5))));
+            } else if (!nombre.isBlank()) {
+                autores.add(new DatosAutor(nombre.trim(), null, null));
+            }
+        }
+        return autores;
+    }
+
+    //Años a.C. como negativos, igual que Gutendex
+    private static Integer año(String año, String antesDeCristo) {
+        if (año == null) {
+            return null;
+        }
+        int valor = Integer.parseInt(año);
+        return antesDeCristo != null ? -valor : valor;
+    }
+
+    private static List<String> lista(String campo) {
+        return Arrays.stream(campo.split(";"))
+                .map(String::trim)
+                .filter(valor -> !valor.isEmpty())
+                .toList();
+    }
+
+    private static int columna(List<String> cabecera, String nombre) throws IOException {
+        int indice = cabecera.indexOf(nombre);
+        if (indice < 0) {
+            throw new IOException("El catálogo no tiene la columna '" + nombre + "'");
+        }
+        return indice;
+    }
+
+    //CSV según RFC 4180: campos entre comillas pueden tener comas, saltos de línea y comillas dobles ("")
+    private List<String> leerRegistro() throws IOException {
+        int caracter = siguiente();
+        if (caracter < 0) {
+            return null;
+        }
+        List<String> registro = new ArrayList<>(9);
+        campo.setLength(0);
+        boolean entreComillas = false;
+        while (true) {
+            if (entreComillas) {
+                if (caracter < 0) {
+                    throw new IOException("Comillas sin cerrar al final del catálogo");
+                }
+                if (caracter == '"') {
+                    int despues = siguiente();
+                    if (despues == '"') {
+                        agregar('"');
+                    } else {
+                        entreComillas = false;
+                        caracter = despues;
+                        continue;
+                    }
+                } else {
+                    agregar((char) caracter);
+                }
+            } else if (caracter == '"' && campo.isEmpty()) {
+                entreComillas = true;
+            } else if (caracter == ',') {
+                registro.add(campo.toString());
+                campo.setLength(0);
+            } else if (caracter == '\n' || caracter < 0) {
+                registro.add(campo.toString());
+                return registro;
+            } else if (caracter != '\r') {
+                agregar((char) caracter);
+            }
+            caracter = siguiente();
+        }
+    }
+
+    private void agregar(char caracter) throws IOException {
+        if (campo.length() >= LONGITUD_MAXIMA_CAMPO) {
+            throw new IOException("Campo demasiado largo en el catálogo");
+        }
+        campo.append(caracter);
+    }
+
+    private int siguiente() throws IOException {
+        if (posicion == limite) {
+            limite = entrada.read(bufer, 0, bufer.length);
+            posicion = 0;
+            if (limite <= 0) {
+                limite = 0;
+                return -1;
+            }
+        }
+        return bufer[posicion++];
+    }
+}
@@ -0,0 +1,187 @@
+package com.alura.literalura.service;
+
+import com.alura.literalura.model.Autor;
+import com.alura.literalura.model.DatosAutor;
+import com.alura.literalura.model.DatosLibros;
+import com.alura.literalura.model.Libro;
+import com.alura.literalura.repository.AutorRepository;
+import com.alura.literalura.repository.LibroRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+@Service
+public class LibroService {
+    private final LibroRepository libroRepository;
+    private final AutorRepository autorRepository;
+    private final ApplicationEventPublisher eventos;
+    private final ListadoService listadoService;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    public LibroService(LibroRepository libroRepository, AutorRepository autorRepository,
+                        ApplicationEventPublisher eventos, ListadoService listadoService) {
+        this.libroRepository = libroRepository;
+        this.autorRepository = autorRepository;
+        this.eventos = eventos;
+        this.listadoService = listadoService;
+    }
+
+    //Devuelve el libro ya registrado (con las descargas al día) o lo guarda junto con sus autores.
+    //Las filas se insertan con ON CONFLICT DO NOTHING: si otro proceso registra el mismo libro o autor
+    //al mismo tiempo, este espera a que confirme y reutiliza sus filas en lugar de fallar
+    @Transactional
+    public Libro registrarLibro(DatosLibros datosLibros) {
+        String tituloValidado = truncarSiEsNecesario(datosLibros.titulo(), 255);
+        Optional<Libro> libroExistente = buscarRegistrado(datosLibros.gutendexId(), tituloValidado);
+        if (libroExistente.isPresent()) {
+            return actualizarDatosRemotos(libroExistente.get(), datosLibros);
+        }
+
+        int insertados = datosLibros.gutendexId() != null
+                ? libroRepository.insertarSiNoExistePorGutendexId(tituloValidado, datosLibros.numeroDeDescargas(), datosLibros.gutendexId())
+                : libroRepository.insertarSiNoExistePorTitulo(tituloValidado, datosLibros.numeroDeDescargas());
+        Libro libro = buscarRegistrado(datosLibros.gutendexId(), tituloValidado).orElseThrow();
+        if (insertados == 0) {
+            return actualizarDatosRemotos(libro, datosLibros);
+        }
+
+        //La fila es de esta transacción: los idiomas y autores se agregan a la entidad y Hibernate
+        //inserta libro_idiomas y libro_autor al confirmar
+        Map<String, Autor> autores = registrarAutores(datosLibros.autor());
+        Libro datos = crearLibro(datosLibros, autores);
+        libro.setIdiomas(datos.getIdiomas());
+        libro.getAutores().addAll(datos.getAutores());
+        eventos.publishEvent(new LibrosRegistradosEvento(List.of(libro)));
+        return libro;
+    }
+
+    //Por título también, para los libros guardados sin id de Gutendex (por ejemplo, desde pg_catalog.csv)
+    private Optional<Libro> buscarRegistrado(Integer gutendexId, String titulo) {
+        Optional<Libro> porId = gutendexId != null ? libroRepository.findByGutendexId(gutendexId) : Optional.empty();
+        return porId.isPresent() ? porId : libroRepository.findByTitulo(titulo);
+    }
+
+    //Variante de resolverAutores para registros individuales: un INSERT ... ON CONFLICT por autor
+    //nuevo, de modo que dos registros simultáneos del mismo autor dejan una sola fila
+    private Map<String, Autor> registrarAutores(List<DatosAutor> datosAutores) {
+        Map<String, DatosAutor> autoresPorNombre = new LinkedHashMap<>();
+        for (DatosAutor datosAutor : datosAutores) {
+            if (datosAutor.nombre() != null) {
+                autoresPorNombre.putIfAbsent(truncarSiEsNecesario(datosAutor.nombre(), 255), datosAutor);
+            }
+        }
+        if (autoresPorNombre.isEmpty()) {
+            return new HashMap<>();
+        }
+
+        Set<String> existentes = autorRepository.findByNombreIn(autoresPorNombre.keySet()).stream()
+                .map(Autor::getNombre)
+                .collect(Collectors.toSet());
+        autoresPorNombre.forEach((nombre, datosAutor) -> {
+            if (!existentes.contains(nombre)) {
+                autorRepository.insertarSiNoExiste(nombre, datosAutor.fechaNacimiento(), datosAutor.fechaFallecimiento());
+            }
+        });
+        return autorRepository.findByNombreIn(autoresPorNombre.keySet()).stream()
+                .collect(Collectors.toMap(Autor::getNombre, autor -> autor, (primero, segundo) -> primero));
+    }
+
+    //Registra un lote completo con un número fijo de consultas: una para los títulos ya
+    //guardados, una para los autores existentes y los inserts agrupados en lotes JDBC
+    @Transactional
+    public int registrarLote(List<DatosLibros> lote) {
+        Map<String, DatosLibros> librosPorTitulo = new LinkedHashMap<>();
+        for (DatosLibros datosLibros : lote) {
+            if (datosLibros.titulo() != null) {
+                librosPorTitulo.putIfAbsent(truncarSiEsNecesario(datosLibros.titulo(), 255), datosLibros);
+            }
+        }
+        if (librosPorTitulo.isEmpty()) {
+            return 0;
+        }
+        librosPorTitulo.keySet().removeAll(libroRepository.findTitulosRegistrados(librosPorTitulo.keySet()));
+
+        List<DatosAutor> datosAutores = librosPorTitulo.values().stream()
+                .flatMap(datosLibros -> datosLibros.autor().stream())
+                .collect(Collectors.toList());
+        Map<String, Autor> autores = resolverAutores(datosAutores);
+
+        List<Libro> libros = librosPorTitulo.values().stream()
+                .map(datosLibros -> crearLibro(datosLibros, autores))
+                .collect(Collectors.toList());
+        libroRepository.saveAll(libros);
+        eventos.publishEvent(new LibrosRegistradosEvento(libros));
+
+        //Vacía el contexto de persistencia para que la memoria no crezca entre lotes
+        entityManager.flush();
+        entityManager.clear();
+        return libros.size();
+    }
+
+    //La respuesta de Gutendex trae el conteo actual; solo se escribe si cambió
+    private Libro actualizarDatosRemotos(Libro libro, DatosLibros datosLibros) {
+        if (libro.getGutendexId() == null) {
+            libro.setGutendexId(datosLibros.gutendexId());
+        }
+        if (datosLibros.numeroDeDescargas() != null
+                && !datosLibros.numeroDeDescargas().equals(libro.getNumeroDeDescargas())) {
+            libro.setNumeroDeDescargas(datosLibros.numeroDeDescargas());
+            eventos.publishEvent(new DescargasActualizadasEvento(List.of(listadoService.convertirALibroDTO(libro)),
+                    Map.of(libro.getId(), libro.getAutores().stream().map(Autor::getId).distinct().collect(Collectors.toList()))));
+        }
+        return libro;
+    }
+
+    private Libro crearLibro(DatosLibros datosLibros, Map<String, Autor> autores) {
+        Libro libro = new Libro(datosLibros);
+        libro.setTitulo(truncarSiEsNecesario(datosLibros.titulo(), 255));
+        libro.setAutores(datosLibros.autor().stream()
+                .map(datosAutor -> autores.get(truncarSiEsNecesario(datosAutor.nombre(), 255)))
+                .filter(Objects::nonNull)
+                .distinct()
+                .collect(Collectors.toList()));
+        return libro;
+    }
+
+    //Busca todos los nombres con una sola consulta IN y guarda los que faltan
+    private Map<String, Autor> resolverAutores(List<DatosAutor> datosAutores) {
+        Map<String, DatosAutor> autoresPorNombre = new LinkedHashMap<>();
+        for (DatosAutor datosAutor : datosAutores) {
+            if (datosAutor.nombre() != null) {
+                autoresPorNombre.putIfAbsent(truncarSiEsNecesario(datosAutor.nombre(), 255), datosAutor);
+            }
+        }
+        if (autoresPorNombre.isEmpty()) {
+            return new HashMap<>();
+        }
+
+        Map<String, Autor> autores = autorRepository.findByNombreIn(autoresPorNombre.keySet()).stream()
+                .collect(Collectors.toMap(Autor::getNombre, autor -> autor, (primero, segundo) -> primero));
+        List<Autor> nuevosAutores = autoresPorNombre.entrySet().stream()
+                .filter(entrada -> !autores.containsKey(entrada.getKey()))
+                .map(entrada -> crearNuevoAutor(entrada.getKey(), entrada.getValue()))
+                .collect(Collectors.toList());
+        autorRepository.saveAll(nuevosAutores);
+        nuevosAutores.forEach(autor -> autores.put(autor.getNombre(), autor));
+        return autores;
+    }
+
+    private Autor crearNuevoAutor(String nombre, DatosAutor datosAutor) {
+        Autor nuevoAutor = new Autor();
+        nuevoAutor.setNombre(nombre);
+        nuevoAutor.setFechaNacimiento(datosAutor.fechaNacimiento());
+        nuevoAutor.setFechaFallecimiento(datosAutor.fechaFallecimiento());
+        return nuevoAutor;
+    }
+
+    private String truncarSiEsNecesario(String valor, int longitudMaxima) {
+        return (valor != null && valor.length() > longitudMaxima) ? valor.substring(0, longitudMaxima) : valor;
+    }
+}
@@ -0,0 +1,9 @@
+package com.alura.literalura.service;
+
+import com.alura.literalura.model.Libro;
+
+import java.util.List;
+
+//Se publica cuando se guardan libros nuevos, con sus autores ya asignados
+public record LibrosRegistradosEvento(List<Libro> libros) {
+}
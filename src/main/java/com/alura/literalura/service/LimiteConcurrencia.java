@@ -0,0 +1,25 @@
+package com.alura.literalura.service;
+
+//Límite adaptativo de solicitudes simultáneas (AIMD): crece de a una por cada 'limite' respuestas
+//correctas y se reduce a la mitad cuando Gutendex indica sobrecarga (429, 5xx, tiempo agotado)
+final class LimiteConcurrencia {
+    private final int maximo;
+    private double limite;
+
+    LimiteConcurrencia(int inicial, int maximo) {
+        this.maximo = Math.max(1, maximo);
+        this.limite = Math.min(Math.max(1, inicial), this.maximo);
+    }
+
+    synchronized void exito() {
+        limite = Math.min(maximo, limite + 1 / limite);
+    }
+
+    synchronized void sobrecarga() {
+        limite = Math.max(1, limite / 2);
+    }
+
+    synchronized int actual() {
+        return (int) limite;
+    }
+}
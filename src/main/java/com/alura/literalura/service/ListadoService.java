@@ -0,0 +1,120 @@
+package com.alura.literalura.service;
+
+import com.alura.literalura.dto.AutorDTO;
+import com.alura.literalura.dto.AutorTituloDTO;
+import com.alura.literalura.dto.LibroDTO;
+import com.alura.literalura.model.Autor;
+import com.alura.literalura.model.Libro;
+import com.alura.literalura.repository.AutorRepository;
+import com.alura.literalura.repository.LibroRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+//Listados por páginas con keyset (WHERE id > último) sobre proyecciones DTO, sin hidratar entidades
+@Service
+public class ListadoService {
+    //Límite de ids por consulta IN al completar los títulos de los autores
+    private static final int IDS_POR_CONSULTA = 1000;
+
+    private final LibroRepository libroRepository;
+    private final AutorRepository autorRepository;
+    private final int tamanoPagina;
+
+    public ListadoService(LibroRepository libroRepository, AutorRepository autorRepository,
+                          @Value("${literalura.listado.tamano-pagina}") int tamanoPagina) {
+        this.libroRepository = libroRepository;
+        this.autorRepository = autorRepository;
+        this.tamanoPagina = Math.max(1, tamanoPagina);
+    }
+
+    public List<LibroDTO> paginaLibros(long despuesDeId) {
+        List<Long> ids = libroRepository.findIdsDespuesDe(despuesDeId, Limit.of(tamanoPagina));
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        //La consulta por ids no conserva el orden de la página
+        return libroRepository.findLibrosDTOPorIds(ids).stream()
+                .sorted(Comparator.comparing(LibroDTO::id))
+                .collect(Collectors.toList());
+    }
+
+    public List<AutorDTO> paginaAutores(long despuesDeId) {
+        return conLibros(autorRepository.findAutoresDTODespuesDe(despuesDeId, Limit.of(tamanoPagina)));
+    }
+
+    //Recorre todo el catálogo página a página; solo una página vive en memoria a la vez. Los libros que se
+    //registran durante el recorrido aparecen si su id es mayor que el último de la página ya leída
+    public Stream<LibroDTO> transmitirLibros() {
+        return transmitir(this::paginaLibros, LibroDTO::id);
+    }
+
+    public Stream<AutorDTO> transmitirAutores() {
+        return transmitir(this::paginaAutores, AutorDTO::id);
+    }
+
+    //Completa las proyecciones de autores con sus títulos usando una consulta por cada bloque de ids
+    public List<AutorDTO> conLibros(List<AutorDTO> autores) {
+        if (autores.isEmpty()) {
+            return autores;
+        }
+        Map<Long, List<String>> titulos = new HashMap<>();
+        List<Long> ids = autores.stream().map(AutorDTO::id).collect(Collectors.toList());
+        for (int inicio = 0; inicio < ids.size(); inicio += IDS_POR_CONSULTA) {
+            List<Long> bloque = ids.subList(inicio, Math.min(ids.size(), inicio + IDS_POR_CONSULTA));
+            for (AutorTituloDTO autorTitulo : autorRepository.findTitulosDeAutores(bloque)) {
+                titulos.computeIfAbsent(autorTitulo.autorId(), id -> new ArrayList<>()).add(autorTitulo.titulo());
+            }
+        }
+        return autores.stream()
+                .map(autor -> new AutorDTO(autor.id(), autor.nombre(), autor.fechaNacimiento(), autor.fechaFallecimiento(),
+                        titulos.getOrDefault(autor.id(), List.of())))
+                .collect(Collectors.toList());
+    }
+
+    //Para libros recién guardados, que ya están en memoria como entidades. Los autores van sin repetir:
+    //findByTitulo y findByGutendexId cargan la lista de autores junto con los idiomas y la lista
+    //repite cada autor una vez por idioma
+    public LibroDTO convertirALibroDTO(Libro libro) {
+        return new LibroDTO(
+                libro.getId(),
+                libro.getTitulo(),
+                libro.getAutores().stream().distinct().map(Autor::getNombre).collect(Collectors.joining(", ")),
+                String.join(", ", libro.getIdiomas()),
+                libro.getNumeroDeDescargas()
+        );
+    }
+
+    private <T> Stream<T> transmitir(Function<Long, List<T>> siguientePagina, Function<T, Long> id) {
+        Iterator<List<T>> paginas = new Iterator<>() {
+            private long ultimoId = 0;
+            private boolean hayMas = true;
+
+            @Override
+            public boolean hasNext() {
+                return hayMas;
+            }
+
+            @Override
+            public List<T> next() {
+                if (!hayMas) {
+                    throw new NoSuchElementException();
+                }
+                List<T> pagina = siguientePagina.apply(ultimoId);
+                hayMas = pagina.size() == tamanoPagina;
+                if (!pagina.isEmpty()) {
+                    ultimoId = id.apply(pagina.get(pagina.size() - 1));
+                }
+                return pagina;
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(paginas, Spliterator.ORDERED), false)
+                .flatMap(List::stream);
+    }
+}
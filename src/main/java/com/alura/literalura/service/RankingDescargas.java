@@ -0,0 +1,217 @@
+package com.alura.literalura.service;
+
+import com.alura.literalura.dto.IdiomaConteoDTO;
+import com.alura.literalura.dto.LibroDTO;
+import com.alura.literalura.model.Autor;
+import com.alura.literalura.model.Libro;
+import com.alura.literalura.repository.LibroRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+//Clasificación de los libros más descargados mantenida en memoria: global, por idioma y por autor.
+//Se carga desde la base de datos al arrancar y se actualiza con cada libro registrado
+@Service
+@ConditionalOnProperty(name = "literalura.ranking.habilitado", havingValue = "true")
+public class RankingDescargas {
+    private static final String GLOBAL = "global";
+    //Clasificaciones por autor que se conservan; se crean al consultarlas
+    private static final int AUTORES_MAXIMOS = 1000;
+
+    private final LibroRepository libroRepository;
+    private final ListadoService listadoService;
+    private final int tamano;
+    //Se guardan más libros de los que se muestran para absorber bajadas sin volver a consultar la base
+    private final int capacidad;
+    private final boolean porIdioma;
+    private final boolean porAutor;
+
+    private final Map<String, Clasificacion> grupos = new HashMap<>();
+    private final Map<Long, Clasificacion> autores = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Clasificacion> masAntigua) {
+            return size() > AUTORES_MAXIMOS;
+        }
+    };
+
+    public RankingDescargas(LibroRepository libroRepository, ListadoService listadoService,
+                            @Value("${literalura.ranking.tamano}") int tamano,
+                            @Value("${literalura.ranking.por-idioma}") boolean porIdioma,
+                            @Value("${literalura.ranking.por-autor}") boolean porAutor) {
+        this.libroRepository = libroRepository;
+        this.listadoService = listadoService;
+        this.tamano = Math.max(1, tamano);
+        this.capacidad = 2 * this.tamano;
+        this.porIdioma = porIdioma;
+        this.porAutor = porAutor;
+    }
+
+    @EventListener(ContextRefreshedEvent.class)
+    public synchronized void reconstruir() {
+        long inicio = System.nanoTime();
+        grupos.clear();
+        autores.clear();
+        grupos.put(GLOBAL, cargar(libroRepository::findIdsMasDescargados));
+        if (porIdioma) {
+            for (IdiomaConteoDTO idioma : libroRepository.contarLibrosPorIdioma()) {
+                grupos.put(claveIdioma(idioma.idioma()), cargar(limite ->
+                        libroRepository.findIdsMasDescargadosPorIdioma(idioma.idioma(), limite)));
+            }
+        }
+        System.out.printf("Ranking de descargas: %d clasificaciones en %d ms%n",
+                grupos.size(), (System.nanoTime() - inicio) / 1_000_000);
+    }
+
+    @TransactionalEventListener
+    public synchronized void alRegistrarLibros(LibrosRegistradosEvento evento) {
+        for (Libro libro : evento.libros()) {
+            LibroDTO libroDTO = listadoService.convertirALibroDTO(libro);
+            grupos.get(GLOBAL).ofrecer(libroDTO);
+            if (porIdioma) {
+                //Un idioma que aparece por primera vez empieza vacío: todos sus libros pasan por aquí
+                libro.getIdiomas().forEach(idioma -> grupos
+                        .computeIfAbsent(claveIdioma(idioma), clave -> new Clasificacion(capacidad, List.of(), false))
+                        .ofrecer(libroDTO));
+            }
+            if (porAutor) {
+                for (Autor autor : libro.getAutores()) {
+                    Clasificacion delAutor = autores.get(autor.getId());
+                    if (delAutor != null) {
+                        delAutor.ofrecer(libroDTO);
+                    }
+                }
+            }
+        }
+    }
+
+    @TransactionalEventListener
+    public synchronized void alActualizarDescargas(DescargasActualizadasEvento evento) {
+        for (LibroDTO libro : evento.libros()) {
+            grupos.get(GLOBAL).ofrecer(libro);
+            if (porIdioma && libro.idiomas() != null) {
+                for (String idioma : libro.idiomas().split(",\\s*")) {
+                    grupos.computeIfAbsent(claveIdioma(idioma), clave -> new Clasificacion(capacidad, List.of(), false))
+                            .ofrecer(libro);
+                }
+            }
+            if (porAutor) {
+                for (Long autorId : evento.autoresDe(libro.id())) {
+                    Clasificacion delAutor = autores.get(autorId);
+                    if (delAutor != null) {
+                        delAutor.ofrecer(libro);
+                    }
+                }
+            }
+        }
+    }
+
+    public synchronized List<LibroDTO> top() {
+        return primeros(grupos, GLOBAL, libroRepository::findIdsMasDescargados);
+    }
+
+    public synchronized List<LibroDTO> topPorIdioma(String idioma) {
+        if (!porIdioma) {
+            return libroRepository.findLibrosDTOPorIds(libroRepository.findIdsMasDescargadosPorIdioma(idioma, Limit.of(tamano)))
+                    .stream().sorted(Clasificacion.ORDEN).collect(Collectors.toList());
+        }
+        return primeros(grupos, claveIdioma(idioma), limite -> libroRepository.findIdsMasDescargadosPorIdioma(idioma, limite));
+    }
+
+    public synchronized List<LibroDTO> topPorAutor(Long autorId) {
+        if (!porAutor) {
+            return libroRepository.findLibrosDTOPorIds(libroRepository.findIdsMasDescargadosPorAutor(autorId, Limit.of(tamano)))
+                    .stream().sorted(Clasificacion.ORDEN).collect(Collectors.toList());
+        }
+        return primeros(autores, autorId, limite -> libroRepository.findIdsMasDescargadosPorAutor(autorId, limite));
+    }
+
+    public int getTamano() {
+        return tamano;
+    }
+
+    //Si la clasificación no existe o ya no puede garantizar los primeros N, se vuelve a cargar
+    private <K> List<LibroDTO> primeros(Map<K, Clasificacion> clasificaciones, K clave,
+                                        Function<Limit, List<Long>> consulta) {
+        Clasificacion clasificacion = clasificaciones.get(clave);
+        List<LibroDTO> primeros = clasificacion != null ? clasificacion.primeros(tamano) : null;
+        if (primeros == null) {
+            clasificacion = cargar(consulta);
+            clasificaciones.put(clave, clasificacion);
+            primeros = clasificacion.primeros(tamano);
+        }
+        return primeros;
+    }
+
+    private Clasificacion cargar(Function<Limit, List<Long>> consulta) {
+        List<Long> ids = consulta.apply(Limit.of(capacidad));
+        List<LibroDTO> libros = ids.isEmpty() ? List.of() : libroRepository.findLibrosDTOPorIds(ids);
+        return new Clasificacion(capacidad, libros, ids.size() == capacidad);
+    }
+
+    private static String claveIdioma(String idioma) {
+        return "idioma:" + idioma;
+    }
+
+    //Conjunto acotado que contiene siempre los primeros 'tamaño' libros reales del grupo.
+    //Si hay libros fuera (hayMasFuera), todos están por debajo del último de la clasificación
+    static final class Clasificacion {
+        static final Comparator<LibroDTO> ORDEN = Comparator
+                .comparing(LibroDTO::numeroDeDescargas, Comparator.reverseOrder())
+                .thenComparing(LibroDTO::id);
+
+        private final int capacidad;
+        private final TreeSet<LibroDTO> orden = new TreeSet<>(ORDEN);
+        private final Map<Long, LibroDTO> porId = new HashMap<>();
+        private boolean hayMasFuera;
+
+        Clasificacion(int capacidad, List<LibroDTO> iniciales, boolean hayMasFuera) {
+            this.capacidad = capacidad;
+            this.hayMasFuera = hayMasFuera;
+            iniciales.stream()
+                    .filter(libro -> libro.numeroDeDescargas() != null)
+                    .forEach(libro -> {
+                        orden.add(libro);
+                        porId.put(libro.id(), libro);
+                    });
+        }
+
+        //Libro nuevo o con descargas actualizadas
+        void ofrecer(LibroDTO libro) {
+            LibroDTO anterior = porId.remove(libro.id());
+            if (anterior != null) {
+                orden.remove(anterior);
+            }
+            if (libro.numeroDeDescargas() == null) {
+                return;
+            }
+            boolean entra = orden.size() < capacidad && !hayMasFuera
+                    || !orden.isEmpty() && ORDEN.compare(libro, orden.last()) < 0;
+            if (!entra) {
+                hayMasFuera = true;
+                return;
+            }
+            orden.add(libro);
+            porId.put(libro.id(), libro);
+            if (orden.size() > capacidad) {
+                porId.remove(orden.pollLast().id());
+                hayMasFuera = true;
+            }
+        }
+
+        //null cuando quedaron menos de n libros y puede haber otros fuera que deberían aparecer
+        List<LibroDTO> primeros(int n) {
+            if (orden.size() < n && hayMasFuera) {
+                return null;
+            }
+            return orden.stream().limit(n).collect(Collectors.toList());
+        }
+    }
+}
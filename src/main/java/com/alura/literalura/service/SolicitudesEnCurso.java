@@ -0,0 +1,71 @@
+package com.alura.literalura.service;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+//Agrupa solicitudes simultáneas con la misma clave: la primera ejecuta la operación y las demás
+//esperan su resultado (o su excepción). Al terminar se quita la clave, así que no guarda resultados.
+//Las variantes bloqueante y asíncrona comparten las solicitudes en curso
+final class SolicitudesEnCurso<K, V> {
+    private final ConcurrentMap<K, CompletableFuture<V>> enCurso = new ConcurrentHashMap<>();
+
+    V ejecutar(K clave, Supplier<V> operacion) {
+        CompletableFuture<V> nueva = new CompletableFuture<>();
+        CompletableFuture<V> existente = enCurso.putIfAbsent(clave, nueva);
+        if (existente != null) {
+            return esperar(existente);
+        }
+        try {
+            V resultado = operacion.get();
+            nueva.complete(resultado);
+            return resultado;
+        } catch (RuntimeException | Error e) {
+            nueva.completeExceptionally(e);
+            throw e;
+        } finally {
+            enCurso.remove(clave, nueva);
+        }
+    }
+
+    //Quien llega después recibe una copia: cancelarla no afecta a las demás solicitudes
+    CompletableFuture<V> ejecutarAsync(K clave, Supplier<CompletableFuture<V>> operacion) {
+        CompletableFuture<V> nueva = new CompletableFuture<>();
+        CompletableFuture<V> existente = enCurso.putIfAbsent(clave, nueva);
+        if (existente != null) {
+            return existente.copy();
+        }
+        try {
+            operacion.get().whenComplete((resultado, error) -> {
+                enCurso.remove(clave, nueva);
+                if (error != null) {
+                    nueva.completeExceptionally(error instanceof CompletionException && error.getCause() != null
+                            ? error.getCause() : error);
+                } else {
+                    nueva.complete(resultado);
+                }
+            });
+        } catch (RuntimeException | Error e) {
+            enCurso.remove(clave, nueva);
+            nueva.completeExceptionally(e);
+        }
+        return nueva.copy();
+    }
+
+    //Se relanza la misma excepción que recibió la primera solicitud
+    private static <V> V esperar(CompletableFuture<V> futura) {
+        try {
+            return futura.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException causa) {
+                throw causa;
+            }
+            if (e.getCause() instanceof Error causa) {
+                throw causa;
+            }
+            throw e;
+        }
+    }
+}
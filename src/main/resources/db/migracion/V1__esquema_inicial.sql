@@ -0,0 +1,18 @@
+-- Esquema que genera Hibernate para las entidades de model (el mismo que crea ddl-auto=update).
+-- Los cambios posteriores van en scripts nuevos V2__..., V3__...; no se edita un script ya aplicado
+create sequence autores_seq start with 1 increment by 50;
+create sequence libros_seq start with 1 increment by 50;
+
+create table autores (fecha_fallecimiento integer, fecha_nacimiento integer, id bigint not null, nombre varchar(255), primary key (id), constraint uk_autores_nombre unique (nombre));
+create table libro_autor (autor_id bigint not null, libro_id bigint not null);
+create table libro_idiomas (libro_id bigint not null, idioma varchar(255) not null, primary key (libro_id, idioma));
+create table libros (gutendex_id integer unique, numero_de_descargas float(53), id bigint not null, titulo varchar(255) unique, primary key (id));
+create table puntos_de_control (actualizado timestamp(6), ultimo_id bigint, nombre varchar(255) not null, primary key (nombre));
+
+create index idx_autores_vida on autores (fecha_nacimiento, fecha_fallecimiento);
+create index idx_libro_idiomas_idioma on libro_idiomas (idioma, libro_id);
+create index idx_libros_descargas on libros (numero_de_descargas desc, id);
+
+alter table if exists libro_autor add constraint FKcy5j39w8iwwsfikuh9ik7e7j9 foreign key (autor_id) references autores;
+alter table if exists libro_autor add constraint FKcy7hy5mtckykv2y3ko7dcfr6l foreign key (libro_id) references libros;
+alter table if exists libro_idiomas add constraint FKjfyt19cfhukol1im68aopicb foreign key (libro_id) references libros;
@@ -0,0 +1,4 @@
+-- Índices de libro_autor en los dos sentidos (libro -> autores y autor -> libros). IF NOT EXISTS porque una
+-- base creada con ddl-auto=update después de agregarlos a Libro ya los tiene cuando se registra en V1
+create index if not exists idx_libro_autor_libro on libro_autor (libro_id, autor_id);
+create index if not exists idx_libro_autor_autor on libro_autor (autor_id, libro_id);
@@ -0,0 +1,199 @@
+package com.alura.literalura.service;
+
+import com.alura.literalura.dto.LibroDescargasDTO;
+import com.alura.literalura.model.PuntoDeControl;
+import com.alura.literalura.repository.LibroRepository;
+import com.alura.literalura.repository.PuntoDeControlRepository;
+import com.alura.literalura.service.GutendexFalso.Respuesta;
+import com.alura.literalura.model.Libro;
+import jakarta.persistence.Cache;
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.net.URI;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+//Actualización de descargas contra un Gutendex local: 5 libros (ids 1 a 5, Gutendex 101 a 105) de los
+//que cambiaron el 2 y el 4. La base se reemplaza por los repositorios simulados
+class ActualizadorDescargasTest {
+    private static final List<LibroDescargasDTO> LIBROS = List.of(
+            new LibroDescargasDTO(1L, 101, 10.0),
+            new LibroDescargasDTO(2L, 102, 20.0),
+            new LibroDescargasDTO(3L, 103, 30.0),
+            new LibroDescargasDTO(4L, 104, 40.0),
+            new LibroDescargasDTO(5L, 105, 50.0));
+    private static final Map<Integer, Double> REMOTAS = Map.of(101, 10.0, 102, 25.0, 103, 30.0, 104, 45.0, 105, 50.0);
+
+    private final List<Long> puntosDeControl = new CopyOnWriteArrayList<>();
+    private final List<List<Object>> actualizaciones = new CopyOnWriteArrayList<>();
+    private final List<String> consultas = new CopyOnWriteArrayList<>();
+    private int resultadosPorPagina = 32;
+    private Set<Integer> fallan = Set.of();
+
+    private GutendexFalso gutendex;
+    private ConsumoAPI consumoAPI;
+    private LibroRepository libroRepository;
+    private PuntoDeControlRepository puntoDeControlRepository;
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate transacciones;
+    private ApplicationEventPublisher eventos;
+    private EntityManagerFactory entityManagerFactory;
+    private final List<String> pasos = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    void crear() throws IOException {
+        gutendex = new GutendexFalso((uri, numero) -> responder(uri));
+        CacheRespuestas cache = new CacheRespuestas(false, Duration.ofHours(1), DataSize.ofMegabytes(1), "",
+                DataSize.ofMegabytes(1));
+        consumoAPI = new ConsumoAPI(cache, Duration.ofSeconds(5), Duration.ofSeconds(10), 32, 0,
+                Duration.ofMillis(10), Duration.ofMillis(100), 100, Duration.ofSeconds(30));
+
+        libroRepository = mock(LibroRepository.class);
+        when(libroRepository.findDescargasDespuesDe(anyLong(), any(Limit.class))).thenAnswer(invocacion -> {
+            long ultimoId = invocacion.getArgument(0);
+            Limit limite = invocacion.getArgument(1);
+            return LIBROS.stream().filter(libro -> libro.id() > ultimoId).limit(limite.max()).toList();
+        });
+        puntoDeControlRepository = mock(PuntoDeControlRepository.class);
+        when(puntoDeControlRepository.findById(anyString())).thenAnswer(invocacion -> puntosDeControl.isEmpty()
+                ? Optional.empty()
+                : Optional.of(new PuntoDeControl(invocacion.getArgument(0), puntosDeControl.get(puntosDeControl.size() - 1))));
+        when(puntoDeControlRepository.save(any(PuntoDeControl.class))).thenAnswer(invocacion -> {
+            puntosDeControl.add(invocacion.<PuntoDeControl>getArgument(0).getUltimoId());
+            return invocacion.getArgument(0);
+        });
+        jdbcTemplate = mock(JdbcTemplate.class);
+        when(jdbcTemplate.batchUpdate(anyString(), anyList())).thenAnswer(invocacion -> {
+            List<Object[]> filas = invocacion.getArgument(1);
+            filas.forEach(fila -> actualizaciones.add(List.of(fila)));
+            pasos.add("update");
+            int[] resultado = new int[filas.size()];
+            Arrays.fill(resultado, 1);
+            return resultado;
+        });
+        transacciones = mock(TransactionTemplate.class);
+        when(transacciones.execute(any())).thenAnswer(invocacion -> {
+            Object resultado = invocacion.<TransactionCallback<?>>getArgument(0).doInTransaction(null);
+            pasos.add("commit");
+            return resultado;
+        });
+        eventos = mock(ApplicationEventPublisher.class);
+        Cache cacheSegundoNivel = mock(Cache.class);
+        doAnswer(invocacion -> pasos.add("evict " + invocacion.getArgument(1))).when(cacheSegundoNivel).evict(eq(Libro.class), any());
+        entityManagerFactory = mock(EntityManagerFactory.class);
+        when(entityManagerFactory.getCache()).thenReturn(cacheSegundoNivel);
+    }
+
+    @AfterEach
+    void cerrar() {
+        gutendex.close();
+        consumoAPI.cerrar();
+    }
+
+    @Test
+    void consultaPorLotesYEscribeSoloLosLibrosQueCambiaron() {
+        actualizador(2).actualizar();
+
+        assertThat(consultas).containsExactly("101,102", "103,104", "105");
+        assertThat(actualizaciones).containsExactly(List.of(25.0, 2L, 25.0), List.of(45.0, 4L, 45.0));
+        verify(jdbcTemplate, times(2)).batchUpdate(anyString(), anyList());
+        verify(eventos, times(2)).publishEvent(any(DescargasActualizadasEvento.class));
+        //El avance se guarda después de cada lote y se reinicia al terminar el recorrido
+        assertThat(puntosDeControl).containsExactly(2L, 4L, 5L, 0L);
+    }
+
+    @Test
+    void sigueLasPaginasDeGutendexCuandoElLoteNoEntraEnUna() {
+        resultadosPorPagina = 2;
+
+        actualizador(5).actualizar();
+
+        assertThat(consultas).containsExactly("101,102,103,104,105", "101,102,103,104,105", "101,102,103,104,105");
+        assertThat(actualizaciones).containsExactly(List.of(25.0, 2L, 25.0), List.of(45.0, 4L, 45.0));
+        assertThat(puntosDeControl).containsExactly(5L, 0L);
+    }
+
+    @Test
+    void siSeInterrumpeContinuaDesdeElUltimoLoteGuardado() {
+        fallan = Set.of(103);
+        actualizador(2).actualizar();
+
+        assertThat(consultas).containsExactly("101,102", "103,104");
+        assertThat(puntosDeControl).containsExactly(2L);
+
+        fallan = Set.of();
+        consultas.clear();
+        actualizaciones.clear();
+        actualizador(2).actualizar();
+
+        assertThat(consultas).containsExactly("103,104", "105");
+        assertThat(actualizaciones).containsExactly(List.of(45.0, 4L, 45.0));
+        assertThat(puntosDeControl).containsExactly(2L, 4L, 5L, 0L);
+    }
+
+    //Si la caché se vaciara dentro de la transacción, una lectura antes del commit volvería a guardar el valor anterior
+    @Test
+    void quitaDeLaCacheLosLibrosCambiadosDespuesDeConfirmar() {
+        actualizador(5).actualizar();
+
+        assertThat(pasos).containsSequence("update", "commit", "evict 2", "evict 4");
+    }
+
+    @Test
+    void rechazaUnRitmoDeSolicitudesNoPositivo() {
+        assertThatThrownBy(() -> actualizador(2, 0)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> actualizador(2, -1)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> actualizador(2, Double.NaN)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private ActualizadorDescargas actualizador(int lote) {
+        return actualizador(lote, 1000);
+    }
+
+    private ActualizadorDescargas actualizador(int lote, double solicitudesPorSegundo) {
+        return new ActualizadorDescargas(libroRepository, puntoDeControlRepository, consumoAPI, jdbcTemplate,
+                transacciones, entityManagerFactory, eventos, gutendex.url("/books/"), lote, solicitudesPorSegundo);
+    }
+
+    //?ids=101,102 con páginas de 'resultadosPorPagina' libros; un id de 'fallan' produce un 503
+    private Respuesta responder(URI uri) {
+        Map<String, String> parametros = Arrays.stream(uri.getQuery().split("&"))
+                .map(parametro -> parametro.split("=", 2))
+                .collect(Collectors.toMap(par -> par[0], par -> par[1]));
+        String ids = parametros.get("ids");
+        consultas.add(ids);
+        List<Integer> pedidos = Arrays.stream(ids.split(",")).map(Integer::valueOf).toList();
+        if (pedidos.stream().anyMatch(fallan::contains)) {
+            return Respuesta.error(503);
+        }
+        int pagina = Integer.parseInt(parametros.getOrDefault("page", "1"));
+        List<Integer> enPagina = pedidos.stream()
+                .skip((long) (pagina - 1) * resultadosPorPagina)
+                .limit(resultadosPorPagina)
+                .toList();
+        String siguiente = pagina * resultadosPorPagina < pedidos.size()
+                ? "\"" + gutendex.url("/books/?ids=" + ids + "&page=" + (pagina + 1)) + "\""
+                : "null";
+        String resultados = enPagina.stream()
+                .map(id -> "{\"id\":%d,\"title\":\"Libro %d\",\"download_count\":%s}".formatted(id, id, REMOTAS.get(id)))
+                .collect(Collectors.joining(","));
+        return Respuesta.ok("{\"count\":%d,\"next\":%s,\"results\":[%s]}".formatted(pedidos.size(), siguiente, resultados));
+    }
+}
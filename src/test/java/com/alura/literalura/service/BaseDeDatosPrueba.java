@@ -0,0 +1,82 @@
+package com.alura.literalura.service;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+//Contexto completo de la aplicación sobre un PostgreSQL embebido, para las pruebas que dependen de
+//PostgreSQL (ON CONFLICT, COPY) o comparan los índices en memoria con las consultas. El servidor se
+//inicia una vez por JVM; cada prueba empieza con las tablas vacías y los índices reconstruidos
+@SpringBootTest(properties = {
+        "literalura.actualizacion.habilitada=false",
+        "literalura.cache.habilitada=false"
+})
+@ActiveProfiles("prueba")
+abstract class BaseDeDatosPrueba {
+    private static EmbeddedPostgres postgres;
+
+    @Autowired
+    protected JdbcTemplate jdbcTemplate;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    @Autowired
+    private ObjectProvider<IndiceBusqueda> indiceBusqueda;
+    @Autowired
+    private ObjectProvider<IndiceFacetas> indiceFacetas;
+    @Autowired
+    private ObjectProvider<RankingDescargas> rankingDescargas;
+
+    @DynamicPropertySource
+    static void baseDeDatos(DynamicPropertyRegistry propiedades) {
+        EmbeddedPostgres servidor = iniciar();
+        propiedades.add("spring.datasource.url", () -> servidor.getJdbcUrl("postgres", "postgres"));
+        propiedades.add("spring.datasource.username", () -> "postgres");
+        propiedades.add("spring.datasource.password", () -> "postgres");
+    }
+
+    private static synchronized EmbeddedPostgres iniciar() {
+        if (postgres == null) {
+            try {
+                postgres = EmbeddedPostgres.start();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    postgres.close();
+                } catch (IOException ignorada) {
+                    //El proceso termina de todos modos
+                }
+            }));
+        }
+        return postgres;
+    }
+
+    //Las secuencias no se reinician: Hibernate conserva en memoria los bloques de ids ya asignados
+    @BeforeEach
+    void vaciar() {
+        jdbcTemplate.execute("TRUNCATE libro_autor, libro_idiomas, libros, autores, puntos_de_control CASCADE");
+        entityManagerFactory.getCache().evictAll();
+        reconstruirIndices();
+    }
+
+    protected void reconstruirIndices() {
+        indiceBusqueda.ifAvailable(IndiceBusqueda::reconstruir);
+        indiceFacetas.ifAvailable(IndiceFacetas::reconstruir);
+        rankingDescargas.ifAvailable(RankingDescargas::reconstruir);
+    }
+
+    protected long contar(String tabla) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + tabla, Long.class);
+    }
+}
@@ -0,0 +1,149 @@
+package com.alura.literalura.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CacheRespuestasTest {
+    private static final String URL = "https://gutendex.com/books/?search=";
+
+    @TempDir
+    Path directorio;
+
+    //Cada entrada ocupa 2 bytes por carácter más 64: con 200 caracteres, 464 bytes; entran dos en 1000
+    @Test
+    void expulsaLaMenosUsadaAlSuperarElMaximoDeBytes() {
+        CacheRespuestas cache = enMemoria(Duration.ofHours(1), 1000);
+        cache.guardar(URL + "a", cuerpo('a', 200));
+        cache.guardar(URL + "b", cuerpo('b', 200));
+        cache.obtener(URL + "a");
+        cache.guardar(URL + "c", cuerpo('c', 200));
+
+        assertThat(cache.obtener(URL + "a")).contains(cuerpo('a', 200));
+        assertThat(cache.obtener(URL + "b")).isEmpty();
+        assertThat(cache.obtener(URL + "c")).contains(cuerpo('c', 200));
+        CacheRespuestas.EstadisticasCache estadisticas = cache.estadisticas();
+        assertThat(estadisticas.entradas()).isEqualTo(2);
+        assertThat(estadisticas.bytes()).isEqualTo(2 * 464).isLessThanOrEqualTo(1000);
+        assertThat(estadisticas.expulsiones()).isEqualTo(1);
+    }
+
+    @Test
+    void noGuardaEnMemoriaUnaRespuestaMasGrandeQueLaCache() {
+        CacheRespuestas cache = enMemoria(Duration.ofHours(1), 1000);
+        cache.guardar(URL + "a", cuerpo('a', 100));
+        cache.guardar(URL + "grande", cuerpo('g', 1000));
+
+        assertThat(cache.obtener(URL + "grande")).isEmpty();
+        assertThat(cache.obtener(URL + "a")).isPresent();
+    }
+
+    @Test
+    void lasEntradasExpiradasSoloSeSirvenComoVencidas() {
+        CacheRespuestas cache = enMemoria(Duration.ZERO, 1000);
+        cache.guardar(URL + "quijote", "{\"count\":1}");
+
+        assertThat(cache.obtener(URL + "quijote")).isEmpty();
+        assertThat(cache.obtenerVencida(URL + "quijote")).contains("{\"count\":1}");
+        assertThat(cache.estadisticas().vencidasServidas()).isEqualTo(1);
+    }
+
+    @Test
+    void lasUrlsEquivalentesCompartenEntrada() {
+        CacheRespuestas cache = enMemoria(Duration.ofHours(1), 1000);
+        cache.guardar(URL + "Don+Quijote&languages=es", "{\"count\":1}");
+
+        assertThat(cache.obtener("https://gutendex.com/books/?languages=es&search=don%20quijote%20")).contains("{\"count\":1}");
+    }
+
+    @Test
+    void otraInstanciaLeeLaRespuestaDesdeElDisco() {
+        enDisco(Duration.ofHours(1), DataSize.ofMegabytes(1)).guardar(URL + "quijote", "{\"count\":1}");
+
+        CacheRespuestas reiniciada = enDisco(Duration.ofHours(1), DataSize.ofMegabytes(1));
+        assertThat(reiniciada.obtener(URL + "quijote")).contains("{\"count\":1}");
+        assertThat(reiniciada.obtener(URL + "quijote")).contains("{\"count\":1}");
+        CacheRespuestas.EstadisticasCache estadisticas = reiniciada.estadisticas();
+        assertThat(estadisticas.aciertosDisco()).isEqualTo(1);
+        assertThat(estadisticas.aciertosMemoria()).isEqualTo(1);
+    }
+
+    @Test
+    void borraElArchivoExpiradoPeroLoConservaComoVencido() throws IOException {
+        enDisco(Duration.ZERO, DataSize.ofMegabytes(1)).guardar(URL + "quijote", "{\"count\":1}");
+        assertThat(archivos()).isEqualTo(1);
+
+        CacheRespuestas reiniciada = enDisco(Duration.ZERO, DataSize.ofMegabytes(1));
+        assertThat(reiniciada.obtener(URL + "quijote")).isEmpty();
+        assertThat(archivos()).isZero();
+        assertThat(reiniciada.obtenerVencida(URL + "quijote")).contains("{\"count\":1}");
+    }
+
+    //Al superar el máximo se borran los archivos más antiguos hasta bajar al 90 %
+    @Test
+    void limitaElDirectorioBorrandoPrimeroLosMasAntiguos() throws Exception {
+        DataSize maximo = DataSize.ofKilobytes(10);
+        CacheRespuestas cache = enDisco(Duration.ofHours(1), maximo);
+        for (int i = 0; i < 30; i++) {
+            cache.guardar(URL + i, cuerpo('x', 1000));
+            //Fechas de modificación distintas para que el orden de expulsión no dependa del listado
+            Thread.sleep(5);
+        }
+
+        CacheRespuestas.EstadisticasCache estadisticas = cache.estadisticas();
+        assertThat(estadisticas.bytesDisco()).isLessThanOrEqualTo(maximo.toBytes());
+        assertThat(estadisticas.expulsionesDisco()).isPositive();
+        assertThat(tamanoDirectorio()).isEqualTo(estadisticas.bytesDisco());
+
+        CacheRespuestas reiniciada = enDisco(Duration.ofHours(1), maximo);
+        assertThat(reiniciada.obtener(URL + 0)).isEmpty();
+        assertThat(reiniciada.obtener(URL + 29)).isPresent();
+    }
+
+    @Test
+    void alArrancarAplicaElMaximoALoQueQuedoEnElDisco() throws IOException {
+        CacheRespuestas grande = enDisco(Duration.ofHours(1), DataSize.ofMegabytes(1));
+        for (int i = 0; i < 30; i++) {
+            grande.guardar(URL + i, cuerpo('x', 1000));
+        }
+
+        CacheRespuestas.EstadisticasCache estadisticas = enDisco(Duration.ofHours(1), DataSize.ofKilobytes(10)).estadisticas();
+        assertThat(estadisticas.bytesDisco()).isLessThanOrEqualTo(DataSize.ofKilobytes(10).toBytes());
+        assertThat(tamanoDirectorio()).isEqualTo(estadisticas.bytesDisco());
+    }
+
+    private static CacheRespuestas enMemoria(Duration duracion, long bytes) {
+        return new CacheRespuestas(true, duracion, DataSize.ofBytes(bytes), "", DataSize.ofMegabytes(1));
+    }
+
+    //Una instancia nueva empieza con la memoria vacía: lo guardado antes solo está en el disco
+    private CacheRespuestas enDisco(Duration duracion, DataSize maximoDisco) {
+        return new CacheRespuestas(true, duracion, DataSize.ofMegabytes(1), directorio.toString(), maximoDisco);
+    }
+
+    private long archivos() throws IOException {
+        try (Stream<Path> archivos = Files.list(directorio)) {
+            return archivos.filter(archivo -> archivo.toString().endsWith(".json")).count();
+        }
+    }
+
+    private long tamanoDirectorio() throws IOException {
+        try (Stream<Path> archivos = Files.list(directorio)) {
+            return archivos.filter(archivo -> archivo.toString().endsWith(".json"))
+                    .mapToLong(archivo -> archivo.toFile().length())
+                    .sum();
+        }
+    }
+
+    private static String cuerpo(char caracter, int longitud) {
+        return String.valueOf(caracter).repeat(longitud);
+    }
+}
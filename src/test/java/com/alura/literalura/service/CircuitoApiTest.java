@@ -0,0 +1,70 @@
+package com.alura.literalura.service;
+
+import com.alura.literalura.service.CircuitoApi.Estado;
+import com.alura.literalura.service.CircuitoApi.Permiso;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CircuitoApiTest {
+    private final CircuitoApi circuito = new CircuitoApi(3, Duration.ZERO);
+
+    @Test
+    void seAbreConLosFallosSeguidosYUnExitoLosReinicia() {
+        circuito.fallo(circuito.permitir());
+        circuito.fallo(circuito.permitir());
+        circuito.exito(circuito.permitir());
+        circuito.fallo(circuito.permitir());
+        circuito.fallo(circuito.permitir());
+        assertThat(circuito.getEstado()).isEqualTo(Estado.CERRADO);
+
+        circuito.fallo(circuito.permitir());
+        assertThat(circuito.getEstado()).isEqualTo(Estado.ABIERTO);
+    }
+
+    @Test
+    void semiabiertoSoloAdmiteUnaConsultaDePrueba() {
+        abrir();
+
+        assertThat(circuito.permitir()).isEqualTo(Permiso.PRUEBA);
+        assertThat(circuito.getEstado()).isEqualTo(Estado.SEMIABIERTO);
+        assertThat(circuito.permitir()).isEqualTo(Permiso.DENEGADO);
+    }
+
+    //Consultas admitidas antes de abrirse que terminan mientras está semiabierto
+    @Test
+    void soloLaConsultaDePruebaDecideSiSeCierra() {
+        abrir();
+        Permiso prueba = circuito.permitir();
+
+        circuito.exito(Permiso.NORMAL);
+        circuito.fallo(Permiso.NORMAL);
+        assertThat(circuito.getEstado()).isEqualTo(Estado.SEMIABIERTO);
+
+        circuito.exito(prueba);
+        assertThat(circuito.getEstado()).isEqualTo(Estado.CERRADO);
+        assertThat(circuito.permitir()).isEqualTo(Permiso.NORMAL);
+    }
+
+    @Test
+    void siLaPruebaFallaVuelveAAbrirse() {
+        abrir();
+        Permiso prueba = circuito.permitir();
+
+        circuito.fallo(prueba);
+
+        assertThat(circuito.getEstado()).isEqualTo(Estado.ABIERTO);
+        //Un resultado tardío de la misma prueba no cambia el estado
+        circuito.exito(prueba);
+        assertThat(circuito.getEstado()).isEqualTo(Estado.ABIERTO);
+    }
+
+    private void abrir() {
+        for (int i = 0; i < 3; i++) {
+            circuito.fallo(circuito.permitir());
+        }
+        assertThat(circuito.getEstado()).isEqualTo(Estado.ABIERTO);
+    }
+}
@@ -0,0 +1,162 @@
+package com.alura.literalura.service;
+
+import com.alura.literalura.service.GutendexFalso.Respuesta;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+//Reintentos, Retry-After, tiempos de respuesta agotados y cortacircuitos contra un Gutendex local que
+//responde con los errores que indique cada prueba
+class ConsumoAPITest {
+    private static final String CUERPO = "{\"count\":0,\"next\":null,\"results\":[]}";
+    private static final Duration TIEMPO_ABIERTO = Duration.ofMillis(300);
+
+    private GutendexFalso gutendex;
+    private ConsumoAPI consumoAPI;
+    private volatile Respuesta siguiente = Respuesta.ok(CUERPO);
+
+    @AfterEach
+    void cerrar() {
+        if (gutendex != null) {
+            gutendex.close();
+        }
+        if (consumoAPI != null) {
+            consumoAPI.cerrar();
+        }
+    }
+
+    @Test
+    void reintentaLosErroresTransitoriosHastaObtenerRespuesta() throws IOException {
+        gutendex = new GutendexFalso((uri, numero) -> numero <= 2 ? Respuesta.error(503) : Respuesta.ok(CUERPO));
+        consumoAPI = consumo(3, Duration.ofSeconds(5), 5, false);
+
+        assertThat(consumoAPI.obtenerDatos(gutendex.url("/books/?search=quijote"))).isEqualTo(CUERPO);
+        assertThat(gutendex.getSolicitudes()).isEqualTo(3);
+        assertThat(consumoAPI.getSobrecargas()).isEqualTo(2);
+        assertThat(consumoAPI.getEstadoCircuito()).isEqualTo("CERRADO");
+    }
+
+    @Test
+    void laVarianteAsincronaTambienReintenta() throws IOException {
+        gutendex = new GutendexFalso((uri, numero) -> numero == 1 ? Respuesta.error(429) : Respuesta.ok(CUERPO));
+        consumoAPI = consumo(3, Duration.ofSeconds(5), 5, false);
+
+        assertThat(consumoAPI.obtenerDatosAsync(gutendex.url("/books/?search=quijote")))
+                .succeedsWithin(Duration.ofSeconds(10))
+                .isEqualTo(CUERPO);
+        assertThat(gutendex.getSolicitudes()).isEqualTo(2);
+    }
+
+    @Test
+    void respetaRetryAfterAntesDeReintentar() throws IOException {
+        gutendex = new GutendexFalso((uri, numero) -> numero == 1
+                ? new Respuesta(429, "{}", Map.of("Retry-After", "1"))
+                : Respuesta.ok(CUERPO));
+        consumoAPI = consumo(1, Duration.ofSeconds(5), 5, false);
+
+        long inicio = System.nanoTime();
+        assertThat(consumoAPI.obtenerDatos(gutendex.url("/books/?search=quijote"))).isEqualTo(CUERPO);
+        assertThat(Duration.ofNanos(System.nanoTime() - inicio)).isGreaterThanOrEqualTo(Duration.ofMillis(950));
+    }
+
+    @Test
+    void unErrorDelClienteNoSeReintenta() throws IOException {
+        gutendex = new GutendexFalso((uri, numero) -> Respuesta.error(404));
+        consumoAPI = consumo(3, Duration.ofSeconds(5), 1, false);
+
+        assertThatThrownBy(() -> consumoAPI.obtenerDatos(gutendex.url("/books/999999")))
+                .isInstanceOfSatisfying(ErrorConsultaApi.class, error -> assertThat(error.getEstado()).isEqualTo(404));
+        assertThat(gutendex.getSolicitudes()).isEqualTo(1);
+        //Gutendex respondió: un 4xx no abre el circuito
+        assertThat(consumoAPI.getEstadoCircuito()).isEqualTo("CERRADO");
+    }
+
+    @Test
+    void unaRespuestaDemasiadoLentaCuentaComoErrorDeRed() throws IOException {
+        gutendex = new GutendexFalso((uri, numero) -> {
+            Thread.sleep(2_000);
+            return Respuesta.ok(CUERPO);
+        });
+        consumoAPI = consumo(1, Duration.ofMillis(200), 5, false);
+
+        assertThatThrownBy(() -> consumoAPI.obtenerDatos(gutendex.url("/books/?search=lento")))
+                .isInstanceOfSatisfying(ErrorConsultaApi.class, error -> {
+                    assertThat(error.getEstado()).isZero();
+                    assertThat(error.esReintentable()).isTrue();
+                });
+        assertThat(gutendex.getSolicitudes()).isEqualTo(2);
+    }
+
+    @Test
+    void elCircuitoSeAbreTrasLosFallosYSeCierraConLaPrueba() throws Exception {
+        gutendex = new GutendexFalso((uri, numero) -> siguiente);
+        consumoAPI = consumo(0, Duration.ofSeconds(5), 2, false);
+        String url = gutendex.url("/books/?search=quijote");
+
+        siguiente = Respuesta.error(503);
+        for (int i = 0; i < 2; i++) {
+            assertThatThrownBy(() -> consumoAPI.obtenerDatos(url)).isInstanceOf(ErrorConsultaApi.class);
+        }
+        assertThat(consumoAPI.getEstadoCircuito()).isEqualTo("ABIERTO");
+
+        //Abierto: falla sin consultar a Gutendex
+        assertThatThrownBy(() -> consumoAPI.obtenerDatos(url))
+                .isInstanceOfSatisfying(ErrorConsultaApi.class, error -> assertThat(error.getEstado()).isEqualTo(503));
+        assertThat(gutendex.getSolicitudes()).isEqualTo(2);
+
+        //La consulta de prueba falla: vuelve a abrirse por otro período completo
+        Thread.sleep(TIEMPO_ABIERTO.toMillis() + 50);
+        assertThatThrownBy(() -> consumoAPI.obtenerDatos(url)).isInstanceOf(ErrorConsultaApi.class);
+        assertThat(gutendex.getSolicitudes()).isEqualTo(3);
+        assertThat(consumoAPI.getEstadoCircuito()).isEqualTo("ABIERTO");
+
+        Thread.sleep(TIEMPO_ABIERTO.toMillis() + 50);
+        siguiente = Respuesta.ok(CUERPO);
+        assertThat(consumoAPI.obtenerDatos(url)).isEqualTo(CUERPO);
+        assertThat(consumoAPI.getEstadoCircuito()).isEqualTo("CERRADO");
+    }
+
+    @Test
+    void conElCircuitoAbiertoLaVarianteAsincronaFallaSinConsultar() throws Exception {
+        gutendex = new GutendexFalso((uri, numero) -> Respuesta.error(500));
+        consumoAPI = consumo(0, Duration.ofSeconds(5), 1, false);
+        String url = gutendex.url("/books/?search=quijote");
+
+        assertThat(consumoAPI.obtenerDatosAsync(url)).failsWithin(Duration.ofSeconds(5));
+        assertThat(consumoAPI.getEstadoCircuito()).isEqualTo("ABIERTO");
+
+        assertThatThrownBy(() -> consumoAPI.obtenerDatosAsync(url).join())
+                .isInstanceOf(CompletionException.class)
+                .hasCauseInstanceOf(ErrorConsultaApi.class);
+        assertThat(gutendex.getSolicitudes()).isEqualTo(1);
+    }
+
+    @Test
+    void sinGutendexSeUsaLaRespuestaVencidaDeLaCache() throws IOException {
+        gutendex = new GutendexFalso((uri, numero) -> siguiente);
+        //Caché con duración cero: cada respuesta vence en cuanto se guarda
+        consumoAPI = consumo(0, Duration.ofSeconds(5), 5, true);
+        String url = gutendex.url("/books/?search=quijote");
+
+        assertThat(consumoAPI.obtenerDatos(url)).isEqualTo(CUERPO);
+        siguiente = Respuesta.error(503);
+        assertThat(consumoAPI.obtenerDatos(url)).isEqualTo(CUERPO);
+        assertThat(consumoAPI.obtenerDatosAsync(url)).succeedsWithin(Duration.ofSeconds(5)).isEqualTo(CUERPO);
+        assertThat(gutendex.getSolicitudes()).isEqualTo(3);
+    }
+
+    private static ConsumoAPI consumo(int reintentos, Duration tiempoRespuesta, int fallosParaAbrir, boolean cacheVencida) {
+        CacheRespuestas cache = new CacheRespuestas(cacheVencida, Duration.ZERO, DataSize.ofMegabytes(1), "",
+                DataSize.ofMegabytes(1));
+        return new ConsumoAPI(cache, Duration.ofSeconds(5), tiempoRespuesta, 32, reintentos,
+                Duration.ofMillis(10), Duration.ofSeconds(2), fallosParaAbrir, TIEMPO_ABIERTO);
+    }
+}
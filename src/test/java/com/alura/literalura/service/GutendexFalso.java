@@ -0,0 +1,86 @@
+package com.alura.literalura.service;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+//Servidor HTTP local que reemplaza a Gutendex en las pruebas. Cada solicitud se responde con lo que
+//devuelva el manejador, que recibe la url y el número de solicitud (desde 1)
+final class GutendexFalso implements AutoCloseable {
+    @FunctionalInterface
+    interface Manejador {
+        Respuesta responder(URI uri, int numero) throws Exception;
+    }
+
+    record Respuesta(int estado, String cuerpo, Map<String, String> cabeceras) {
+        static Respuesta ok(String cuerpo) {
+            return new Respuesta(200, cuerpo, Map.of());
+        }
+
+        static Respuesta error(int estado) {
+            return new Respuesta(estado, "{\"detail\":\"error " + estado + "\"}", Map.of());
+        }
+    }
+
+    private final HttpServer servidor;
+    private final ExecutorService ejecutor = Executors.newCachedThreadPool();
+    private final AtomicInteger solicitudes = new AtomicInteger();
+    private final List<URI> recibidas = new CopyOnWriteArrayList<>();
+
+    GutendexFalso(Manejador manejador) throws IOException {
+        servidor = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        servidor.setExecutor(ejecutor);
+        servidor.createContext("/", intercambio -> atender(intercambio, manejador));
+        servidor.start();
+    }
+
+    private void atender(HttpExchange intercambio, Manejador manejador) throws IOException {
+        int numero = solicitudes.incrementAndGet();
+        recibidas.add(intercambio.getRequestURI());
+        Respuesta respuesta;
+        try {
+            respuesta = manejador.responder(intercambio.getRequestURI(), numero);
+        } catch (Exception e) {
+            //Manejador interrumpido al cerrar el servidor, o una demora que el cliente ya abandonó
+            intercambio.close();
+            return;
+        }
+        byte[] cuerpo = respuesta.cuerpo().getBytes(StandardCharsets.UTF_8);
+        respuesta.cabeceras().forEach(intercambio.getResponseHeaders()::set);
+        intercambio.getResponseHeaders().set("Content-Type", "application/json");
+        intercambio.sendResponseHeaders(respuesta.estado(), cuerpo.length);
+        try (OutputStream salida = intercambio.getResponseBody()) {
+            salida.write(cuerpo);
+        }
+    }
+
+    String url(String camino) {
+        return "http://127.0.0.1:" + servidor.getAddress().getPort() + camino;
+    }
+
+    int getSolicitudes() {
+        return solicitudes.get();
+    }
+
+    List<URI> getRecibidas() {
+        return recibidas;
+    }
+
+    @Override
+    public void close() {
+        servidor.stop(0);
+        ejecutor.shutdownNow();
+    }
+}
@@ -0,0 +1,162 @@
+package com.alura.literalura.service;
+
+import com.alura.literalura.model.DatosLibros;
+import com.alura.literalura.service.GutendexFalso.Respuesta;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.stubbing.Answer;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.IntPredicate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+//Importación completa contra un Gutendex local que sirve las páginas de src/test/resources/gutendex:
+//3 páginas de 3 libros (la última con 2), un libro sin título y un título repetido en las páginas 1 y 3
+class ImportadorCatalogoTest {
+    private static final List<String> TITULOS = List.of(
+            "Frankenstein; Or, The Modern Prometheus",
+            "Pride and Prejudice",
+            "Don Quijote",
+            "Persuasion",
+            "The Adventures of Sherlock Holmes",
+            "Frankenstein; Or, The Modern Prometheus",
+            "Moby Dick; Or, The Whale");
+
+    private final Set<String> registrados = ConcurrentHashMap.newKeySet();
+    private final List<List<String>> lotes = new CopyOnWriteArrayList<>();
+    private final ByteArrayOutputStream salida = new ByteArrayOutputStream();
+    private PrintStream salidaOriginal;
+    private IntPredicate paginaFallida = pagina -> false;
+    private GutendexFalso gutendex;
+    private ConsumoAPI consumoAPI;
+    private LibroService libroService;
+
+    @BeforeEach
+    void crear() throws IOException {
+        gutendex = new GutendexFalso((uri, numero) -> pagina(uri));
+        CacheRespuestas cache = new CacheRespuestas(false, Duration.ofHours(1), DataSize.ofMegabytes(1), "",
+                DataSize.ofMegabytes(1));
+        consumoAPI = new ConsumoAPI(cache, Duration.ofSeconds(5), Duration.ofSeconds(10), 32, 0,
+                Duration.ofMillis(10), Duration.ofMillis(100), 100, Duration.ofSeconds(30));
+        libroService = mock(LibroService.class);
+        when(libroService.registrarLote(anyList())).thenAnswer(registrar());
+        salidaOriginal = System.out;
+        System.setOut(new PrintStream(salida, true, StandardCharsets.UTF_8));
+    }
+
+    @AfterEach
+    void cerrar() {
+        System.setOut(salidaOriginal);
+        gutendex.close();
+        consumoAPI.cerrar();
+    }
+
+    @Test
+    void recorreLasPaginasEnOrdenYDescartaLosLibrosSinTitulo() {
+        importador(100, 1, 1).importarCatalogo();
+
+        assertThat(paginasPedidas()).containsExactly(1, 2, 3);
+        assertThat(lotes).hasSize(1);
+        assertThat(lotes.get(0)).containsExactlyElementsOf(TITULOS);
+        assertThat(reporte()).contains("Páginas: 3 (fallidas: 0)", "Libros: 7", "Nuevos: 6 (ya registrados: 1)");
+    }
+
+    @Test
+    void guardaLosLibrosEnLotesDelTamanoIndicado() {
+        importador(2, 1, 1).importarCatalogo();
+
+        assertThat(lotes).extracting(List::size).containsExactly(2, 2, 2, 1);
+        assertThat(lotes.stream().flatMap(List::stream)).containsExactlyElementsOf(TITULOS);
+    }
+
+    @Test
+    void conDescargasSimultaneasCadaPaginaSePideUnaSolaVez() {
+        importador(100, 2, 4).importarCatalogo();
+
+        assertThat(paginasPedidas()).containsExactlyInAnyOrder(1, 2, 3);
+        assertThat(lotes.stream().flatMap(List::stream)).containsExactlyInAnyOrderElementsOf(TITULOS);
+        assertThat(registrados).hasSize(6);
+    }
+
+    @Test
+    void unaPaginaFallidaNoDetieneLaImportacion() {
+        paginaFallida = pagina -> pagina == 2;
+
+        importador(100, 1, 1).importarCatalogo();
+
+        assertThat(lotes.get(0)).containsExactly(TITULOS.get(0), TITULOS.get(1), TITULOS.get(5), TITULOS.get(6));
+        assertThat(reporte()).contains("Páginas: 2 (fallidas: 1)", "Nuevos: 3 (ya registrados: 1)");
+    }
+
+    //Un registro simultáneo desde el menú o la API guardó uno de los títulos: el lote se repite
+    @Test
+    void repiteElLoteCuandoOtroRegistroGuardoUnTitulo() {
+        doThrow(new DataIntegrityViolationException("uk_libros_titulo"))
+                .doAnswer(registrar())
+                .when(libroService).registrarLote(anyList());
+
+        importador(100, 1, 1).importarCatalogo();
+
+        verify(libroService, times(2)).registrarLote(anyList());
+        assertThat(lotes).hasSize(1);
+        assertThat(reporte()).contains("Nuevos: 6 (ya registrados: 1)");
+    }
+
+    private ImportadorCatalogo importador(int lote, int simultaneas, int simultaneasMaximo) {
+        return new ImportadorCatalogo(libroService, consumoAPI, gutendex.url("/books/"), simultaneas, simultaneasMaximo, lote);
+    }
+
+    //Como la restricción única de títulos: solo cuentan como nuevos los que no estaban registrados.
+    //El importador vacía la lista después de guardarla, así que se copian los títulos
+    private Answer<Integer> registrar() {
+        return invocacion -> {
+            List<DatosLibros> lote = invocacion.getArgument(0);
+            List<String> titulos = lote.stream().map(DatosLibros::titulo).toList();
+            lotes.add(titulos);
+            return (int) titulos.stream().filter(registrados::add).count();
+        };
+    }
+
+    private Respuesta pagina(URI uri) throws IOException {
+        int pagina = numeroDePagina(uri);
+        if (paginaFallida.test(pagina)) {
+            return Respuesta.error(404);
+        }
+        try (InputStream recurso = getClass().getResourceAsStream("/gutendex/pagina-" + pagina + ".json")) {
+            if (recurso == null) {
+                return Respuesta.error(404);
+            }
+            return Respuesta.ok(new String(recurso.readAllBytes(), StandardCharsets.UTF_8)
+                    .replace("${base}", gutendex.url("/books/")));
+        }
+    }
+
+    private List<Integer> paginasPedidas() {
+        return gutendex.getRecibidas().stream().map(ImportadorCatalogoTest::numeroDePagina).toList();
+    }
+
+    private static int numeroDePagina(URI uri) {
+        String consulta = uri.getQuery();
+        return consulta == null || !consulta.startsWith("page=") ? 1 : Integer.parseInt(consulta.substring(5));
+    }
+
+    private String reporte() {
+        return salida.toString(StandardCharsets.UTF_8);
+    }
+}
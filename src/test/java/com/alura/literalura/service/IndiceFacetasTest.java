@@ -0,0 +1,122 @@
+package com.alura.literalura.service;
+
+import com.alura.literalura.dto.ResultadoFiltroDTO;
+import com.alura.literalura.model.DatosAutor;
+import com.alura.literalura.model.DatosLibros;
+import com.alura.literalura.repository.LibroRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Limit;
+
+import java.util.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+//Los filtros combinados de CatalogoService, respondidos con IndiceFacetas, dan el mismo total y los mismos
+//20 primeros libros que las consultas de LibroRepository, también después de registrar libros y de
+//cambiar sus descargas sin reconstruir el índice
+class IndiceFacetasTest extends BaseDeDatosPrueba {
+    private static final List<String> IDIOMAS = Arrays.asList(null, "en", "fr", "de", "la");
+    private static final List<Integer> AÑOS = Arrays.asList(null, -350, 1500, 1800, 1850, 1900, 2000);
+    private static final List<Double> DESCARGAS_MINIMAS = Arrays.asList(null, 0.0, 10.0, 150.0, 1000.0, 1_000_000.0);
+    //Sin nacimiento (nunca vivo), sin fallecimiento (sigue vivo), antes de Cristo y en siglos distintos
+    private static final List<DatosAutor> AUTORES = List.of(
+            new DatosAutor("Platón", -427, -347),
+            new DatosAutor("Aristóteles", -384, -322),
+            new DatosAutor("Anónimo", null, null),
+            new DatosAutor("Cervantes Saavedra, Miguel de", 1547, 1616),
+            new DatosAutor("Shakespeare, William", 1564, 1616),
+            new DatosAutor("Austen, Jane", 1775, 1817),
+            new DatosAutor("Hugo, Victor", 1802, 1885),
+            new DatosAutor("Dickens, Charles", 1812, 1870),
+            new DatosAutor("Twain, Mark", 1835, 1910),
+            new DatosAutor("Woolf, Virginia", 1882, 1941),
+            new DatosAutor("Autor sin fallecimiento", 1950, null),
+            new DatosAutor("Nacido en 1850", 1850, 1851));
+
+    @Autowired
+    private CatalogoService catalogoService;
+    @Autowired
+    private LibroService libroService;
+    @Autowired
+    private LibroRepository libroRepository;
+
+    private final Random aleatorio = new Random(84);
+    private final Map<Integer, DatosLibros> registrados = new LinkedHashMap<>();
+
+    @BeforeEach
+    void registrarCatalogo() {
+        registrados.clear();
+        List<DatosLibros> lote = new ArrayList<>();
+        for (int i = 1; i <= 300; i++) {
+            lote.add(nuevo(i));
+        }
+        libroService.registrarLote(lote);
+        lote.forEach(libro -> registrados.put(libro.gutendexId(), libro));
+        reconstruirIndices();
+    }
+
+    @Test
+    void coincideConLasConsultasDespuesDeReconstruir() {
+        comprobarFiltros();
+    }
+
+    @Test
+    void coincideConLasConsultasDespuesDeRegistrosYCambiosDeDescargas() {
+        for (int i = 301; i <= 340; i++) {
+            DatosLibros libro = nuevo(i);
+            libroService.registrarLibro(libro);
+            registrados.put(i, libro);
+        }
+        List<Integer> ids = new ArrayList<>(registrados.keySet());
+        for (int i = 0; i < 60; i++) {
+            DatosLibros anterior = registrados.get(ids.get(aleatorio.nextInt(ids.size())));
+            DatosLibros cambiado = new DatosLibros(anterior.titulo(), anterior.autor(), anterior.idiomas(),
+                    descargas(), anterior.gutendexId());
+            libroService.registrarLibro(cambiado);
+            registrados.put(cambiado.gutendexId(), cambiado);
+        }
+        comprobarFiltros();
+    }
+
+    private void comprobarFiltros() {
+        for (String idioma : IDIOMAS) {
+            for (Integer año : AÑOS) {
+                for (Double minimo : DESCARGAS_MINIMAS) {
+                    ResultadoFiltroDTO resultado = catalogoService.filtrarLibros(idioma, año, minimo);
+                    String filtro = "idioma=%s, vivoEn=%s, descargasMinimas=%s".formatted(idioma, año, minimo);
+                    assertThat(resultado.total()).as(filtro)
+                            .isEqualTo(libroRepository.contarLibrosFiltrados(idioma, año, minimo));
+                    assertThat(resultado.libros()).as(filtro)
+                            .isEqualTo(libroRepository.filtrarLibrosDTO(idioma, año, minimo, Limit.of(20)));
+                }
+            }
+        }
+    }
+
+    //Sin autores, con uno o con varios; uno o dos idiomas
+    private DatosLibros nuevo(int gutendexId) {
+        List<DatosAutor> autores = new ArrayList<>();
+        for (int i = aleatorio.nextInt(10) == 0 ? 0 : 1 + aleatorio.nextInt(aleatorio.nextInt(4) == 0 ? 3 : 1); i > 0; i--) {
+            DatosAutor autor = AUTORES.get(aleatorio.nextInt(AUTORES.size()));
+            if (!autores.contains(autor)) {
+                autores.add(autor);
+            }
+        }
+        List<String> idiomas = aleatorio.nextInt(5) == 0
+                ? List.of("en", "fr")
+                : List.of(IDIOMAS.get(1 + aleatorio.nextInt(IDIOMAS.size() - 1)));
+        return new DatosLibros("Libro " + gutendexId, autores, idiomas, descargas(), gutendexId);
+    }
+
+    //Sin dato, empates y valores en todos los rangos del índice, incluidos los límites de cada rango
+    private Double descargas() {
+        return switch (aleatorio.nextInt(6)) {
+            case 0 -> null;
+            case 1 -> (double) aleatorio.nextInt(20);
+            case 2 -> Math.pow(10, aleatorio.nextInt(8));
+            default -> Math.floor(10 / Math.pow(aleatorio.nextDouble() + 1e-6, 1.2));
+        };
+    }
+}
@@ -0,0 +1,143 @@
+package com.alura.literalura.service;
+
+import com.alura.literalura.model.DatosAutor;
+import com.alura.literalura.model.DatosLibros;
+import com.alura.literalura.model.Libro;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.nio.file.Path;
+import java.util.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+//Exportar y restaurar con COPY en PostgreSQL deja las cuatro tablas exactamente como estaban, incluidos
+//nulls, textos con caracteres especiales para COPY y ids salteados, y las secuencias por encima de los ids
+class InstantaneaCatalogoTest extends BaseDeDatosPrueba {
+    private static final int AUTORES = 3_000;
+    private static final int LIBROS = 10_000;
+    private static final String[] IDIOMAS = {"en", "en", "en", "fr", "de", "es", "fi", "pt", "zh"};
+    //Tabulador, saltos de línea y barras invertidas se escapan en el formato de texto de COPY
+    private static final String[] TEXTOS_ESPECIALES = {"Tabulador\taquí", "Dos\nlíneas\r\nen Windows",
+            "Barra \\ invertida y \\N literal", "", "日本語の本", "Émile Zola — «Germinal» 📚", "x".repeat(200)};
+
+    private static final List<String> CONSULTAS = List.of(
+            "SELECT id, nombre, fecha_nacimiento, fecha_fallecimiento FROM autores ORDER BY id",
+            "SELECT id, titulo, gutendex_id, numero_de_descargas FROM libros ORDER BY id",
+            "SELECT libro_id, idioma FROM libro_idiomas ORDER BY libro_id, idioma",
+            "SELECT libro_id, autor_id FROM libro_autor ORDER BY libro_id, autor_id");
+
+    @Autowired
+    private InstantaneaCatalogo instantaneaCatalogo;
+    @Autowired
+    private LibroService libroService;
+
+    @TempDir
+    Path directorio;
+
+    @ParameterizedTest
+    @ValueSource(strings = {"catalogo.lit", "catalogo.lit.gz"})
+    void restauraLasMismasFilasQueSeExportaron(String nombre) {
+        cargarCatalogo();
+        List<List<Map<String, Object>>> antes = leerTablas();
+        Path archivo = directorio.resolve(nombre);
+
+        instantaneaCatalogo.exportar(archivo);
+        vaciar();
+        instantaneaCatalogo.restaurar(archivo);
+
+        assertThat(leerTablas()).isEqualTo(antes);
+        assertThat(antes.get(0)).hasSize(AUTORES);
+        assertThat(antes.get(1)).hasSize(LIBROS + TEXTOS_ESPECIALES.length);
+    }
+
+    //Los libros y autores nuevos toman ids de las secuencias, que quedan después de los restaurados
+    @Test
+    void despuesDeRestaurarSeRegistranLibrosSinChocarConLosIds() {
+        cargarCatalogo();
+        Path archivo = directorio.resolve("catalogo.lit");
+        instantaneaCatalogo.exportar(archivo);
+        vaciar();
+        instantaneaCatalogo.restaurar(archivo);
+        long ultimoLibro = jdbcTemplate.queryForObject("SELECT MAX(id) FROM libros", Long.class);
+        long ultimoAutor = jdbcTemplate.queryForObject("SELECT MAX(id) FROM autores", Long.class);
+
+        Libro libro = libroService.registrarLibro(new DatosLibros("Libro posterior a la restauración",
+                List.of(new DatosAutor("Autor posterior a la restauración", 1900, null)), List.of("es"), 10.0, 999_999));
+
+        assertThat(libro.getId()).isGreaterThan(ultimoLibro);
+        assertThat(libro.getAutores()).allSatisfy(autor -> assertThat(autor.getId()).isGreaterThan(ultimoAutor));
+    }
+
+    @Test
+    void noRestauraSobreUnaBaseConLibros() {
+        cargarCatalogo();
+        Path archivo = directorio.resolve("catalogo.lit");
+        instantaneaCatalogo.exportar(archivo);
+
+        assertThatThrownBy(() -> instantaneaCatalogo.restaurar(archivo))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("base vacía");
+        assertThat(contar("libros")).isEqualTo(LIBROS + TEXTOS_ESPECIALES.length);
+    }
+
+    //Ids con huecos, uno a tres autores y uno o dos idiomas por libro, y valores nulos en todas las
+    //columnas que los admiten. La semilla es fija
+    private void cargarCatalogo() {
+        Random aleatorio = new Random(84);
+        List<Object[]> autores = new ArrayList<>();
+        for (int i = 1; i <= AUTORES; i++) {
+            Integer nacimiento = aleatorio.nextInt(20) == 0 ? null : aleatorio.nextInt(2400) - 500;
+            Integer fallecimiento = nacimiento == null || aleatorio.nextInt(8) == 0 ? null : nacimiento + 20 + aleatorio.nextInt(80);
+            autores.add(new Object[]{3L * i, "Autor " + i + ", " + TEXTOS_ESPECIALES[i % TEXTOS_ESPECIALES.length],
+                    nacimiento, fallecimiento});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO autores (id, nombre, fecha_nacimiento, fecha_fallecimiento) VALUES (?, ?, ?, ?)", autores);
+
+        List<Object[]> libros = new ArrayList<>();
+        List<Object[]> idiomas = new ArrayList<>();
+        List<Object[]> libroAutor = new ArrayList<>();
+        long id = 0;
+        for (int i = 0; i < LIBROS + TEXTOS_ESPECIALES.length; i++) {
+            id += 1 + aleatorio.nextInt(1000) / 990 * 5_000;
+            String titulo = i < TEXTOS_ESPECIALES.length ? TEXTOS_ESPECIALES[i] : "Libro " + i;
+            Integer gutendexId = aleatorio.nextInt(10) == 0 ? null : i + 1;
+            libros.add(new Object[]{id, titulo, gutendexId, descargas(aleatorio)});
+            Set<String> delLibro = new TreeSet<>();
+            for (int j = aleatorio.nextInt(4) == 0 ? 2 : 1; delLibro.size() < j; ) {
+                delLibro.add(IDIOMAS[aleatorio.nextInt(IDIOMAS.length)]);
+            }
+            for (String idioma : delLibro) {
+                idiomas.add(new Object[]{id, idioma});
+            }
+            Set<Long> autoresDelLibro = new TreeSet<>();
+            for (int j = 1 + aleatorio.nextInt(3); autoresDelLibro.size() < j; ) {
+                autoresDelLibro.add(3L * (1 + aleatorio.nextInt(AUTORES)));
+            }
+            for (Long autorId : autoresDelLibro) {
+                libroAutor.add(new Object[]{id, autorId});
+            }
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO libros (id, titulo, gutendex_id, numero_de_descargas) VALUES (?, ?, ?, ?)", libros);
+        jdbcTemplate.batchUpdate("INSERT INTO libro_idiomas (libro_id, idioma) VALUES (?, ?)", idiomas);
+        jdbcTemplate.batchUpdate("INSERT INTO libro_autor (libro_id, autor_id) VALUES (?, ?)", libroAutor);
+    }
+
+    //Sin dato, enteras (como las de Gutendex) y con decimales, que el archivo guarda de otra forma
+    private static Double descargas(Random aleatorio) {
+        return switch (aleatorio.nextInt(10)) {
+            case 0 -> null;
+            case 1 -> aleatorio.nextDouble() * 1000;
+            case 2 -> 1e15 + aleatorio.nextInt(1000);
+            default -> (double) aleatorio.nextInt(100_000);
+        };
+    }
+
+    private List<List<Map<String, Object>>> leerTablas() {
+        return CONSULTAS.stream().map(jdbcTemplate::queryForList).toList();
+    }
+}
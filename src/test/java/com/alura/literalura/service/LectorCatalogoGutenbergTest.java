@@ -0,0 +1,122 @@
+package com.alura.literalura.service;
+
+import com.alura.literalura.model.DatosAutor;
+import com.alura.literalura.model.DatosLibros;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+//src/test/resources/catalogo/pg_catalog.csv: con marca de orden de bytes, fin de línea \r\n, un título
+//con salto de línea, años a.C., roles entre corchetes, comillas dobles escapadas y registros descartables
+class LectorCatalogoGutenbergTest {
+
+    @Test
+    void entregaSoloLosTextosConTituloEId() throws IOException {
+        List<DatosLibros> libros = new ArrayList<>();
+        LectorCatalogoGutenberg.Resultado resultado = leerCatalogo(libros);
+
+        assertThat(resultado.registros()).isEqualTo(8);
+        assertThat(resultado.libros()).isEqualTo(5);
+        assertThat(resultado.descartados()).isEqualTo(3);
+        assertThat(libros).extracting(DatosLibros::gutendexId).containsExactly(84, 1727, 2000, 12, 13);
+    }
+
+    @Test
+    void laCabeceraConMarcaDeOrdenDeBytesSeReconoce() throws IOException {
+        List<DatosLibros> libros = new ArrayList<>();
+        leerCatalogo(libros);
+
+        DatosLibros frankenstein = porId(libros).get(84);
+        assertThat(frankenstein.titulo()).isEqualTo("Frankenstein; Or, The Modern Prometheus");
+        assertThat(frankenstein.idiomas()).containsExactly("en");
+        assertThat(frankenstein.numeroDeDescargas()).isNull();
+        assertThat(frankenstein.autor()).containsExactly(new DatosAutor("Shelley, Mary Wollstonecraft", 1797, 1851));
+    }
+
+    @Test
+    void unSaltoDeLineaEntreComillasQuedaDentroDelTitulo() throws IOException {
+        List<DatosLibros> libros = new ArrayList<>();
+        leerCatalogo(libros);
+
+        assertThat(porId(libros).get(1727).titulo())
+                .isEqualTo("The Odyssey Rendered into English prose for the use of those who cannot read the original");
+    }
+
+    @Test
+    void losAñosAntesDeCristoSonNegativosYLosRolesSeQuitan() throws IOException {
+        List<DatosLibros> libros = new ArrayList<>();
+        leerCatalogo(libros);
+
+        assertThat(porId(libros).get(1727).autor()).containsExactly(
+                new DatosAutor("Homer", -751, -651),
+                new DatosAutor("Butler, Samuel", 1835, 1902));
+        assertThat(porId(libros).get(2000).autor()).containsExactly(
+                new DatosAutor("Cervantes Saavedra, Miguel de", 1547, 1616),
+                new DatosAutor("Ormsby, John", 1829, 1895));
+        assertThat(porId(libros).get(12).autor()).containsExactly(
+                new DatosAutor("Anónimo", null, 1554),
+                new DatosAutor("Aristóteles", -384, -322));
+    }
+
+    @Test
+    void lasComillasDoblesEscapadasYLasListasSeSeparan() throws IOException {
+        List<DatosLibros> libros = new ArrayList<>();
+        leerCatalogo(libros);
+
+        DatosLibros lazarillo = porId(libros).get(12);
+        assertThat(lazarillo.titulo()).isEqualTo("El \"Lazarillo\" de Tormes");
+        assertThat(lazarillo.idiomas()).containsExactly("es", "en");
+        assertThat(porId(libros).get(13).autor()).isEmpty();
+    }
+
+    @Test
+    void unArchivoVacioNoTieneRegistros() throws IOException {
+        LectorCatalogoGutenberg.Resultado resultado = new LectorCatalogoGutenberg(new StringReader(""))
+                .leer(libro -> {
+                    throw new AssertionError("No debería haber libros");
+                });
+
+        assertThat(resultado.registros()).isZero();
+    }
+
+    @Test
+    void rechazaUnCatalogoSinLasColumnasEsperadas() {
+        Reader entrada = new StringReader("Id,Title\n1,Frankenstein\n");
+
+        assertThatThrownBy(() -> new LectorCatalogoGutenberg(entrada).leer(libro -> { }))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("Text#");
+    }
+
+    @Test
+    void rechazaComillasSinCerrar() {
+        Reader entrada = new StringReader("Text#,Type,Issued,Title,Language,Authors\n1,Text,2000,\"Sin cerrar,en,\n");
+
+        assertThatThrownBy(() -> new LectorCatalogoGutenberg(entrada).leer(libro -> { }))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("Comillas");
+    }
+
+    private LectorCatalogoGutenberg.Resultado leerCatalogo(List<DatosLibros> libros) throws IOException {
+        try (Reader entrada = new InputStreamReader(
+                getClass().getResourceAsStream("/catalogo/pg_catalog.csv"), StandardCharsets.UTF_8)) {
+            return new LectorCatalogoGutenberg(entrada).leer(libros::add);
+        }
+    }
+
+    private static Map<Integer, DatosLibros> porId(List<DatosLibros> libros) {
+        return libros.stream().collect(Collectors.toMap(DatosLibros::gutendexId, Function.identity()));
+    }
+}
@@ -0,0 +1,132 @@
+package com.alura.literalura.service;
+
+import com.alura.literalura.dto.LibroDTO;
+import com.alura.literalura.model.DatosAutor;
+import com.alura.literalura.model.DatosLibros;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+
+import java.lang.ref.WeakReference;
+import java.util.*;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+//El recorrido por keyset devuelve cada libro una sola vez y en orden aunque la tabla cambie entre
+//páginas: lo que se inserta después del último id leído aparece y lo anterior no. Tampoco retiene las
+//páginas ya recorridas
+class ListadoServiceTest extends BaseDeDatosPrueba {
+    //Ids de 3 en 3: deja lugar para insertar libros antes y después del último leído
+    private static final int PASO = 3;
+
+    @Autowired
+    private ListadoService listadoService;
+    @Autowired
+    private LibroService libroService;
+    @Value("${literalura.listado.tamano-pagina}")
+    private int tamanoPagina;
+
+    @Test
+    void recorreCadaLibroUnaVezAunqueCambienLosLibrosDuranteElRecorrido() {
+        int libros = 1_050;
+        insertar(libros);
+        jdbcTemplate.execute("SELECT setval('libros_seq', (SELECT MAX(id) FROM libros) + 1000)");
+        Set<Long> esperados = new TreeSet<>();
+        for (long i = 1; i <= libros; i++) {
+            esperados.add(PASO * i);
+        }
+        Set<Long> detras = new HashSet<>();
+        List<Long> recorridos = new ArrayList<>();
+        Random aleatorio = new Random(84);
+
+        try (Stream<LibroDTO> listado = listadoService.transmitirLibros()) {
+            listado.forEach(libro -> {
+                long ultimo = libro.id();
+                recorridos.add(ultimo);
+                //Al terminar cada página, antes de pedir la siguiente
+                if (recorridos.size() % tamanoPagina != 0) {
+                    return;
+                }
+                for (int i = 0; i < 3; i++) {
+                    //Detrás del último leído: ya no puede aparecer
+                    long anterior = ultimo - 1 - PASO * aleatorio.nextInt(100);
+                    if (insertarSiNoExiste(anterior)) {
+                        detras.add(anterior);
+                    }
+                    //Adelante, en la página siguiente o en otra: tiene que aparecer una vez
+                    long adelante = ultimo + 1 + PASO * aleatorio.nextInt(150);
+                    if (insertarSiNoExiste(adelante)) {
+                        esperados.add(adelante);
+                    }
+                }
+                //Borrado adelante: no aparece y no se salta a sus vecinos
+                long borrado = PASO * (ultimo / PASO + 1 + aleatorio.nextInt(150));
+                if (esperados.remove(borrado)) {
+                    jdbcTemplate.update("DELETE FROM libro_idiomas WHERE libro_id = ?", borrado);
+                    jdbcTemplate.update("DELETE FROM libros WHERE id = ?", borrado);
+                }
+                //Registrado desde la aplicación: toma un id de la secuencia, mayor que todos
+                if (recorridos.size() % (3 * tamanoPagina) == 0) {
+                    libroService.registrarLibro(new DatosLibros("Registrado " + ultimo,
+                            List.of(new DatosAutor("Austen, Jane", 1775, 1817)), List.of("en"), 1.0, (int) ultimo));
+                    esperados.add(jdbcTemplate.queryForObject("SELECT MAX(id) FROM libros", Long.class));
+                }
+            });
+        }
+
+        assertThat(recorridos).isSorted().doesNotHaveDuplicates();
+        assertThat(recorridos).containsExactlyElementsOf(esperados);
+        assertThat(recorridos).doesNotContainAnyElementsOf(detras);
+        assertThat(detras).isNotEmpty();
+        assertThat(esperados).hasSizeGreaterThan(libros);
+    }
+
+    //Solo la página en curso queda alcanzable: los libros de la primera página se liberan mientras el
+    //recorrido sigue abierto
+    @Test
+    void noRetieneLasPaginasYaRecorridas() {
+        insertar(2_000);
+        List<WeakReference<LibroDTO>> primeraPagina = new ArrayList<>();
+        int[] leidos = {0};
+        boolean[] liberadas = {false};
+
+        try (Stream<LibroDTO> listado = listadoService.transmitirLibros()) {
+            listado.forEach(libro -> {
+                if (leidos[0]++ < tamanoPagina) {
+                    primeraPagina.add(new WeakReference<>(libro));
+                } else if (leidos[0] == 1_500) {
+                    liberadas[0] = liberadas(primeraPagina);
+                }
+            });
+        }
+
+        assertThat(leidos[0]).isEqualTo(2_000);
+        assertThat(primeraPagina).hasSize(tamanoPagina);
+        assertThat(liberadas[0]).as("la primera página se liberó durante el recorrido").isTrue();
+    }
+
+    private static boolean liberadas(List<WeakReference<LibroDTO>> referencias) {
+        for (int intento = 0; intento < 10; intento++) {
+            System.gc();
+            if (referencias.stream().allMatch(referencia -> referencia.get() == null)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void insertar(int libros) {
+        List<Object[]> filas = new ArrayList<>();
+        for (long i = 1; i <= libros; i++) {
+            filas.add(new Object[]{PASO * i, "Libro " + PASO * i, (double) i});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO libros (id, titulo, numero_de_descargas) VALUES (?, ?, ?)", filas);
+        jdbcTemplate.update("INSERT INTO libro_idiomas (libro_id, idioma) SELECT id, 'en' FROM libros");
+    }
+
+    private boolean insertarSiNoExiste(long id) {
+        return jdbcTemplate.update("INSERT INTO libros (id, titulo, numero_de_descargas) VALUES (?, ?, 0) ON CONFLICT DO NOTHING",
+                id, "Insertado " + id) == 1;
+    }
+}
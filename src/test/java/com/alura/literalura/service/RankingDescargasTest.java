@@ -0,0 +1,150 @@
+package com.alura.literalura.service;
+
+import com.alura.literalura.dto.LibroDTO;
+import com.alura.literalura.model.DatosAutor;
+import com.alura.literalura.model.DatosLibros;
+import com.alura.literalura.repository.AutorRepository;
+import com.alura.literalura.repository.LibroRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Limit;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+//La clasificación en memoria coincide con las consultas a la base después de registrar libros y de
+//cambiar sus descargas, incluso cuando las bajadas vacían la clasificación y hay que recargarla
+class RankingDescargasTest extends BaseDeDatosPrueba {
+    private static final List<String> IDIOMAS = List.of("en", "fr", "es");
+    private static final List<DatosAutor> AUTORES = List.of(
+            new DatosAutor("Austen, Jane", 1775, 1817),
+            new DatosAutor("Dickens, Charles", 1812, 1870),
+            new DatosAutor("Hugo, Victor", 1802, 1885),
+            new DatosAutor("Galdós, Benito Pérez", 1843, 1920));
+
+    @Autowired
+    private RankingDescargas rankingDescargas;
+    @Autowired
+    private LibroService libroService;
+    @Autowired
+    private LibroRepository libroRepository;
+    @Autowired
+    private AutorRepository autorRepository;
+
+    //Datos con los que se registró cada libro, por id de Gutendex
+    private final Map<Integer, DatosLibros> registrados = new LinkedHashMap<>();
+    private final Random aleatorio = new Random(84);
+
+    @BeforeEach
+    void registrarCatalogo() {
+        registrados.clear();
+        List<DatosLibros> lote = new ArrayList<>();
+        for (int i = 1; i <= 150; i++) {
+            lote.add(nuevo(i));
+        }
+        libroService.registrarLote(lote);
+        lote.forEach(libro -> registrados.put(libro.gutendexId(), libro));
+        reconstruirIndices();
+    }
+
+    @Test
+    void coincideConLaBaseDespuesDeRegistrosYCambiosDeDescargas() {
+        comprobarClasificaciones();
+        int siguienteId = 151;
+        for (int paso = 0; paso < 150; paso++) {
+            int operacion = aleatorio.nextInt(10);
+            if (operacion < 3) {
+                registrar(nuevo(siguienteId++));
+            } else if (operacion < 9) {
+                cambiarDescargas(libroAlAzar(), descargasAlAzar());
+            } else {
+                //El primero cae al fondo: la clasificación pierde uno de sus libros
+                cambiarDescargas(libroRepository.findIdsMasDescargados(Limit.of(1)).get(0), 0.0);
+            }
+            comprobarClasificaciones();
+        }
+    }
+
+    //Con tamaño 10 se guardan 20 libros. Si bajan todos, la clasificación se queda sin libros que pueda
+    //garantizar (hayMasFuera) y tiene que volver a cargarse desde la base
+    @Test
+    void seRecargaCuandoBajanTodosLosLibrosGuardados() {
+        comprobarClasificaciones();
+        List<Long> guardados = libroRepository.findIdsMasDescargados(Limit.of(2 * rankingDescargas.getTamano()));
+        for (Long id : guardados) {
+            cambiarDescargas(id, 1.0);
+        }
+        comprobarClasificaciones();
+        assertThat(rankingDescargas.top()).extracting(LibroDTO::id).doesNotContainAnyElementsOf(guardados);
+
+        //Y al volver a subir, entran de nuevo
+        for (Long id : guardados.subList(0, 5)) {
+            cambiarDescargas(id, 1_000_000.0 + id);
+        }
+        comprobarClasificaciones();
+        assertThat(rankingDescargas.top()).extracting(LibroDTO::id).containsAll(guardados.subList(0, 5));
+    }
+
+    @Test
+    void unLibroNuevoEntraEnLaClasificacionDeUnIdiomaNuevo() {
+        registrar(new DatosLibros("Der Prozess", List.of(AUTORES.get(0)), List.of("de"), 3.0, 9000));
+        comprobarClasificaciones();
+        assertThat(rankingDescargas.topPorIdioma("de")).extracting(LibroDTO::titulo).containsExactly("Der Prozess");
+    }
+
+    private void comprobarClasificaciones() {
+        int tamano = rankingDescargas.getTamano();
+        assertThat(rankingDescargas.top()).isEqualTo(libroRepository.findLibrosDTOMasDescargados(Limit.of(tamano)));
+        for (String idioma : libroRepository.contarLibrosPorIdioma().stream().map(conteo -> conteo.idioma()).toList()) {
+            assertThat(rankingDescargas.topPorIdioma(idioma)).as("idioma %s", idioma)
+                    .isEqualTo(ordenar(libroRepository.findIdsMasDescargadosPorIdioma(idioma, Limit.of(tamano))));
+        }
+        for (DatosAutor datosAutor : AUTORES) {
+            Long autorId = autorRepository.findByNombreIn(List.of(datosAutor.nombre())).get(0).getId();
+            assertThat(rankingDescargas.topPorAutor(autorId)).as("autor %s", datosAutor.nombre())
+                    .isEqualTo(ordenar(libroRepository.findIdsMasDescargadosPorAutor(autorId, Limit.of(tamano))));
+        }
+    }
+
+    //La consulta por ids no conserva el orden de los ids
+    private List<LibroDTO> ordenar(List<Long> ids) {
+        Map<Long, LibroDTO> porId = libroRepository.findLibrosDTOPorIds(ids).stream()
+                .collect(Collectors.toMap(LibroDTO::id, libro -> libro));
+        return ids.stream().map(porId::get).collect(Collectors.toList());
+    }
+
+    private void registrar(DatosLibros libro) {
+        libroService.registrarLibro(libro);
+        registrados.put(libro.gutendexId(), libro);
+    }
+
+    //Como una respuesta de Gutendex con el conteo actual de un libro ya registrado
+    private void cambiarDescargas(Long libroId, Double descargas) {
+        Integer gutendexId = libroRepository.findById(libroId).orElseThrow().getGutendexId();
+        DatosLibros anterior = registrados.get(gutendexId);
+        registrar(new DatosLibros(anterior.titulo(), anterior.autor(), anterior.idiomas(), descargas, gutendexId));
+    }
+
+    private Long libroAlAzar() {
+        List<Integer> ids = new ArrayList<>(registrados.keySet());
+        return libroRepository.findByGutendexId(ids.get(aleatorio.nextInt(ids.size()))).orElseThrow().getId();
+    }
+
+    //Rango pequeño para que haya empates, que se resuelven por id
+    private Double descargasAlAzar() {
+        return (double) aleatorio.nextInt(200);
+    }
+
+    private DatosLibros nuevo(int gutendexId) {
+        //Uno de cada 20 sin dato de descargas: no entra en ninguna clasificación
+        Double descargas = aleatorio.nextInt(20) == 0 ? null : descargasAlAzar();
+        List<String> idiomas = aleatorio.nextInt(5) == 0
+                ? List.of("en", "fr")
+                : List.of(IDIOMAS.get(aleatorio.nextInt(IDIOMAS.size())));
+        return new DatosLibros("Libro " + gutendexId, List.of(AUTORES.get(aleatorio.nextInt(AUTORES.size()))),
+                idiomas, descargas, gutendexId);
+    }
+}
@@ -0,0 +1,111 @@
+package com.alura.literalura.service;
+
+import com.alura.literalura.model.DatosAutor;
+import com.alura.literalura.model.DatosLibros;
+import com.alura.literalura.model.Libro;
+import com.alura.literalura.repository.LibroRepository;
+import jakarta.persistence.Cache;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.TestPropertySource;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+//Con 3 entradas por región: cada región descarta la entrada usada hace más tiempo, y la caché de
+//consultas no devuelve resultados viejos después de registrar o actualizar libros
+@TestPropertySource(properties = "spring.jpa.properties.literalura.cache-hibernate.entradas-por-region=3")
+class RegionesCacheEnMemoriaTest extends BaseDeDatosPrueba {
+    @Autowired
+    private LibroRepository libroRepository;
+    @Autowired
+    private LibroService libroService;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Cache cache;
+    private Statistics estadisticas;
+
+    @BeforeEach
+    void iniciar() {
+        cache = entityManagerFactory.getCache();
+        estadisticas = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        estadisticas.clear();
+    }
+
+    @Test
+    void descartaLaEntidadUsadaHaceMasTiempo() {
+        for (long id = 1; id <= 4; id++) {
+            jdbcTemplate.update("INSERT INTO libros (id, titulo, numero_de_descargas) VALUES (?, ?, ?)", id, "Libro " + id, 10.0 * id);
+        }
+        libroRepository.findById(1L);
+        libroRepository.findById(2L);
+        libroRepository.findById(3L);
+        assertThat(estadisticas.getSecondLevelCacheMissCount()).isEqualTo(3);
+
+        //El 1 pasa a ser el más reciente: al entrar el 4 sale el 2
+        libroRepository.findById(1L);
+        libroRepository.findById(4L);
+
+        assertThat(estadisticas.getSecondLevelCacheHitCount()).isEqualTo(1);
+        assertThat(List.of(1L, 2L, 3L, 4L)).map(id -> cache.contains(Libro.class, id))
+                .containsExactly(true, false, true, true);
+        assertThat(libroRepository.findById(2L)).get().extracting(Libro::getNumeroDeDescargas).isEqualTo(20.0);
+        assertThat(estadisticas.getSecondLevelCacheMissCount()).isEqualTo(5);
+    }
+
+    @Test
+    void laConsultaGuardadaSeInvalidaAlCambiarElLibro() {
+        registrar("Emma", 100.0, 158);
+        assertThat(libroRepository.findByTitulo("Emma")).get().extracting(Libro::getNumeroDeDescargas).isEqualTo(100.0);
+        assertThat(libroRepository.findByTitulo("Emma")).get().extracting(Libro::getNumeroDeDescargas).isEqualTo(100.0);
+        assertThat(estadisticas.getQueryCacheHitCount()).isEqualTo(1);
+
+        //Nuevas descargas desde Gutendex: la tabla cambia y el resultado guardado ya no sirve
+        registrar("Emma", 250.0, 158);
+
+        assertThat(libroRepository.findByTitulo("Emma")).get().extracting(Libro::getNumeroDeDescargas).isEqualTo(250.0);
+        assertThat(estadisticas.getQueryCacheHitCount()).isEqualTo(1);
+    }
+
+    //Un libro registrado después de guardar una búsqueda sin resultado aparece en la búsqueda siguiente
+    @Test
+    void laConsultaSinResultadoSeInvalidaAlRegistrarElLibro() {
+        assertThat(libroRepository.findByTitulo("Persuasion")).isEmpty();
+        assertThat(libroRepository.findByTitulo("Persuasion")).isEmpty();
+        assertThat(estadisticas.getQueryCacheHitCount()).isEqualTo(1);
+
+        registrar("Persuasion", 80.0, 105);
+
+        assertThat(libroRepository.findByTitulo("Persuasion")).isPresent();
+    }
+
+    @Test
+    void laRegionDeConsultasTambienDescartaLaMasAntigua() {
+        for (int i = 1; i <= 4; i++) {
+            registrar("Libro " + i, 1.0 * i, i);
+        }
+        libroRepository.findByTitulo("Libro 1");
+        libroRepository.findByTitulo("Libro 1");
+        assertThat(estadisticas.getQueryCacheHitCount()).isEqualTo(1);
+
+        libroRepository.findByTitulo("Libro 2");
+        libroRepository.findByTitulo("Libro 3");
+        libroRepository.findByTitulo("Libro 4");
+        long fallos = estadisticas.getQueryCacheMissCount();
+        libroRepository.findByTitulo("Libro 1");
+
+        assertThat(estadisticas.getQueryCacheMissCount()).isEqualTo(fallos + 1);
+        assertThat(estadisticas.getQueryCacheHitCount()).isEqualTo(1);
+    }
+
+    private void registrar(String titulo, Double descargas, int gutendexId) {
+        libroService.registrarLibro(new DatosLibros(titulo, List.of(new DatosAutor("Austen, Jane", 1775, 1817)),
+                List.of("en"), descargas, gutendexId));
+    }
+}
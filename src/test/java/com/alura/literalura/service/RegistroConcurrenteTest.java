@@ -0,0 +1,118 @@
+package com.alura.literalura.service;
+
+import com.alura.literalura.dto.LibroDTO;
+import com.alura.literalura.model.DatosAutor;
+import com.alura.literalura.model.DatosLibros;
+import com.alura.literalura.model.Libro;
+import com.alura.literalura.service.GutendexFalso.Respuesta;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+//Registros simultáneos del mismo libro contra PostgreSQL: queda una sola fila por libro y por autor
+class RegistroConcurrenteTest extends BaseDeDatosPrueba {
+    private static final int LLAMADAS = 16;
+    private static final String PAGINA = """
+            {"count":1,"next":null,"results":[{"id":1342,"title":"Pride and Prejudice",
+            "authors":[{"name":"Austen, Jane","birth_year":1775,"death_year":1817}],
+            "languages":["en"],"download_count":75412}]}""";
+
+    private static final GutendexFalso gutendex = crearGutendex();
+
+    @Autowired
+    private CatalogoService catalogoService;
+    @Autowired
+    private LibroService libroService;
+
+    private static GutendexFalso crearGutendex() {
+        try {
+            //La demora mantiene la primera consulta en curso mientras llegan las demás
+            return new GutendexFalso((uri, numero) -> {
+                Thread.sleep(200);
+                return Respuesta.ok(PAGINA);
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @DynamicPropertySource
+    static void gutendex(DynamicPropertyRegistry propiedades) {
+        propiedades.add("literalura.api.url", () -> gutendex.url("/books/"));
+    }
+
+    @AfterAll
+    static void cerrar() {
+        gutendex.close();
+    }
+
+    @Test
+    void lasBusquedasSimultaneasHacenUnaConsultaYUnRegistro() throws Exception {
+        List<Optional<LibroDTO>> resultados = simultaneas(LLAMADAS, i -> catalogoService.buscarYRegistrar("pride and prejudice"));
+
+        assertThat(gutendex.getSolicitudes()).isEqualTo(1);
+        assertThat(resultados).allSatisfy(resultado -> assertThat(resultado).isPresent());
+        assertThat(resultados.stream().map(resultado -> resultado.get().id()).distinct()).hasSize(1);
+        assertThat(contar("libros")).isEqualTo(1);
+        assertThat(contar("autores")).isEqualTo(1);
+        assertThat(contar("libro_autor")).isEqualTo(1);
+        assertThat(contar("libro_idiomas")).isEqualTo(1);
+    }
+
+    //Sin la consulta compartida de CatalogoService, como si cada registro viniera de otro proceso:
+    //los inserts compiten en la base y ON CONFLICT deja una sola fila sin lanzar errores
+    @Test
+    void losRegistrosSimultaneosEnLaBaseNoDuplicanFilas() throws Exception {
+        DatosAutor autor = new DatosAutor("Shelley, Mary Wollstonecraft", 1797, 1851);
+        DatosLibros frankenstein = new DatosLibros("Frankenstein; Or, The Modern Prometheus", List.of(autor),
+                List.of("en"), 90000.0, 84);
+        DatosLibros ultimoHombre = new DatosLibros("The Last Man", List.of(autor), List.of("en"), 3000.0, 18247);
+
+        List<Libro> libros = simultaneas(LLAMADAS, i -> libroService.registrarLibro(i % 2 == 0 ? frankenstein : ultimoHombre));
+
+        assertThat(libros.stream().map(Libro::getId).distinct()).hasSize(2);
+        assertThat(contar("libros")).isEqualTo(2);
+        assertThat(contar("autores")).isEqualTo(1);
+        assertThat(contar("libro_autor")).isEqualTo(2);
+        assertThat(jdbcTemplate.queryForList("SELECT gutendex_id FROM libros ORDER BY gutendex_id", Integer.class))
+                .containsExactly(84, 18247);
+    }
+
+    private static <T> List<T> simultaneas(int cantidad, Llamada<T> llamada) throws Exception {
+        ExecutorService hilos = Executors.newFixedThreadPool(cantidad);
+        CyclicBarrier salida = new CyclicBarrier(cantidad);
+        try {
+            List<Future<T>> futuros = new ArrayList<>();
+            for (int i = 0; i < cantidad; i++) {
+                int numero = i;
+                futuros.add(hilos.submit(() -> {
+                    salida.await();
+                    return llamada.ejecutar(numero);
+                }));
+            }
+            List<T> resultados = new ArrayList<>();
+            for (Future<T> futuro : futuros) {
+                resultados.add(futuro.get(60, TimeUnit.SECONDS));
+            }
+            return resultados;
+        } finally {
+            hilos.shutdownNow();
+        }
+    }
+
+    @FunctionalInterface
+    private interface Llamada<T> {
+        T ejecutar(int numero) throws Exception;
+    }
+}
@@ -0,0 +1,127 @@
+package com.alura.literalura.service;
+
+import com.alura.literalura.service.GutendexFalso.Respuesta;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+//Muchas consultas simultáneas a la misma url a través de ConsumoAPI: Gutendex recibe una sola solicitud
+//y todas reciben su resultado o su error
+class SolicitudesEnCursoTest {
+    private static final int LLAMADAS = 500;
+    private static final String CUERPO = "{\"count\":1,\"next\":null,\"results\":[]}";
+
+    private final CountDownLatch liberar = new CountDownLatch(1);
+    private ConsumoAPI consumoAPI;
+    private ExecutorService llamadas;
+
+    @BeforeEach
+    void crear() {
+        //Sin caché: una llamada que llegara después de la primera respuesta haría otra solicitud
+        CacheRespuestas cache = new CacheRespuestas(false, Duration.ofHours(1), DataSize.ofMegabytes(1), "",
+                DataSize.ofMegabytes(1));
+        consumoAPI = new ConsumoAPI(cache, Duration.ofSeconds(5), Duration.ofSeconds(30), 32, 0,
+                Duration.ofMillis(10), Duration.ofMillis(100), 5, Duration.ofSeconds(30));
+        llamadas = Executors.newFixedThreadPool(LLAMADAS);
+    }
+
+    @AfterEach
+    void cerrar() {
+        llamadas.shutdownNow();
+        consumoAPI.cerrar();
+    }
+
+    @Test
+    void lasLlamadasSimultaneasCompartenUnaSolicitud() throws Exception {
+        try (GutendexFalso gutendex = new GutendexFalso((uri, numero) -> {
+            liberar.await();
+            return Respuesta.ok(CUERPO);
+        })) {
+            List<Future<String>> resultados = lanzar(gutendex.url("/books/?search=quijote"), gutendex);
+
+            List<String> cuerpos = new ArrayList<>();
+            for (Future<String> resultado : resultados) {
+                cuerpos.add(resultado.get(30, TimeUnit.SECONDS));
+            }
+            assertThat(gutendex.getSolicitudes()).isEqualTo(1);
+            assertThat(cuerpos).hasSize(LLAMADAS).containsOnly(CUERPO);
+        }
+    }
+
+    @Test
+    void elErrorLlegaATodasLasLlamadas() throws Exception {
+        try (GutendexFalso gutendex = new GutendexFalso((uri, numero) -> {
+            liberar.await();
+            return Respuesta.error(404);
+        })) {
+            List<Future<String>> resultados = lanzar(gutendex.url("/books/?search=inexistente"), gutendex);
+
+            List<Throwable> errores = new ArrayList<>();
+            for (Future<String> resultado : resultados) {
+                try {
+                    resultado.get(30, TimeUnit.SECONDS);
+                    fail("Se esperaba un error");
+                } catch (ExecutionException e) {
+                    errores.add(e.getCause());
+                }
+            }
+            assertThat(gutendex.getSolicitudes()).isEqualTo(1);
+            assertThat(errores).hasSize(LLAMADAS)
+                    .allSatisfy(error -> assertThat(error).isSameAs(errores.get(0)));
+            assertThat(errores.get(0)).isInstanceOf(ErrorConsultaApi.class);
+            assertThat(((ErrorConsultaApi) errores.get(0)).getEstado()).isEqualTo(404);
+        }
+    }
+
+    @Test
+    void lasLlamadasAsincronasCompartenUnaSolicitud() throws Exception {
+        try (GutendexFalso gutendex = new GutendexFalso((uri, numero) -> {
+            liberar.await();
+            return Respuesta.ok(CUERPO);
+        })) {
+            String url = gutendex.url("/books/?search=quijote");
+            List<CompletableFuture<String>> resultados = new ArrayList<>();
+            for (int i = 0; i < LLAMADAS; i++) {
+                resultados.add(consumoAPI.obtenerDatosAsync(url));
+            }
+            liberar.countDown();
+
+            assertThat(CompletableFuture.allOf(resultados.toArray(CompletableFuture[]::new)))
+                    .succeedsWithin(Duration.ofSeconds(30));
+            assertThat(resultados).allSatisfy(resultado -> assertThat(resultado.join()).isEqualTo(CUERPO));
+            assertThat(gutendex.getSolicitudes()).isEqualTo(1);
+        }
+    }
+
+    //Libera la respuesta del servidor recién cuando todas las llamadas están esperando: la primera dentro
+    //de la solicitud HTTP y las demás en el resultado compartido
+    private List<Future<String>> lanzar(String url, GutendexFalso gutendex) throws InterruptedException {
+        List<Thread> hilos = new CopyOnWriteArrayList<>();
+        List<Future<String>> resultados = new ArrayList<>();
+        for (int i = 0; i < LLAMADAS; i++) {
+            resultados.add(llamadas.submit(() -> {
+                hilos.add(Thread.currentThread());
+                return consumoAPI.obtenerDatos(url);
+            }));
+        }
+        long limite = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (hilos.size() < LLAMADAS || gutendex.getSolicitudes() == 0
+                || !hilos.stream().allMatch(hilo -> hilo.getState() == Thread.State.WAITING)) {
+            if (System.nanoTime() > limite) {
+                fail("Las llamadas no quedaron esperando la solicitud en curso");
+            }
+            Thread.sleep(10);
+        }
+        liberar.countDown();
+        return resultados;
+    }
+}